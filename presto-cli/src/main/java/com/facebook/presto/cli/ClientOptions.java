@@ -16,9 +16,12 @@ package com.facebook.presto.cli;
 import com.facebook.presto.client.ClientSession;
 import com.google.common.net.HostAndPort;
 import io.airlift.command.Option;
+import io.airlift.units.DataSize;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ClientOptions
 {
@@ -34,6 +37,9 @@ public class ClientOptions
     @Option(name = "--schema", title = "schema", description = "Default schema")
     public String schema = "default";
 
+    @Option(name = "--session", title = "session", description = "Session property (property=value)")
+    public List<String> sessionProperties = new ArrayList<>();
+
     @Option(name = {"-f", "--file"}, title = "file", description = "Execute statements from file and exit")
     public String file;
 
@@ -46,6 +52,12 @@ public class ClientOptions
     @Option(name = "--output-format", title = "output-format", description = "Output format for batch mode (default: CSV)")
     public OutputFormat outputFormat = OutputFormat.CSV;
 
+    @Option(name = "--prefetch-results", title = "prefetch-results", description = "Number of results to fetch ahead of the output (default: 2)")
+    public int prefetchResults = 2;
+
+    @Option(name = "--target-result-size", title = "target-result-size", description = "Size of the data to request in each result, such as 16MB (default: server default)")
+    public String targetResultSize;
+
     public enum OutputFormat
     {
         ALIGNED,
@@ -58,7 +70,15 @@ public class ClientOptions
 
     public ClientSession toClientSession()
     {
-        return new ClientSession(parseServer(server), user, "presto-cli", catalog, schema, debug);
+        return new ClientSession(parseServer(server), user, "presto-cli", catalog, schema, ClientSession.parseProperties(sessionProperties), debug, false, parseTargetResultSize(targetResultSize));
+    }
+
+    private static DataSize parseTargetResultSize(String targetResultSize)
+    {
+        if (targetResultSize == null) {
+            return null;
+        }
+        return DataSize.valueOf(targetResultSize);
     }
 
     private static URI parseServer(String s)
@@ -82,7 +82,7 @@ public class Console
             }
         }
 
-        try (QueryRunner queryRunner = QueryRunner.create(session)) {
+        try (QueryRunner queryRunner = QueryRunner.create(session, clientOptions.prefetchResults)) {
             if (hasQuery) {
                 executeCommand(queryRunner, query, clientOptions.outputFormat);
             }
@@ -13,7 +13,8 @@
  */
 package com.facebook.presto.cli;
 
-import com.facebook.presto.client.StatementClient;
+import com.facebook.presto.client.QueryResults;
+import com.facebook.presto.client.ResultsPrefetcher;
 import io.airlift.units.Duration;
 
 import java.io.Closeable;
@@ -25,6 +26,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static io.airlift.units.Duration.nanosSince;
 import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 public final class OutputHandler
@@ -67,22 +69,29 @@ public final class OutputHandler
         }
     }
 
-    public void processRows(StatementClient client)
+    public void processRows(ResultsPrefetcher prefetcher)
             throws IOException
     {
-        while (client.isValid()) {
-            Iterable<List<Object>> data = client.current().getData();
-            if (data != null) {
-                for (List<Object> tuple : data) {
-                    processRow(unmodifiableList(tuple));
+        while (true) {
+            // do not hold buffered rows longer than the max buffer time while waiting for more
+            if (!rowBuffer.isEmpty()) {
+                long remainingMillis = MAX_BUFFER_TIME.toMillis() - nanosSince(bufferStart).toMillis();
+                if ((remainingMillis <= 0) || !prefetcher.waitForResults(remainingMillis, MILLISECONDS)) {
+                    flush(false);
                 }
             }
 
+            QueryResults results = prefetcher.next();
+            if (results == null) {
+                break;
+            }
+            for (List<Object> tuple : results.getData()) {
+                processRow(unmodifiableList(tuple));
+            }
+
             if (nanosSince(bufferStart).compareTo(MAX_BUFFER_TIME) >= 0) {
                 flush(false);
             }
-
-            client.advance();
         }
     }
 
@@ -17,6 +17,7 @@ import com.facebook.presto.cli.ClientOptions.OutputFormat;
 import com.facebook.presto.client.Column;
 import com.facebook.presto.client.ErrorLocation;
 import com.facebook.presto.client.QueryResults;
+import com.facebook.presto.client.ResultsPrefetcher;
 import com.facebook.presto.client.StatementClient;
 import com.google.common.base.Charsets;
 import com.google.common.base.Splitter;
@@ -36,6 +37,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.Writer;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.facebook.presto.cli.ConsolePrinter.REAL_TERMINAL;
@@ -51,10 +53,14 @@ public class Query
 
     private final AtomicBoolean ignoreUserInterrupt = new AtomicBoolean();
     private final StatementClient client;
+    private final int prefetchResults;
+    private final ExecutorService prefetchExecutor;
 
-    public Query(StatementClient client)
+    public Query(StatementClient client, int prefetchResults, ExecutorService prefetchExecutor)
     {
         this.client = checkNotNull(client, "client is null");
+        this.prefetchResults = prefetchResults;
+        this.prefetchExecutor = checkNotNull(prefetchExecutor, "prefetchExecutor is null");
     }
 
     public void renderOutput(PrintStream out, OutputFormat outputFormat, boolean interactive)
@@ -159,17 +165,19 @@ public class Query
         // ignore the user pressing ctrl-C while in the pager
         ignoreUserInterrupt.set(true);
 
-        try (Writer writer = createWriter(Pager.create());
+        try (ResultsPrefetcher prefetcher = new ResultsPrefetcher(client, prefetchResults, prefetchExecutor);
+                Writer writer = createWriter(Pager.create());
                 OutputHandler handler = createOutputHandler(format, writer, fieldNames)) {
-            handler.processRows(client);
+            handler.processRows(prefetcher);
         }
     }
 
     private void sendOutput(PrintStream out, OutputFormat format, List<String> fieldNames)
             throws IOException
     {
-        try (OutputHandler handler = createOutputHandler(format, createWriter(out), fieldNames)) {
-            handler.processRows(client);
+        try (ResultsPrefetcher prefetcher = new ResultsPrefetcher(client, prefetchResults, prefetchExecutor);
+                OutputHandler handler = createOutputHandler(format, createWriter(out), fieldNames)) {
+            handler.processRows(prefetcher);
         }
     }
 
@@ -16,6 +16,7 @@ package com.facebook.presto.cli;
 import com.facebook.presto.client.ClientSession;
 import com.facebook.presto.client.QueryResults;
 import com.facebook.presto.client.StatementClient;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.http.client.AsyncHttpClient;
 import io.airlift.http.client.HttpClientConfig;
 import io.airlift.http.client.netty.StandaloneNettyAsyncHttpClient;
@@ -23,10 +24,13 @@ import io.airlift.json.JsonCodec;
 import io.airlift.units.Duration;
 
 import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static io.airlift.json.JsonCodec.jsonCodec;
+import static java.util.concurrent.Executors.newCachedThreadPool;
 
 public class QueryRunner
         implements Closeable
@@ -34,13 +38,21 @@ public class QueryRunner
     private final JsonCodec<QueryResults> queryResultsCodec;
     private final ClientSession session;
     private final AsyncHttpClient httpClient;
+    private final int prefetchResults;
+    private final ExecutorService prefetchExecutor;
 
-    public QueryRunner(ClientSession session, JsonCodec<QueryResults> queryResultsCodec)
+    public QueryRunner(ClientSession session, JsonCodec<QueryResults> queryResultsCodec, int prefetchResults)
     {
+        checkArgument(prefetchResults > 0, "prefetchResults must be at least 1");
         this.session = checkNotNull(session, "session is null");
         this.queryResultsCodec = checkNotNull(queryResultsCodec, "queryResultsCodec is null");
         this.httpClient = new StandaloneNettyAsyncHttpClient("cli",
                 new HttpClientConfig().setConnectTimeout(new Duration(10, TimeUnit.SECONDS)));
+        this.prefetchResults = prefetchResults;
+        this.prefetchExecutor = newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("cli-prefetch-%d")
+                .setDaemon(true)
+                .build());
     }
 
     public ClientSession getSession()
@@ -50,7 +62,7 @@ public class QueryRunner
 
     public Query startQuery(String query)
     {
-        return new Query(startInternalQuery(query));
+        return new Query(startInternalQuery(query), prefetchResults, prefetchExecutor);
     }
 
     public StatementClient startInternalQuery(String query)
@@ -62,10 +74,11 @@ public class QueryRunner
     public void close()
     {
         httpClient.close();
+        prefetchExecutor.shutdownNow();
     }
 
-    public static QueryRunner create(ClientSession session)
+    public static QueryRunner create(ClientSession session, int prefetchResults)
     {
-        return new QueryRunner(session, jsonCodec(QueryResults.class));
+        return new QueryRunner(session, jsonCodec(QueryResults.class), prefetchResults);
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.google.common.base.Charsets;
+import io.airlift.json.JsonCodec;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * Encodes query results with the rows in the binary columnar form of {@link ColumnarData}.
+ * The body is the length and json of the results without their data, followed by
+ * a flag for whether data follows, and the data itself.
+ */
+public class BinaryResultsCodec
+{
+    public static final String MEDIA_TYPE = "application/x-presto-binary-results";
+
+    private final JsonCodec<QueryResults> jsonCodec;
+
+    public BinaryResultsCodec(JsonCodec<QueryResults> jsonCodec)
+    {
+        this.jsonCodec = checkNotNull(jsonCodec, "jsonCodec is null");
+    }
+
+    /**
+     * Writes the results, with the given data in place of the rows of the results.
+     */
+    public void write(QueryResults results, @Nullable ColumnarData data, OutputStream outputStream)
+            throws IOException
+    {
+        checkNotNull(results, "results is null");
+        checkNotNull(outputStream, "outputStream is null");
+
+        QueryResults header = new QueryResults(results.getId(),
+                results.getInfoUri(),
+                results.getPartialCancelUri(),
+                results.getNextUri(),
+                results.getColumns(),
+                (Iterable<List<Object>>) null,
+                results.getStats(),
+                results.getError());
+        byte[] json = jsonCodec.toJson(header).getBytes(Charsets.UTF_8);
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        output.writeInt(json.length);
+        output.write(json);
+        output.writeBoolean(data != null);
+        if (data != null) {
+            data.writeTo(output);
+        }
+        output.flush();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not valid binary results
+     */
+    public QueryResults read(byte[] bytes)
+    {
+        checkNotNull(bytes, "bytes is null");
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int jsonLength = buffer.getInt();
+            QueryResults results = jsonCodec.fromJson(new String(bytes, buffer.position(), jsonLength, Charsets.UTF_8));
+            buffer.position(buffer.position() + jsonLength);
+
+            if (buffer.get() == 0) {
+                return results;
+            }
+            return results.withColumnarData(ColumnarData.readFrom(results.getColumns(), buffer));
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(format("Binary results are truncated at %s bytes", bytes.length), e);
+        }
+    }
+}
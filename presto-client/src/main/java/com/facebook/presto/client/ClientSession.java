@@ -14,8 +14,17 @@
 package com.facebook.presto.client;
 
 import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+
+import javax.annotation.Nullable;
 
 import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -26,16 +35,38 @@ public class ClientSession
     private final String source;
     private final String catalog;
     private final String schema;
+    private final Map<String, String> properties;
     private final boolean debug;
+    private final boolean binaryResults;
+    private final DataSize targetResultSize;
 
     public ClientSession(URI server, String user, String source, String catalog, String schema, boolean debug)
+    {
+        this(server, user, source, catalog, schema, ImmutableMap.<String, String>of(), debug);
+    }
+
+    public ClientSession(URI server, String user, String source, String catalog, String schema, Map<String, String> properties, boolean debug)
+    {
+        this(server, user, source, catalog, schema, properties, debug, false, null);
+    }
+
+    /**
+     * @param binaryResults ask the server for the rows in the binary columnar format, which
+     * servers that do not support it ignore
+     * @param targetResultSize the size of the data to ask for in each result, or null for
+     * the server default; the server limits it to a maximum
+     */
+    public ClientSession(URI server, String user, String source, String catalog, String schema, Map<String, String> properties, boolean debug, boolean binaryResults, @Nullable DataSize targetResultSize)
     {
         this.server = checkNotNull(server, "server is null");
         this.user = user;
         this.source = source;
         this.catalog = catalog;
         this.schema = schema;
+        this.properties = ImmutableMap.copyOf(checkNotNull(properties, "properties is null"));
         this.debug = debug;
+        this.binaryResults = binaryResults;
+        this.targetResultSize = targetResultSize;
     }
 
     public URI getServer()
@@ -63,11 +94,47 @@ public class ClientSession
         return schema;
     }
 
+    public Map<String, String> getProperties()
+    {
+        return properties;
+    }
+
     public boolean isDebug()
     {
         return debug;
     }
 
+    public boolean isBinaryResults()
+    {
+        return binaryResults;
+    }
+
+    @Nullable
+    public DataSize getTargetResultSize()
+    {
+        return targetResultSize;
+    }
+
+    /**
+     * Parses session properties formatted as name=value, which is how they are given to
+     * the CLI and sent in the {@value PrestoHeaders#PRESTO_SESSION} header.  A later value
+     * for the same name replaces an earlier one.
+     *
+     * @throws IllegalArgumentException if a property is not formatted as name=value
+     */
+    public static Map<String, String> parseProperties(Iterable<String> properties)
+    {
+        Map<String, String> parsed = new LinkedHashMap<>();
+        for (String property : properties) {
+            List<String> nameValue = ImmutableList.copyOf(Splitter.on('=').limit(2).trimResults().split(property));
+            if (nameValue.size() != 2 || nameValue.get(0).isEmpty()) {
+                throw new IllegalArgumentException("Session property must be formatted as name=value: " + property);
+            }
+            parsed.put(nameValue.get(0), nameValue.get(1));
+        }
+        return parsed;
+    }
+
     @Override
     public String toString()
     {
@@ -76,7 +143,10 @@ public class ClientSession
                 .add("user", user)
                 .add("catalog", catalog)
                 .add("schema", schema)
+                .add("properties", properties)
                 .add("debug", debug)
+                .add("binaryResults", binaryResults)
+                .add("targetResultSize", targetResultSize)
                 .toString();
     }
 }
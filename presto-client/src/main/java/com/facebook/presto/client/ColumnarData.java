@@ -0,0 +1,488 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * A batch of result rows stored by column, as sent in the binary results format.
+ * Values are kept in primitive arrays, and varchar values are only decoded when
+ * they are read, so the rows can be consumed without boxing.
+ * <p/>
+ * The encoding is the row count, followed by each column: a null bitmap with one bit
+ * per row, and then the values of all rows (zero or empty for null values).  Bigint
+ * and double values are eight bytes, booleans are one byte, and varchar values are
+ * the lengths of all values followed by their UTF-8 bytes.
+ */
+public class ColumnarData
+{
+    private final List<Column> columns;
+    private final int rowCount;
+    private final ColumnVector[] vectors;
+
+    private ColumnarData(List<Column> columns, int rowCount, ColumnVector[] vectors)
+    {
+        this.columns = ImmutableList.copyOf(checkNotNull(columns, "columns is null"));
+        this.rowCount = rowCount;
+        this.vectors = vectors;
+    }
+
+    public List<Column> getColumns()
+    {
+        return columns;
+    }
+
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    public boolean isNull(int column, int row)
+    {
+        return vectors[column].nulls[row];
+    }
+
+    public long getLong(int column, int row)
+    {
+        ColumnVector vector = vectors[column];
+        switch (vector.type) {
+            case BIGINT:
+                return vector.longs[row];
+            case DOUBLE:
+                return (long) vector.doubles[row];
+        }
+        throw new IllegalArgumentException("Column is not numeric: " + columns.get(column).getType());
+    }
+
+    public double getDouble(int column, int row)
+    {
+        ColumnVector vector = vectors[column];
+        switch (vector.type) {
+            case BIGINT:
+                return vector.longs[row];
+            case DOUBLE:
+                return vector.doubles[row];
+        }
+        throw new IllegalArgumentException("Column is not numeric: " + columns.get(column).getType());
+    }
+
+    public boolean getBoolean(int column, int row)
+    {
+        ColumnVector vector = vectors[column];
+        checkArgument(vector.type == ColumnType.BOOLEAN, "Column is not boolean: %s", columns.get(column).getType());
+        return vector.booleans[row];
+    }
+
+    /**
+     * Returns the value as a string, which for a varchar column is decoded on first access.
+     */
+    public String getString(int column, int row)
+    {
+        ColumnVector vector = vectors[column];
+        if (vector.nulls[row]) {
+            return null;
+        }
+        switch (vector.type) {
+            case BIGINT:
+                return String.valueOf(vector.longs[row]);
+            case DOUBLE:
+                return String.valueOf(vector.doubles[row]);
+            case BOOLEAN:
+                return String.valueOf(vector.booleans[row]);
+            case VARCHAR:
+                String value = vector.strings[row];
+                if (value == null) {
+                    int offset = vector.offsets[row];
+                    value = new String(vector.bytes, offset, vector.offsets[row + 1] - offset, Charsets.UTF_8);
+                    vector.strings[row] = value;
+                }
+                return value;
+        }
+        throw new AssertionError("unimplemented type: " + vector.type);
+    }
+
+    /**
+     * Returns the value boxed into the same type as the json results.
+     */
+    public Object getObject(int column, int row)
+    {
+        ColumnVector vector = vectors[column];
+        if (vector.nulls[row]) {
+            return null;
+        }
+        switch (vector.type) {
+            case BIGINT:
+                return vector.longs[row];
+            case DOUBLE:
+                return vector.doubles[row];
+            case BOOLEAN:
+                return vector.booleans[row];
+            case VARCHAR:
+                return getString(column, row);
+        }
+        throw new AssertionError("unimplemented type: " + vector.type);
+    }
+
+    /**
+     * Returns a view of the rows as lists of boxed values.
+     */
+    public Iterable<List<Object>> toRows()
+    {
+        return new Iterable<List<Object>>()
+        {
+            @Override
+            public Iterator<List<Object>> iterator()
+            {
+                return new AbstractIterator<List<Object>>()
+                {
+                    private int row;
+
+                    @Override
+                    protected List<Object> computeNext()
+                    {
+                        if (row >= rowCount) {
+                            return endOfData();
+                        }
+                        List<Object> values = new ArrayList<>(vectors.length);
+                        for (int column = 0; column < vectors.length; column++) {
+                            values.add(getObject(column, row));
+                        }
+                        row++;
+                        return unmodifiableList(values); // allow nulls in list
+                    }
+                };
+            }
+        };
+    }
+
+    public static ColumnarData fromRows(List<Column> columns, Iterable<List<Object>> rows)
+    {
+        Builder builder = new Builder(columns);
+        for (List<Object> row : rows) {
+            checkArgument(row.size() == columns.size(), "row/column size mismatch");
+            for (int column = 0; column < row.size(); column++) {
+                builder.appendValue(column, row.get(column));
+            }
+        }
+        return builder.build();
+    }
+
+    public static ColumnarData readFrom(List<Column> columns, ByteBuffer buffer)
+    {
+        checkNotNull(columns, "columns is null");
+        checkNotNull(buffer, "buffer is null");
+
+        int rowCount = buffer.getInt();
+        checkArgument(rowCount >= 0, "row count is negative");
+        ColumnVector[] vectors = new ColumnVector[columns.size()];
+        for (int column = 0; column < vectors.length; column++) {
+            ColumnVector vector = new ColumnVector(ColumnType.fromName(columns.get(column).getType()), rowCount);
+            readNulls(buffer, vector.nulls);
+            switch (vector.type) {
+                case BIGINT:
+                    buffer.asLongBuffer().get(vector.longs);
+                    buffer.position(buffer.position() + rowCount * 8);
+                    break;
+                case DOUBLE:
+                    buffer.asDoubleBuffer().get(vector.doubles);
+                    buffer.position(buffer.position() + rowCount * 8);
+                    break;
+                case BOOLEAN:
+                    for (int row = 0; row < rowCount; row++) {
+                        vector.booleans[row] = buffer.get() != 0;
+                    }
+                    break;
+                case VARCHAR:
+                    int offset = 0;
+                    for (int row = 0; row < rowCount; row++) {
+                        offset += buffer.getInt();
+                        vector.offsets[row + 1] = offset;
+                    }
+                    vector.bytes = new byte[offset];
+                    buffer.get(vector.bytes);
+                    break;
+            }
+            vectors[column] = vector;
+        }
+        return new ColumnarData(columns, rowCount, vectors);
+    }
+
+    public void writeTo(DataOutput output)
+            throws IOException
+    {
+        checkNotNull(output, "output is null");
+
+        output.writeInt(rowCount);
+        for (ColumnVector vector : vectors) {
+            writeNulls(output, vector.nulls, rowCount);
+            switch (vector.type) {
+                case BIGINT:
+                    for (int row = 0; row < rowCount; row++) {
+                        output.writeLong(vector.longs[row]);
+                    }
+                    break;
+                case DOUBLE:
+                    for (int row = 0; row < rowCount; row++) {
+                        output.writeDouble(vector.doubles[row]);
+                    }
+                    break;
+                case BOOLEAN:
+                    for (int row = 0; row < rowCount; row++) {
+                        output.writeByte(vector.booleans[row] ? 1 : 0);
+                    }
+                    break;
+                case VARCHAR:
+                    for (int row = 0; row < rowCount; row++) {
+                        output.writeInt(vector.offsets[row + 1] - vector.offsets[row]);
+                    }
+                    output.write(vector.bytes, 0, vector.offsets[rowCount]);
+                    break;
+            }
+        }
+    }
+
+    private static void readNulls(ByteBuffer buffer, boolean[] nulls)
+    {
+        int bits = 0;
+        for (int row = 0; row < nulls.length; row++) {
+            if ((row & 7) == 0) {
+                bits = buffer.get();
+            }
+            nulls[row] = (bits & (1 << (row & 7))) != 0;
+        }
+    }
+
+    private static void writeNulls(DataOutput output, boolean[] nulls, int rowCount)
+            throws IOException
+    {
+        int bits = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (nulls[row]) {
+                bits |= 1 << (row & 7);
+            }
+            if ((row & 7) == 7) {
+                output.writeByte(bits);
+                bits = 0;
+            }
+        }
+        if ((rowCount & 7) != 0) {
+            output.writeByte(bits);
+        }
+    }
+
+    private enum ColumnType
+    {
+        BIGINT, DOUBLE, BOOLEAN, VARCHAR;
+
+        public static ColumnType fromName(String type)
+        {
+            switch (type) {
+                case "bigint":
+                    return BIGINT;
+                case "double":
+                    return DOUBLE;
+                case "boolean":
+                    return BOOLEAN;
+                case "varchar":
+                    return VARCHAR;
+            }
+            throw new IllegalArgumentException("unimplemented type: " + type);
+        }
+    }
+
+    private static class ColumnVector
+    {
+        private final ColumnType type;
+        private boolean[] nulls;
+        private long[] longs;
+        private double[] doubles;
+        private boolean[] booleans;
+        // varchar values are stored as their UTF-8 bytes, and decoded on first access
+        private int[] offsets;
+        private byte[] bytes;
+        private String[] strings;
+
+        private ColumnVector(ColumnType type, int capacity)
+        {
+            this.type = type;
+            nulls = new boolean[capacity];
+            switch (type) {
+                case BIGINT:
+                    longs = new long[capacity];
+                    break;
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                case BOOLEAN:
+                    booleans = new boolean[capacity];
+                    break;
+                case VARCHAR:
+                    offsets = new int[capacity + 1];
+                    bytes = new byte[0];
+                    strings = new String[capacity];
+                    break;
+            }
+        }
+
+        private void ensureCapacity(int rows, int varcharBytes)
+        {
+            if (nulls.length < rows) {
+                int capacity = Math.max(rows, nulls.length * 2);
+                nulls = Arrays.copyOf(nulls, capacity);
+                switch (type) {
+                    case BIGINT:
+                        longs = Arrays.copyOf(longs, capacity);
+                        break;
+                    case DOUBLE:
+                        doubles = Arrays.copyOf(doubles, capacity);
+                        break;
+                    case BOOLEAN:
+                        booleans = Arrays.copyOf(booleans, capacity);
+                        break;
+                    case VARCHAR:
+                        offsets = Arrays.copyOf(offsets, capacity + 1);
+                        strings = Arrays.copyOf(strings, capacity);
+                        break;
+                }
+            }
+            if (type == ColumnType.VARCHAR && bytes.length < varcharBytes) {
+                bytes = Arrays.copyOf(bytes, Math.max(varcharBytes, bytes.length * 2));
+            }
+        }
+    }
+
+    /**
+     * Appends values column by column.  All columns must have the same number
+     * of values when the data is built.
+     */
+    public static class Builder
+    {
+        private final List<Column> columns;
+        private final ColumnVector[] vectors;
+        private final int[] sizes;
+
+        public Builder(List<Column> columns)
+        {
+            this.columns = ImmutableList.copyOf(checkNotNull(columns, "columns is null"));
+            vectors = new ColumnVector[columns.size()];
+            for (int column = 0; column < vectors.length; column++) {
+                vectors[column] = new ColumnVector(ColumnType.fromName(columns.get(column).getType()), 16);
+            }
+            sizes = new int[vectors.length];
+        }
+
+        public Builder appendNull(int column)
+        {
+            ColumnVector vector = append(column, 0);
+            vector.nulls[sizes[column]] = true;
+            if (vector.type == ColumnType.VARCHAR) {
+                vector.offsets[sizes[column] + 1] = vector.offsets[sizes[column]];
+            }
+            sizes[column]++;
+            return this;
+        }
+
+        public Builder appendLong(int column, long value)
+        {
+            ColumnVector vector = append(column, 0);
+            checkArgument(vector.type == ColumnType.BIGINT, "Column is not bigint: %s", columns.get(column).getType());
+            vector.longs[sizes[column]++] = value;
+            return this;
+        }
+
+        public Builder appendDouble(int column, double value)
+        {
+            ColumnVector vector = append(column, 0);
+            checkArgument(vector.type == ColumnType.DOUBLE, "Column is not double: %s", columns.get(column).getType());
+            vector.doubles[sizes[column]++] = value;
+            return this;
+        }
+
+        public Builder appendBoolean(int column, boolean value)
+        {
+            ColumnVector vector = append(column, 0);
+            checkArgument(vector.type == ColumnType.BOOLEAN, "Column is not boolean: %s", columns.get(column).getType());
+            vector.booleans[sizes[column]++] = value;
+            return this;
+        }
+
+        /**
+         * Appends a varchar value given as UTF-8 bytes.
+         */
+        public Builder appendUtf8(int column, byte[] value)
+        {
+            ColumnVector vector = vectors[column];
+            checkArgument(vector.type == ColumnType.VARCHAR, "Column is not varchar: %s", columns.get(column).getType());
+            int size = sizes[column];
+            int offset = vector.offsets[size];
+            append(column, offset + value.length);
+            System.arraycopy(value, 0, vector.bytes, offset, value.length);
+            vector.offsets[size + 1] = offset + value.length;
+            sizes[column]++;
+            return this;
+        }
+
+        /**
+         * Appends a boxed value, as found in the json results.
+         */
+        public Builder appendValue(int column, Object value)
+        {
+            if (value == null) {
+                return appendNull(column);
+            }
+            switch (vectors[column].type) {
+                case BIGINT:
+                    return appendLong(column, ((Number) value).longValue());
+                case DOUBLE:
+                    return appendDouble(column, ((Number) value).doubleValue());
+                case BOOLEAN:
+                    return appendBoolean(column, (Boolean) value);
+                case VARCHAR:
+                    return appendUtf8(column, value.toString().getBytes(Charsets.UTF_8));
+            }
+            throw new AssertionError("unimplemented type: " + vectors[column].type);
+        }
+
+        public ColumnarData build()
+        {
+            int rowCount = vectors.length == 0 ? 0 : sizes[0];
+            for (int size : sizes) {
+                checkState(size == rowCount, "columns have different numbers of values");
+            }
+            return new ColumnarData(columns, rowCount, vectors);
+        }
+
+        private ColumnVector append(int column, int varcharBytes)
+        {
+            ColumnVector vector = vectors[column];
+            vector.ensureCapacity(sizes[column] + 1, varcharBytes);
+            return vector;
+        }
+    }
+}
@@ -19,6 +19,8 @@ public final class PrestoHeaders
     public static final String PRESTO_SOURCE = "X-Presto-Source";
     public static final String PRESTO_CATALOG = "X-Presto-Catalog";
     public static final String PRESTO_SCHEMA = "X-Presto-Schema";
+    public static final String PRESTO_SESSION = "X-Presto-Session";
+    public static final String PRESTO_TARGET_RESULT_SIZE = "X-Presto-Target-Result-Size";
 
     public static final String PRESTO_CURRENT_STATE = "X-Presto-Current-State";
     public static final String PRESTO_MAX_WAIT = "X-Presto-Max-Wait";
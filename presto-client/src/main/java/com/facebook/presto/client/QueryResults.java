@@ -14,6 +14,7 @@
 package com.facebook.presto.client;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
@@ -40,6 +41,7 @@ public class QueryResults
     private final URI nextUri;
     private final List<Column> columns;
     private final Iterable<List<Object>> data;
+    private final ColumnarData columnarData;
     private final StatementStats stats;
     private final QueryError error;
 
@@ -66,6 +68,20 @@ public class QueryResults
             Iterable<List<Object>> data,
             StatementStats stats,
             QueryError error)
+    {
+        this(id, infoUri, partialCancelUri, nextUri, columns, data, null, stats, error);
+    }
+
+    private QueryResults(
+            String id,
+            URI infoUri,
+            URI partialCancelUri,
+            URI nextUri,
+            List<Column> columns,
+            Iterable<List<Object>> data,
+            ColumnarData columnarData,
+            StatementStats stats,
+            QueryError error)
     {
         this.id = checkNotNull(id, "id is null");
         this.infoUri = checkNotNull(infoUri, "infoUri is null");
@@ -73,6 +89,7 @@ public class QueryResults
         this.nextUri = nextUri;
         this.columns = (columns != null) ? ImmutableList.copyOf(columns) : null;
         this.data = (data != null) ? unmodifiableIterable(data) : null;
+        this.columnarData = columnarData;
         this.stats = checkNotNull(stats, "stats is null");
         this.error = error;
     }
@@ -119,6 +136,22 @@ public class QueryResults
         return data;
     }
 
+    /**
+     * Returns the data in columnar form, if the results were received in the binary format.
+     */
+    @Nullable
+    @JsonIgnore
+    public ColumnarData getColumnarData()
+    {
+        return columnarData;
+    }
+
+    public QueryResults withColumnarData(ColumnarData columnarData)
+    {
+        checkNotNull(columnarData, "columnarData is null");
+        return new QueryResults(id, infoUri, partialCancelUri, nextUri, columns, columnarData.toRows(), columnarData, stats, error);
+    }
+
     @NotNull
     @JsonProperty
     public StatementStats getStats()
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Advances a statement client in the background, so the next results are fetched
+ * while the consumer processes the current ones.  Up to the given number of results
+ * with data are buffered ahead of the consumer.
+ * <p/>
+ * The results of a query must be fetched in order, so only one request is in flight
+ * at a time.  Once {@link #next()} returns null, the client is in its final state and
+ * can be checked for failure as usual.
+ * <p/>
+ * The fetch task holds an executor thread while it waits for a free buffer, so a
+ * prefetcher whose results are not read to the end must be closed to release it.
+ * If the prefetcher is given an owner, the fetch task only holds a weak reference to
+ * it, and stops and closes the client once the owner has been garbage collected.
+ */
+@ThreadSafe
+public class ResultsPrefetcher
+        implements Closeable
+{
+    private static final long OWNER_CHECK_INTERVAL_MILLIS = 500;
+
+    private final StatementClient client;
+    @Nullable
+    private final WeakReference<Object> owner;
+    private final Semaphore freeBuffers;
+    // absent marks the end of the results
+    private final BlockingQueue<Optional<QueryResults>> buffer = new LinkedBlockingQueue<>();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final Future<?> future;
+
+    @GuardedBy("this")
+    private Optional<QueryResults> pending;
+
+    public ResultsPrefetcher(StatementClient client, int maxBufferedResults, ExecutorService executor)
+    {
+        this(client, maxBufferedResults, executor, null);
+    }
+
+    public ResultsPrefetcher(StatementClient client, int maxBufferedResults, ExecutorService executor, @Nullable Object owner)
+    {
+        checkArgument(maxBufferedResults > 0, "maxBufferedResults must be at least 1");
+        this.client = checkNotNull(client, "client is null");
+        this.owner = (owner == null) ? null : new WeakReference<>(owner);
+        this.freeBuffers = new Semaphore(maxBufferedResults);
+
+        checkNotNull(executor, "executor is null");
+        future = executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                prefetch();
+            }
+        });
+    }
+
+    /**
+     * Returns the next results with data, waiting for them if necessary, or null if
+     * there are no more results.
+     */
+    public synchronized QueryResults next()
+    {
+        if (finished.get()) {
+            return null;
+        }
+
+        Optional<QueryResults> results = pending;
+        pending = null;
+        if (results == null) {
+            results = Uninterruptibles.takeUninterruptibly(buffer);
+        }
+        if (!results.isPresent()) {
+            finished.set(true);
+            RuntimeException exception = failure.get();
+            if (exception != null) {
+                throw Throwables.propagate(exception);
+            }
+            return null;
+        }
+        freeBuffers.release();
+        return results.get();
+    }
+
+    /**
+     * Waits up to the given time for the next results.  Returns true if {@link #next()}
+     * will not block.
+     */
+    public synchronized boolean waitForResults(long timeout, TimeUnit unit)
+    {
+        if (finished.get() || (pending != null)) {
+            return true;
+        }
+        try {
+            pending = buffer.poll(timeout, unit);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return pending != null;
+    }
+
+    /**
+     * Stops fetching and closes the client, unless all results have been returned.
+     */
+    @Override
+    public void close()
+    {
+        if (!finished.get()) {
+            client.close();
+            future.cancel(true);
+        }
+    }
+
+    private void prefetch()
+    {
+        try {
+            while (client.isValid()) {
+                QueryResults results = client.current();
+                if (results.getData() != null) {
+                    while (!freeBuffers.tryAcquire(OWNER_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (isAbandoned()) {
+                            client.close();
+                            return;
+                        }
+                    }
+                    buffer.add(Optional.of(results));
+                }
+                client.advance();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (RuntimeException e) {
+            failure.set(e);
+        }
+        finally {
+            buffer.add(Optional.<QueryResults>absent());
+        }
+    }
+
+    private boolean isAbandoned()
+    {
+        return (owner != null) && (owner.get() == null);
+    }
+}
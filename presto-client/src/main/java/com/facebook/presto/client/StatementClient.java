@@ -15,25 +15,32 @@ package com.facebook.presto.client;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.MediaType;
 import io.airlift.http.client.AsyncHttpClient;
-import io.airlift.http.client.FullJsonResponseHandler;
 import io.airlift.http.client.HttpStatus;
 import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
 import io.airlift.json.JsonCodec;
+import io.airlift.units.DataSize;
 
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.net.URI;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.net.HttpHeaders.ACCEPT;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static com.google.common.net.HttpHeaders.USER_AGENT;
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
-import static io.airlift.http.client.FullJsonResponseHandler.JsonResponse;
-import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
 import static io.airlift.http.client.HttpStatus.Family;
 import static io.airlift.http.client.HttpStatus.familyForStatusCode;
 import static io.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
@@ -55,9 +62,14 @@ public class StatementClient
             "/" +
             Objects.firstNonNull(StatementClient.class.getPackage().getImplementationVersion(), "unknown");
 
+    // servers that do not know the binary format fall back to json
+    private static final String BINARY_RESULTS_ACCEPT = BinaryResultsCodec.MEDIA_TYPE + ", " + MediaType.JSON_UTF_8.withoutParameters() + ";q=0.5";
+
     private final AsyncHttpClient httpClient;
-    private final FullJsonResponseHandler<QueryResults> responseHandler;
+    private final ResultsResponseHandler responseHandler;
     private final boolean debug;
+    private final boolean binaryResults;
+    private final DataSize targetResultSize;
     private final String query;
     private final AtomicReference<QueryResults> currentResults = new AtomicReference<>();
     private final AtomicBoolean closed = new AtomicBoolean();
@@ -72,8 +84,10 @@ public class StatementClient
         checkNotNull(query, "query is null");
 
         this.httpClient = httpClient;
-        this.responseHandler = createFullJsonResponseHandler(queryResultsCodec);
+        this.responseHandler = new ResultsResponseHandler(queryResultsCodec);
         this.debug = session.isDebug();
+        this.binaryResults = session.isBinaryResults();
+        this.targetResultSize = session.getTargetResultSize();
         this.query = query;
 
         Request request = buildQueryRequest(session, query);
@@ -98,6 +112,9 @@ public class StatementClient
         if (session.getSchema() != null) {
             builder.setHeader(PrestoHeaders.PRESTO_SCHEMA, session.getSchema());
         }
+        for (Map.Entry<String, String> property : session.getProperties().entrySet()) {
+            builder.addHeader(PrestoHeaders.PRESTO_SESSION, property.getKey() + "=" + property.getValue());
+        }
         builder.setHeader(USER_AGENT, USER_AGENT_VALUE);
 
         return builder.build();
@@ -152,10 +169,14 @@ public class StatementClient
             return false;
         }
 
-        Request request = prepareGet()
+        Request.Builder builder = prepareGet()
                 .setHeader(USER_AGENT, USER_AGENT_VALUE)
-                .setUri(current().getNextUri())
-                .build();
+                .setHeader(ACCEPT, binaryResults ? BINARY_RESULTS_ACCEPT : MediaType.JSON_UTF_8.withoutParameters().toString())
+                .setUri(current().getNextUri());
+        if (targetResultSize != null) {
+            builder.setHeader(PrestoHeaders.PRESTO_TARGET_RESULT_SIZE, targetResultSize.toString());
+        }
+        Request request = builder.build();
 
         Exception cause = null;
         long start = System.nanoTime();
@@ -168,7 +189,7 @@ public class StatementClient
             }
             attempts++;
 
-            JsonResponse<QueryResults> response;
+            ResultsResponse response;
             try {
                 response = httpClient.execute(request, responseHandler);
             }
@@ -187,7 +208,8 @@ public class StatementClient
                 throw new RuntimeException(format("Error fetching next at %s returned %s: %s",
                         request.getUri(),
                         response.getStatusCode(),
-                        response.getStatusMessage()));
+                        response.getErrorMessage()),
+                        response.getDecodeError());
             }
         }
         while ((System.nanoTime() - start) < MINUTES.toNanos(2));
@@ -227,4 +249,117 @@ public class StatementClient
             }
         }
     }
+
+    private static class ResultsResponse
+    {
+        private final int statusCode;
+        private final String statusMessage;
+        private final QueryResults value;
+        private final IllegalArgumentException decodeError;
+
+        private ResultsResponse(int statusCode, String statusMessage, QueryResults value, IllegalArgumentException decodeError)
+        {
+            this.statusCode = statusCode;
+            this.statusMessage = statusMessage;
+            this.value = value;
+            this.decodeError = decodeError;
+        }
+
+        public int getStatusCode()
+        {
+            return statusCode;
+        }
+
+        public String getStatusMessage()
+        {
+            return statusMessage;
+        }
+
+        /**
+         * Gets the error from decoding the results, or null if the response was decoded.
+         */
+        public IllegalArgumentException getDecodeError()
+        {
+            return decodeError;
+        }
+
+        public String getErrorMessage()
+        {
+            if (decodeError == null) {
+                return statusMessage;
+            }
+            return format("%s, and the results could not be decoded: %s", statusMessage, decodeError.getMessage());
+        }
+
+        public boolean hasValue()
+        {
+            return value != null;
+        }
+
+        public QueryResults getValue()
+        {
+            if (!hasValue()) {
+                throw new IllegalStateException(format("Response does not contain results: %s %s", statusCode, getErrorMessage()), decodeError);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Decodes json or binary results, depending on the content type the server chose.
+     */
+    private static class ResultsResponseHandler
+            implements ResponseHandler<ResultsResponse, RuntimeException>
+    {
+        private static final MediaType BINARY_RESULTS = MediaType.parse(BinaryResultsCodec.MEDIA_TYPE);
+        private static final MediaType JSON = MediaType.JSON_UTF_8.withoutParameters();
+
+        private final JsonCodec<QueryResults> jsonCodec;
+        private final BinaryResultsCodec binaryCodec;
+
+        private ResultsResponseHandler(JsonCodec<QueryResults> jsonCodec)
+        {
+            this.jsonCodec = jsonCodec;
+            this.binaryCodec = new BinaryResultsCodec(jsonCodec);
+        }
+
+        @Override
+        public ResultsResponse handleException(Request request, Exception exception)
+        {
+            throw Throwables.propagate(exception);
+        }
+
+        @Override
+        public ResultsResponse handle(Request request, Response response)
+        {
+            String contentType = response.getHeader(CONTENT_TYPE);
+            if (contentType == null) {
+                return new ResultsResponse(response.getStatusCode(), response.getStatusMessage(), null, null);
+            }
+
+            byte[] bytes;
+            try {
+                bytes = ByteStreams.toByteArray(response.getInputStream());
+            }
+            catch (IOException e) {
+                throw new RuntimeException(format("Error reading response from %s", request.getUri()), e);
+            }
+
+            QueryResults value = null;
+            try {
+                MediaType mediaType = MediaType.parse(contentType).withoutParameters();
+                if (mediaType.is(BINARY_RESULTS)) {
+                    value = binaryCodec.read(bytes);
+                }
+                else if (mediaType.is(JSON)) {
+                    value = jsonCodec.fromJson(new String(bytes, Charsets.UTF_8));
+                }
+            }
+            catch (IllegalArgumentException e) {
+                // same as an empty response, which fails the query, but with the reason in the error
+                return new ResultsResponse(response.getStatusCode(), response.getStatusMessage(), null, e);
+            }
+            return new ResultsResponse(response.getStatusCode(), response.getStatusMessage(), value, null);
+        }
+    }
 }
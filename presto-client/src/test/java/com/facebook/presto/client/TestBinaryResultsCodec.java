@@ -0,0 +1,203 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static java.util.Collections.unmodifiableList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestBinaryResultsCodec
+{
+    private static final BinaryResultsCodec CODEC = new BinaryResultsCodec(jsonCodec(QueryResults.class));
+
+    @Test
+    public void testAllTypes()
+            throws Exception
+    {
+        List<Column> columns = ImmutableList.of(
+                new Column("a", "bigint"),
+                new Column("b", "double"),
+                new Column("c", "boolean"),
+                new Column("d", "varchar"));
+
+        List<List<Object>> rows = ImmutableList.of(
+                row(1L, 1.5, true, "apple"),
+                row(Long.MIN_VALUE, -0.25, false, "über"),
+                row(Long.MAX_VALUE, Double.MAX_VALUE, true, ""));
+
+        ColumnarData data = assertRoundTrip(columns, rows);
+        assertEquals(data.getLong(0, 1), Long.MIN_VALUE);
+        assertEquals(data.getDouble(1, 2), Double.MAX_VALUE);
+        assertTrue(data.getBoolean(2, 0));
+        assertEquals(data.getString(3, 1), "über");
+    }
+
+    @Test
+    public void testNullsOverManyRows()
+            throws Exception
+    {
+        // nulls on both sides of the byte boundaries of the null bitmap, and a partial last byte
+        List<List<Object>> rows = new ArrayList<>();
+        for (int value = 0; value < 19; value++) {
+            boolean isNull = value == 0 || value == 7 || value == 8 || value == 15 || value == 16 || value == 18;
+            rows.add(isNull ? row(null, null, null, null) : row((long) value, (double) value, value % 2 == 0, String.valueOf(value)));
+        }
+
+        ColumnarData data = assertRoundTrip(ImmutableList.of(
+                new Column("a", "bigint"),
+                new Column("b", "double"),
+                new Column("c", "boolean"),
+                new Column("d", "varchar")),
+                rows);
+
+        for (int row = 0; row < 19; row++) {
+            for (int column = 0; column < 4; column++) {
+                assertEquals(data.isNull(column, row), rows.get(row).get(column) == null);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyVarchar()
+            throws Exception
+    {
+        ColumnarData data = assertRoundTrip(ImmutableList.of(new Column("a", "varchar")), ImmutableList.of(
+                row(""),
+                row((Object) null),
+                row(""),
+                row("x"),
+                row("")));
+
+        assertEquals(data.getString(0, 0), "");
+        assertFalse(data.isNull(0, 0));
+        assertNull(data.getString(0, 1));
+        assertTrue(data.isNull(0, 1));
+        assertEquals(data.getString(0, 3), "x");
+        assertEquals(data.getString(0, 4), "");
+    }
+
+    @Test
+    public void testNoRows()
+            throws Exception
+    {
+        assertRoundTrip(ImmutableList.of(new Column("a", "bigint"), new Column("b", "varchar")), ImmutableList.<List<Object>>of());
+    }
+
+    @Test
+    public void testJsonValuesFromRows()
+            throws Exception
+    {
+        // rows decoded from json have integers and doubles where the columns are bigint and double
+        List<Column> columns = ImmutableList.of(new Column("a", "bigint"), new Column("b", "double"));
+        ColumnarData data = ColumnarData.fromRows(columns, ImmutableList.of(row(1, 2), row(3, 4.5)));
+
+        QueryResults results = roundTrip(createResults(columns), data);
+        assertEquals(ImmutableList.copyOf(results.getData()), ImmutableList.of(row(1L, 2.0), row(3L, 4.5)));
+    }
+
+    @Test
+    public void testResultsWithoutData()
+            throws Exception
+    {
+        QueryResults expected = createResults(ImmutableList.of(new Column("a", "bigint")));
+        QueryResults results = roundTrip(expected, null);
+
+        assertEquals(results.getId(), expected.getId());
+        assertEquals(results.getNextUri(), expected.getNextUri());
+        assertColumnsEqual(results.getColumns(), expected.getColumns());
+        assertNull(results.getData());
+        assertNull(results.getColumnarData());
+    }
+
+    @Test
+    public void testTruncatedResults()
+            throws Exception
+    {
+        List<Column> columns = ImmutableList.of(new Column("a", "varchar"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CODEC.write(createResults(columns), ColumnarData.fromRows(columns, ImmutableList.of(row("apple"), row("banana"))), output);
+        byte[] bytes = output.toByteArray();
+
+        try {
+            CODEC.read(Arrays.copyOf(bytes, bytes.length - 3));
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+        }
+    }
+
+    private static ColumnarData assertRoundTrip(List<Column> columns, List<List<Object>> rows)
+            throws IOException
+    {
+        QueryResults results = roundTrip(createResults(columns), ColumnarData.fromRows(columns, rows));
+
+        ColumnarData data = results.getColumnarData();
+        assertNotNull(data);
+        assertColumnsEqual(data.getColumns(), columns);
+        assertEquals(data.getRowCount(), rows.size());
+        assertEquals(ImmutableList.copyOf(results.getData()), rows);
+        return data;
+    }
+
+    private static void assertColumnsEqual(List<Column> actual, List<Column> expected)
+    {
+        assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(actual.get(i).getName(), expected.get(i).getName());
+            assertEquals(actual.get(i).getType(), expected.get(i).getType());
+        }
+    }
+
+    private static QueryResults roundTrip(QueryResults results, ColumnarData data)
+            throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CODEC.write(results, data, output);
+        return CODEC.read(output.toByteArray());
+    }
+
+    private static QueryResults createResults(List<Column> columns)
+    {
+        return new QueryResults(
+                "test",
+                URI.create("http://localhost/v1/query/test"),
+                null,
+                URI.create("http://localhost/v1/statement/test/1"),
+                columns,
+                (Iterable<List<Object>>) null,
+                new StatementStats("RUNNING", true, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, null),
+                null);
+    }
+
+    private static List<Object> row(Object... values)
+    {
+        return unmodifiableList(Arrays.asList(values)); // allow nulls in list
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.client.ClientSession.parseProperties;
+import static org.testng.Assert.assertEquals;
+
+public class TestClientSession
+{
+    @Test
+    public void testParseProperties()
+    {
+        assertEquals(parseProperties(ImmutableList.<String>of()), ImmutableMap.of());
+        assertEquals(parseProperties(ImmutableList.of("a=1", " b = x=y ", "c=", "a=2")), ImmutableMap.of("a", "2", "b", "x=y", "c", ""));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Session property must be formatted as name=value: a")
+    public void testParsePropertyWithoutValue()
+    {
+        parseProperties(ImmutableList.of("a"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Session property must be formatted as name=value: =1")
+    public void testParsePropertyWithoutName()
+    {
+        parseProperties(ImmutableList.of("=1"));
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.net.MediaType;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.json.JsonCodec;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestResultsPrefetcher
+{
+    private static final JsonCodec<QueryResults> QUERY_RESULTS_CODEC = jsonCodec(QueryResults.class);
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testResultsInOrder()
+    {
+        ResultsServer server = new ResultsServer(10, -1);
+        StatementClient client = server.startQuery();
+
+        try (ResultsPrefetcher prefetcher = new ResultsPrefetcher(client, 3, executor)) {
+            for (int page = 0; page < 10; page++) {
+                assertPage(prefetcher.next(), page);
+            }
+            assertNull(prefetcher.next());
+            assertNull(prefetcher.next());
+        }
+        assertFalse(client.isValid());
+        assertFalse(client.isFailed());
+    }
+
+    @Test
+    public void testBufferedResultsAreBounded()
+            throws Exception
+    {
+        ResultsServer server = new ResultsServer(10, -1);
+        StatementClient client = server.startQuery();
+
+        try (ResultsPrefetcher prefetcher = new ResultsPrefetcher(client, 2, executor)) {
+            // the query request and the two fetches that fill the buffer
+            server.assertRequestCount(3);
+
+            // taking one result frees a buffer, which allows one more fetch
+            assertPage(prefetcher.next(), 0);
+            server.assertRequestCount(4);
+        }
+    }
+
+    @Test
+    public void testWaitForResults()
+            throws Exception
+    {
+        ResultsServer server = new ResultsServer(3, -1);
+        StatementClient client = server.startQuery();
+
+        // the first results come with the query response, and the server holds the next fetch
+        server.holdRequests();
+        try (ResultsPrefetcher prefetcher = new ResultsPrefetcher(client, 1, executor)) {
+            assertTrue(prefetcher.waitForResults(10, TimeUnit.SECONDS));
+            assertPage(prefetcher.next(), 0);
+
+            assertFalse(prefetcher.waitForResults(10, TimeUnit.MILLISECONDS));
+            server.releaseRequests();
+
+            assertTrue(prefetcher.waitForResults(10, TimeUnit.SECONDS));
+            assertTrue(prefetcher.waitForResults(0, TimeUnit.SECONDS));
+            assertPage(prefetcher.next(), 1);
+            assertPage(prefetcher.next(), 2);
+
+            assertTrue(prefetcher.waitForResults(10, TimeUnit.SECONDS));
+            assertNull(prefetcher.next());
+        }
+    }
+
+    @Test
+    public void testFailure()
+    {
+        ResultsServer server = new ResultsServer(10, 3);
+        StatementClient client = server.startQuery();
+
+        try (ResultsPrefetcher prefetcher = new ResultsPrefetcher(client, 10, executor)) {
+            // the results fetched before the failure are returned first
+            for (int page = 0; page < 3; page++) {
+                assertPage(prefetcher.next(), page);
+            }
+            try {
+                prefetcher.next();
+                fail("expected RuntimeException");
+            }
+            catch (RuntimeException e) {
+                assertTrue(e.getMessage().contains("500"), e.getMessage());
+            }
+            assertNull(prefetcher.next());
+        }
+        assertTrue(client.isGone());
+    }
+
+    @Test
+    public void testCloseWhileFetchIsBlocked()
+            throws Exception
+    {
+        ResultsServer server = new ResultsServer(10, -1);
+        StatementClient client = server.startQuery();
+
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(client, 1, executor);
+        // the fetch thread is blocked waiting for a free buffer
+        server.assertRequestCount(2);
+
+        prefetcher.close();
+        assertTrue(client.isClosed());
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "fetch thread did not exit");
+        server.assertRequestCount(2);
+    }
+
+    @Test
+    public void testAbandonedOwner()
+            throws Exception
+    {
+        ResultsServer server = new ResultsServer(10, -1);
+        StatementClient client = server.startQuery();
+
+        Object owner = new Object();
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(client, 1, executor, owner);
+        // the fetch thread is blocked waiting for a free buffer
+        server.assertRequestCount(2);
+
+        // the fetch thread does not keep the owner alive, and stops once it is collected
+        owner = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!client.isClosed() && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(client.isClosed());
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "fetch thread did not exit");
+        server.assertRequestCount(2);
+
+        // the results buffered before the owner was collected can still be read
+        assertPage(prefetcher.next(), 0);
+        assertNull(prefetcher.next());
+    }
+
+    private static void assertPage(QueryResults results, int page)
+    {
+        assertNotNull(results);
+        assertEquals(Iterables.getOnlyElement(results.getData()), ImmutableList.<Object>of((long) page));
+    }
+
+    private static class ResultsServer
+            implements Function<Request, Response>
+    {
+        private static final URI SERVER = URI.create("http://localhost:8080");
+
+        private final int pageCount;
+        private final int failedPage;
+        private final AtomicInteger requestCount = new AtomicInteger();
+        private volatile CountDownLatch held = new CountDownLatch(0);
+
+        private ResultsServer(int pageCount, int failedPage)
+        {
+            this.pageCount = pageCount;
+            this.failedPage = failedPage;
+        }
+
+        public StatementClient startQuery()
+        {
+            ClientSession session = new ClientSession(SERVER, "user", "source", "catalog", "schema", false);
+            return new StatementClient(new TestingHttpClient(this), QUERY_RESULTS_CODEC, session, "query");
+        }
+
+        public void holdRequests()
+        {
+            held = new CountDownLatch(1);
+        }
+
+        public void releaseRequests()
+        {
+            held.countDown();
+        }
+
+        public void assertRequestCount(int expected)
+                throws InterruptedException
+        {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (requestCount.get() < expected && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // give the fetch thread a chance to make requests it should not make
+            Thread.sleep(100);
+            assertEquals(requestCount.get(), expected);
+        }
+
+        @Override
+        public Response apply(Request request)
+        {
+            if (request.getMethod().equals("DELETE")) {
+                return new TestingResponse(HttpStatus.NO_CONTENT, ImmutableListMultimap.<String, String>of(), new byte[0]);
+            }
+
+            requestCount.incrementAndGet();
+            try {
+                held.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            int page = 0;
+            if (request.getMethod().equals("GET")) {
+                String path = request.getUri().getPath();
+                page = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            }
+            if (page == failedPage) {
+                return new TestingResponse(HttpStatus.INTERNAL_SERVER_ERROR, ImmutableListMultimap.<String, String>of(), new byte[0]);
+            }
+
+            URI nextUri = null;
+            if (page + 1 < pageCount) {
+                nextUri = URI.create(SERVER + "/v1/statement/test/" + (page + 1));
+            }
+            QueryResults results = new QueryResults(
+                    "test",
+                    SERVER,
+                    null,
+                    nextUri,
+                    ImmutableList.of(new Column("value", "bigint")),
+                    ImmutableList.<List<Object>>of(ImmutableList.<Object>of(page)),
+                    new StatementStats("RUNNING", true, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, null),
+                    null);
+            return TestingResponse.mockResponse(HttpStatus.OK, MediaType.JSON_UTF_8, QUERY_RESULTS_CODEC.toJson(results));
+        }
+    }
+}
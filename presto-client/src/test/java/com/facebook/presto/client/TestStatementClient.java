@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.MediaType;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.json.JsonCodec;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.net.HttpHeaders.ACCEPT;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestStatementClient
+{
+    private static final JsonCodec<QueryResults> QUERY_RESULTS_CODEC = jsonCodec(QueryResults.class);
+    private static final BinaryResultsCodec BINARY_CODEC = new BinaryResultsCodec(QUERY_RESULTS_CODEC);
+    private static final URI SERVER = URI.create("http://localhost:8080");
+    private static final List<Column> COLUMNS = ImmutableList.of(new Column("value", "varchar"));
+
+    @Test
+    public void testBinaryResults()
+            throws Exception
+    {
+        ResultsServer server = new ResultsServer(binaryResponse(encodeResults()));
+        StatementClient client = new StatementClient(new TestingHttpClient(server), QUERY_RESULTS_CODEC, createSession(true), "query");
+
+        assertTrue(client.advance());
+        assertEquals(ImmutableList.copyOf(client.current().getData()), ImmutableList.of(ImmutableList.of("apple"), ImmutableList.of("banana")));
+        assertTrue(server.getAccept().startsWith(BinaryResultsCodec.MEDIA_TYPE), server.getAccept());
+    }
+
+    @Test
+    public void testJsonResultsByDefault()
+    {
+        ResultsServer server = new ResultsServer(TestingResponse.mockResponse(HttpStatus.OK, MediaType.JSON_UTF_8, QUERY_RESULTS_CODEC.toJson(createResults(null))));
+        StatementClient client = new StatementClient(new TestingHttpClient(server), QUERY_RESULTS_CODEC, createSession(false), "query");
+
+        assertTrue(client.advance());
+        assertEquals(server.getAccept(), MediaType.JSON_UTF_8.withoutParameters().toString());
+    }
+
+    @Test
+    public void testDecodeErrorIsReported()
+            throws Exception
+    {
+        byte[] bytes = encodeResults();
+        ResultsServer server = new ResultsServer(binaryResponse(Arrays.copyOf(bytes, bytes.length - 3)));
+        StatementClient client = new StatementClient(new TestingHttpClient(server), QUERY_RESULTS_CODEC, createSession(true), "query");
+
+        try {
+            client.advance();
+            fail("expected RuntimeException");
+        }
+        catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+            assertTrue(e.getCause() instanceof IllegalArgumentException, String.valueOf(e.getCause()));
+        }
+        assertTrue(client.isGone());
+    }
+
+    private static byte[] encodeResults()
+            throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ColumnarData data = ColumnarData.fromRows(COLUMNS, ImmutableList.<List<Object>>of(ImmutableList.<Object>of("apple"), ImmutableList.<Object>of("banana")));
+        BINARY_CODEC.write(createResults(null), data, output);
+        return output.toByteArray();
+    }
+
+    private static Response binaryResponse(byte[] bytes)
+    {
+        return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(CONTENT_TYPE, BinaryResultsCodec.MEDIA_TYPE), bytes);
+    }
+
+    private static ClientSession createSession(boolean binaryResults)
+    {
+        return new ClientSession(SERVER, "user", "source", "catalog", "schema", ImmutableMap.<String, String>of(), false, binaryResults, null);
+    }
+
+    private static QueryResults createResults(URI nextUri)
+    {
+        return new QueryResults(
+                "test",
+                SERVER,
+                null,
+                nextUri,
+                COLUMNS,
+                (Iterable<List<Object>>) null,
+                new StatementStats("RUNNING", true, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, null),
+                null);
+    }
+
+    /**
+     * Answers the query request with the first results, and the fetch of the next results
+     * with the given response.
+     */
+    private static class ResultsServer
+            implements Function<Request, Response>
+    {
+        private final Response nextResponse;
+        private String accept;
+
+        private ResultsServer(Response nextResponse)
+        {
+            this.nextResponse = nextResponse;
+        }
+
+        public String getAccept()
+        {
+            return accept;
+        }
+
+        @Override
+        public Response apply(Request request)
+        {
+            if (request.getMethod().equals("POST")) {
+                QueryResults results = createResults(URI.create(SERVER + "/v1/statement/test/1"));
+                return TestingResponse.mockResponse(HttpStatus.OK, MediaType.JSON_UTF_8, QUERY_RESULTS_CODEC.toJson(results));
+            }
+            accept = request.getHeader(ACCEPT);
+            return nextResponse;
+        }
+    }
+}
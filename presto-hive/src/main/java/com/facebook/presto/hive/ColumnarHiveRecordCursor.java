@@ -0,0 +1,420 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.hive.shaded.org.apache.commons.codec.binary.Base64;
+import com.facebook.presto.spi.BatchRecordCursor;
+import com.facebook.presto.spi.ColumnBatch;
+import com.facebook.presto.spi.ColumnType;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.hive.HiveBooleanParser.isFalse;
+import static com.facebook.presto.hive.HiveBooleanParser.isTrue;
+import static com.facebook.presto.hive.HiveUtil.parseHiveTimestamp;
+import static com.facebook.presto.hive.NumberParser.parseDouble;
+import static com.facebook.presto.hive.NumberParser.parseLong;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.uniqueIndex;
+
+/**
+ * Base for cursors over ColumnarSerDe encoded fields, where each field is the text of
+ * the value.  Subclasses find the bytes of a field, and this class parses them, both
+ * for the current row and for column batches.
+ */
+abstract class ColumnarHiveRecordCursor
+        implements BatchRecordCursor
+{
+    @SuppressWarnings("FieldCanBeLocal") // include names for debugging
+    private final String[] names;
+    protected final ColumnType[] types;
+    protected final HiveType[] hiveTypes;
+
+    protected final int[] hiveColumnIndexes;
+
+    protected final boolean[] isPartitionColumn;
+
+    private final boolean[] loaded;
+    private final boolean[] booleans;
+    private final long[] longs;
+    private final double[] doubles;
+    private final byte[][] strings;
+    private final boolean[] nulls;
+
+    private boolean closed;
+
+    protected ColumnarHiveRecordCursor(List<HivePartitionKey> partitionKeys, List<HiveColumnHandle> columns)
+    {
+        checkNotNull(partitionKeys, "partitionKeys is null");
+        checkNotNull(columns, "columns is null");
+
+        int size = columns.size();
+
+        this.names = new String[size];
+        this.types = new ColumnType[size];
+        this.hiveTypes = new HiveType[size];
+
+        this.hiveColumnIndexes = new int[size];
+
+        this.isPartitionColumn = new boolean[size];
+
+        this.loaded = new boolean[size];
+        this.booleans = new boolean[size];
+        this.longs = new long[size];
+        this.doubles = new double[size];
+        this.strings = new byte[size][];
+        this.nulls = new boolean[size];
+
+        for (int i = 0; i < columns.size(); i++) {
+            HiveColumnHandle column = columns.get(i);
+
+            names[i] = column.getName();
+            types[i] = column.getType();
+            hiveTypes[i] = column.getHiveType();
+
+            hiveColumnIndexes[i] = column.getHiveColumnIndex();
+            isPartitionColumn[i] = column.isPartitionKey();
+        }
+
+        // parse requested partition columns
+        Map<String, HivePartitionKey> partitionKeysByName = uniqueIndex(partitionKeys, HivePartitionKey.nameGetter());
+        for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++) {
+            HiveColumnHandle column = columns.get(columnIndex);
+            if (column.isPartitionKey()) {
+                HivePartitionKey partitionKey = partitionKeysByName.get(column.getName());
+                checkArgument(partitionKey != null, "Unknown partition key %s", column.getName());
+
+                byte[] bytes = partitionKey.getValue().getBytes(Charsets.UTF_8);
+
+                switch (types[columnIndex]) {
+                    case BOOLEAN:
+                        if (isTrue(bytes, 0, bytes.length)) {
+                            booleans[columnIndex] = true;
+                        }
+                        else if (isFalse(bytes, 0, bytes.length)) {
+                            booleans[columnIndex] = false;
+                        }
+                        else {
+                            String valueString = new String(bytes, Charsets.UTF_8);
+                            throw new IllegalArgumentException(String.format("Invalid partition value '%s' for BOOLEAN partition key %s", valueString, names[columnIndex]));
+                        }
+                        break;
+                    case LONG:
+                        if (bytes.length == 0) {
+                            throw new IllegalArgumentException(String.format("Invalid partition value '' for BIGINT partition key %s", names[columnIndex]));
+                        }
+                        longs[columnIndex] = parseLong(bytes, 0, bytes.length);
+                        break;
+                    case DOUBLE:
+                        if (bytes.length == 0) {
+                            throw new IllegalArgumentException(String.format("Invalid partition value '' for DOUBLE partition key %s", names[columnIndex]));
+                        }
+                        doubles[columnIndex] = parseDouble(bytes, 0, bytes.length);
+                        break;
+                    case STRING:
+                        strings[columnIndex] = Arrays.copyOf(bytes, bytes.length);
+                        break;
+                    default:
+                        throw new UnsupportedOperationException("Unsupported column type: " + types[columnIndex]);
+                }
+            }
+        }
+
+        resetLoaded();
+    }
+
+    /**
+     * Parses the field of the current row, with {@link #parseField}, {@link #setNull}
+     * or {@link #setString}.  The column is never a partition key.
+     */
+    protected abstract void parseColumn(int column);
+
+    protected abstract void closeInput()
+            throws IOException;
+
+    @Override
+    public ColumnType getType(int field)
+    {
+        return types[field];
+    }
+
+    /**
+     * Marks the fields of the current row as not parsed.  Partition keys are already
+     * loaded, but everything else is not.
+     */
+    protected final void resetLoaded()
+    {
+        System.arraycopy(isPartitionColumn, 0, loaded, 0, isPartitionColumn.length);
+    }
+
+    @Override
+    public boolean getBoolean(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.BOOLEAN);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return booleans[fieldId];
+    }
+
+    @Override
+    public long getLong(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.LONG);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return longs[fieldId];
+    }
+
+    @Override
+    public double getDouble(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.DOUBLE);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return doubles[fieldId];
+    }
+
+    @Override
+    public byte[] getString(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        validateType(fieldId, ColumnType.STRING);
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return strings[fieldId];
+    }
+
+    @Override
+    public boolean isNull(int fieldId)
+    {
+        checkState(!closed, "Cursor is closed");
+
+        if (!loaded[fieldId]) {
+            loadColumn(fieldId);
+        }
+        return nulls[fieldId];
+    }
+
+    private void loadColumn(int column)
+    {
+        // don't include column number in message because it causes boxing which is expensive here
+        checkArgument(!isPartitionColumn[column], "Column is a partition key");
+
+        loaded[column] = true;
+        parseColumn(column);
+    }
+
+    protected final void parseField(int column, byte[] bytes, int start, int length)
+    {
+        if (isNullField(types[column], bytes, start, length)) {
+            nulls[column] = true;
+            return;
+        }
+
+        nulls[column] = false;
+        switch (types[column]) {
+            case BOOLEAN:
+                booleans[column] = isTrue(bytes, start, length);
+                break;
+            case LONG:
+                longs[column] = parseLongField(hiveTypes[column], bytes, start, length);
+                break;
+            case DOUBLE:
+                doubles[column] = parseDouble(bytes, start, length);
+                break;
+            case STRING:
+                strings[column] = parseStringField(hiveTypes[column], bytes, start, length);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported column type: " + types[column]);
+        }
+    }
+
+    protected final void setNull(int column)
+    {
+        nulls[column] = true;
+    }
+
+    protected final void setString(int column, byte[] value)
+    {
+        strings[column] = value;
+        nulls[column] = false;
+    }
+
+    /**
+     * Appends the value of the field of the current row to the batch.
+     */
+    protected final void appendValue(int column, ColumnBatch batch)
+    {
+        if (!loaded[column]) {
+            loadColumn(column);
+        }
+
+        if (nulls[column]) {
+            batch.appendNull();
+            return;
+        }
+
+        switch (types[column]) {
+            case BOOLEAN:
+                batch.appendBoolean(booleans[column]);
+                break;
+            case LONG:
+                batch.appendLong(longs[column]);
+                break;
+            case DOUBLE:
+                batch.appendDouble(doubles[column]);
+                break;
+            case STRING:
+                batch.appendString(strings[column]);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported column type: " + types[column]);
+        }
+    }
+
+    /**
+     * Parses the field and appends it to the batch.  This does not use the state of the
+     * current row, so it can be used to load a batch after the cursor has moved on.
+     */
+    protected static void appendField(ColumnBatch batch, ColumnType type, HiveType hiveType, byte[] bytes, int start, int length)
+    {
+        if (isNullField(type, bytes, start, length)) {
+            batch.appendNull();
+            return;
+        }
+
+        switch (type) {
+            case BOOLEAN:
+                batch.appendBoolean(isTrue(bytes, start, length));
+                break;
+            case LONG:
+                batch.appendLong(parseLongField(hiveType, bytes, start, length));
+                break;
+            case DOUBLE:
+                batch.appendDouble(parseDouble(bytes, start, length));
+                break;
+            case STRING:
+                if (hiveType == HiveType.BINARY) {
+                    batch.appendString(parseStringField(hiveType, bytes, start, length));
+                }
+                else {
+                    // copy the value straight from the field buffer, without a byte array per value
+                    batch.appendString(bytes, start, length);
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported column type: " + type);
+        }
+    }
+
+    /**
+     * Returns true if the field is the null sequence, or can not be parsed as a boolean.
+     * Empty fields are null, except for strings.
+     */
+    private static boolean isNullField(ColumnType type, byte[] bytes, int start, int length)
+    {
+        switch (type) {
+            case BOOLEAN:
+                return !isTrue(bytes, start, length) && !isFalse(bytes, start, length);
+            case LONG:
+            case DOUBLE:
+                return length == 0 || isNullSequence(bytes, start, length);
+            default:
+                return isNullSequence(bytes, start, length);
+        }
+    }
+
+    protected static boolean isNullSequence(byte[] bytes, int start, int length)
+    {
+        return length == "\\N".length() && bytes[start] == '\\' && bytes[start + 1] == 'N';
+    }
+
+    private static long parseLongField(HiveType hiveType, byte[] bytes, int start, int length)
+    {
+        if (hiveType == HiveType.TIMESTAMP) {
+            return parseHiveTimestamp(new String(bytes, start, length));
+        }
+        return parseLong(bytes, start, length);
+    }
+
+    private static byte[] parseStringField(HiveType hiveType, byte[] bytes, int start, int length)
+    {
+        byte[] value = Arrays.copyOfRange(bytes, start, start + length);
+
+        // this is unbelievably stupid but Hive base64 encodes binary data in a binary file format
+        if (hiveType == HiveType.BINARY) {
+            // and yes we end up with an extra copy here because the Base64 only handles whole arrays
+            value = Base64.decodeBase64(value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns true if the type is a map, list or struct, which can only be converted to
+     * json with the Hive object inspectors.
+     */
+    protected static boolean isComplexType(HiveType hiveType)
+    {
+        return hiveType == HiveType.MAP || hiveType == HiveType.LIST || hiveType == HiveType.STRUCT;
+    }
+
+    private void validateType(int fieldId, ColumnType type)
+    {
+        if (types[fieldId] != type) {
+            // we don't use Preconditions.checkArgument because it requires boxing fieldId, which affects inner loop performance
+            throw new IllegalArgumentException(String.format("Expected field to be %s, actual %s (field %s)", type, types[fieldId], fieldId));
+        }
+    }
+
+    protected final boolean isClosed()
+    {
+        return closed;
+    }
+
+    @Override
+    public void close()
+    {
+        // some hive input formats are broken and bad things can happen if you close them multiple times
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            closeInput();
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+}
@@ -100,6 +100,7 @@ public class HiveClient
     private final HdfsEnvironment hdfsEnvironment;
     private final ExecutorService executor;
     private final DataSize maxSplitSize;
+    private final boolean rcFileNativeReaderEnabled;
 
     @Inject
     public HiveClient(HiveConnectorId connectorId,
@@ -116,7 +117,8 @@ public class HiveClient
                 hiveClientConfig.getMaxOutstandingSplits(),
                 hiveClientConfig.getMaxSplitIteratorThreads(),
                 hiveClientConfig.getMinPartitionBatchSize(),
-                hiveClientConfig.getMaxPartitionBatchSize());
+                hiveClientConfig.getMaxPartitionBatchSize(),
+                hiveClientConfig.isRcFileNativeReaderEnabled());
     }
 
     public HiveClient(HiveConnectorId connectorId,
@@ -127,7 +129,8 @@ public class HiveClient
             int maxOutstandingSplits,
             int maxSplitIteratorThreads,
             int minPartitionBatchSize,
-            int maxPartitionBatchSize)
+            int maxPartitionBatchSize,
+            boolean rcFileNativeReaderEnabled)
     {
         this.connectorId = checkNotNull(connectorId, "connectorId is null").toString();
 
@@ -136,6 +139,7 @@ public class HiveClient
         this.maxSplitIteratorThreads = maxSplitIteratorThreads;
         this.minPartitionBatchSize = minPartitionBatchSize;
         this.maxPartitionBatchSize = maxPartitionBatchSize;
+        this.rcFileNativeReaderEnabled = rcFileNativeReaderEnabled;
 
         this.metastore = checkNotNull(metastore, "metastore is null");
         this.hdfsEnvironment = checkNotNull(hdfsEnvironment, "hdfsEnvironment is null");
@@ -492,7 +496,7 @@ public class HiveClient
         checkArgument(split instanceof HiveSplit, "expected instance of %s: %s", HiveSplit.class, split.getClass());
 
         List<HiveColumnHandle> hiveColumns = ImmutableList.copyOf(transform(columns, hiveColumnHandle()));
-        return new HiveRecordSet(hdfsEnvironment, (HiveSplit) split, hiveColumns);
+        return new HiveRecordSet(hdfsEnvironment, (HiveSplit) split, hiveColumns, rcFileNativeReaderEnabled);
     }
 
     @Override
@@ -50,6 +50,8 @@ public class HiveClientConfig
 
     private String domainSocketPath;
 
+    private boolean rcFileNativeReaderEnabled = true;
+
     private List<String> resourceConfigFiles;
 
     @NotNull
@@ -264,4 +266,16 @@ public class HiveClientConfig
         this.domainSocketPath = domainSocketPath;
         return this;
     }
+
+    public boolean isRcFileNativeReaderEnabled()
+    {
+        return rcFileNativeReaderEnabled;
+    }
+
+    @Config("hive.rcfile-native-reader.enabled")
+    public HiveClientConfig setRcFileNativeReaderEnabled(boolean rcFileNativeReaderEnabled)
+    {
+        this.rcFileNativeReaderEnabled = rcFileNativeReaderEnabled;
+        return this;
+    }
 }
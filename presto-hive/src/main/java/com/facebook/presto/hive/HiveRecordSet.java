@@ -21,8 +21,11 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.ql.io.RCFileInputFormat;
 import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.columnar.BytesRefArrayWritable;
@@ -71,8 +74,9 @@ public class HiveRecordSet
     private final List<Integer> readHiveColumnIndexes;
     private final Configuration configuration;
     private final Path wrappedPath;
+    private final boolean rcFileNativeReaderEnabled;
 
-    public HiveRecordSet(HdfsEnvironment hdfsEnvironment, HiveSplit split, List<HiveColumnHandle> columns)
+    public HiveRecordSet(HdfsEnvironment hdfsEnvironment, HiveSplit split, List<HiveColumnHandle> columns, boolean rcFileNativeReaderEnabled)
     {
         this.split = checkNotNull(split, "split is null");
         this.columns = ImmutableList.copyOf(checkNotNull(columns, "columns is null"));
@@ -91,6 +95,7 @@ public class HiveRecordSet
         Path path = new Path(split.getPath());
         this.configuration = hdfsEnvironment.getConfiguration(path);
         this.wrappedPath = hdfsEnvironment.getFileSystemWrapper().wrap(path);
+        this.rcFileNativeReaderEnabled = rcFileNativeReaderEnabled;
 
         String nullSequence = split.getSchema().getProperty(SERIALIZATION_NULL_FORMAT);
         checkState(nullSequence == null || nullSequence.equals("\\N"), "Only '\\N' supported as null specifier, was '%s'", nullSequence);
@@ -105,6 +110,14 @@ public class HiveRecordSet
     @Override
     public RecordCursor cursor()
     {
+        if (rcFileNativeReaderEnabled && canUseNativeRcFileReader(split, columns)) {
+            return new RcFileHiveRecordCursor(
+                    createRcFileReader(split, columns, configuration, wrappedPath),
+                    split.getLength(),
+                    split.getPartitionKeys(),
+                    columns);
+        }
+
         // Tell hive the columns we would like to read, this lets hive optimize reading column oriented files
         ColumnProjectionUtils.setReadColumnIDs(configuration, readHiveColumnIndexes);
 
@@ -149,6 +162,19 @@ public class HiveRecordSet
         }
     }
 
+    private static boolean canUseNativeRcFileReader(HiveSplit split, List<HiveColumnHandle> columns)
+    {
+        if (!getInputFormatName(split.getSchema()).equals(RCFileInputFormat.class.getName()) || !usesColumnarSerDe(split)) {
+            return false;
+        }
+        for (HiveColumnHandle column : columns) {
+            if (!RcFileHiveRecordCursor.isSupportedType(column.getHiveType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static HiveColumnHandle getFirstPrimitiveColumn(String clientId, Properties schema)
     {
         try {
@@ -197,6 +223,41 @@ public class HiveRecordSet
         }
     }
 
+    private static RcFileReader createRcFileReader(final HiveSplit split, List<HiveColumnHandle> columns, final Configuration configuration, final Path wrappedPath)
+    {
+        // unlike the hive reader, the native reader can read no columns at all for count(*) queries
+        final List<Integer> columnIndexes = ImmutableList.copyOf(transform(ImmutableList.copyOf(filter(columns, not(isPartitionKeyPredicate()))), hiveColumnIndexGetter()));
+
+        try {
+            return retry().stopOnIllegalExceptions().run("createRcFileReader", new Callable<RcFileReader>()
+            {
+                @Override
+                public RcFileReader call()
+                        throws IOException
+                {
+                    FileSystem fileSystem = wrappedPath.getFileSystem(configuration);
+                    long fileSize = fileSystem.getFileStatus(wrappedPath).getLen();
+                    FSDataInputStream input = fileSystem.open(wrappedPath);
+                    try {
+                        return new RcFileReader(input, fileSize, split.getStart(), split.getLength(), columnIndexes, configuration);
+                    }
+                    catch (IOException | RuntimeException e) {
+                        input.close();
+                        throw e;
+                    }
+                }
+            });
+        }
+        catch (Exception e) {
+            throw new RuntimeException(String.format("Error opening Hive split %s (offset=%s, length=%s) using the native RCFile reader: %s",
+                    split.getPath(),
+                    split.getStart(),
+                    split.getLength(),
+                    e.getMessage()),
+                    e);
+        }
+    }
+
     private static FileSplit createFileSplit(final Path path, long start, long length)
     {
         return new FileSplit(path, start, length, (String[]) null)
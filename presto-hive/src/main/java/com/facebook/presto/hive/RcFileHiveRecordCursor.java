@@ -0,0 +1,282 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.hive.RcFileReader.ColumnChunk;
+import com.facebook.presto.spi.ColumnBatch;
+import com.facebook.presto.spi.ColumnBatchLoader;
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.spi.LazyBatchRecordCursor;
+import com.google.common.base.Throwables;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads ColumnarSerDe encoded RCFiles with {@link RcFileReader}.  Batches are decoded a
+ * column at a time straight from the column chunks of a row group.  Complex types are
+ * not supported, because converting them to json requires the Hive object inspectors.
+ * <p/>
+ * Lazy batches cover at most one row group, and each loader decompresses and decodes its
+ * column chunk only when it is called, so the chunks of columns that are not read for a
+ * row group are never decompressed.
+ */
+class RcFileHiveRecordCursor
+        extends ColumnarHiveRecordCursor
+        implements LazyBatchRecordCursor
+{
+    private final RcFileReader reader;
+
+    private final long totalBytes;
+    private int rowCount;
+    private int row = -1;
+
+    public RcFileHiveRecordCursor(RcFileReader reader,
+            long totalBytes,
+            List<HivePartitionKey> partitionKeys,
+            List<HiveColumnHandle> columns)
+    {
+        super(partitionKeys, columns);
+
+        checkNotNull(reader, "reader is null");
+        checkArgument(totalBytes >= 0, "totalBytes is negative");
+        for (HiveType hiveType : hiveTypes) {
+            checkArgument(isSupportedType(hiveType), "Unsupported column type: %s", hiveType);
+        }
+
+        this.reader = reader;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Returns true if the native reader can decode the type without the Hive object inspectors.
+     */
+    public static boolean isSupportedType(HiveType hiveType)
+    {
+        return !isComplexType(hiveType);
+    }
+
+    @Override
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    @Override
+    public long getCompletedBytes()
+    {
+        return reader.getCompletedBytes();
+    }
+
+    @Override
+    public boolean advanceNextPosition()
+    {
+        if (isClosed()) {
+            return false;
+        }
+
+        try {
+            if (row + 1 >= rowCount && !advanceRowGroup()) {
+                return false;
+            }
+            row++;
+
+            resetLoaded();
+            return true;
+        }
+        catch (IOException | RuntimeException e) {
+            close();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public int advanceNextBatch(ColumnBatch[] batches, int maxPositions)
+    {
+        if (isClosed()) {
+            return 0;
+        }
+
+        try {
+            int positions = 0;
+            while (positions < maxPositions) {
+                if (row + 1 >= rowCount && !advanceRowGroup()) {
+                    break;
+                }
+                int rows = Math.min(maxPositions - positions, rowCount - (row + 1));
+                for (int column = 0; column < types.length; column++) {
+                    appendColumn(column, batches[column], row + 1, rows);
+                }
+                row += rows;
+                positions += rows;
+            }
+
+            // the current row is the last row in the batch
+            resetLoaded();
+            return positions;
+        }
+        catch (IOException | RuntimeException e) {
+            close();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public int advanceNextLazyBatch(ColumnBatchLoader[] loaders, int maxPositions)
+    {
+        if (isClosed()) {
+            return 0;
+        }
+
+        try {
+            if (row + 1 >= rowCount && !advanceRowGroup()) {
+                return 0;
+            }
+            int firstPosition = row + 1;
+            int positions = Math.min(maxPositions, rowCount - firstPosition);
+            for (int column = 0; column < types.length; column++) {
+                ColumnChunk chunk = isPartitionColumn[column] ? null : reader.takeColumn(hiveColumnIndexes[column]);
+                loaders[column] = new ColumnLoader(column, chunk, firstPosition, positions);
+            }
+            row += positions;
+
+            // the current row is the last row in the batch
+            resetLoaded();
+            return positions;
+        }
+        catch (IOException | RuntimeException e) {
+            close();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private boolean advanceRowGroup()
+            throws IOException
+    {
+        do {
+            if (!reader.advanceRowGroup()) {
+                close();
+                return false;
+            }
+        }
+        while (reader.getRowCount() == 0);
+
+        rowCount = reader.getRowCount();
+        row = -1;
+        return true;
+    }
+
+    private void appendColumn(int column, ColumnBatch batch, int firstPosition, int positions)
+            throws IOException
+    {
+        ColumnChunk chunk = isPartitionColumn[column] ? null : reader.getColumn(hiveColumnIndexes[column]);
+        appendColumn(column, chunk, batch, firstPosition, positions);
+    }
+
+    private void appendColumn(int column, @Nullable ColumnChunk chunk, ColumnBatch batch, int firstPosition, int positions)
+            throws IOException
+    {
+        if (isPartitionColumn[column]) {
+            appendPartitionColumn(column, batch, positions);
+            return;
+        }
+
+        if (chunk == null) {
+            // this partition may contain fewer fields than what's declared in the schema
+            // this happens when additional columns are added to the hive table after a partition has been created
+            for (int i = 0; i < positions; i++) {
+                batch.appendNull();
+            }
+            return;
+        }
+
+        chunk.load();
+        byte[] bytes = chunk.getData();
+        ColumnType type = types[column];
+        HiveType hiveType = hiveTypes[column];
+        for (int position = firstPosition; position < firstPosition + positions; position++) {
+            appendField(batch, type, hiveType, bytes, chunk.getOffset(position), chunk.getLength(position));
+        }
+    }
+
+    private void appendPartitionColumn(int column, ColumnBatch batch, int positions)
+    {
+        for (int i = 0; i < positions; i++) {
+            appendValue(column, batch);
+        }
+    }
+
+    @Override
+    protected void parseColumn(int column)
+    {
+        ColumnChunk chunk;
+        try {
+            chunk = reader.getColumn(hiveColumnIndexes[column]);
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+
+        if (chunk == null) {
+            // this partition may contain fewer fields than what's declared in the schema
+            setNull(column);
+            return;
+        }
+
+        parseField(column, chunk.getData(), chunk.getOffset(row), chunk.getLength(row));
+    }
+
+    @Override
+    protected void closeInput()
+            throws IOException
+    {
+        reader.close();
+    }
+
+    private class ColumnLoader
+            implements ColumnBatchLoader
+    {
+        private final int column;
+        private final ColumnChunk chunk;
+        private final int firstPosition;
+        private final int positions;
+
+        private ColumnLoader(int column, @Nullable ColumnChunk chunk, int firstPosition, int positions)
+        {
+            this.column = column;
+            this.chunk = chunk;
+            this.firstPosition = firstPosition;
+            this.positions = positions;
+        }
+
+        @Override
+        public ColumnBatch load()
+        {
+            // only the immutable column metadata of the cursor is used, so this works after the cursor is closed
+            ColumnBatch batch = new ColumnBatch(types[column], positions);
+            try {
+                appendColumn(column, chunk, batch, firstPosition, positions);
+            }
+            catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            return batch;
+        }
+    }
+}
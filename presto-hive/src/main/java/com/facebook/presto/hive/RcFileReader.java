@@ -0,0 +1,519 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.google.common.io.ByteStreams;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Reads the row groups of an RCFile split directly from the file, without going through
+ * the Hive record reader.  Only the requested columns are read from the file; the other
+ * columns are skipped with a seek.  The requested columns are decompressed and their value
+ * lengths decoded only when they are first accessed in a row group.
+ * <p/>
+ * The buffers of a column chunk are reused for the next row group, unless the chunk was
+ * taken with {@link #takeColumn}, in which case the chunk stays valid, and can be loaded
+ * on any thread, after the reader has moved on or has been closed.
+ * <p/>
+ * A row group belongs to the split if the last sync marker before it starts before the end
+ * of the split, which is the same rule the Hive record reader uses.
+ */
+class RcFileReader
+        implements Closeable
+{
+    private static final byte[] RCFILE_MAGIC = {'R', 'C', 'F'};
+    private static final byte[] SEQUENCE_FILE_MAGIC = {'S', 'E', 'Q'};
+    private static final int RCFILE_VERSION = 1;
+    private static final int SEQUENCE_FILE_VERSION = 6;
+    private static final String COLUMN_NUMBER_METADATA_KEY = "hive.io.rcfile.column.number";
+
+    private static final int SYNC_ESCAPE = -1;
+    private static final int SYNC_HASH_SIZE = 16;
+    private static final int SYNC_SIZE = 4 + SYNC_HASH_SIZE;
+    private static final int SYNC_SEARCH_BUFFER_SIZE = 64 * 1024;
+
+    private final FSDataInputStream input;
+    private final long start;
+    private final long end;
+    private final long fileSize;
+
+    private final CompressionCodec codec;
+    private final Decompressor decompressor;
+    private final byte[] sync = new byte[SYNC_HASH_SIZE];
+    private final byte[] syncCheck = new byte[SYNC_HASH_SIZE];
+    private final int columnCount;
+
+    private final ColumnChunk[] columns;
+    private final boolean[] taken;
+    private final DataInputBuffer keyInput = new DataInputBuffer();
+    private byte[] compressedKey = new byte[0];
+    private byte[] key = new byte[0];
+
+    private long lastSeenSyncPosition;
+    private int rowCount;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * @param columnIndexes the indexes of the hive columns to read
+     */
+    public RcFileReader(FSDataInputStream input, long fileSize, long start, long length, Iterable<Integer> columnIndexes, Configuration configuration)
+            throws IOException
+    {
+        this.input = checkNotNull(input, "input is null");
+        checkArgument(start >= 0, "start is negative");
+        checkArgument(length >= 0, "length is negative");
+        checkNotNull(columnIndexes, "columnIndexes is null");
+        checkNotNull(configuration, "configuration is null");
+        this.fileSize = fileSize;
+        this.start = start;
+        this.end = start + length;
+
+        input.seek(0);
+        byte[] magic = new byte[3];
+        input.readFully(magic);
+        int version = input.readByte();
+        boolean compressed;
+        if (Arrays.equals(magic, RCFILE_MAGIC)) {
+            checkArgument(version == RCFILE_VERSION, "Unsupported RCFile version %s", version);
+            compressed = input.readBoolean();
+        }
+        else if (Arrays.equals(magic, SEQUENCE_FILE_MAGIC)) {
+            checkArgument(version == SEQUENCE_FILE_VERSION, "Unsupported RCFile version %s", version);
+            // older files use a sequence file header with the key and value class names
+            Text.readString(input);
+            Text.readString(input);
+            compressed = input.readBoolean();
+            checkArgument(!input.readBoolean(), "Block compressed RCFiles are not supported");
+        }
+        else {
+            throw new IllegalArgumentException("File is not an RCFile");
+        }
+
+        if (compressed) {
+            String codecName = Text.readString(input);
+            codec = new CompressionCodecFactory(configuration).getCodecByClassName(codecName);
+            checkArgument(codec != null, "Unknown compression codec %s", codecName);
+            decompressor = CodecPool.getDecompressor(codec);
+        }
+        else {
+            codec = null;
+            decompressor = null;
+        }
+
+        SequenceFile.Metadata metadata = new SequenceFile.Metadata();
+        metadata.readFields(input);
+        Text columnNumber = metadata.get(new Text(COLUMN_NUMBER_METADATA_KEY));
+        checkArgument(columnNumber != null, "RCFile does not have the column count");
+        columnCount = Integer.parseInt(columnNumber.toString());
+
+        input.readFully(sync);
+
+        columns = new ColumnChunk[columnCount];
+        taken = new boolean[columnCount];
+        for (int columnIndex : columnIndexes) {
+            // the file may have fewer columns than the table, and the missing columns are null
+            if (columnIndex < columnCount && columns[columnIndex] == null) {
+                columns[columnIndex] = new ColumnChunk(codec);
+            }
+        }
+
+        // the row groups before the first sync marker belong to the first split
+        if (start > 0) {
+            seekToSync(Math.max(start, input.getPos()));
+        }
+    }
+
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Returns the number of rows in the current row group.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    public long getCompletedBytes()
+    {
+        if (finished || closed) {
+            return end - start;
+        }
+        try {
+            return Math.min(end - start, Math.max(0, input.getPos() - start));
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Advances to the next row group of the split.  Returns false if the split has no more
+     * row groups.
+     */
+    public boolean advanceRowGroup()
+            throws IOException
+    {
+        checkState(!closed, "Reader is closed");
+        if (finished) {
+            return false;
+        }
+
+        long position = input.getPos();
+        if (position >= fileSize) {
+            finished = true;
+            return false;
+        }
+
+        int recordLength = input.readInt();
+        if (recordLength == SYNC_ESCAPE) {
+            lastSeenSyncPosition = position;
+            input.readFully(syncCheck);
+            if (!Arrays.equals(sync, syncCheck)) {
+                throw new IOException("Invalid sync marker at position " + position);
+            }
+            input.readInt();
+        }
+        if (lastSeenSyncPosition >= end) {
+            finished = true;
+            return false;
+        }
+
+        // key, which has the row count and the sizes of the column chunks
+        int keyLength = input.readInt();
+        int compressedKeyLength = input.readInt();
+        compressedKey = ensureCapacity(compressedKey, compressedKeyLength);
+        input.readFully(compressedKey, 0, compressedKeyLength);
+        if (codec != null) {
+            key = ensureCapacity(key, keyLength);
+            decompress(compressedKey, compressedKeyLength, key, keyLength);
+            keyInput.reset(key, keyLength);
+        }
+        else {
+            keyInput.reset(compressedKey, compressedKeyLength);
+        }
+
+        rowCount = WritableUtils.readVInt(keyInput);
+        int[] chunkLengths = new int[columnCount];
+        for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+            chunkLengths[columnIndex] = WritableUtils.readVInt(keyInput);
+            int uncompressedLength = WritableUtils.readVInt(keyInput);
+            int valueLengthsSize = WritableUtils.readVInt(keyInput);
+
+            ColumnChunk column = columns[columnIndex];
+            if (column != null) {
+                if (taken[columnIndex]) {
+                    // the previous chunk is still in use, so it can not be overwritten
+                    column = new ColumnChunk(codec);
+                    columns[columnIndex] = column;
+                    taken[columnIndex] = false;
+                }
+                column.reset(rowCount, chunkLengths[columnIndex], uncompressedLength);
+                column.valueLengths = ensureCapacity(column.valueLengths, valueLengthsSize);
+                keyInput.readFully(column.valueLengths, 0, valueLengthsSize);
+                column.valueLengthsSize = valueLengthsSize;
+            }
+            else {
+                keyInput.skipBytes(valueLengthsSize);
+            }
+        }
+
+        // column chunks, which are in column order, and skipped at the byte level if not needed
+        long skip = 0;
+        for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+            ColumnChunk column = columns[columnIndex];
+            if (column == null) {
+                skip += chunkLengths[columnIndex];
+                continue;
+            }
+            if (skip > 0) {
+                input.seek(input.getPos() + skip);
+                skip = 0;
+            }
+            column.chunk = ensureCapacity(column.chunk, column.chunkLength);
+            input.readFully(column.chunk, 0, column.chunkLength);
+        }
+        if (skip > 0) {
+            input.seek(input.getPos() + skip);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the values of a column in the current row group, or null if the file does
+     * not have the column.  The column must be one of the columns requested when the
+     * reader was created.
+     */
+    public ColumnChunk getColumn(int columnIndex)
+            throws IOException
+    {
+        if (columnIndex >= columnCount) {
+            return null;
+        }
+        ColumnChunk column = columns[columnIndex];
+        checkArgument(column != null, "Column %s was not requested", columnIndex);
+        column.load();
+        return column;
+    }
+
+    /**
+     * Returns the values of a column in the current row group without loading them, or
+     * null if the file does not have the column.  Unlike the chunks returned by
+     * {@link #getColumn}, the chunk is not reused for later row groups.
+     */
+    public ColumnChunk takeColumn(int columnIndex)
+    {
+        if (columnIndex >= columnCount) {
+            return null;
+        }
+        ColumnChunk column = columns[columnIndex];
+        checkArgument(column != null, "Column %s was not requested", columnIndex);
+        taken[columnIndex] = true;
+        return column;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (decompressor != null) {
+            CodecPool.returnDecompressor(decompressor);
+        }
+        input.close();
+    }
+
+    private void seekToSync(long position)
+            throws IOException
+    {
+        if (position + SYNC_SIZE >= fileSize) {
+            finished = true;
+            return;
+        }
+
+        // the sync hash follows the escape, so search for it after the escape
+        long bufferPosition = position + 4;
+        input.seek(bufferPosition);
+        byte[] buffer = new byte[SYNC_SEARCH_BUFFER_SIZE];
+        int size = 0;
+        while (true) {
+            int read = input.read(buffer, size, buffer.length - size);
+            if (read < 0) {
+                finished = true;
+                return;
+            }
+            size += read;
+
+            for (int i = 0; i + SYNC_HASH_SIZE <= size; i++) {
+                if (isSync(buffer, i)) {
+                    // position the stream before the escape, so the next row group sees the sync
+                    input.seek(bufferPosition + i - 4);
+                    return;
+                }
+            }
+
+            // keep the tail, which may be the start of a sync hash
+            int keep = Math.min(size, SYNC_HASH_SIZE - 1);
+            System.arraycopy(buffer, size - keep, buffer, 0, keep);
+            bufferPosition += size - keep;
+            size = keep;
+        }
+    }
+
+    private boolean isSync(byte[] buffer, int offset)
+    {
+        for (int i = 0; i < SYNC_HASH_SIZE; i++) {
+            if (buffer[offset + i] != sync[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void decompress(byte[] compressed, int compressedLength, byte[] output, int uncompressedLength)
+            throws IOException
+    {
+        decompress(codec, decompressor, compressed, compressedLength, output, uncompressedLength);
+    }
+
+    private static void decompress(CompressionCodec codec, Decompressor decompressor, byte[] compressed, int compressedLength, byte[] output, int uncompressedLength)
+            throws IOException
+    {
+        if (decompressor != null) {
+            decompressor.reset();
+        }
+        InputStream in = codec.createInputStream(new ByteArrayInputStream(compressed, 0, compressedLength), decompressor);
+        ByteStreams.readFully(in, output, 0, uncompressedLength);
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int capacity)
+    {
+        if (buffer.length >= capacity) {
+            return buffer;
+        }
+        return new byte[Math.max(capacity, buffer.length * 2)];
+    }
+
+    /**
+     * The values of one column in a row group.  The value of a row is the bytes from
+     * {@code getOffset(row)} to {@code getOffset(row + 1)} in {@code getData()}.  The
+     * chunk does not use the state of the reader to load, so a chunk that was taken from
+     * the reader can be loaded after the reader is closed.
+     */
+    @ThreadSafe
+    public static final class ColumnChunk
+    {
+        private final CompressionCodec codec;
+
+        private byte[] chunk = new byte[0];
+        private int chunkLength;
+        private byte[] valueLengths = new byte[0];
+        private int valueLengthsSize;
+
+        private byte[] data = new byte[0];
+        private int dataLength;
+        private int[] offsets = new int[1];
+        private int rowCount;
+        @GuardedBy("this")
+        private boolean loaded;
+
+        private ColumnChunk(CompressionCodec codec)
+        {
+            this.codec = codec;
+        }
+
+        private synchronized void reset(int rowCount, int chunkLength, int dataLength)
+        {
+            this.rowCount = rowCount;
+            this.chunkLength = chunkLength;
+            this.dataLength = dataLength;
+            loaded = false;
+        }
+
+        public int getRowCount()
+        {
+            return rowCount;
+        }
+
+        public synchronized boolean isLoaded()
+        {
+            return loaded;
+        }
+
+        public byte[] getData()
+        {
+            return data;
+        }
+
+        public int getOffset(int row)
+        {
+            return offsets[row];
+        }
+
+        public int getLength(int row)
+        {
+            return offsets[row + 1] - offsets[row];
+        }
+
+        /**
+         * Decompresses the chunk and decodes the value lengths, if this has not been done yet.
+         */
+        public synchronized void load()
+                throws IOException
+        {
+            if (loaded) {
+                return;
+            }
+
+            if (codec != null) {
+                data = ensureCapacity(data, dataLength);
+                // the chunk may be loaded after the reader is closed, so it can not use the decompressor of the reader
+                Decompressor decompressor = CodecPool.getDecompressor(codec);
+                try {
+                    decompress(codec, decompressor, chunk, chunkLength, data, dataLength);
+                }
+                finally {
+                    if (decompressor != null) {
+                        CodecPool.returnDecompressor(decompressor);
+                    }
+                }
+            }
+            else {
+                // an uncompressed chunk is the data
+                byte[] temp = data;
+                data = chunk;
+                chunk = temp;
+            }
+
+            // the value lengths are run length encoded: a length is followed by the
+            // complement of the number of times it repeats, if it repeats
+            if (offsets.length < rowCount + 1) {
+                offsets = new int[Math.max(rowCount + 1, offsets.length * 2)];
+            }
+            DataInputBuffer lengthsInput = new DataInputBuffer();
+            lengthsInput.reset(valueLengths, valueLengthsSize);
+            int row = 0;
+            int previousLength = 0;
+            while (row < rowCount) {
+                int length = WritableUtils.readVInt(lengthsInput);
+                int runLength = 1;
+                if (length < 0) {
+                    runLength = ~length;
+                    length = previousLength;
+                }
+                if (row + runLength > rowCount) {
+                    throw new IOException("Invalid value lengths: more than " + rowCount + " values");
+                }
+                for (int i = 0; i < runLength; i++) {
+                    offsets[row + 1] = offsets[row] + length;
+                    row++;
+                }
+                previousLength = length;
+            }
+            if (offsets[rowCount] > dataLength) {
+                throw new IOException("Invalid value lengths: values are longer than the column chunk");
+            }
+            loaded = true;
+        }
+    }
+}
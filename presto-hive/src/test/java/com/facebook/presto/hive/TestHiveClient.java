@@ -54,7 +54,8 @@ public class TestHiveClient
                 100,
                 50,
                 10,
-                500);
+                500,
+                hiveClientConfig.isRcFileNativeReaderEnabled());
 
         metadata = client;
         splitManager = client;
@@ -46,7 +46,8 @@ public class TestHiveClientConfig
                 .setDfsConnectMaxRetries(5)
                 .setFileSystemCacheTtl(new Duration(1, TimeUnit.DAYS))
                 .setResourceConfigFiles((String) null)
-                .setDomainSocketPath(null));
+                .setDomainSocketPath(null)
+                .setRcFileNativeReaderEnabled(true));
     }
 
     @Test
@@ -69,6 +70,7 @@ public class TestHiveClientConfig
                 .put("hive.file-system-cache-ttl", "2d")
                 .put("hive.config.resources", "/foo.xml,/bar.xml")
                 .put("dfs.domain-socket-path", "/foo")
+                .put("hive.rcfile-native-reader.enabled", "false")
                 .build();
 
         HiveClientConfig expected = new HiveClientConfig()
@@ -87,7 +89,8 @@ public class TestHiveClientConfig
                 .setDfsConnectMaxRetries(10)
                 .setFileSystemCacheTtl(new Duration(2, TimeUnit.DAYS))
                 .setResourceConfigFiles(ImmutableList.of("/foo.xml", "/bar.xml"))
-                .setDomainSocketPath("/foo");
+                .setDomainSocketPath("/foo")
+                .setRcFileNativeReaderEnabled(false);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
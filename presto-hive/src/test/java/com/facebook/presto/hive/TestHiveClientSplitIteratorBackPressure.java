@@ -53,7 +53,8 @@ public class TestHiveClientSplitIteratorBackPressure
                 1,
                 2,
                 10,
-                500);
+                500,
+                hiveClientConfig.isRcFileNativeReaderEnabled());
 
         metadata = client;
         splitManager = client;
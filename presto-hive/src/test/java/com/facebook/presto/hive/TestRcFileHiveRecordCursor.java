@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.ColumnBatch;
+import com.facebook.presto.spi.ColumnBatchLoader;
+import com.facebook.presto.spi.ColumnType;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import io.airlift.testing.FileUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.io.RCFile;
+import org.apache.hadoop.hive.ql.io.RCFileOutputFormat;
+import org.apache.hadoop.hive.serde2.columnar.BytesRefArrayWritable;
+import org.apache.hadoop.hive.serde2.columnar.BytesRefWritable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestRcFileHiveRecordCursor
+{
+    private static final int ROWS = 1000;
+    private static final int ROWS_PER_ROW_GROUP = 100;
+
+    private final JobConf configuration = new JobConf();
+    private File tempDir;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        tempDir = Files.createTempDir();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        FileUtils.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testUncompressed()
+            throws Exception
+    {
+        File file = writeFile(null);
+        assertRows(createCursor(file, 0, file.length(), columns()), 0, ROWS);
+    }
+
+    @Test
+    public void testCompressed()
+            throws Exception
+    {
+        File file = writeFile(ReflectionUtils.newInstance(DefaultCodec.class, configuration));
+        assertRows(createCursor(file, 0, file.length(), columns()), 0, ROWS);
+    }
+
+    @Test
+    public void testBatches()
+            throws Exception
+    {
+        File file = writeFile(ReflectionUtils.newInstance(DefaultCodec.class, configuration));
+        RcFileHiveRecordCursor cursor = createCursor(file, 0, file.length(), columns());
+
+        int rows = 0;
+        while (true) {
+            ColumnBatch[] batches = {new ColumnBatch(ColumnType.LONG, 16), new ColumnBatch(ColumnType.STRING, 16), new ColumnBatch(ColumnType.DOUBLE, 16)};
+            int positions = cursor.advanceNextBatch(batches, 150);
+            if (positions == 0) {
+                break;
+            }
+            assertTrue(positions <= 150);
+            for (int position = 0; position < positions; position++) {
+                int row = rows + position;
+                assertEquals(batches[0].getLongs()[position], row);
+                if (row % 10 == 0) {
+                    assertTrue(batches[1].getNulls()[position]);
+                }
+                else {
+                    int[] offsets = batches[1].getOffsets();
+                    String value = new String(batches[1].getBytes(), offsets[position], offsets[position + 1] - offsets[position], Charsets.UTF_8);
+                    assertEquals(value, "value" + (row % 3));
+                }
+                assertEquals(batches[2].getDoubles()[position], row + 0.5);
+            }
+            rows += positions;
+        }
+        assertEquals(rows, ROWS);
+    }
+
+    @Test
+    public void testLazyBatches()
+            throws Exception
+    {
+        File file = writeFile(ReflectionUtils.newInstance(DefaultCodec.class, configuration));
+        RcFileHiveRecordCursor cursor = createCursor(file, 0, file.length(), columns());
+
+        List<ColumnBatchLoader[]> batches = new ArrayList<>();
+        while (true) {
+            ColumnBatchLoader[] loaders = new ColumnBatchLoader[3];
+            int positions = cursor.advanceNextLazyBatch(loaders, 150);
+            if (positions == 0) {
+                break;
+            }
+            // a lazy batch does not span row groups
+            assertTrue(positions <= ROWS_PER_ROW_GROUP);
+            batches.add(loaders);
+        }
+        cursor.close();
+
+        // the loaders still work after the cursor is closed, and columns can be loaded in any order
+        int rows = 0;
+        for (ColumnBatchLoader[] loaders : batches) {
+            ColumnBatch doubles = loaders[2].load();
+            ColumnBatch longs = loaders[0].load();
+            assertEquals(doubles.getPositionCount(), longs.getPositionCount());
+            for (int position = 0; position < longs.getPositionCount(); position++) {
+                int row = rows + position;
+                assertEquals(longs.getLongs()[position], row);
+                assertEquals(doubles.getDoubles()[position], row + 0.5);
+            }
+            rows += longs.getPositionCount();
+        }
+        assertEquals(rows, ROWS);
+    }
+
+    @Test
+    public void testSkipColumns()
+            throws Exception
+    {
+        File file = writeFile(ReflectionUtils.newInstance(DefaultCodec.class, configuration));
+        List<HiveColumnHandle> columns = ImmutableList.of(new HiveColumnHandle("test", "c", 0, HiveType.DOUBLE, 2, false));
+        RcFileHiveRecordCursor cursor = createCursor(file, 0, file.length(), columns);
+
+        for (int row = 0; row < ROWS; row++) {
+            assertTrue(cursor.advanceNextPosition());
+            assertEquals(cursor.getDouble(0), row + 0.5);
+        }
+        assertFalse(cursor.advanceNextPosition());
+    }
+
+    @Test
+    public void testSplits()
+            throws Exception
+    {
+        File file = writeFile(null);
+        for (long splitPoint = 1; splitPoint < file.length(); splitPoint += file.length() / 7) {
+            RcFileHiveRecordCursor first = createCursor(file, 0, splitPoint, columns());
+            int rows = readRows(first);
+            RcFileHiveRecordCursor second = createCursor(file, splitPoint, file.length() - splitPoint, columns());
+            assertRows(second, rows, ROWS);
+        }
+    }
+
+    private static List<HiveColumnHandle> columns()
+    {
+        return ImmutableList.of(
+                new HiveColumnHandle("test", "a", 0, HiveType.LONG, 0, false),
+                new HiveColumnHandle("test", "b", 1, HiveType.STRING, 1, false),
+                new HiveColumnHandle("test", "c", 2, HiveType.DOUBLE, 2, false));
+    }
+
+    private static int readRows(RcFileHiveRecordCursor cursor)
+    {
+        int rows = 0;
+        while (cursor.advanceNextPosition()) {
+            assertEquals(cursor.getLong(0), rows);
+            rows++;
+        }
+        return rows;
+    }
+
+    private static void assertRows(RcFileHiveRecordCursor cursor, int firstRow, int endRow)
+    {
+        for (int row = firstRow; row < endRow; row++) {
+            assertTrue(cursor.advanceNextPosition());
+            assertEquals(cursor.getLong(0), row);
+            if (row % 10 == 0) {
+                assertTrue(cursor.isNull(1));
+            }
+            else {
+                assertFalse(cursor.isNull(1));
+                assertEquals(new String(cursor.getString(1), Charsets.UTF_8), "value" + (row % 3));
+            }
+            assertEquals(cursor.getDouble(2), row + 0.5);
+        }
+        assertFalse(cursor.advanceNextPosition());
+    }
+
+    private RcFileHiveRecordCursor createCursor(File file, long start, long length, List<HiveColumnHandle> columns)
+            throws IOException
+    {
+        Path path = new Path(file.toURI());
+        FileSystem fileSystem = FileSystem.getLocal(configuration);
+        ImmutableList.Builder<Integer> columnIndexes = ImmutableList.builder();
+        for (HiveColumnHandle column : columns) {
+            columnIndexes.add(column.getHiveColumnIndex());
+        }
+        RcFileReader reader = new RcFileReader(fileSystem.open(path), file.length(), start, length, columnIndexes.build(), configuration);
+        return new RcFileHiveRecordCursor(reader, length, ImmutableList.<HivePartitionKey>of(), columns);
+    }
+
+    private File writeFile(CompressionCodec codec)
+            throws IOException
+    {
+        File file = new File(tempDir, "data.rc");
+        JobConf conf = new JobConf(configuration);
+        RCFileOutputFormat.setColumnNumber(conf, 3);
+        conf.setInt(RCFile.RECORD_INTERVAL_CONF_STR, ROWS_PER_ROW_GROUP);
+
+        RCFile.Writer writer = new RCFile.Writer(FileSystem.getLocal(conf), conf, new Path(file.toURI()), null, codec);
+        try {
+            for (int row = 0; row < ROWS; row++) {
+                BytesRefArrayWritable values = new BytesRefArrayWritable(3);
+                values.set(0, bytesRef(String.valueOf(row)));
+                // the null rows and the repeated values exercise the run length encoded value lengths
+                values.set(1, bytesRef(row % 10 == 0 ? "\\N" : "value" + (row % 3)));
+                values.set(2, bytesRef(row + ".5"));
+                writer.append(values);
+            }
+        }
+        finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static BytesRefWritable bytesRef(String value)
+    {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        return new BytesRefWritable(bytes, 0, bytes.length);
+    }
+}
@@ -14,9 +14,14 @@
 package com.facebook.presto.jdbc;
 
 import com.facebook.presto.client.ClientSession;
+import com.facebook.presto.client.ResultsPrefetcher;
 import com.facebook.presto.client.StatementClient;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HostAndPort;
+import io.airlift.units.DataSize;
+
+import javax.annotation.Nullable;
 
 import java.net.URI;
 import java.sql.Array;
@@ -43,6 +48,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Maps.fromProperties;
 import static io.airlift.http.client.HttpUriBuilder.uriBuilder;
@@ -58,13 +64,18 @@ public class PrestoConnection
     private final String user;
     private final Map<String, String> clientInfo = new ConcurrentHashMap<>();
     private final QueryExecutor queryExecutor;
+    private final int prefetchResults;
+    private final DataSize targetResultSize;
 
-    PrestoConnection(URI uri, String user, QueryExecutor queryExecutor)
+    PrestoConnection(URI uri, String user, QueryExecutor queryExecutor, int prefetchResults, @Nullable DataSize targetResultSize)
     {
+        checkArgument(prefetchResults > 0, "prefetchResults must be at least 1");
         this.uri = checkNotNull(uri, "uri is null");
         this.address = HostAndPort.fromParts(uri.getHost(), uri.getPort());
         this.user = checkNotNull(user, "user is null");
         this.queryExecutor = checkNotNull(queryExecutor, "queryExecutor is null");
+        this.prefetchResults = prefetchResults;
+        this.targetResultSize = targetResultSize;
         catalog.set("default");
         schema.set("default");
     }
@@ -502,10 +513,15 @@ public class PrestoConnection
         URI uri = createHttpUri(address);
 
         String source = Objects.firstNonNull(clientInfo.get("ApplicationName"), "presto-jdbc");
-        ClientSession session = new ClientSession(uri, user, source, catalog.get(), schema.get(), false);
+        ClientSession session = new ClientSession(uri, user, source, catalog.get(), schema.get(), ImmutableMap.<String, String>of(), false, true, targetResultSize);
         return queryExecutor.startQuery(session, sql);
     }
 
+    ResultsPrefetcher prefetchResults(StatementClient client, Object owner)
+    {
+        return queryExecutor.prefetchResults(client, prefetchResults, owner);
+    }
+
     private void checkOpen()
             throws SQLException
     {
@@ -14,6 +14,7 @@
 package com.facebook.presto.jdbc;
 
 import com.google.common.base.Throwables;
+import io.airlift.units.DataSize;
 
 import java.io.Closeable;
 import java.net.URI;
@@ -48,6 +49,10 @@ public class PrestoDriver
     private static final String DRIVER_URL_START = "jdbc:presto:";
 
     private static final String USER_PROPERTY = "user";
+    private static final String PREFETCH_RESULTS_PROPERTY = "prefetchResults";
+    private static final String TARGET_RESULT_SIZE_PROPERTY = "targetResultSize";
+
+    private static final int DEFAULT_PREFETCH_RESULTS = 2;
 
     private final QueryExecutor queryExecutor;
 
@@ -84,7 +89,40 @@ public class PrestoDriver
             throw new SQLException(format("Username property (%s) must be set", USER_PROPERTY));
         }
 
-        return new PrestoConnection(parseDriverUrl(url), user, queryExecutor);
+        return new PrestoConnection(parseDriverUrl(url), user, queryExecutor, parsePrefetchResults(info), parseTargetResultSize(info));
+    }
+
+    private static int parsePrefetchResults(Properties info)
+            throws SQLException
+    {
+        String value = info.getProperty(PREFETCH_RESULTS_PROPERTY);
+        if (isNullOrEmpty(value)) {
+            return DEFAULT_PREFETCH_RESULTS;
+        }
+        try {
+            int prefetchResults = Integer.parseInt(value);
+            if (prefetchResults > 0) {
+                return prefetchResults;
+            }
+        }
+        catch (NumberFormatException ignored) {
+        }
+        throw new SQLException(format("Property %s must be a positive integer: %s", PREFETCH_RESULTS_PROPERTY, value));
+    }
+
+    private static DataSize parseTargetResultSize(Properties info)
+            throws SQLException
+    {
+        String value = info.getProperty(TARGET_RESULT_SIZE_PROPERTY);
+        if (isNullOrEmpty(value)) {
+            return null;
+        }
+        try {
+            return DataSize.valueOf(value);
+        }
+        catch (IllegalArgumentException e) {
+            throw new SQLException(format("Property %s must be a data size, such as 16MB: %s", TARGET_RESULT_SIZE_PROPERTY, value), e);
+        }
     }
 
     @Override
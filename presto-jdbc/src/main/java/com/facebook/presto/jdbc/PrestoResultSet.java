@@ -14,10 +14,11 @@
 package com.facebook.presto.jdbc;
 
 import com.facebook.presto.client.Column;
+import com.facebook.presto.client.ColumnarData;
 import com.facebook.presto.client.QueryError;
 import com.facebook.presto.client.QueryResults;
+import com.facebook.presto.client.ResultsPrefetcher;
 import com.facebook.presto.client.StatementClient;
-import com.google.common.base.Function;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -48,13 +49,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.propagate;
 import static com.google.common.base.Throwables.propagateIfInstanceOf;
-import static com.google.common.collect.Iterators.concat;
-import static com.google.common.collect.Iterators.transform;
 import static java.lang.String.format;
 
 public class PrestoResultSet
@@ -63,23 +63,28 @@ public class PrestoResultSet
     private static final int VARIABLE_BINARY_MAX = 1024 * 1024 * 1024;
 
     private final AtomicBoolean closed = new AtomicBoolean();
-    private final StatementClient client;
-    private final Iterator<List<Object>> results;
+    private final ResultsPrefetcher prefetcher;
+    private final Iterator<ColumnarData> results;
     private final Map<String, Integer> fieldMap;
     private final ResultSetMetaData resultSetMetaData;
-    private final AtomicReference<List<Object>> row = new AtomicReference<>();
+    private final AtomicReference<ColumnarData> batch = new AtomicReference<>();
+    private final AtomicInteger position = new AtomicInteger();
     private final AtomicBoolean wasNull = new AtomicBoolean();
 
-    PrestoResultSet(StatementClient client)
+    PrestoResultSet(StatementClient client, PrestoConnection connection)
             throws SQLException
     {
-        this.client = checkNotNull(client, "client is null");
+        checkNotNull(client, "client is null");
+        checkNotNull(connection, "connection is null");
 
         List<Column> columns = getColumns(client);
         this.fieldMap = getFieldMap(columns);
         this.resultSetMetaData = new PrestoResultSetMetaData(getColumnInfo(columns));
 
-        this.results = flatten(new ResultsPageIterator(client));
+        // the next results are fetched while the application reads the current ones, and the
+        // fetch stops if the application drops this result set without closing it
+        this.prefetcher = connection.prefetchResults(client, this);
+        this.results = new ResultsPageIterator(client, prefetcher, columns);
     }
 
     @Override
@@ -88,11 +93,17 @@ public class PrestoResultSet
     {
         checkOpen();
         try {
+            ColumnarData current = batch.get();
+            if ((current != null) && (position.get() + 1 < current.getRowCount())) {
+                position.incrementAndGet();
+                return true;
+            }
             if (!results.hasNext()) {
-                row.set(null);
+                batch.set(null);
                 return false;
             }
-            row.set(results.next());
+            batch.set(results.next());
+            position.set(0);
             return true;
         }
         catch (RuntimeException e) {
@@ -105,7 +116,9 @@ public class PrestoResultSet
     public void close()
             throws SQLException
     {
-        client.close();
+        if (closed.compareAndSet(false, true)) {
+            prefetcher.close();
+        }
     }
 
     @Override
@@ -119,16 +132,26 @@ public class PrestoResultSet
     public String getString(int columnIndex)
             throws SQLException
     {
-        Object value = column(columnIndex);
-        return (value != null) ? value.toString() : null;
+        int column = validColumn(columnIndex);
+        String value = batch.get().getString(column, position.get());
+        wasNull.set(value == null);
+        return value;
     }
 
     @Override
     public boolean getBoolean(int columnIndex)
             throws SQLException
     {
-        Object value = column(columnIndex);
-        return (value != null) ? (Boolean) value : false;
+        int column = validColumn(columnIndex);
+        if (isNull(column)) {
+            return false;
+        }
+        try {
+            return batch.get().getBoolean(column, position.get());
+        }
+        catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
     }
 
     @Override
@@ -159,8 +182,16 @@ public class PrestoResultSet
     public long getLong(int columnIndex)
             throws SQLException
     {
-        Object value = column(columnIndex);
-        return (value != null) ? ((Number) value).longValue() : 0;
+        int column = validColumn(columnIndex);
+        if (isNull(column)) {
+            return 0;
+        }
+        try {
+            return batch.get().getLong(column, position.get());
+        }
+        catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
     }
 
     @Override
@@ -175,8 +206,16 @@ public class PrestoResultSet
     public double getDouble(int columnIndex)
             throws SQLException
     {
-        Object value = column(columnIndex);
-        return (value != null) ? ((Number) value).doubleValue() : 0;
+        int column = validColumn(columnIndex);
+        if (isNull(column)) {
+            return 0;
+        }
+        try {
+            return batch.get().getDouble(column, position.get());
+        }
+        catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
     }
 
     @Override
@@ -239,16 +278,14 @@ public class PrestoResultSet
     public String getString(String columnLabel)
             throws SQLException
     {
-        Object value = column(columnLabel);
-        return (value != null) ? value.toString() : null;
+        return getString(columnIndex(columnLabel));
     }
 
     @Override
     public boolean getBoolean(String columnLabel)
             throws SQLException
     {
-        Object value = column(columnLabel);
-        return (value != null) ? (Boolean) value : false;
+        return getBoolean(columnIndex(columnLabel));
     }
 
     @Override
@@ -279,8 +316,7 @@ public class PrestoResultSet
     public long getLong(String columnLabel)
             throws SQLException
     {
-        Object value = column(columnLabel);
-        return (value != null) ? ((Number) value).longValue() : 0;
+        return getLong(columnIndex(columnLabel));
     }
 
     @Override
@@ -295,8 +331,7 @@ public class PrestoResultSet
     public double getDouble(String columnLabel)
             throws SQLException
     {
-        Object value = column(columnLabel);
-        return (value != null) ? ((Number) value).doubleValue() : 0;
+        return getDouble(columnIndex(columnLabel));
     }
 
     @Override
@@ -1464,12 +1499,15 @@ public class PrestoResultSet
     private void checkValidRow()
             throws SQLException
     {
-        if (row.get() == null) {
+        if (batch.get() == null) {
             throw new SQLException("Not on a valid row");
         }
     }
 
-    private Object column(int index)
+    /**
+     * Returns the zero based column of the current batch for a column index.
+     */
+    private int validColumn(int index)
             throws SQLException
     {
         checkOpen();
@@ -1477,15 +1515,29 @@ public class PrestoResultSet
         if ((index <= 0) || (index > resultSetMetaData.getColumnCount())) {
             throw new SQLException("Invalid column index: " + index);
         }
-        return row.get().get(index - 1);
+        return index - 1;
+    }
+
+    private boolean isNull(int column)
+    {
+        boolean isNull = batch.get().isNull(column, position.get());
+        wasNull.set(isNull);
+        return isNull;
+    }
+
+    private Object column(int index)
+            throws SQLException
+    {
+        int column = validColumn(index);
+        Object value = batch.get().getObject(column, position.get());
+        wasNull.set(value == null);
+        return value;
     }
 
     private Object column(String label)
             throws SQLException
     {
-        checkOpen();
-        checkValidRow();
-        return row.get().get(columnIndex(label) - 1);
+        return column(columnIndex(label));
     }
 
     private int columnIndex(String label)
@@ -1519,35 +1571,34 @@ public class PrestoResultSet
         throw resultsException(results);
     }
 
-    private static <T> Iterator<T> flatten(Iterator<Iterable<T>> iterator)
-    {
-        return concat(transform(iterator, new Function<Iterable<T>, Iterator<T>>()
-        {
-            @Override
-            public Iterator<T> apply(Iterable<T> input)
-            {
-                return input.iterator();
-            }
-        }));
-    }
-
+    /**
+     * Iterates over the non-empty batches of the results.  Results received as json
+     * are converted, so the result set only has to deal with columnar data.
+     */
     private static class ResultsPageIterator
-            extends AbstractIterator<Iterable<List<Object>>>
+            extends AbstractIterator<ColumnarData>
     {
         private final StatementClient client;
+        private final ResultsPrefetcher prefetcher;
+        private final List<Column> columns;
 
-        private ResultsPageIterator(StatementClient client)
+        private ResultsPageIterator(StatementClient client, ResultsPrefetcher prefetcher, List<Column> columns)
         {
             this.client = checkNotNull(client, "client is null");
+            this.prefetcher = checkNotNull(prefetcher, "prefetcher is null");
+            this.columns = checkNotNull(columns, "columns is null");
         }
 
         @Override
-        protected Iterable<List<Object>> computeNext()
+        protected ColumnarData computeNext()
         {
-            while (client.isValid()) {
-                Iterable<List<Object>> data = client.current().getData();
-                client.advance();
-                if (data != null) {
+            QueryResults results;
+            while ((results = prefetcher.next()) != null) {
+                ColumnarData data = results.getColumnarData();
+                if ((data == null) && (results.getData() != null)) {
+                    data = ColumnarData.fromRows(columns, results.getData());
+                }
+                if ((data != null) && (data.getRowCount() > 0)) {
                     return data;
                 }
             }
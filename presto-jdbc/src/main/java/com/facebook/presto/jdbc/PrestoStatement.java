@@ -34,6 +34,7 @@ public class PrestoStatement
     private final AtomicBoolean escapeProcessing = new AtomicBoolean(true);
     private final AtomicBoolean closeOnCompletion = new AtomicBoolean();
     private final AtomicReference<PrestoConnection> connection;
+    private final AtomicReference<PrestoResultSet> currentResult = new AtomicReference<>();
 
     PrestoStatement(PrestoConnection connection)
     {
@@ -45,7 +46,13 @@ public class PrestoStatement
             throws SQLException
     {
         try {
-            return new PrestoResultSet(connection().startQuery(sql));
+            PrestoConnection connection = connection();
+
+            // executing a statement closes its current result set
+            closeCurrentResult();
+            PrestoResultSet resultSet = new PrestoResultSet(connection.startQuery(sql), connection);
+            currentResult.set(resultSet);
+            return resultSet;
         }
         catch (RuntimeException e) {
             throw new SQLException("Error executing query", e);
@@ -64,7 +71,16 @@ public class PrestoStatement
             throws SQLException
     {
         if (connection.getAndSet(null) != null) {
-            // TODO
+            closeCurrentResult();
+        }
+    }
+
+    private void closeCurrentResult()
+            throws SQLException
+    {
+        PrestoResultSet resultSet = currentResult.getAndSet(null);
+        if (resultSet != null) {
+            resultSet.close();
         }
     }
 
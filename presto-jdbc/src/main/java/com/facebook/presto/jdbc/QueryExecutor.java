@@ -15,9 +15,11 @@ package com.facebook.presto.jdbc;
 
 import com.facebook.presto.client.ClientSession;
 import com.facebook.presto.client.QueryResults;
+import com.facebook.presto.client.ResultsPrefetcher;
 import com.facebook.presto.client.StatementClient;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.http.client.AsyncHttpClient;
 import io.airlift.http.client.HttpClientConfig;
 import io.airlift.http.client.netty.NettyAsyncHttpClientConfig;
@@ -33,16 +35,19 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.URI;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static io.airlift.json.JsonCodec.jsonCodec;
+import static java.util.concurrent.Executors.newCachedThreadPool;
 
 class QueryExecutor
         implements Closeable
 {
     private final JsonCodec<QueryResults> queryInfoCodec;
     private final AsyncHttpClient httpClient;
+    private final ExecutorService prefetchExecutor;
 
     private QueryExecutor(String userAgent, JsonCodec<QueryResults> queryResultsCodec, HostAndPort socksProxy)
     {
@@ -57,6 +62,10 @@ class QueryExecutor
                 new NettyAsyncHttpClientConfig(),
                 new NettyIoPoolConfig(),
                 ImmutableSet.of(new UserAgentRequestFilter(userAgent)));
+        this.prefetchExecutor = newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("presto-jdbc-prefetch-%d")
+                .setDaemon(true)
+                .build());
     }
 
     public StatementClient startQuery(ClientSession session, String query)
@@ -64,10 +73,16 @@ class QueryExecutor
         return new StatementClient(httpClient, queryInfoCodec, session, query);
     }
 
+    public ResultsPrefetcher prefetchResults(StatementClient client, int maxBufferedResults, Object owner)
+    {
+        return new ResultsPrefetcher(client, maxBufferedResults, prefetchExecutor, owner);
+    }
+
     @Override
     public void close()
     {
         httpClient.close();
+        prefetchExecutor.shutdownNow();
     }
 
     // TODO: replace this with a phantom reference
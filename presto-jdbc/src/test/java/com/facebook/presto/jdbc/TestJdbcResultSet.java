@@ -29,6 +29,7 @@ import java.sql.Types;
 import static com.facebook.presto.jdbc.TestDriver.closeQuietly;
 import static java.lang.String.format;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 public class TestJdbcResultSet
@@ -73,6 +74,22 @@ public class TestJdbcResultSet
         }
     }
 
+    @Test
+    public void testStatementClosesResultSet()
+            throws Exception
+    {
+        ResultSet first = statement.executeQuery("SELECT 123 x");
+        assertFalse(first.isClosed());
+
+        // executing the next query closes the previous result set
+        ResultSet second = statement.executeQuery("SELECT 456 x");
+        assertTrue(first.isClosed());
+        assertFalse(second.isClosed());
+
+        statement.close();
+        assertTrue(second.isClosed());
+    }
+
     @SuppressWarnings("UnnecessaryBoxing")
     @Test
     public void testObjectTypes()
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto;
+
+import com.facebook.presto.sql.analyzer.Session;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Session properties understood by the engine.  Properties are sent by the client
+ * and override the server configuration for a single query.
+ */
+public final class SessionProperties
+{
+    public static final String DISTRIBUTED_JOIN = "distributed_join";
+
+    private SessionProperties()
+    {
+    }
+
+    public static boolean isDistributedJoinEnabled(Session session, boolean defaultValue)
+    {
+        return getBoolean(session, DISTRIBUTED_JOIN, defaultValue);
+    }
+
+    private static boolean getBoolean(Session session, String name, boolean defaultValue)
+    {
+        checkNotNull(session, "session is null");
+        String value = session.getProperties().get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException(String.format("Session property %s must be 'true' or 'false', but is '%s'", name, value));
+    }
+}
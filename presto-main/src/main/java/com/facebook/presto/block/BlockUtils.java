@@ -13,6 +13,9 @@
  */
 package com.facebook.presto.block;
 
+import com.facebook.presto.block.columnar.ColumnarBlock;
+import com.facebook.presto.block.lazy.LazyBlock;
+import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.tuple.Tuple;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Optional;
@@ -28,6 +31,22 @@ import java.util.Iterator;
 
 public class BlockUtils
 {
+    /**
+     * Gets the block in the row-packed tuple layout.  Raw offsets from a cursor
+     * over the original block are valid in the slice of the returned block.
+     */
+    public static UncompressedBlock toUncompressedBlock(Block block)
+    {
+        if (block instanceof LazyBlock) {
+            block = ((LazyBlock) block).getLoadedBlock();
+        }
+        if (block instanceof ColumnarBlock) {
+            return ((ColumnarBlock) block).toUncompressedBlock();
+        }
+        Preconditions.checkArgument(block instanceof UncompressedBlock, "Unsupported block type %s", block.getClass().getName());
+        return (UncompressedBlock) block;
+    }
+
     // TODO: remove this hack after empty blocks are supported
     public static BlockIterable emptyBlockIterable()
     {
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.columnar;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.uncompressed.UncompressedBlock;
+import com.facebook.presto.serde.UncompressedBlockEncoding;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Objects;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * A single field block that stores its values in primitive arrays, one entry
+ * per position, with a separate null flag per position.  Operators that know
+ * the concrete block type can read the values directly in a tight loop, and
+ * everything else reads the block through the generic cursor.
+ * <p/>
+ * Code that needs the values in the row-packed tuple layout (hash strategies,
+ * the pages index, serialization) uses {@link #toUncompressedBlock()}, which
+ * is computed once and cached.  The raw offsets reported by the cursor point
+ * into that slice.
+ */
+public abstract class ColumnarBlock
+        implements Block
+{
+    private final TupleInfo tupleInfo;
+    protected final int positionCount;
+    protected final boolean[] isNull;
+
+    @GuardedBy("this")
+    private UncompressedBlock uncompressedBlock;
+
+    protected ColumnarBlock(TupleInfo tupleInfo, int positionCount, boolean[] isNull)
+    {
+        this.tupleInfo = checkNotNull(tupleInfo, "tupleInfo is null");
+        checkArgument(tupleInfo.getFieldCount() == 1, "columnar blocks only support a single field");
+        checkArgument(positionCount >= 0, "positionCount is negative");
+        this.isNull = checkNotNull(isNull, "isNull is null");
+        checkArgument(isNull.length >= positionCount, "isNull length is less than positionCount");
+        this.positionCount = positionCount;
+    }
+
+    @Override
+    public TupleInfo getTupleInfo()
+    {
+        return tupleInfo;
+    }
+
+    @Override
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public boolean isNull(int position)
+    {
+        return isNull[position];
+    }
+
+    // The typed accessors read the row-packed form, which rejects a value of the wrong type
+    // the same way the uncompressed cursor does.  Each subclass overrides the accessor for
+    // its own type with a direct array read.
+
+    public boolean getBoolean(int position)
+    {
+        checkElementIndex(position, positionCount);
+        return tupleInfo.getBoolean(toUncompressedBlock().getSlice(), getRawOffset(position), 0);
+    }
+
+    public long getLong(int position)
+    {
+        checkElementIndex(position, positionCount);
+        return tupleInfo.getLong(toUncompressedBlock().getSlice(), getRawOffset(position), 0);
+    }
+
+    public double getDouble(int position)
+    {
+        checkElementIndex(position, positionCount);
+        return tupleInfo.getDouble(toUncompressedBlock().getSlice(), getRawOffset(position), 0);
+    }
+
+    public Slice getSlice(int position)
+    {
+        checkElementIndex(position, positionCount);
+        return tupleInfo.getSlice(toUncompressedBlock().getSlice(), getRawOffset(position), 0);
+    }
+
+    /**
+     * Appends the value at the specified position to the output.
+     */
+    public abstract void appendTo(int position, BlockBuilder output);
+
+    /**
+     * Gets the offset of the specified position in the slice of {@link #toUncompressedBlock()}.
+     */
+    public abstract int getRawOffset(int position);
+
+    @Override
+    public BlockCursor cursor()
+    {
+        return new ColumnarBlockCursor(this);
+    }
+
+    @Override
+    public UncompressedBlockEncoding getEncoding()
+    {
+        return new UncompressedBlockEncoding(tupleInfo);
+    }
+
+    @Override
+    public Block getRegion(int positionOffset, int length)
+    {
+        checkPositionIndexes(positionOffset, positionOffset + length, positionCount);
+        return createRegion(positionOffset, length);
+    }
+
+    protected abstract Block createRegion(int positionOffset, int length);
+
+    /**
+     * Gets this block in the row-packed tuple layout.
+     */
+    public synchronized UncompressedBlock toUncompressedBlock()
+    {
+        if (uncompressedBlock == null) {
+            if (positionCount == 0) {
+                uncompressedBlock = new UncompressedBlock(0, tupleInfo, Slices.EMPTY_SLICE);
+            }
+            else {
+                int size = (int) getDataSize().toBytes();
+                BlockBuilder blockBuilder = new BlockBuilder(tupleInfo, size, new DynamicSliceOutput(size));
+                for (int position = 0; position < positionCount; position++) {
+                    appendTo(position, blockBuilder);
+                }
+                uncompressedBlock = blockBuilder.build();
+            }
+        }
+        return uncompressedBlock;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Objects.toStringHelper(this)
+                .add("positionCount", positionCount)
+                .add("tupleInfo", tupleInfo)
+                .toString();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.columnar;
+
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleInfo.Type;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+
+/**
+ * Builds a {@link ColumnarBlock} for a single field tuple info.  The built block
+ * shares the arrays of this builder, so a builder can only build one block.
+ */
+public class ColumnarBlockBuilder
+{
+    private final TupleInfo tupleInfo;
+    private final Type type;
+
+    private int positionCount;
+    private boolean[] isNull;
+    private boolean[] booleanValues;
+    private long[] longValues;
+    private double[] doubleValues;
+    private int[] offsets;
+    private DynamicSliceOutput sliceValues;
+    private boolean built;
+
+    public ColumnarBlockBuilder(TupleInfo tupleInfo, int expectedPositions)
+    {
+        this.tupleInfo = checkNotNull(tupleInfo, "tupleInfo is null");
+        checkArgument(tupleInfo.getFieldCount() == 1, "columnar blocks only support a single field");
+        checkArgument(expectedPositions > 0, "expectedPositions must be positive");
+        this.type = tupleInfo.getTypes().get(0);
+
+        isNull = new boolean[expectedPositions];
+        switch (type) {
+            case BOOLEAN:
+                booleanValues = new boolean[expectedPositions];
+                break;
+            case FIXED_INT_64:
+                longValues = new long[expectedPositions];
+                break;
+            case DOUBLE:
+                doubleValues = new double[expectedPositions];
+                break;
+            case VARIABLE_BINARY:
+                offsets = new int[expectedPositions + 1];
+                sliceValues = new DynamicSliceOutput(expectedPositions * 16);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported type " + type);
+        }
+    }
+
+    public TupleInfo getTupleInfo()
+    {
+        return tupleInfo;
+    }
+
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public boolean isEmpty()
+    {
+        return positionCount == 0;
+    }
+
+    /**
+     * Returns the size of the block in the row-packed tuple layout, which is how
+     * blocks are sized everywhere else.
+     */
+    public long size()
+    {
+        if (type == Type.VARIABLE_BINARY) {
+            return positionCount * (long) (SIZE_OF_BYTE + SIZE_OF_INT) + sliceValues.size();
+        }
+        return positionCount * (long) tupleInfo.getFixedSize();
+    }
+
+    public ColumnarBlockBuilder append(boolean value)
+    {
+        checkType(Type.BOOLEAN);
+        ensureCapacity();
+        booleanValues[positionCount] = value;
+        positionCount++;
+        return this;
+    }
+
+    public ColumnarBlockBuilder append(long value)
+    {
+        checkType(Type.FIXED_INT_64);
+        ensureCapacity();
+        longValues[positionCount] = value;
+        positionCount++;
+        return this;
+    }
+
+    public ColumnarBlockBuilder append(double value)
+    {
+        checkType(Type.DOUBLE);
+        ensureCapacity();
+        doubleValues[positionCount] = value;
+        positionCount++;
+        return this;
+    }
+
+    public ColumnarBlockBuilder append(Slice value)
+    {
+        checkType(Type.VARIABLE_BINARY);
+        ensureCapacity();
+        sliceValues.writeBytes(value);
+        positionCount++;
+        offsets[positionCount] = sliceValues.size();
+        return this;
+    }
+
+    public ColumnarBlockBuilder appendNull()
+    {
+        ensureCapacity();
+        isNull[positionCount] = true;
+        positionCount++;
+        if (offsets != null) {
+            offsets[positionCount] = sliceValues.size();
+        }
+        return this;
+    }
+
+    public ColumnarBlock build()
+    {
+        checkState(positionCount > 0, "Cannot build an empty block");
+        checkState(!built, "Block already built");
+        built = true;
+
+        switch (type) {
+            case BOOLEAN:
+                return new BooleanArrayBlock(positionCount, isNull, booleanValues);
+            case FIXED_INT_64:
+                return new LongArrayBlock(positionCount, isNull, longValues);
+            case DOUBLE:
+                return new DoubleArrayBlock(positionCount, isNull, doubleValues);
+            case VARIABLE_BINARY:
+                return new SliceArrayBlock(positionCount, isNull, offsets, sliceValues.slice());
+            default:
+                throw new IllegalStateException("Unsupported type " + type);
+        }
+    }
+
+    private void checkType(Type expected)
+    {
+        checkState(type == expected, "Cannot append %s to a block of type %s", expected, type);
+    }
+
+    private void ensureCapacity()
+    {
+        checkState(!built, "Block already built");
+        if (positionCount < isNull.length) {
+            return;
+        }
+
+        int newSize = isNull.length * 2;
+        isNull = Arrays.copyOf(isNull, newSize);
+        switch (type) {
+            case BOOLEAN:
+                booleanValues = Arrays.copyOf(booleanValues, newSize);
+                break;
+            case FIXED_INT_64:
+                longValues = Arrays.copyOf(longValues, newSize);
+                break;
+            case DOUBLE:
+                doubleValues = Arrays.copyOf(doubleValues, newSize);
+                break;
+            case VARIABLE_BINARY:
+                offsets = Arrays.copyOf(offsets, newSize + 1);
+                break;
+        }
+    }
+}
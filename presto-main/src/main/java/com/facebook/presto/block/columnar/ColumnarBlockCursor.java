@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.columnar;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.tuple.Tuple;
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleInfo.Type;
+import com.google.common.base.Preconditions;
+import io.airlift.slice.Slice;
+
+public class ColumnarBlockCursor
+        implements BlockCursor
+{
+    private final ColumnarBlock block;
+    private final Type type;
+    private final int positionCount;
+
+    private int position;
+    private Slice rawSlice;
+
+    public ColumnarBlockCursor(ColumnarBlock block)
+    {
+        this.block = Preconditions.checkNotNull(block, "block is null");
+        this.type = block.getTupleInfo().getTypes().get(0);
+        this.positionCount = block.getPositionCount();
+
+        // start one position before the start
+        position = -1;
+    }
+
+    @Override
+    public TupleInfo getTupleInfo()
+    {
+        return block.getTupleInfo();
+    }
+
+    @Override
+    public int getRemainingPositions()
+    {
+        return positionCount - (position + 1);
+    }
+
+    @Override
+    public boolean isValid()
+    {
+        return 0 <= position && position < positionCount;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return position >= positionCount;
+    }
+
+    private void checkReadablePosition()
+    {
+        Preconditions.checkState(isValid(), "cursor is not valid");
+    }
+
+    @Override
+    public boolean advanceNextPosition()
+    {
+        if (position >= positionCount - 1) {
+            position = positionCount;
+            return false;
+        }
+
+        position++;
+        return true;
+    }
+
+    @Override
+    public boolean advanceToPosition(int newPosition)
+    {
+        // if new position is out of range, return false
+        if (newPosition >= positionCount) {
+            position = positionCount;
+            return false;
+        }
+
+        Preconditions.checkArgument(newPosition >= this.position, "Can't advance backwards");
+
+        position = newPosition;
+        return true;
+    }
+
+    @Override
+    public Block getRegionAndAdvance(int length)
+    {
+        // view port starts at next position
+        int startPosition = position + 1;
+        length = Math.min(length, getRemainingPositions());
+
+        // advance to end of view port
+        position += length;
+
+        return block.getRegion(startPosition, length);
+    }
+
+    @Override
+    public int getPosition()
+    {
+        checkReadablePosition();
+        return position;
+    }
+
+    @Override
+    public Tuple getTuple()
+    {
+        checkReadablePosition();
+
+        TupleInfo.Builder builder = block.getTupleInfo().builder();
+        if (block.isNull(position)) {
+            return builder.appendNull().build();
+        }
+        switch (type) {
+            case BOOLEAN:
+                return builder.append(block.getBoolean(position)).build();
+            case FIXED_INT_64:
+                return builder.append(block.getLong(position)).build();
+            case DOUBLE:
+                return builder.append(block.getDouble(position)).build();
+            case VARIABLE_BINARY:
+                return builder.append(block.getSlice(position)).build();
+            default:
+                throw new IllegalStateException("Unsupported type " + type);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(int field)
+    {
+        checkReadablePosition();
+        Preconditions.checkElementIndex(0, 1, "field");
+        return block.getBoolean(position);
+    }
+
+    @Override
+    public long getLong(int field)
+    {
+        checkReadablePosition();
+        Preconditions.checkElementIndex(0, 1, "field");
+        return block.getLong(position);
+    }
+
+    @Override
+    public double getDouble(int field)
+    {
+        checkReadablePosition();
+        Preconditions.checkElementIndex(0, 1, "field");
+        return block.getDouble(position);
+    }
+
+    @Override
+    public Slice getSlice(int field)
+    {
+        checkReadablePosition();
+        Preconditions.checkElementIndex(0, 1, "field");
+        return block.getSlice(position);
+    }
+
+    @Override
+    public boolean isNull(int field)
+    {
+        checkReadablePosition();
+        Preconditions.checkElementIndex(0, 1, "field");
+        return block.isNull(position);
+    }
+
+    @Override
+    public boolean currentTupleEquals(Tuple value)
+    {
+        checkReadablePosition();
+        return getTuple().getTupleSlice().equals(value.getTupleSlice());
+    }
+
+    @Override
+    public int getRawOffset()
+    {
+        return block.getRawOffset(position);
+    }
+
+    @Override
+    public Slice getRawSlice()
+    {
+        if (rawSlice == null) {
+            rawSlice = block.toUncompressedBlock().getSlice();
+        }
+        return rawSlice;
+    }
+
+    @Override
+    public void appendTupleTo(BlockBuilder blockBuilder)
+    {
+        block.appendTo(position, blockBuilder);
+    }
+}
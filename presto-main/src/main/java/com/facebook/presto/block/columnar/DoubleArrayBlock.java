@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.columnar;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
+import io.airlift.units.DataSize;
+
+import java.util.Arrays;
+
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_DOUBLE;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.units.DataSize.Unit.BYTE;
+
+public class DoubleArrayBlock
+        extends ColumnarBlock
+{
+    private final double[] values;
+
+    public DoubleArrayBlock(int positionCount, boolean[] isNull, double[] values)
+    {
+        super(SINGLE_DOUBLE, positionCount, isNull);
+        this.values = checkNotNull(values, "values is null");
+        checkArgument(values.length >= positionCount, "values length is less than positionCount");
+    }
+
+    @Override
+    public double getDouble(int position)
+    {
+        return values[position];
+    }
+
+    @Override
+    public DataSize getDataSize()
+    {
+        return new DataSize(positionCount * SINGLE_DOUBLE.getFixedSize(), BYTE);
+    }
+
+    @Override
+    public void appendTo(int position, BlockBuilder output)
+    {
+        if (isNull[position]) {
+            output.appendNull();
+        }
+        else {
+            output.append(values[position]);
+        }
+    }
+
+    @Override
+    public int getRawOffset(int position)
+    {
+        return position * SINGLE_DOUBLE.getFixedSize();
+    }
+
+    @Override
+    protected Block createRegion(int positionOffset, int length)
+    {
+        return new DoubleArrayBlock(
+                length,
+                Arrays.copyOfRange(isNull, positionOffset, positionOffset + length),
+                Arrays.copyOfRange(values, positionOffset, positionOffset + length));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.columnar;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
+import io.airlift.units.DataSize;
+
+import java.util.Arrays;
+
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.units.DataSize.Unit.BYTE;
+
+public class LongArrayBlock
+        extends ColumnarBlock
+{
+    private final long[] values;
+
+    public LongArrayBlock(int positionCount, boolean[] isNull, long[] values)
+    {
+        super(SINGLE_LONG, positionCount, isNull);
+        this.values = checkNotNull(values, "values is null");
+        checkArgument(values.length >= positionCount, "values length is less than positionCount");
+    }
+
+    @Override
+    public long getLong(int position)
+    {
+        return values[position];
+    }
+
+    @Override
+    public DataSize getDataSize()
+    {
+        return new DataSize(positionCount * SINGLE_LONG.getFixedSize(), BYTE);
+    }
+
+    @Override
+    public void appendTo(int position, BlockBuilder output)
+    {
+        if (isNull[position]) {
+            output.appendNull();
+        }
+        else {
+            output.append(values[position]);
+        }
+    }
+
+    @Override
+    public int getRawOffset(int position)
+    {
+        return position * SINGLE_LONG.getFixedSize();
+    }
+
+    @Override
+    protected Block createRegion(int positionOffset, int length)
+    {
+        return new LongArrayBlock(
+                length,
+                Arrays.copyOfRange(isNull, positionOffset, positionOffset + length),
+                Arrays.copyOfRange(values, positionOffset, positionOffset + length));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.columnar;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
+import io.airlift.slice.Slice;
+import io.airlift.units.DataSize;
+
+import java.util.Arrays;
+
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.units.DataSize.Unit.BYTE;
+
+/**
+ * Variable width values stored back to back in a single slice.  The value at a
+ * position starts at {@code offsets[position]} and ends at {@code offsets[position + 1]}.
+ * Null positions have an empty value.
+ */
+public class SliceArrayBlock
+        extends ColumnarBlock
+{
+    // null flag and length of a single field variable width tuple
+    private static final int TUPLE_HEADER_SIZE = SIZE_OF_BYTE + SIZE_OF_INT;
+
+    private final int[] offsets;
+    private final Slice data;
+
+    public SliceArrayBlock(int positionCount, boolean[] isNull, int[] offsets, Slice data)
+    {
+        super(SINGLE_VARBINARY, positionCount, isNull);
+        this.offsets = checkNotNull(offsets, "offsets is null");
+        checkArgument(offsets.length > positionCount, "offsets length must be greater than positionCount");
+        this.data = checkNotNull(data, "data is null");
+    }
+
+    @Override
+    public Slice getSlice(int position)
+    {
+        return data.slice(offsets[position], offsets[position + 1] - offsets[position]);
+    }
+
+    @Override
+    public DataSize getDataSize()
+    {
+        return new DataSize(positionCount * TUPLE_HEADER_SIZE + offsets[positionCount] - offsets[0], BYTE);
+    }
+
+    @Override
+    public void appendTo(int position, BlockBuilder output)
+    {
+        if (isNull[position]) {
+            output.appendNull();
+        }
+        else {
+            output.append(getSlice(position));
+        }
+    }
+
+    @Override
+    public int getRawOffset(int position)
+    {
+        return position * TUPLE_HEADER_SIZE + offsets[position] - offsets[0];
+    }
+
+    @Override
+    protected Block createRegion(int positionOffset, int length)
+    {
+        int[] newOffsets = new int[length + 1];
+        for (int i = 0; i < newOffsets.length; i++) {
+            newOffsets[i] = offsets[positionOffset + i] - offsets[positionOffset];
+        }
+        Slice newData = data.slice(offsets[positionOffset], offsets[positionOffset + length] - offsets[positionOffset]);
+        return new SliceArrayBlock(
+                length,
+                Arrays.copyOfRange(isNull, positionOffset, positionOffset + length),
+                newOffsets,
+                newData);
+    }
+}
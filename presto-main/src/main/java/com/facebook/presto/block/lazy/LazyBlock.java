@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.lazy;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.serde.BlockEncoding;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import io.airlift.units.DataSize;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.units.DataSize.Unit.BYTE;
+
+/**
+ * A block whose values are loaded the first time they are needed.  The tuple info and the
+ * position count are known up front, and a cursor can be moved over the block without
+ * loading it, so a filter that never reads this block's values for a page never loads it.
+ */
+@ThreadSafe
+public class LazyBlock
+        implements Block
+{
+    private final TupleInfo tupleInfo;
+    private final int positionCount;
+
+    @GuardedBy("this")
+    private Supplier<? extends Block> loader;
+    @GuardedBy("this")
+    private Block block;
+
+    public LazyBlock(TupleInfo tupleInfo, int positionCount, Supplier<? extends Block> loader)
+    {
+        this.tupleInfo = checkNotNull(tupleInfo, "tupleInfo is null");
+        checkArgument(positionCount >= 0, "positionCount is negative");
+        this.positionCount = positionCount;
+        this.loader = checkNotNull(loader, "loader is null");
+    }
+
+    @Override
+    public TupleInfo getTupleInfo()
+    {
+        return tupleInfo;
+    }
+
+    @Override
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public synchronized boolean isLoaded()
+    {
+        return block != null;
+    }
+
+    /**
+     * Returns the loaded block, loading it if this is the first access.
+     */
+    public synchronized Block getLoadedBlock()
+    {
+        if (block == null) {
+            Block loaded = loader.get();
+            checkState(loaded.getPositionCount() == positionCount, "Loaded block has %s positions, expected %s", loaded.getPositionCount(), positionCount);
+            checkState(loaded.getTupleInfo().equals(tupleInfo), "Loaded block has tuple info %s, expected %s", loaded.getTupleInfo(), tupleInfo);
+            block = loaded;
+            // release the source data of the loader
+            loader = null;
+        }
+        return block;
+    }
+
+    /**
+     * Returns the size of the loaded block, or zero if the block has not been loaded.
+     * The operator stats record the size of every page, so this must not load the block.
+     */
+    @Override
+    public synchronized DataSize getDataSize()
+    {
+        if (block == null) {
+            return new DataSize(0, BYTE);
+        }
+        return block.getDataSize();
+    }
+
+    @Override
+    public BlockCursor cursor()
+    {
+        return new LazyBlockCursor(this);
+    }
+
+    @Override
+    public BlockEncoding getEncoding()
+    {
+        return getLoadedBlock().getEncoding();
+    }
+
+    @Override
+    public Block getRegion(int positionOffset, int length)
+    {
+        return getLoadedBlock().getRegion(positionOffset, length);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Objects.toStringHelper(this)
+                .add("positionCount", positionCount)
+                .add("tupleInfo", tupleInfo)
+                .add("loaded", isLoaded())
+                .toString();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.lazy;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.tuple.Tuple;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Preconditions;
+import io.airlift.slice.Slice;
+
+/**
+ * Tracks the position over a {@link LazyBlock} without loading it.  The block is loaded
+ * when a value is read, and from then on the cursor delegates to a cursor over the
+ * loaded block.
+ */
+public class LazyBlockCursor
+        implements BlockCursor
+{
+    private final LazyBlock block;
+    private final int positionCount;
+
+    private int position;
+    private BlockCursor delegate;
+
+    public LazyBlockCursor(LazyBlock block)
+    {
+        this.block = Preconditions.checkNotNull(block, "block is null");
+        this.positionCount = block.getPositionCount();
+
+        // start one position before the start
+        position = -1;
+    }
+
+    @Override
+    public TupleInfo getTupleInfo()
+    {
+        return block.getTupleInfo();
+    }
+
+    @Override
+    public int getRemainingPositions()
+    {
+        if (delegate != null) {
+            return delegate.getRemainingPositions();
+        }
+        return positionCount - (position + 1);
+    }
+
+    @Override
+    public boolean isValid()
+    {
+        if (delegate != null) {
+            return delegate.isValid();
+        }
+        return 0 <= position && position < positionCount;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        if (delegate != null) {
+            return delegate.isFinished();
+        }
+        return position >= positionCount;
+    }
+
+    @Override
+    public boolean advanceNextPosition()
+    {
+        if (delegate != null) {
+            return delegate.advanceNextPosition();
+        }
+
+        if (position >= positionCount - 1) {
+            position = positionCount;
+            return false;
+        }
+
+        position++;
+        return true;
+    }
+
+    @Override
+    public boolean advanceToPosition(int newPosition)
+    {
+        if (delegate != null) {
+            return delegate.advanceToPosition(newPosition);
+        }
+
+        // if new position is out of range, return false
+        if (newPosition >= positionCount) {
+            position = positionCount;
+            return false;
+        }
+
+        Preconditions.checkArgument(newPosition >= this.position, "Can't advance backwards");
+
+        position = newPosition;
+        return true;
+    }
+
+    @Override
+    public Block getRegionAndAdvance(int length)
+    {
+        return getDelegate().getRegionAndAdvance(length);
+    }
+
+    @Override
+    public int getPosition()
+    {
+        if (delegate != null) {
+            return delegate.getPosition();
+        }
+        Preconditions.checkState(isValid(), "cursor is not valid");
+        return position;
+    }
+
+    @Override
+    public Tuple getTuple()
+    {
+        return getDelegate().getTuple();
+    }
+
+    @Override
+    public boolean getBoolean(int field)
+    {
+        return getDelegate().getBoolean(field);
+    }
+
+    @Override
+    public long getLong(int field)
+    {
+        return getDelegate().getLong(field);
+    }
+
+    @Override
+    public double getDouble(int field)
+    {
+        return getDelegate().getDouble(field);
+    }
+
+    @Override
+    public Slice getSlice(int field)
+    {
+        return getDelegate().getSlice(field);
+    }
+
+    @Override
+    public boolean isNull(int field)
+    {
+        return getDelegate().isNull(field);
+    }
+
+    @Override
+    public boolean currentTupleEquals(Tuple value)
+    {
+        return getDelegate().currentTupleEquals(value);
+    }
+
+    @Override
+    public int getRawOffset()
+    {
+        return getDelegate().getRawOffset();
+    }
+
+    @Override
+    public Slice getRawSlice()
+    {
+        return getDelegate().getRawSlice();
+    }
+
+    @Override
+    public void appendTupleTo(BlockBuilder blockBuilder)
+    {
+        getDelegate().appendTupleTo(blockBuilder);
+    }
+
+    private BlockCursor getDelegate()
+    {
+        if (delegate == null) {
+            BlockCursor cursor = block.getLoadedBlock().cursor();
+            if (position >= positionCount) {
+                // move the new cursor past the end
+                cursor.advanceToPosition(positionCount);
+            }
+            else if (position >= 0) {
+                Preconditions.checkState(cursor.advanceToPosition(position), "loaded block is shorter than expected");
+            }
+            delegate = cursor;
+        }
+        return delegate;
+    }
+}
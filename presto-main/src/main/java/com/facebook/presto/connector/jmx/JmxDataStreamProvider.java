@@ -15,7 +15,6 @@ package com.facebook.presto.connector.jmx;
 
 import com.facebook.presto.operator.Operator;
 import com.facebook.presto.operator.OperatorContext;
-import com.facebook.presto.operator.RecordProjectOperator;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ColumnType;
 import com.facebook.presto.spi.InMemoryRecordSet;
@@ -40,6 +39,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import static com.facebook.presto.operator.BatchRecordProjectOperator.createRecordProjectOperator;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -67,7 +67,7 @@ public class JmxDataStreamProvider
     @Override
     public Operator createNewDataStream(OperatorContext operatorContext, Split split, List<ColumnHandle> columns)
     {
-        return new RecordProjectOperator(operatorContext, createRecordSet(split, columns));
+        return createRecordProjectOperator(operatorContext, createRecordSet(split, columns));
     }
 
     private RecordSet createRecordSet(Split split, List<ColumnHandle> columns)
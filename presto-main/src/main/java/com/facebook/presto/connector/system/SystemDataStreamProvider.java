@@ -15,7 +15,6 @@ package com.facebook.presto.connector.system;
 
 import com.facebook.presto.operator.Operator;
 import com.facebook.presto.operator.OperatorContext;
-import com.facebook.presto.operator.RecordProjectOperator;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ColumnMetadata;
 import com.facebook.presto.spi.RecordSet;
@@ -33,6 +32,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import static com.facebook.presto.metadata.MetadataUtil.columnNameGetter;
+import static com.facebook.presto.operator.BatchRecordProjectOperator.createRecordProjectOperator;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -57,7 +57,7 @@ public class SystemDataStreamProvider
     @Override
     public Operator createNewDataStream(OperatorContext operatorContext, Split split, List<ColumnHandle> columns)
     {
-        return new RecordProjectOperator(operatorContext, createRecordSet(split, columns));
+        return createRecordProjectOperator(operatorContext, createRecordSet(split, columns));
     }
 
     private RecordSet createRecordSet(Split split, List<ColumnHandle> columns)
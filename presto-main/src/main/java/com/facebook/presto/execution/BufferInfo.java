@@ -25,13 +25,15 @@ public class BufferInfo
     private final boolean finished;
     private final int bufferedPages;
     private final long pagesSent;
+    private final long bufferedBytes;
 
     @JsonCreator
     public BufferInfo(
             @JsonProperty("bufferId") String bufferId,
             @JsonProperty("finished") boolean finished,
             @JsonProperty("bufferedPages") int bufferedPages,
-            @JsonProperty("pagesSent") long pagesSent)
+            @JsonProperty("pagesSent") long pagesSent,
+            @JsonProperty("bufferedBytes") long bufferedBytes)
     {
         Preconditions.checkNotNull(bufferId, "bufferId is null");
 
@@ -39,6 +41,7 @@ public class BufferInfo
         this.finished = finished;
         this.bufferedPages = bufferedPages;
         this.pagesSent = pagesSent;
+        this.bufferedBytes = bufferedBytes;
     }
 
     @JsonProperty
@@ -65,6 +68,15 @@ public class BufferInfo
         return pagesSent;
     }
 
+    /**
+     * Bytes of the pages in this buffer that have not been acknowledged by the consumer.
+     */
+    @JsonProperty
+    public long getBufferedBytes()
+    {
+        return bufferedBytes;
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -78,13 +90,14 @@ public class BufferInfo
         return Objects.equal(this.bufferId, other.bufferId) &&
                 Objects.equal(this.finished, other.finished) &&
                 Objects.equal(this.bufferedPages, other.bufferedPages) &&
-                Objects.equal(this.pagesSent, other.pagesSent);
+                Objects.equal(this.pagesSent, other.pagesSent) &&
+                Objects.equal(this.bufferedBytes, other.bufferedBytes);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hashCode(bufferId, finished, bufferedPages, pagesSent);
+        return Objects.hashCode(bufferId, finished, bufferedPages, pagesSent, bufferedBytes);
     }
 
     @Override
@@ -95,6 +108,7 @@ public class BufferInfo
                 .add("finished", finished)
                 .add("bufferedPages", bufferedPages)
                 .add("pagesSent", pagesSent)
+                .add("bufferedBytes", bufferedBytes)
                 .toString();
     }
 
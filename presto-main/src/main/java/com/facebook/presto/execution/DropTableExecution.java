@@ -20,7 +20,6 @@ import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.metadata.NativeTableHandle;
 import com.facebook.presto.metadata.QualifiedTableName;
 import com.facebook.presto.metadata.ShardManager;
-import com.facebook.presto.metadata.TablePartition;
 import com.facebook.presto.spi.TableHandle;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.tree.DropTable;
@@ -37,7 +36,6 @@ import org.weakref.jmx.Nested;
 import javax.inject.Inject;
 
 import java.net.URI;
-import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -164,11 +162,7 @@ public class DropTableExecution
             }
         });
 
-        Set<TablePartition> partitions = shardManager.getPartitions(tableHandle.get());
-        for (TablePartition partition : partitions) {
-            shardManager.dropPartition(tableHandle.get(), partition.getPartitionName());
-        }
-
+        shardManager.dropTable(tableHandle.get());
         metadataManager.dropTable(tableHandle.get());
 
         stateMachine.finished();
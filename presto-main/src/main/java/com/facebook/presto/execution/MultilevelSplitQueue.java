@@ -0,0 +1,296 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
+import io.airlift.stats.DistributionStat;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Blocking queue of splits with one queue per priority level.  The next split is taken from the
+ * level that has used the smallest part of its share of the runner time, where each level has
+ * twice the share of the level below it.  This way new tasks, which start at the top level, are
+ * run quickly, and tasks that have sunk to the lower levels still get a guaranteed part of the
+ * runner time.  Within a level, splits are taken in their natural order.
+ * <p/>
+ * To keep the runner threads from contending on a single lock, the queue is split in stripes,
+ * each with its own lock.  A runner offers and takes splits on its own stripe, and steals from
+ * the other stripes when its own stripe is empty.  The level shares are tracked globally, so
+ * the priorities are only exact within a stripe.
+ */
+@ThreadSafe
+class MultilevelSplitQueue<T extends Comparable<T>>
+{
+    private final int levels;
+    private final long[] levelWeights;
+    private final Ticker ticker;
+
+    private final List<Stripe<T>> stripes;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+
+    // one permit for each queued split
+    private final Semaphore queuedSplits = new Semaphore(0);
+
+    private final AtomicIntegerArray levelSizes;
+    private final AtomicLongArray levelScheduledNanos;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    private final List<DistributionStat> levelWaitTime;
+
+    public MultilevelSplitQueue(int levels, int stripes, Ticker ticker)
+    {
+        checkArgument(levels > 0 && levels < 32, "levels must be between 1 and 31");
+        checkArgument(stripes > 0, "stripes must be at least 1");
+        this.levels = levels;
+        this.ticker = checkNotNull(ticker, "ticker is null");
+
+        levelWeights = new long[levels];
+        levelSizes = new AtomicIntegerArray(levels);
+        levelScheduledNanos = new AtomicLongArray(levels);
+        ImmutableList.Builder<DistributionStat> waitTimes = ImmutableList.builder();
+        for (int level = 0; level < levels; level++) {
+            levelWeights[level] = 1L << (levels - level - 1);
+            waitTimes.add(new DistributionStat());
+        }
+        levelWaitTime = waitTimes.build();
+
+        ImmutableList.Builder<Stripe<T>> stripeList = ImmutableList.builder();
+        for (int i = 0; i < stripes; i++) {
+            stripeList.add(new Stripe<T>(levels));
+        }
+        this.stripes = stripeList.build();
+    }
+
+    /**
+     * Adds the item to one of the stripes, chosen round robin.
+     */
+    public void offer(T item, int level)
+    {
+        offer(item, level, (nextStripe.getAndIncrement() & Integer.MAX_VALUE) % stripes.size());
+    }
+
+    /**
+     * Adds the item to the stripe preferred by the calling runner.
+     */
+    public void offer(T item, int level, int stripe)
+    {
+        checkNotNull(item, "item is null");
+        checkArgument(level >= 0 && level < levels, "invalid level %s", level);
+
+        if (levelSizes.getAndIncrement(level) == 0) {
+            // A level that was idle did not use its share, but that must not let it
+            // monopolize the runners now, so it starts even with the active levels
+            long minimumNormalizedNanos = getMinimumNormalizedNanos(level);
+            if (minimumNormalizedNanos != Long.MAX_VALUE) {
+                long target = minimumNormalizedNanos * levelWeights[level];
+                long current = levelScheduledNanos.get(level);
+                while (current < target && !levelScheduledNanos.compareAndSet(level, current, target)) {
+                    current = levelScheduledNanos.get(level);
+                }
+            }
+        }
+
+        stripes.get(stripe % stripes.size()).add(new Entry<>(item, level, nextSequence.getAndIncrement(), ticker.read()));
+        queuedSplits.release();
+    }
+
+    /**
+     * Takes the next item, preferring the given stripe, and waits if the queue is empty.
+     */
+    public T take(int stripe)
+            throws InterruptedException
+    {
+        queuedSplits.acquire();
+
+        // A permit guarantees an item is queued in some stripe, but another
+        // taker may get to it first, so keep scanning until one is found
+        int stripeCount = stripes.size();
+        int start = stripe % stripeCount;
+        while (true) {
+            for (int i = 0; i < stripeCount; i++) {
+                Entry<T> entry = stripes.get((start + i) % stripeCount).poll(this);
+                if (entry != null) {
+                    levelSizes.decrementAndGet(entry.getLevel());
+                    levelWaitTime.get(entry.getLevel()).add(ticker.read() - entry.getEnqueuedNanos());
+                    return entry.getItem();
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Charges runner time to a level.  This must be called with the level the split was in
+     * when it was taken from the queue.
+     */
+    public void addLevelTime(int level, long nanos)
+    {
+        checkArgument(level >= 0 && level < levels, "invalid level %s", level);
+        levelScheduledNanos.addAndGet(level, nanos);
+    }
+
+    public int size()
+    {
+        return queuedSplits.availablePermits();
+    }
+
+    public int getLevelSize(int level)
+    {
+        return levelSizes.get(level);
+    }
+
+    public long getLevelScheduledNanos(int level)
+    {
+        return levelScheduledNanos.get(level);
+    }
+
+    public DistributionStat getLevelWaitTime(int level)
+    {
+        return levelWaitTime.get(level);
+    }
+
+    private long getMinimumNormalizedNanos(int excludedLevel)
+    {
+        long minimum = Long.MAX_VALUE;
+        for (int level = 0; level < levels; level++) {
+            if (level != excludedLevel && levelSizes.get(level) > 0) {
+                minimum = Math.min(minimum, levelScheduledNanos.get(level) / levelWeights[level]);
+            }
+        }
+        return minimum;
+    }
+
+    private long getNormalizedNanos(int level)
+    {
+        return levelScheduledNanos.get(level) / levelWeights[level];
+    }
+
+    private static class Stripe<T extends Comparable<T>>
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        @GuardedBy("lock")
+        private final List<PriorityQueue<Entry<T>>> levelQueues;
+        private volatile int size;
+
+        private Stripe(int levels)
+        {
+            ImmutableList.Builder<PriorityQueue<Entry<T>>> queues = ImmutableList.builder();
+            for (int level = 0; level < levels; level++) {
+                queues.add(new PriorityQueue<Entry<T>>());
+            }
+            levelQueues = queues.build();
+        }
+
+        public void add(Entry<T> entry)
+        {
+            lock.lock();
+            try {
+                levelQueues.get(entry.getLevel()).add(entry);
+                size++;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        public Entry<T> poll(MultilevelSplitQueue<T> queue)
+        {
+            // skip empty stripes without taking the lock
+            if (size == 0) {
+                return null;
+            }
+
+            lock.lock();
+            try {
+                int selectedLevel = -1;
+                long selectedNormalizedNanos = Long.MAX_VALUE;
+                for (int level = 0; level < levelQueues.size(); level++) {
+                    if (levelQueues.get(level).isEmpty()) {
+                        continue;
+                    }
+                    long normalizedNanos = queue.getNormalizedNanos(level);
+                    if (normalizedNanos < selectedNormalizedNanos) {
+                        selectedLevel = level;
+                        selectedNormalizedNanos = normalizedNanos;
+                    }
+                }
+                if (selectedLevel < 0) {
+                    return null;
+                }
+                size--;
+                return levelQueues.get(selectedLevel).poll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class Entry<T extends Comparable<T>>
+            implements Comparable<Entry<T>>
+    {
+        private final T item;
+        private final int level;
+        private final long sequence;
+        private final long enqueuedNanos;
+
+        private Entry(T item, int level, long sequence, long enqueuedNanos)
+        {
+            this.item = item;
+            this.level = level;
+            this.sequence = sequence;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        public T getItem()
+        {
+            return item;
+        }
+
+        public int getLevel()
+        {
+            return level;
+        }
+
+        public long getEnqueuedNanos()
+        {
+            return enqueuedNanos;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other)
+        {
+            return ComparisonChain.start()
+                    .compare(item, other.item)
+                    .compare(sequence, other.sequence)
+                    .result();
+        }
+    }
+}
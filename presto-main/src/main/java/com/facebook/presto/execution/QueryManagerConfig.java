@@ -14,6 +14,7 @@
 package com.facebook.presto.execution;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.Duration;
 import io.airlift.units.MinDuration;
 
@@ -34,6 +35,9 @@ public class QueryManagerConfig
     private int remoteTaskMaxConsecutiveErrorCount = 10;
     private Duration remoteTaskMinErrorDuration = new Duration(2, TimeUnit.MINUTES);
 
+    private boolean distributedAggregationsEnabled;
+    private boolean distributedJoinsEnabled;
+
     @Min(1)
     public int getMaxPendingSplitsPerNode()
     {
@@ -125,4 +129,30 @@ public class QueryManagerConfig
         this.remoteTaskMinErrorDuration = remoteTaskMinErrorDuration;
         return this;
     }
+
+    public boolean isDistributedAggregationsEnabled()
+    {
+        return distributedAggregationsEnabled;
+    }
+
+    @Config("query.distributed-aggregations-enabled")
+    @ConfigDescription("Experimental: hash partition grouped aggregations so the final aggregation runs on all nodes")
+    public QueryManagerConfig setDistributedAggregationsEnabled(boolean distributedAggregationsEnabled)
+    {
+        this.distributedAggregationsEnabled = distributedAggregationsEnabled;
+        return this;
+    }
+
+    public boolean isDistributedJoinsEnabled()
+    {
+        return distributedJoinsEnabled;
+    }
+
+    @Config("query.distributed-joins-enabled")
+    @ConfigDescription("Experimental: hash partition both sides of joins with a distributed build side, instead of broadcasting the build side (can be overridden with the distributed_join session property)")
+    public QueryManagerConfig setDistributedJoinsEnabled(boolean distributedJoinsEnabled)
+    {
+        this.distributedJoinsEnabled = distributedJoinsEnabled;
+        return this;
+    }
 }
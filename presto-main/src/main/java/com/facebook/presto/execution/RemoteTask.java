@@ -20,6 +20,7 @@ import com.google.common.collect.Multimap;
 import io.airlift.units.Duration;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Set;
 
 public interface RemoteTask
@@ -30,6 +31,8 @@ public interface RemoteTask
 
     void addSplit(Split split);
 
+    void addSplits(List<Split> splits);
+
     void noMoreSplits();
 
     void addExchangeLocations(Multimap<PlanNodeId, URI> exchangeLocations, boolean noMore);
@@ -13,14 +13,14 @@
  */
 package com.facebook.presto.execution;
 
+import com.facebook.presto.operator.HashPagePartitioner;
 import com.facebook.presto.operator.Page;
+import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
@@ -32,19 +32,24 @@ import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.facebook.presto.execution.BufferResult.emptyResults;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+/**
+ * Output buffer of a task.  Every queue (consumer) has its own list of pages, and pages shared
+ * by several queues are reference counted, so the memory of a page is released as soon as the
+ * last queue acknowledges it, and the bytes buffered for each consumer can be tracked.
+ */
 @ThreadSafe
 public class SharedBuffer
 {
@@ -66,21 +71,33 @@ public class SharedBuffer
 
     private final long maxBufferedBytes;
 
-    @GuardedBy("this")
+    // hash partitioned output, null if every queue receives all pages
+    private final List<TupleInfo> partitionTupleInfos;
+    private final List<Integer> partitionChannels;
+    @GuardedBy("lock")
+    private HashPagePartitioner partitioner;
+    @GuardedBy("lock")
+    private List<NamedQueue> partitionedQueues;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+
+    // bytes of all pages held by the master queue or by a named queue
+    @GuardedBy("lock")
     private long bufferedBytes;
 
-    @GuardedBy("this")
-    private final LinkedList<Page> masterQueue = new LinkedList<>();
-    @GuardedBy("this")
+    // while queues can be added, every page is kept here so a new queue can start with the first page
+    @GuardedBy("lock")
+    private final LinkedList<BufferedPage> masterQueue = new LinkedList<>();
+    @GuardedBy("lock")
     private final LinkedList<QueuedPage> queuedPages = new LinkedList<>();
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private long masterSequenceId;
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private Map<String, NamedQueue> namedQueues = new HashMap<>();
-    @GuardedBy("this")
-    private final SortedSet<NamedQueue> openQueuesBySequenceId = new TreeSet<>();
-    @GuardedBy("this")
-    private QueueState state = QueueState.OPEN;
+
+    // only changed with the lock held, but read by isFinished without the lock
+    private volatile QueueState state = QueueState.OPEN;
 
     private final AtomicLong pagesAdded = new AtomicLong();
 
@@ -93,182 +110,352 @@ public class SharedBuffer
     {
         Preconditions.checkArgument(maxBufferSize.toBytes() > 0, "maxBufferSize must be at least 1");
         this.maxBufferedBytes = maxBufferSize.toBytes();
+        this.partitionTupleInfos = null;
+        this.partitionChannels = null;
     }
 
-    public synchronized boolean isFinished()
+    /**
+     * Creates a hash partitioned buffer. Each row is delivered to exactly one queue based on the hash of
+     * the partition channels.  Since the partition of a row depends on the number of queues, pages are
+     * held back (and the writer is blocked) until no more queues will be added.
+     */
+    public SharedBuffer(DataSize maxBufferSize, List<TupleInfo> tupleInfos, List<Integer> partitionChannels)
+    {
+        Preconditions.checkArgument(maxBufferSize.toBytes() > 0, "maxBufferSize must be at least 1");
+        Preconditions.checkNotNull(tupleInfos, "tupleInfos is null");
+        Preconditions.checkNotNull(partitionChannels, "partitionChannels is null");
+        Preconditions.checkArgument(!partitionChannels.isEmpty(), "partitionChannels is empty");
+        this.maxBufferedBytes = maxBufferSize.toBytes();
+        this.partitionTupleInfos = ImmutableList.copyOf(tupleInfos);
+        this.partitionChannels = ImmutableList.copyOf(partitionChannels);
+    }
+
+    public boolean isHashPartitioned()
+    {
+        return partitionChannels != null;
+    }
+
+    public boolean isFinished()
     {
         return state == QueueState.FINISHED;
     }
 
-    public synchronized SharedBufferInfo getInfo()
+    public SharedBufferInfo getInfo()
     {
-        ImmutableList.Builder<BufferInfo> infos = ImmutableList.builder();
-        for (NamedQueue namedQueue : namedQueues.values()) {
-            infos.add(new BufferInfo(namedQueue.getQueueId(), namedQueue.isFinished(), namedQueue.size(), namedQueue.pagesRemoved()));
+        lock.lock();
+        try {
+            ImmutableList.Builder<BufferInfo> infos = ImmutableList.builder();
+            for (NamedQueue namedQueue : namedQueues.values()) {
+                infos.add(new BufferInfo(namedQueue.getQueueId(), namedQueue.isFinished(), namedQueue.size(), namedQueue.pagesRemoved(), namedQueue.getBufferedBytes()));
+            }
+            return new SharedBufferInfo(state, masterSequenceId, pagesAdded.get(), bufferedBytes, maxBufferedBytes, infos.build());
+        }
+        finally {
+            lock.unlock();
         }
-        return new SharedBufferInfo(state, masterSequenceId, pagesAdded.get(), infos.build());
     }
 
-    public synchronized void addQueue(String queueId)
+    public void addQueue(String queueId)
     {
         Preconditions.checkNotNull(queueId, "queueId is null");
-        // ignore buffers added after query finishes, which can happen when a query is canceled
-        // also ignore duplicates, which is normal
-        if (state == QueueState.FINISHED || namedQueues.containsKey(queueId)) {
-            return;
+
+        lock.lock();
+        try {
+            // ignore buffers added after query finishes, which can happen when a query is canceled
+            // also ignore duplicates, which is normal
+            if (state == QueueState.FINISHED || namedQueues.containsKey(queueId)) {
+                return;
+            }
+            Preconditions.checkState(state == QueueState.OPEN, "%s is not OPEN", SharedBuffer.class.getSimpleName());
+
+            // the new queue starts with all pages added so far
+            NamedQueue namedQueue = new NamedQueue(queueId);
+            for (BufferedPage page : masterQueue) {
+                namedQueue.addPage(page);
+            }
+            namedQueues.put(queueId, namedQueue);
+        }
+        finally {
+            lock.unlock();
         }
-        Preconditions.checkState(state == QueueState.OPEN, "%s is not OPEN", SharedBuffer.class.getSimpleName());
-        NamedQueue namedQueue = new NamedQueue(queueId);
-        namedQueues.put(queueId, namedQueue);
-        openQueuesBySequenceId.add(namedQueue);
     }
 
-    public synchronized void noMoreQueues()
+    public void noMoreQueues()
     {
-        namedQueues = ImmutableMap.copyOf(namedQueues);
-        if (state != QueueState.OPEN) {
-            return;
-        }
+        lock.lock();
+        try {
+            namedQueues = ImmutableMap.copyOf(namedQueues);
+            if (state != QueueState.OPEN) {
+                return;
+            }
 
-        state = QueueState.NO_MORE_QUEUES;
+            if (isHashPartitioned()) {
+                // assign partitions in queue id order, so the assignment only depends on the set of queues
+                List<String> queueIds = new ArrayList<>(namedQueues.keySet());
+                Collections.sort(queueIds);
 
-        updateState();
-    }
+                ImmutableList.Builder<NamedQueue> queues = ImmutableList.builder();
+                for (String queueId : queueIds) {
+                    queues.add(namedQueues.get(queueId));
+                }
+                partitionedQueues = queues.build();
 
-    public synchronized ListenableFuture<?> enqueue(Page page)
-    {
-        Preconditions.checkNotNull(page, "page is null");
+                // a buffer without queues drops all of its output
+                partitioner = new HashPagePartitioner(partitionTupleInfos, partitionChannels, Math.max(1, queueIds.size()));
+            }
 
-        // is the output done
-        if (closed.get()) {
-            return Futures.immediateFuture(true);
-        }
+            // pages are now only held by the queues that have not consumed them
+            for (BufferedPage page : masterQueue) {
+                releasePage(page);
+            }
+            masterQueue.clear();
 
-        // is there room in the buffer
-        if (bufferedBytes < maxBufferedBytes) {
-            addInternal(page);
-            return Futures.immediateFuture(true);
-        }
+            // set the state last, since producers check it without the lock
+            state = QueueState.NO_MORE_QUEUES;
 
-        QueuedPage queuedPage = new QueuedPage(page);
-        queuedPages.addLast(queuedPage);
-        return queuedPage.getFuture();
+            updateState();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized void addInternal(Page page)
+    public ListenableFuture<?> enqueue(Page page)
     {
-        // add page
-        masterQueue.add(page);
-        pagesAdded.incrementAndGet();
-        bufferedBytes += page.getDataSize().toBytes();
+        Preconditions.checkNotNull(page, "page is null");
+
+        lock.lock();
+        try {
+            // is the output done
+            if (closed.get()) {
+                return Futures.immediateFuture(true);
+            }
+
+            // is there room in the buffer (hash partitioned pages can not be routed until all queues are known)
+            if (bufferedBytes < maxBufferedBytes && (!isHashPartitioned() || state != QueueState.OPEN)) {
+                addInternal(newBufferedPage(page));
+
+                // notify consumers a page has arrived
+                stateChanged.signalAll();
+                return Futures.immediateFuture(true);
+            }
 
-        // notify consumers an page has arrived
-        this.notifyAll();
+            QueuedPage queuedPage = new QueuedPage(page);
+            queuedPages.addLast(queuedPage);
+            return queuedPage.getFuture();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     @VisibleForTesting
-    public synchronized void acknowledge(String outputId, long sequenceId)
+    public void acknowledge(String outputId, long sequenceId)
     {
         Preconditions.checkNotNull(outputId, "outputId is null");
 
-        NamedQueue namedQueue = namedQueues.get(outputId);
-        if (namedQueue == null) {
-            throw new NoSuchBufferException(outputId, namedQueues.keySet());
-        }
+        lock.lock();
+        try {
+            NamedQueue namedQueue = namedQueues.get(outputId);
+            if (namedQueue == null) {
+                throw new NoSuchBufferException(outputId, namedQueues.keySet());
+            }
 
-        if (state == QueueState.FINISHED) {
-            return;
-        }
+            if (state == QueueState.FINISHED) {
+                return;
+            }
 
-        // remove queue from set before calling getPages because getPages changes
-        // the sequence number of the queue which is used for identity comparison in the
-        // sorted set
-        openQueuesBySequenceId.remove(namedQueue);
+            // acknowledge the pages
+            namedQueue.acknowledge(sequenceId);
 
-        // acknowledge the pages
-        namedQueue.acknowledge(sequenceId);
+            // the queue is closed when it is acknowledged after the buffer is finished
+            if (closed.get()) {
+                namedQueue.setFinished();
+            }
 
-        // only add back the queue if it is still open
-        if (!closed.get()) {
-            openQueuesBySequenceId.add(namedQueue);
+            updateState();
         }
-        else {
-            namedQueue.setFinished();
+        finally {
+            lock.unlock();
         }
-
-        updateState();
     }
 
-    public synchronized BufferResult get(String outputId, long startingSequenceId, DataSize maxSize, Duration maxWait)
+    /**
+     * Gets the pages of a queue starting at the specified sequence id, which acknowledges all
+     * earlier pages.  The size of the result is limited by the bytes the consumer is willing
+     * to accept, but at least one page is returned if the queue is not empty.
+     */
+    public BufferResult get(String outputId, long startingSequenceId, DataSize maxSize, Duration maxWait)
             throws InterruptedException
     {
         Preconditions.checkNotNull(outputId, "outputId is null");
         Preconditions.checkArgument(maxSize.toBytes() > 0, "maxSize must be at least 1 byte");
         Preconditions.checkNotNull(maxWait, "maxWait is null");
 
-        NamedQueue namedQueue = namedQueues.get(outputId);
-        if (namedQueue == null) {
-            throw new NoSuchBufferException(outputId, namedQueues.keySet());
-        }
+        lock.lock();
+        try {
+            NamedQueue namedQueue = namedQueues.get(outputId);
+            if (namedQueue == null) {
+                throw new NoSuchBufferException(outputId, namedQueues.keySet());
+            }
 
-        if (state == QueueState.FINISHED) {
-            return emptyResults(namedQueue.getSequenceId(), true);
-        }
+            if (state == QueueState.FINISHED) {
+                return emptyResults(namedQueue.getSequenceId(), true);
+            }
 
-        // wait for pages to arrive
-        if (namedQueue.isEmpty()) {
-            long remainingNanos = maxWait.roundTo(NANOSECONDS);
-            long end = System.nanoTime() + remainingNanos;
-            while (remainingNanos > 0 && namedQueue.isEmpty() && !namedQueue.isFinished()) {
-                // wait for timeout or notification
-                NANOSECONDS.timedWait(this, remainingNanos);
-                remainingNanos = end - System.nanoTime();
+            // acknowledge the pages the reader already has, so it waits for pages it has not seen,
+            // and writers blocked on a full buffer can use the space of those pages
+            namedQueue.acknowledge(startingSequenceId);
+            refillBuffer();
+
+            // wait for pages to arrive
+            if (namedQueue.isEmpty()) {
+                long remainingNanos = maxWait.roundTo(NANOSECONDS);
+                while (remainingNanos > 0 && namedQueue.isEmpty() && !namedQueue.isFinished()) {
+                    // wait for timeout or notification
+                    remainingNanos = stateChanged.awaitNanos(remainingNanos);
+                }
             }
-        }
 
-        // remove queue from set before calling getPages because getPages changes
-        // the sequence number of the queue which is used for identity comparison in the
-        // sorted set
-        openQueuesBySequenceId.remove(namedQueue);
+            // get the pages
+            BufferResult results = namedQueue.getPages(startingSequenceId, maxSize);
 
-        // get the pages
-        BufferResult results = namedQueue.getPages(startingSequenceId, maxSize);
+            updateState();
 
-        // only add back the queue if it is still open
-        if (!closed.get() || !results.isBufferClosed()) {
-            openQueuesBySequenceId.add(namedQueue);
+            return results;
         }
-        else {
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void abort(String outputId)
+    {
+        Preconditions.checkNotNull(outputId, "outputId is null");
+
+        lock.lock();
+        try {
+            NamedQueue namedQueue = namedQueues.get(outputId);
+            if (namedQueue == null || namedQueue.isFinished()) {
+                return;
+            }
             namedQueue.setFinished();
+
+            updateState();
+        }
+        finally {
+            lock.unlock();
         }
+    }
+
+    /**
+     * Marks the output as complete.  After this method is called no more data can be added but there may still be buffered output pages.
+     */
+    public void finish()
+    {
+        closed.set(true);
 
-        updateState();
+        // the output will only transition to finished if it isn't already marked as failed or cancel
+        lock.lock();
+        try {
+            updateState();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
 
-        return results;
+    /**
+     * Destroys the queue, discarding all pages.
+     */
+    public void destroy()
+    {
+        lock.lock();
+        try {
+            destroyInternal();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void abort(String outputId)
+    private void addInternal(BufferedPage page)
     {
-        Preconditions.checkNotNull(outputId, "outputId is null");
-        NamedQueue namedQueue = namedQueues.get(outputId);
-        if (namedQueue == null || namedQueue.isFinished()) {
+        // pages added after destroy are dropped
+        if (state == QueueState.FINISHED) {
+            releasePage(page);
+            return;
+        }
+
+        if (isHashPartitioned()) {
+            addPartitioned(page);
             return;
         }
-        namedQueue.setFinished();
-        openQueuesBySequenceId.remove(namedQueue);
 
-        updateState();
+        pagesAdded.incrementAndGet();
+        if (state == QueueState.OPEN) {
+            masterQueue.add(page);
+            page.retain();
+        }
+        for (NamedQueue namedQueue : namedQueues.values()) {
+            // pages for finished (aborted) queues are dropped
+            if (!namedQueue.isFinished()) {
+                namedQueue.addPage(page);
+            }
+        }
+
+        // the page is now only held by the queues
+        releasePage(page);
     }
 
-    private synchronized void updateState()
+    private void addPartitioned(BufferedPage page)
     {
+        Preconditions.checkState(partitioner != null, "Partitions have not been assigned");
+
+        pagesAdded.incrementAndGet();
+        if (!partitionedQueues.isEmpty()) {
+            List<List<Page>> partitions = partitioner.partition(page.getPage());
+            for (int partition = 0; partition < partitions.size(); partition++) {
+                NamedQueue namedQueue = partitionedQueues.get(partition);
+                // pages for finished (aborted) queues are dropped
+                if (namedQueue.isFinished()) {
+                    continue;
+                }
+                for (Page partitionPage : partitions.get(partition)) {
+                    BufferedPage bufferedPartitionPage = newBufferedPage(partitionPage);
+                    namedQueue.addPage(bufferedPartitionPage);
+                    releasePage(bufferedPartitionPage);
+                }
+            }
+        }
+
+        // the partitions replace the original page
+        releasePage(page);
+    }
+
+    private BufferedPage newBufferedPage(Page page)
+    {
+        BufferedPage bufferedPage = new BufferedPage(page);
+        bufferedBytes += bufferedPage.getBytes();
+        return bufferedPage;
+    }
+
+    private void releasePage(BufferedPage page)
+    {
+        if (page.release()) {
+            bufferedBytes -= page.getBytes();
+        }
+    }
+
+    private void updateState()
+    {
+        Preconditions.checkState(lock.isHeldByCurrentThread(), "Thread must hold the lock of the %s", SharedBuffer.class.getSimpleName());
+
         if (closed.get()) {
-            // remove all empty queues
-            for (Iterator<NamedQueue> iterator = openQueuesBySequenceId.iterator(); iterator.hasNext(); ) {
-                NamedQueue namedQueue = iterator.next();
-                if (namedQueue.isEmpty()) {
+            // finish all empty queues
+            for (NamedQueue namedQueue : namedQueues.values()) {
+                if (!namedQueue.isFinished() && namedQueue.isEmpty()) {
                     namedQueue.setFinished();
-                    iterator.remove();
                 }
             }
             // discard queued pages (not officially in the buffer) and waiters
@@ -278,66 +465,57 @@ public class SharedBuffer
             queuedPages.clear();
         }
 
-        if (state == QueueState.NO_MORE_QUEUES && !openQueuesBySequenceId.isEmpty()) {
-            // advance master sequence id
-            long oldMasterSequenceId = masterSequenceId;
-            masterSequenceId = openQueuesBySequenceId.iterator().next().getSequenceId();
+        refillBuffer();
 
-            // drop consumed pages
-            int pagesToRemove = Ints.checkedCast(masterSequenceId - oldMasterSequenceId);
-            Preconditions.checkState(pagesToRemove >= 0,
-                    "Master sequence id moved backwards: oldMasterSequenceId=%s, newMasterSequenceId=%s",
-                    oldMasterSequenceId,
-                    masterSequenceId);
-
-            for (int i = 0; i < pagesToRemove; i++) {
-                Page page = masterQueue.removeFirst();
-                bufferedBytes -= page.getDataSize().toBytes();
+        if (state == QueueState.NO_MORE_QUEUES) {
+            // advance master sequence id to the oldest page still held by an open queue
+            boolean hasOpenQueues = false;
+            long minSequenceId = Long.MAX_VALUE;
+            for (NamedQueue namedQueue : namedQueues.values()) {
+                if (!namedQueue.isFinished()) {
+                    hasOpenQueues = true;
+                    minSequenceId = Math.min(minSequenceId, namedQueue.getSequenceId());
+                }
             }
 
-            // refill buffer from queued pages
-            while (!queuedPages.isEmpty() && bufferedBytes < maxBufferedBytes) {
-                QueuedPage queuedPage = queuedPages.removeFirst();
-                addInternal(queuedPage.getPage());
-                queuedPage.getFuture().set(null);
+            if (hasOpenQueues) {
+                masterSequenceId = Math.max(masterSequenceId, minSequenceId);
+            }
+            else if (closed.get()) {
+                destroyInternal();
             }
         }
 
-        if (state == QueueState.NO_MORE_QUEUES && closed.get() && openQueuesBySequenceId.isEmpty()) {
-            destroy();
-        }
-
-        this.notifyAll();
+        stateChanged.signalAll();
     }
 
-    /**
-     * Marks the output as complete.  After this method is called no more data can be added but there may still be buffered output pages.
-     */
-    public synchronized void finish()
+    private void refillBuffer()
     {
-        closed.set(true);
-
-        // the output will only transition to finished if it isn't already marked as failed or cancel
-        updateState();
+        // refill buffer from queued pages (hash partitioned pages can not be routed until all queues are known)
+        if (!isHashPartitioned() || state != QueueState.OPEN) {
+            while (!queuedPages.isEmpty() && bufferedBytes < maxBufferedBytes) {
+                QueuedPage queuedPage = queuedPages.removeFirst();
+                addInternal(newBufferedPage(queuedPage.getPage()));
+                queuedPage.getFuture().set(null);
+            }
+        }
     }
 
-    /**
-     * Destroys the queue, discarding all pages.
-     */
-    public synchronized void destroy()
+    private void destroyInternal()
     {
         closed.set(true);
         state = QueueState.FINISHED;
 
         // drop all of the queues
-        for (NamedQueue namedQueue : openQueuesBySequenceId) {
+        for (NamedQueue namedQueue : namedQueues.values()) {
             namedQueue.setFinished();
         }
-        openQueuesBySequenceId.clear();
 
         // clear the buffer
+        for (BufferedPage page : masterQueue) {
+            releasePage(page);
+        }
         masterQueue.clear();
-        bufferedBytes = 0;
 
         // free queued page waiters
         for (QueuedPage queuedPage : queuedPages) {
@@ -346,15 +524,18 @@ public class SharedBuffer
         queuedPages.clear();
 
         // notify readers that the buffer has been destroyed
-        this.notifyAll();
+        stateChanged.signalAll();
     }
 
     @NotThreadSafe
     private class NamedQueue
-            implements Comparable<NamedQueue>
     {
         private final String queueId;
 
+        // pages of this queue starting at sequenceId
+        private final LinkedList<BufferedPage> pages = new LinkedList<>();
+        private long bufferedBytes;
+
         private long sequenceId;
         private boolean finished;
 
@@ -370,16 +551,37 @@ public class SharedBuffer
 
         public boolean isFinished()
         {
-            Preconditions.checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
+            checkHoldsLock();
 
             return finished;
         }
 
         public void setFinished()
         {
-            Preconditions.checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
+            checkHoldsLock();
 
             finished = true;
+
+            // release the pages of this queue
+            while (!pages.isEmpty()) {
+                removePage();
+            }
+        }
+
+        public void addPage(BufferedPage page)
+        {
+            checkHoldsLock();
+
+            page.retain();
+            pages.add(page);
+            bufferedBytes += page.getBytes();
+        }
+
+        private void removePage()
+        {
+            BufferedPage page = pages.removeFirst();
+            bufferedBytes -= page.getBytes();
+            releasePage(page);
         }
 
         public boolean isEmpty()
@@ -389,7 +591,7 @@ public class SharedBuffer
 
         public long getSequenceId()
         {
-            Preconditions.checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
+            checkHoldsLock();
 
             return sequenceId;
         }
@@ -399,32 +601,42 @@ public class SharedBuffer
             return getSequenceId();
         }
 
+        public long getBufferedBytes()
+        {
+            checkHoldsLock();
+
+            return bufferedBytes;
+        }
+
         public int size()
         {
-            Preconditions.checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
+            checkHoldsLock();
 
             if (finished) {
                 return 0;
             }
-
-            int listOffset = Ints.checkedCast(sequenceId - masterSequenceId);
-            if (listOffset >= masterQueue.size()) {
-                return 0;
-            }
-            // todo include queued pages?
-            return masterQueue.size() - listOffset;
+            return pages.size();
         }
 
         public void acknowledge(long sequenceId)
         {
-            if (this.sequenceId < sequenceId) {
-                this.sequenceId = sequenceId;
+            checkHoldsLock();
+
+            if (this.sequenceId >= sequenceId) {
+                return;
+            }
+
+            // drop the acknowledged pages
+            long pagesToRemove = Math.min(sequenceId - this.sequenceId, pages.size());
+            for (int i = 0; i < pagesToRemove; i++) {
+                removePage();
             }
+            this.sequenceId = sequenceId;
         }
 
         public BufferResult getPages(long startingSequenceId, DataSize maxSize)
         {
-            Preconditions.checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
+            checkHoldsLock();
             Preconditions.checkArgument(maxSize.toBytes() > 0, "maxSize must be at least 1 byte");
 
             acknowledge(startingSequenceId);
@@ -433,37 +645,29 @@ public class SharedBuffer
                 return emptyResults(sequenceId, true);
             }
 
-            int listOffset = Ints.checkedCast(sequenceId - masterSequenceId);
-            if (listOffset >= masterQueue.size()) {
+            if (pages.isEmpty()) {
                 return emptyResults(sequenceId, false);
             }
 
             long maxBytes = maxSize.toBytes();
 
-            List<Page> pages = new ArrayList<>();
+            List<Page> result = new ArrayList<>();
             long bytes = 0;
-            while (listOffset < masterQueue.size()) {
-                Page page = masterQueue.get(listOffset++);
-                bytes += page.getDataSize().toBytes();
+            for (BufferedPage page : pages) {
+                bytes += page.getBytes();
                 // break (and don't add) if this page would exceed the limit
-                if (!pages.isEmpty() && bytes > maxBytes) {
+                if (!result.isEmpty() && bytes > maxBytes) {
                     break;
                 }
-                pages.add(page);
+                result.add(page.getPage());
             }
 
-            return new BufferResult(startingSequenceId, false, ImmutableList.copyOf(pages));
+            return new BufferResult(startingSequenceId, false, result);
         }
 
-        @Override
-        public int compareTo(NamedQueue other)
+        private void checkHoldsLock()
         {
-            Preconditions.checkState(Thread.holdsLock(SharedBuffer.this), "Thread must hold a lock on the %s", SharedBuffer.class.getSimpleName());
-
-            return ComparisonChain.start()
-                    .compare(this.sequenceId, other.sequenceId)
-                    .compare(this.queueId, other.queueId)
-                    .result();
+            Preconditions.checkState(lock.isHeldByCurrentThread(), "Thread must hold the lock of the %s", SharedBuffer.class.getSimpleName());
         }
 
         @Override
@@ -472,11 +676,56 @@ public class SharedBuffer
             return Objects.toStringHelper(this)
                     .add("queueId", queueId)
                     .add("sequenceId", sequenceId)
+                    .add("bufferedBytes", bufferedBytes)
                     .add("finished", finished)
                     .toString();
         }
     }
 
+    /**
+     * A page in the buffer, counted in the buffered bytes until the last reference is released.
+     * The creator holds the first reference.
+     */
+    @NotThreadSafe
+    private static class BufferedPage
+    {
+        private final Page page;
+        private final long bytes;
+        private int references = 1;
+
+        private BufferedPage(Page page)
+        {
+            this.page = page;
+            this.bytes = page.getDataSize().toBytes();
+        }
+
+        private Page getPage()
+        {
+            return page;
+        }
+
+        private long getBytes()
+        {
+            return bytes;
+        }
+
+        private void retain()
+        {
+            Preconditions.checkState(references > 0, "page has already been released");
+            references++;
+        }
+
+        /**
+         * Returns true if this was the last reference.
+         */
+        private boolean release()
+        {
+            Preconditions.checkState(references > 0, "page has already been released");
+            references--;
+            return references == 0;
+        }
+    }
+
     private static class QueuedPage
     {
         private final Page page;
@@ -26,6 +26,8 @@ public class SharedBufferInfo
     private final QueueState state;
     private final long masterSequenceId;
     private final long pagesAdded;
+    private final long bufferedBytes;
+    private final long maxBufferedBytes;
     private final List<BufferInfo> buffers;
 
     @JsonCreator
@@ -33,11 +35,15 @@ public class SharedBufferInfo
             @JsonProperty("state") QueueState state,
             @JsonProperty("masterSequenceId") long masterSequenceId,
             @JsonProperty("pagesAdded") long pagesAdded,
+            @JsonProperty("bufferedBytes") long bufferedBytes,
+            @JsonProperty("maxBufferedBytes") long maxBufferedBytes,
             @JsonProperty("buffers") List<BufferInfo> buffers)
     {
         this.state = state;
         this.masterSequenceId = masterSequenceId;
         this.pagesAdded = pagesAdded;
+        this.bufferedBytes = bufferedBytes;
+        this.maxBufferedBytes = maxBufferedBytes;
         this.buffers = ImmutableList.copyOf(buffers);
     }
 
@@ -59,6 +65,29 @@ public class SharedBufferInfo
         return pagesAdded;
     }
 
+    /**
+     * Bytes held by the buffer.  A page sent to several queues is only counted once.
+     */
+    @JsonProperty
+    public long getBufferedBytes()
+    {
+        return bufferedBytes;
+    }
+
+    @JsonProperty
+    public long getMaxBufferedBytes()
+    {
+        return maxBufferedBytes;
+    }
+
+    public double getUtilization()
+    {
+        if (maxBufferedBytes == 0) {
+            return 0;
+        }
+        return bufferedBytes / (double) maxBufferedBytes;
+    }
+
     @JsonProperty
     public List<BufferInfo> getBuffers()
     {
@@ -68,7 +97,7 @@ public class SharedBufferInfo
     @Override
     public int hashCode()
     {
-        return Objects.hashCode(state, pagesAdded, buffers, masterSequenceId);
+        return Objects.hashCode(state, pagesAdded, bufferedBytes, maxBufferedBytes, buffers, masterSequenceId);
     }
 
     @Override
@@ -83,6 +112,8 @@ public class SharedBufferInfo
         final SharedBufferInfo other = (SharedBufferInfo) obj;
         return Objects.equal(this.state, other.state) &&
                 Objects.equal(this.pagesAdded, other.pagesAdded) &&
+                Objects.equal(this.bufferedBytes, other.bufferedBytes) &&
+                Objects.equal(this.maxBufferedBytes, other.maxBufferedBytes) &&
                 Objects.equal(this.buffers, other.buffers) &&
                 Objects.equal(this.masterSequenceId, other.masterSequenceId);
     }
@@ -93,6 +124,8 @@ public class SharedBufferInfo
         return Objects.toStringHelper(this)
                 .add("state", state)
                 .add("pagesAdded", pagesAdded)
+                .add("bufferedBytes", bufferedBytes)
+                .add("maxBufferedBytes", maxBufferedBytes)
                 .add("buffers", buffers)
                 .add("masterSequenceId", masterSequenceId)
                 .toString();
@@ -51,6 +51,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static com.facebook.presto.SessionProperties.isDistributedJoinEnabled;
 import static com.facebook.presto.util.Threads.threadsNamed;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -71,6 +72,8 @@ public class SqlQueryExecution
     private final RemoteTaskFactory remoteTaskFactory;
     private final LocationFactory locationFactory;
     private final int maxPendingSplitsPerNode;
+    private final boolean distributedAggregationsEnabled;
+    private final boolean distributedJoinsEnabled;
     private final ExecutorService queryExecutor;
     private final ShardManager shardManager;
     private final StorageManager storageManager;
@@ -92,6 +95,8 @@ public class SqlQueryExecution
             RemoteTaskFactory remoteTaskFactory,
             LocationFactory locationFactory,
             int maxPendingSplitsPerNode,
+            boolean distributedAggregationsEnabled,
+            boolean distributedJoinsEnabled,
             ExecutorService queryExecutor,
             ShardManager shardManager,
             StorageManager storageManager,
@@ -112,6 +117,8 @@ public class SqlQueryExecution
 
             checkArgument(maxPendingSplitsPerNode > 0, "maxPendingSplitsPerNode must be greater than 0");
             this.maxPendingSplitsPerNode = maxPendingSplitsPerNode;
+            this.distributedAggregationsEnabled = distributedAggregationsEnabled;
+            this.distributedJoinsEnabled = distributedJoinsEnabled;
 
             checkNotNull(queryId, "queryId is null");
             checkNotNull(query, "query is null");
@@ -119,7 +126,7 @@ public class SqlQueryExecution
             checkNotNull(self, "self is null");
             this.stateMachine = new QueryStateMachine(queryId, query, session, self, queryExecutor);
 
-            this.queryExplainer = new QueryExplainer(session, planOptimizers, metadata, periodicImportManager, storageManager);
+            this.queryExplainer = new QueryExplainer(session, planOptimizers, metadata, periodicImportManager, storageManager, distributedAggregationsEnabled, distributedJoinsEnabled);
         }
     }
 
@@ -198,7 +205,10 @@ public class SqlQueryExecution
         Plan plan = logicalPlanner.plan(analysis);
 
         // fragment the plan
-        SubPlan subplan = new DistributedLogicalPlanner(metadata, idAllocator).createSubplans(plan, false);
+        SubPlan subplan = new DistributedLogicalPlanner(metadata, idAllocator).createSubplans(plan,
+                false,
+                distributedAggregationsEnabled,
+                isDistributedJoinEnabled(stateMachine.getSession(), distributedJoinsEnabled));
 
         stateMachine.recordAnalysisTime(analysisStart);
         return subplan;
@@ -371,6 +381,8 @@ public class SqlQueryExecution
             implements QueryExecutionFactory<SqlQueryExecution>
     {
         private final int maxPendingSplitsPerNode;
+        private final boolean distributedAggregationsEnabled;
+        private final boolean distributedJoinsEnabled;
         private final Metadata metadata;
         private final SplitManager splitManager;
         private final NodeScheduler nodeScheduler;
@@ -398,6 +410,8 @@ public class SqlQueryExecution
         {
             Preconditions.checkNotNull(config, "config is null");
             this.maxPendingSplitsPerNode = config.getMaxPendingSplitsPerNode();
+            this.distributedAggregationsEnabled = config.isDistributedAggregationsEnabled();
+            this.distributedJoinsEnabled = config.isDistributedJoinsEnabled();
             this.metadata = checkNotNull(metadata, "metadata is null");
             this.locationFactory = checkNotNull(locationFactory, "locationFactory is null");
             this.splitManager = checkNotNull(splitManager, "splitManager is null");
@@ -434,6 +448,8 @@ public class SqlQueryExecution
                     remoteTaskFactory,
                     locationFactory,
                     maxPendingSplitsPerNode,
+                    distributedAggregationsEnabled,
+                    distributedJoinsEnabled,
                     executor,
                     shardManager,
                     storageManager,
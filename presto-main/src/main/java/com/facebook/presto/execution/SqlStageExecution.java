@@ -21,6 +21,7 @@ import com.facebook.presto.spi.Split;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.planner.OutputReceiver;
 import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.PlanFragment.PlanDistribution;
 import com.facebook.presto.sql.planner.StageExecutionPlan;
 import com.facebook.presto.sql.planner.plan.ExchangeNode;
 import com.facebook.presto.sql.planner.plan.PlanFragmentId;
@@ -35,10 +36,12 @@ import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
@@ -82,6 +85,11 @@ public class SqlStageExecution
 {
     private static final Logger log = Logger.get(SqlStageExecution.class);
 
+    private static final int MAX_SPLIT_BATCH_SIZE = 100;
+
+    // the scheduler checks the split queues again after this long, even without a state change
+    private static final Duration MAX_STATE_CHANGE_WAIT = new Duration(1, TimeUnit.SECONDS);
+
     // NOTE: DO NOT call methods on the parent while holding a lock on the child.  Locks
     // are always acquired top down in the tree, so calling a method on the parent while
     // holding a lock on the 'this' could cause a deadlock.
@@ -111,6 +119,14 @@ public class SqlStageExecution
     @GuardedBy("this")
     private boolean noMoreOutputIds;
 
+    // incremented on every state change of this stage, its tasks or its sub stages, so the
+    // scheduler can wait for a change without missing one that happened before it started waiting
+    @GuardedBy("this")
+    private long stateChangeCount;
+
+    // splits assigned to a node but not yet sent to its task; only used by the scheduling thread
+    private final ListMultimap<Node, Split> splitBatches = ArrayListMultimap.create();
+
     private final ExecutorService executor;
 
     private final Distribution getSplitDistribution = new Distribution();
@@ -198,8 +214,7 @@ public class SqlStageExecution
                 @Override
                 public Integer apply(Node input)
                 {
-                    RemoteTask task = tasks.get(input);
-                    return task == null ? 0 : task.getQueuedSplits();
+                    return getAssignedSplits(input);
                 }
             }));
             stageState = new StateMachine<>("stage " + stageId, this.executor, StageState.PLANNED);
@@ -455,35 +470,53 @@ public class SqlStageExecution
                 // determine partitions
                 AtomicInteger nextTaskId = new AtomicInteger(0);
                 if (!dataSource.isPresent()) {
-                    // create a single partition on a random node for this fragment
-                    scheduleTask(nextTaskId, nodeSelector.selectRandomNode(), null);
+                    if (fragment.getDistribution() == PlanDistribution.FIXED) {
+                        // create a partition on every node for this fragment
+                        nodeSelector.lockDownNodes();
+                        List<Node> nodes = nodeSelector.allNodes();
+                        Preconditions.checkState(!nodes.isEmpty(), "Cluster does not have any active nodes");
+                        for (Node node : nodes) {
+                            scheduleTask(nextTaskId, node, null);
+                        }
+                    }
+                    else {
+                        // create a single partition on a random node for this fragment
+                        scheduleTask(nextTaskId, nodeSelector.selectRandomNode(), null);
+                    }
                 }
                 else {
                     long getSplitStart = System.nanoTime();
                     for (Split split : dataSource.get().getSplits()) {
                         getSplitDistribution.add(System.nanoTime() - getSplitStart);
 
-                        long scheduleSplitStart = System.nanoTime();
                         Node chosen = chooseNode(nodeSelector, split, nextTaskId);
 
                         // if query has been canceled, exit cleanly; query will never run regardless
                         if (getState().isDone()) {
+                            splitBatches.clear();
                             break;
                         }
 
                         RemoteTask task = tasks.get(chosen);
                         if (task == null) {
+                            long scheduleTaskStart = System.nanoTime();
                             scheduleTask(nextTaskId, chosen, split);
-                            scheduleTaskDistribution.add(System.nanoTime() - scheduleSplitStart);
+                            scheduleTaskDistribution.add(System.nanoTime() - scheduleTaskStart);
                         }
                         else {
-                            task.addSplit(split);
-                            addSplitDistribution.add(System.nanoTime() - scheduleSplitStart);
+                            // hold back at most as many splits as the task already has queued, so
+                            // batching never leaves a node waiting for work
+                            splitBatches.put(chosen, split);
+                            int batchSize = splitBatches.get(chosen).size();
+                            if (batchSize >= MAX_SPLIT_BATCH_SIZE || batchSize > task.getQueuedSplits()) {
+                                sendSplitBatch(chosen);
+                            }
                         }
 
                         getSplitStart = System.nanoTime();
                     }
 
+                    sendSplitBatches();
                     for (RemoteTask task : tasks.values()) {
                         task.noMoreSplits();
                     }
@@ -527,15 +560,23 @@ public class SqlStageExecution
                 return null;
             }
 
+            // remember the state before looking at the queues, so a change after this point ends the wait below
+            long stateChange = getStateChangeCount();
+
             // for each split, pick the node with the smallest number of assignments
             Node chosen = nodeSelector.selectNode(split);
 
-            // if the chosen node doesn't have too many tasks already, return
-            RemoteTask task = tasks.get(chosen);
-            if (task == null || task.getQueuedSplits() < maxPendingSplitsPerNode) {
+            // if the chosen node doesn't have too many splits already, return
+            if (getAssignedSplits(chosen) < maxPendingSplitsPerNode) {
                 return chosen;
             }
 
+            // the held back splits count against the node, so send them before deciding to wait
+            if (!splitBatches.isEmpty()) {
+                sendSplitBatches();
+                continue;
+            }
+
             // if we have sub stages...
             if (!subStages.isEmpty()) {
                 // before we block, we need to create all possible output buffers on the sub stages, or they can deadlock
@@ -551,22 +592,74 @@ public class SqlStageExecution
                 }
             }
 
-            synchronized (this) {
-                // otherwise wait for some tasks to complete
-                try {
-                    // todo this adds latency: replace this wait with an event listener
-                    TimeUnit.SECONDS.timedWait(this, 1);
-                }
-                catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw Throwables.propagate(e);
-                }
-            }
+            // otherwise wait until a task makes progress
+            waitForStateChange(stateChange);
 
             addNewExchangesAndBuffers(false);
         }
     }
 
+    private int getAssignedSplits(Node node)
+    {
+        RemoteTask task = tasks.get(node);
+        int queuedSplits = task == null ? 0 : task.getQueuedSplits();
+        return queuedSplits + splitBatches.get(node).size();
+    }
+
+    private void sendSplitBatch(Node node)
+    {
+        List<Split> splits = splitBatches.removeAll(node);
+        if (splits.isEmpty()) {
+            return;
+        }
+
+        long addSplitStart = System.nanoTime();
+        tasks.get(node).addSplits(splits);
+        addSplitDistribution.add(System.nanoTime() - addSplitStart);
+    }
+
+    private void sendSplitBatches()
+    {
+        for (Node node : ImmutableList.copyOf(splitBatches.keySet())) {
+            sendSplitBatch(node);
+        }
+    }
+
+    private synchronized long getStateChangeCount()
+    {
+        return stateChangeCount;
+    }
+
+    private synchronized void waitForStateChange(long stateChange)
+    {
+        // task and sub stage state change listeners end this wait through doUpdateState, and the
+        // task info of a remote task changes as soon as its queued splits start running; the wait
+        // is bounded, so a change that is never reported only delays scheduling
+        long end = System.nanoTime() + MAX_STATE_CHANGE_WAIT.roundTo(NANOSECONDS);
+        while (stateChangeCount == stateChange && !getState().isDone()) {
+            long remaining = end - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                NANOSECONDS.timedWait(this, remaining);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private void stateChanged()
+    {
+        stateChangeCount++;
+
+        // wake up worker thread waiting for state changes
+        this.notifyAll();
+    }
+
     private RemoteTask scheduleTask(AtomicInteger nextTaskId, Node node, @Nullable Split initialSplit)
     {
         String nodeIdentifier = node.getNodeIdentifier();
@@ -697,8 +790,7 @@ public class SqlStageExecution
 
         try (SetThreadName setThreadName = new SetThreadName("Stage-%s", stageId)) {
             synchronized (this) {
-                // wake up worker thread waiting for state changes
-                this.notifyAll();
+                stateChanged();
 
                 StageState currentState = stageState.get();
                 if (currentState.isDone()) {
@@ -760,6 +852,7 @@ public class SqlStageExecution
                     log.debug("Cancelling stage %s", stageId);
                     stageState.set(StageState.CANCELED);
                 }
+                stateChanged();
             }
 
             // make sure all tasks are done
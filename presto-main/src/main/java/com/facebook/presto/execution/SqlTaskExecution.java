@@ -26,10 +26,12 @@ import com.facebook.presto.operator.DriverFactory;
 import com.facebook.presto.operator.PipelineContext;
 import com.facebook.presto.operator.TaskContext;
 import com.facebook.presto.operator.TaskOutputOperator.TaskOutputFactory;
+import com.facebook.presto.operator.TaskStats;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.planner.LocalExecutionPlanner;
 import com.facebook.presto.sql.planner.LocalExecutionPlanner.LocalExecutionPlan;
 import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.PlanFragment.OutputPartitioning;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.util.SetThreadName;
 import com.google.common.base.Function;
@@ -45,8 +47,10 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.joda.time.DateTime;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.util.ArrayList;
@@ -119,7 +123,8 @@ public class SqlTaskExecution
             DataSize maxTaskMemoryUsage,
             DataSize operatorPreAllocatedMemory,
             QueryMonitor queryMonitor,
-            boolean cpuTimerEnabled)
+            boolean cpuTimerEnabled,
+            @Nullable File spillPath)
     {
         SqlTaskExecution task = new SqlTaskExecution(session,
                 taskId,
@@ -132,7 +137,8 @@ public class SqlTaskExecution
                 operatorPreAllocatedMemory,
                 queryMonitor,
                 notificationExecutor,
-                cpuTimerEnabled
+                cpuTimerEnabled,
+                spillPath
         );
 
         try (SetThreadName setThreadName = new SetThreadName("Task-%s", taskId)) {
@@ -152,7 +158,8 @@ public class SqlTaskExecution
             DataSize operatorPreAllocatedMemory,
             QueryMonitor queryMonitor,
             Executor notificationExecutor,
-            boolean cpuTimerEnabled)
+            boolean cpuTimerEnabled,
+            @Nullable File spillPath)
     {
         try (SetThreadName setThreadName = new SetThreadName("Task-%s", taskId)) {
             this.taskId = checkNotNull(taskId, "taskId is null");
@@ -178,9 +185,16 @@ public class SqlTaskExecution
                     session,
                     checkNotNull(maxTaskMemoryUsage, "maxTaskMemoryUsage is null"),
                     checkNotNull(operatorPreAllocatedMemory, "operatorPreAllocatedMemory is null"),
-                    cpuTimerEnabled);
+                    cpuTimerEnabled,
+                    spillPath);
 
-            this.sharedBuffer = new SharedBuffer(checkNotNull(maxBufferSize, "maxBufferSize is null"));
+            checkNotNull(maxBufferSize, "maxBufferSize is null");
+            if (fragment.getOutputPartitioning() == OutputPartitioning.HASH) {
+                this.sharedBuffer = new SharedBuffer(maxBufferSize, fragment.getTupleInfos(), fragment.getPartitionChannels());
+            }
+            else {
+                this.sharedBuffer = new SharedBuffer(maxBufferSize);
+            }
 
             this.queryMonitor = checkNotNull(queryMonitor, "queryMonitor is null");
 
@@ -264,6 +278,13 @@ public class SqlTaskExecution
                 failures = toFailures(taskStateMachine.getFailureCauses());
             }
 
+            // the coordinator polls running tasks for their state and totals only, so the
+            // pipeline and operator detail is sent when asked for and once the task is done
+            TaskStats taskStats = taskContext.getTaskStats();
+            if (!full && !state.isDone()) {
+                taskStats = taskStats.summarize();
+            }
+
             return new TaskInfo(
                     taskStateMachine.getTaskId(),
                     nextTaskInfoVersion.getAndIncrement(),
@@ -272,7 +293,7 @@ public class SqlTaskExecution
                     lastHeartbeat.get(),
                     sharedBuffer.getInfo(),
                     getNoMoreSplits(),
-                    taskContext.getTaskStats(),
+                    taskStats,
                     failures,
                     taskContext.getOutputItems());
         }
@@ -41,6 +41,7 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import java.io.File;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
@@ -81,6 +82,7 @@ public class SqlTaskManager
     private final Duration infoCacheTime;
     private final Duration clientTimeout;
     private final boolean cpuTimerEnabled;
+    private final File spillPath;
 
     private final ConcurrentMap<TaskId, TaskInfo> taskInfos = new ConcurrentHashMap<>();
     private final ConcurrentMap<TaskId, TaskExecution> tasks = new ConcurrentHashMap<>();
@@ -117,6 +119,7 @@ public class SqlTaskManager
         this.infoCacheTime = config.getInfoMaxAge();
         this.clientTimeout = config.getClientTimeout();
         this.cpuTimerEnabled = config.isTaskCpuTimerEnabled();
+        this.spillPath = config.isSpillEnabled() ? config.getSpillPath() : null;
 
         taskNotificationExecutor = Executors.newCachedThreadPool(threadsNamed("task-notification-%d"));
         taskNotificationExecutorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) taskNotificationExecutor);
@@ -296,6 +299,8 @@ public class SqlTaskManager
                     return taskInfo;
                 }
 
+                // the coordinator stops sending the fragment once the task has acknowledged an update
+                Preconditions.checkArgument(fragment != null, "Task %s does not exist and the update does not contain a fragment", taskId);
                 taskExecution = SqlTaskExecution.createSqlTaskExecution(session,
                         taskId,
                         location,
@@ -307,7 +312,8 @@ public class SqlTaskManager
                         maxTaskMemoryUsage,
                         operatorPreAllocatedMemory,
                         queryMonitor,
-                        cpuTimerEnabled
+                        cpuTimerEnabled,
+                        spillPath
                 );
                 tasks.put(taskId, taskExecution);
             }
@@ -399,7 +405,7 @@ public class SqlTaskManager
                         TaskState.CANCELED,
                         URI.create("unknown"),
                         DateTime.now(),
-                        new SharedBufferInfo(QueueState.FINISHED, 0, 0, ImmutableList.<BufferInfo>of()),
+                        new SharedBufferInfo(QueueState.FINISHED, 0, 0, 0, 0, ImmutableList.<BufferInfo>of()),
                         ImmutableSet.<PlanNodeId>of(),
                         taskContext.getTaskStats(),
                         ImmutableList.<FailureInfo>of(),
@@ -32,22 +32,20 @@ import org.weakref.jmx.Nested;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.concurrent.GuardedBy;
-import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -72,6 +70,9 @@ public class TaskExecutor
     // each time we run a split, run it for this length before returning to the pool
     private static final Duration SPLIT_RUN_QUANTA = new Duration(1, TimeUnit.SECONDS);
 
+    // splits move down a level as the thread usage of their task grows, see calculatePriorityLevel
+    private static final int PRIORITY_LEVELS = 5;
+
     private static final AtomicLong NEXT_RUNNER_ID = new AtomicLong();
     private static final AtomicLong NEXT_WORKER_ID = new AtomicLong();
 
@@ -83,20 +84,24 @@ public class TaskExecutor
 
     private final Ticker ticker;
 
+    // tasks are polled round robin for new splits
+    private final Queue<TaskHandle> tasks = new ConcurrentLinkedQueue<>();
+
     @GuardedBy("this")
-    private final List<TaskHandle> tasks;
+    private final Map<QueryId, QueryThreadUsage> queryThreadUsage = new HashMap<>();
 
-    private final Set<PrioritizedSplitRunner> allSplits = new HashSet<>();
-    private final PriorityBlockingQueue<PrioritizedSplitRunner> pendingSplits;
+    private final Set<PrioritizedSplitRunner> allSplits = Sets.newSetFromMap(new ConcurrentHashMap<PrioritizedSplitRunner, Boolean>());
+    private final AtomicInteger allSplitsCount = new AtomicInteger();
+    private final MultilevelSplitQueue<PrioritizedSplitRunner> pendingSplits;
     private final Set<PrioritizedSplitRunner> runningSplits = Sets.newSetFromMap(new ConcurrentHashMap<PrioritizedSplitRunner, Boolean>());
     private final Set<PrioritizedSplitRunner> blockedSplits = Sets.newSetFromMap(new ConcurrentHashMap<PrioritizedSplitRunner, Boolean>());
 
-    private final AtomicLongArray completedTasksPerLevel = new AtomicLongArray(5);
+    private final AtomicLongArray completedTasksPerLevel = new AtomicLongArray(PRIORITY_LEVELS);
 
     private final DistributionStat queuedTime = new DistributionStat();
     private final DistributionStat wallTime = new DistributionStat();
 
-    private boolean closed;
+    private volatile boolean closed;
 
     @Inject
     public TaskExecutor(TaskManagerConfig config)
@@ -123,8 +128,7 @@ public class TaskExecutor
 
         // we assume we need at least two tasks per runner thread to keep the system busy
         this.minimumNumberOfTasks = 2 * this.runnerThreads;
-        this.pendingSplits = new PriorityBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 10);
-        this.tasks = new LinkedList<>();
+        this.pendingSplits = new MultilevelSplitQueue<>(PRIORITY_LEVELS, runnerThreads, ticker);
     }
 
     @PostConstruct
@@ -144,7 +148,7 @@ public class TaskExecutor
     }
 
     @Override
-    public synchronized String toString()
+    public String toString()
     {
         return Objects.toStringHelper(this)
                 .add("runnerThreads", runnerThreads)
@@ -166,23 +170,45 @@ public class TaskExecutor
 
     public synchronized TaskHandle addTask(TaskId taskId)
     {
-        TaskHandle taskHandle = new TaskHandle(checkNotNull(taskId, "taskId is null"));
+        checkNotNull(taskId, "taskId is null");
+
+        // all tasks of a query on this node share the thread usage of the query
+        QueryThreadUsage queryUsage = queryThreadUsage.get(taskId.getQueryId());
+        if (queryUsage == null) {
+            queryUsage = new QueryThreadUsage();
+            queryThreadUsage.put(taskId.getQueryId(), queryUsage);
+        }
+        queryUsage.taskCount++;
+
+        TaskHandle taskHandle = new TaskHandle(taskId, queryUsage.threadUsageNanos);
         tasks.add(taskHandle);
         return taskHandle;
     }
 
     public synchronized void removeTask(TaskHandle taskHandle)
     {
+        if (taskHandle.isDestroyed()) {
+            return;
+        }
+
+        // the task must be destroyed before it is removed, see pollNextSplitWorker
         taskHandle.destroy();
         tasks.remove(taskHandle);
 
+        QueryId queryId = taskHandle.getTaskId().getQueryId();
+        QueryThreadUsage queryUsage = queryThreadUsage.get(queryId);
+        queryUsage.taskCount--;
+        if (queryUsage.taskCount == 0) {
+            queryThreadUsage.remove(queryId);
+        }
+
         // record completed stats
         long threadUsageNanos = taskHandle.getThreadUsageNanos();
         int priorityLevel = calculatePriorityLevel(threadUsageNanos);
         completedTasksPerLevel.incrementAndGet(priorityLevel);
     }
 
-    public synchronized ListenableFuture<?> enqueueSplit(TaskHandle taskHandle, SplitRunner taskSplit)
+    public ListenableFuture<?> enqueueSplit(TaskHandle taskHandle, SplitRunner taskSplit)
     {
         PrioritizedSplitRunner prioritizedSplitRunner = new PrioritizedSplitRunner(taskHandle, taskSplit, ticker);
         taskHandle.addSplit(prioritizedSplitRunner);
@@ -194,21 +220,23 @@ public class TaskExecutor
         return prioritizedSplitRunner.getFinishedFuture();
     }
 
-    public synchronized ListenableFuture<?> forceRunSplit(TaskHandle taskHandle, SplitRunner taskSplit)
+    public ListenableFuture<?> forceRunSplit(TaskHandle taskHandle, SplitRunner taskSplit)
     {
         PrioritizedSplitRunner prioritizedSplitRunner = new PrioritizedSplitRunner(taskHandle, taskSplit, ticker);
 
         // Note: we do not record queued time for forced splits
 
+        allSplitsCount.incrementAndGet();
         startSplit(prioritizedSplitRunner);
 
         return prioritizedSplitRunner.getFinishedFuture();
     }
 
-    private synchronized void splitFinished(PrioritizedSplitRunner split)
+    private void splitFinished(PrioritizedSplitRunner split)
     {
-        allSplits.remove(split);
-        pendingSplits.remove(split);
+        if (allSplits.remove(split)) {
+            allSplitsCount.decrementAndGet();
+        }
 
         TaskHandle taskHandle = split.getTaskHandle();
         taskHandle.splitComplete(split);
@@ -220,28 +248,37 @@ public class TaskExecutor
         addNewEntrants();
     }
 
-    private synchronized void scheduleTaskIfNecessary(TaskHandle taskHandle)
+    private void scheduleTaskIfNecessary(TaskHandle taskHandle)
     {
         // if task has less than the minimum guaranteed splits running,
         // immediately schedule a new split for this task.  This assures
         // that a task gets its fair amount of consideration (you have to
         // have splits to be considered for running on a thread).
-        if (taskHandle.getRunningSplits() < GUARANTEED_SPLITS_PER_TASK) {
-            PrioritizedSplitRunner split = taskHandle.pollNextSplit();
-            if (split != null) {
-                startSplit(split);
-                queuedTime.add(System.nanoTime() - split.createdNanos);
-            }
+        PrioritizedSplitRunner split = taskHandle.pollNextSplit(GUARANTEED_SPLITS_PER_TASK);
+        if (split != null) {
+            allSplitsCount.incrementAndGet();
+            startSplit(split);
+            queuedTime.add(System.nanoTime() - split.createdNanos);
         }
     }
 
-    private synchronized void addNewEntrants()
+    private void addNewEntrants()
     {
-        int running = allSplits.size();
-        for (int i = 0; i < minimumNumberOfTasks - running; i++) {
+        while (true) {
+            // reserve a slot before looking for a split, so concurrent callers
+            // do not start more than the minimum number of splits
+            int running = allSplitsCount.get();
+            if (running >= minimumNumberOfTasks) {
+                return;
+            }
+            if (!allSplitsCount.compareAndSet(running, running + 1)) {
+                continue;
+            }
+
             PrioritizedSplitRunner split = pollNextSplitWorker();
             if (split == null) {
-                break;
+                allSplitsCount.decrementAndGet();
+                return;
             }
 
             queuedTime.add(System.nanoTime() - split.createdNanos);
@@ -249,49 +286,60 @@ public class TaskExecutor
         }
     }
 
-    private synchronized void startSplit(PrioritizedSplitRunner split)
+    private void startSplit(PrioritizedSplitRunner split)
     {
         allSplits.add(split);
-        pendingSplits.put(split);
+        pendingSplits.offer(split, split.getPriorityLevel());
     }
 
-    private synchronized PrioritizedSplitRunner pollNextSplitWorker()
+    private PrioritizedSplitRunner pollNextSplitWorker()
     {
-        // todo find a better algorithm for this
         // find the first task that produces a split, then move that task to the
         // end of the task list, so we get round robin
-        for (Iterator<TaskHandle> iterator = tasks.iterator(); iterator.hasNext(); ) {
-            TaskHandle task = iterator.next();
-            PrioritizedSplitRunner split = task.pollNextSplit();
+        for (TaskHandle task : tasks) {
+            PrioritizedSplitRunner split = task.pollNextSplit(Integer.MAX_VALUE);
             if (split != null) {
                 // move task to end of list
-                iterator.remove();
+                if (tasks.remove(task)) {
+                    tasks.add(task);
 
-                // CAUTION: we are modifying the list in the loop which would normally
-                // cause a ConcurrentModificationException but we exit immediately
-                tasks.add(task);
+                    // removeTask may have missed the task while it was being moved
+                    if (task.isDestroyed()) {
+                        tasks.remove(task);
+                    }
+                }
                 return split;
             }
         }
         return null;
     }
 
-    @NotThreadSafe
+    @ThreadSafe
     public static class TaskHandle
     {
         private final TaskId taskId;
+        @GuardedBy("this")
         private final Queue<PrioritizedSplitRunner> queuedSplits = new ArrayDeque<>(10);
+        @GuardedBy("this")
         private final List<PrioritizedSplitRunner> runningSplits = new ArrayList<>(10);
+        @GuardedBy("this")
+        private boolean destroyed;
         private final AtomicLong taskThreadUsageNanos = new AtomicLong();
+        private final AtomicLong queryThreadUsageNanos;
 
-        private TaskHandle(TaskId taskId)
+        private TaskHandle(TaskId taskId, AtomicLong queryThreadUsageNanos)
         {
             this.taskId = taskId;
+            this.queryThreadUsageNanos = queryThreadUsageNanos;
         }
 
+        /**
+         * Records thread usage for this task and returns the total thread usage of the query.
+         */
         private long addThreadUsageNanos(long durationNanos)
         {
-            return taskThreadUsageNanos.addAndGet(durationNanos);
+            taskThreadUsageNanos.addAndGet(durationNanos);
+            return queryThreadUsageNanos.addAndGet(durationNanos);
         }
 
         private TaskId getTaskId()
@@ -299,8 +347,9 @@ public class TaskExecutor
             return taskId;
         }
 
-        private void destroy()
+        private synchronized void destroy()
         {
+            destroyed = true;
             for (PrioritizedSplitRunner runningSplit : runningSplits) {
                 runningSplit.destroy();
             }
@@ -312,14 +361,14 @@ public class TaskExecutor
             queuedSplits.clear();
         }
 
-        private void addSplit(PrioritizedSplitRunner split)
+        private synchronized boolean isDestroyed()
         {
-            queuedSplits.add(split);
+            return destroyed;
         }
 
-        private int getRunningSplits()
+        private synchronized void addSplit(PrioritizedSplitRunner split)
         {
-            return runningSplits.size();
+            queuedSplits.add(split);
         }
 
         private long getThreadUsageNanos()
@@ -327,8 +376,19 @@ public class TaskExecutor
             return taskThreadUsageNanos.get();
         }
 
-        private PrioritizedSplitRunner pollNextSplit()
+        private long getQueryThreadUsageNanos()
+        {
+            return queryThreadUsageNanos.get();
+        }
+
+        /**
+         * Returns the next queued split, unless the task already has the given number of running splits.
+         */
+        private synchronized PrioritizedSplitRunner pollNextSplit(int maxRunningSplits)
         {
+            if (runningSplits.size() >= maxRunningSplits) {
+                return null;
+            }
             PrioritizedSplitRunner split = queuedSplits.poll();
             if (split != null) {
                 runningSplits.add(split);
@@ -336,7 +396,7 @@ public class TaskExecutor
             return split;
         }
 
-        private void splitComplete(PrioritizedSplitRunner split)
+        private synchronized void splitComplete(PrioritizedSplitRunner split)
         {
             runningSplits.remove(split);
             split.destroy();
@@ -424,7 +484,7 @@ public class TaskExecutor
                 ListenableFuture<?> blocked = split.processFor(SPLIT_RUN_QUANTA);
                 long endTime = ticker.read();
 
-                // update priority level base on total thread usage of task
+                // update priority level base on total thread usage of the query
                 long durationNanos = endTime - start;
                 long threadUsageNanos = taskHandle.addThreadUsageNanos(durationNanos);
                 this.threadUsageNanos.set(threadUsageNanos);
@@ -441,15 +501,21 @@ public class TaskExecutor
             }
         }
 
+        public int getPriorityLevel()
+        {
+            return priorityLevel.get();
+        }
+
         public boolean updatePriorityLevel()
         {
-            int newPriority = calculatePriorityLevel(taskHandle.getThreadUsageNanos());
+            long queryThreadUsageNanos = taskHandle.getQueryThreadUsageNanos();
+            int newPriority = calculatePriorityLevel(queryThreadUsageNanos);
             if (newPriority == priorityLevel.getAndSet(newPriority)) {
                 return false;
             }
 
             // update thread usage while if level changed
-            threadUsageNanos.set(taskHandle.getThreadUsageNanos());
+            threadUsageNanos.set(queryThreadUsageNanos);
             return true;
         }
 
@@ -464,7 +530,7 @@ public class TaskExecutor
             }
 
             if (level < 4) {
-                result = Long.compare(threadUsageNanos.get(), threadUsageNanos.get());
+                result = Long.compare(threadUsageNanos.get(), o.threadUsageNanos.get());
             }
             else {
                 result = Long.compare(lastRun.get(), o.lastRun.get());
@@ -509,10 +575,17 @@ public class TaskExecutor
         return priorityLevel;
     }
 
+    private static class QueryThreadUsage
+    {
+        private final AtomicLong threadUsageNanos = new AtomicLong();
+        private int taskCount;
+    }
+
     private class Runner
             implements Runnable
     {
         private final long runnerId = NEXT_RUNNER_ID.getAndIncrement();
+        private final int stripe = (int) (runnerId % runnerThreads);
 
         @Override
         public void run()
@@ -522,10 +595,10 @@ public class TaskExecutor
                     // select next worker
                     final PrioritizedSplitRunner split;
                     try {
-                        split = pendingSplits.take();
+                        split = pendingSplits.take(stripe);
                         if (split.updatePriorityLevel()) {
                             // priority level changed, return split to queue for re-prioritization
-                            pendingSplits.put(split);
+                            pendingSplits.offer(split, split.getPriorityLevel(), stripe);
                             continue;
                         }
                     }
@@ -539,6 +612,8 @@ public class TaskExecutor
 
                         boolean finished;
                         ListenableFuture<?> blocked;
+                        int level = split.getPriorityLevel();
+                        long start = ticker.read();
                         try {
                             split.initializeIfNecessary();
                             blocked = split.process();
@@ -546,6 +621,7 @@ public class TaskExecutor
                         }
                         finally {
                             runningSplits.remove(split);
+                            pendingSplits.addLevelTime(level, ticker.read() - start);
                         }
 
                         if (finished) {
@@ -554,7 +630,7 @@ public class TaskExecutor
                         }
                         else {
                             if (blocked.isDone()) {
-                                pendingSplits.put(split);
+                                pendingSplits.offer(split, split.getPriorityLevel(), stripe);
                             }
                             else {
                                 blockedSplits.add(split);
@@ -565,7 +641,7 @@ public class TaskExecutor
                                     {
                                         blockedSplits.remove(split);
                                         split.updatePriorityLevel();
-                                        pendingSplits.put(split);
+                                        pendingSplits.offer(split, split.getPriorityLevel());
                                     }
                                 }, executor);
                             }
@@ -611,7 +687,7 @@ public class TaskExecutor
     @Managed
     public int getTotalSplits()
     {
-        return allSplits.size();
+        return allSplitsCount.get();
     }
 
     @Managed
@@ -692,6 +768,101 @@ public class TaskExecutor
         return calculateRunningTasksForLevel(4);
     }
 
+    @Managed
+    public int getPendingSplitsLevel0()
+    {
+        return pendingSplits.getLevelSize(0);
+    }
+
+    @Managed
+    public int getPendingSplitsLevel1()
+    {
+        return pendingSplits.getLevelSize(1);
+    }
+
+    @Managed
+    public int getPendingSplitsLevel2()
+    {
+        return pendingSplits.getLevelSize(2);
+    }
+
+    @Managed
+    public int getPendingSplitsLevel3()
+    {
+        return pendingSplits.getLevelSize(3);
+    }
+
+    @Managed
+    public int getPendingSplitsLevel4()
+    {
+        return pendingSplits.getLevelSize(4);
+    }
+
+    @Managed
+    public long getScheduledNanosLevel0()
+    {
+        return pendingSplits.getLevelScheduledNanos(0);
+    }
+
+    @Managed
+    public long getScheduledNanosLevel1()
+    {
+        return pendingSplits.getLevelScheduledNanos(1);
+    }
+
+    @Managed
+    public long getScheduledNanosLevel2()
+    {
+        return pendingSplits.getLevelScheduledNanos(2);
+    }
+
+    @Managed
+    public long getScheduledNanosLevel3()
+    {
+        return pendingSplits.getLevelScheduledNanos(3);
+    }
+
+    @Managed
+    public long getScheduledNanosLevel4()
+    {
+        return pendingSplits.getLevelScheduledNanos(4);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getWaitTimeLevel0()
+    {
+        return pendingSplits.getLevelWaitTime(0);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getWaitTimeLevel1()
+    {
+        return pendingSplits.getLevelWaitTime(1);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getWaitTimeLevel2()
+    {
+        return pendingSplits.getLevelWaitTime(2);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getWaitTimeLevel3()
+    {
+        return pendingSplits.getLevelWaitTime(3);
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getWaitTimeLevel4()
+    {
+        return pendingSplits.getLevelWaitTime(4);
+    }
+
     @Managed
     @Nested
     public DistributionStat getQueuedTime()
@@ -706,7 +877,7 @@ public class TaskExecutor
         return wallTime;
     }
 
-    private synchronized int calculateRunningTasksForLevel(int level)
+    private int calculateRunningTasksForLevel(int level)
     {
         int count = 0;
         for (TaskHandle task : tasks) {
@@ -14,6 +14,7 @@
 package com.facebook.presto.execution;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import io.airlift.units.Duration;
@@ -22,6 +23,7 @@ import io.airlift.units.MinDuration;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 
 public class TaskManagerConfig
@@ -30,6 +32,10 @@ public class TaskManagerConfig
     private DataSize maxTaskMemoryUsage = new DataSize(256, Unit.MEGABYTE);
     private DataSize operatorPreAllocatedMemory = new DataSize(16, Unit.MEGABYTE);
     private int maxShardProcessorThreads = Runtime.getRuntime().availableProcessors() * 4;
+    private int maxHashBuildThreads = Runtime.getRuntime().availableProcessors();
+
+    private boolean spillEnabled;
+    private File spillPath = new File("var/spill");
 
     private DataSize sinkMaxBufferSize = new DataSize(32, Unit.MEGABYTE);
 
@@ -48,6 +54,33 @@ public class TaskManagerConfig
         return this;
     }
 
+    public boolean isSpillEnabled()
+    {
+        return spillEnabled;
+    }
+
+    @Config("task.spill-enabled")
+    @ConfigDescription("Spill operator state to disk instead of failing when the task exceeds its memory limit")
+    public TaskManagerConfig setSpillEnabled(boolean spillEnabled)
+    {
+        this.spillEnabled = spillEnabled;
+        return this;
+    }
+
+    @NotNull
+    public File getSpillPath()
+    {
+        return spillPath;
+    }
+
+    @Config("task.spill-path")
+    @ConfigDescription("Directory for spill files")
+    public TaskManagerConfig setSpillPath(File spillPath)
+    {
+        this.spillPath = spillPath;
+        return this;
+    }
+
     @NotNull
     public DataSize getMaxTaskMemoryUsage()
     {
@@ -87,6 +120,20 @@ public class TaskManagerConfig
         return this;
     }
 
+    @Min(1)
+    public int getMaxHashBuildThreads()
+    {
+        return maxHashBuildThreads;
+    }
+
+    @Config("task.hash-build.max-threads")
+    @ConfigDescription("Threads shared by all tasks for building the partitions of join hash tables")
+    public TaskManagerConfig setMaxHashBuildThreads(int maxHashBuildThreads)
+    {
+        this.maxHashBuildThreads = maxHashBuildThreads;
+        return this;
+    }
+
     @NotNull
     public DataSize getSinkMaxBufferSize()
     {
@@ -16,9 +16,11 @@ package com.facebook.presto.metadata;
 import com.facebook.presto.block.Block;
 import com.facebook.presto.operator.Page;
 import com.facebook.presto.serde.BlocksFileEncoding;
+import com.facebook.presto.serde.BlocksFileStats;
 import com.facebook.presto.serde.BlocksFileWriter;
 import com.facebook.presto.spi.ColumnHandle;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Ints;
 import io.airlift.units.DataSize;
@@ -115,6 +117,20 @@ public class ColumnFileHandle
         Throwables.propagateIfInstanceOf(firstThrowable, IOException.class);
     }
 
+    /**
+     * Returns the statistics of each written column.  Only valid after the handle is committed.
+     */
+    public Map<ColumnHandle, BlocksFileStats> getStats()
+    {
+        checkState(committed.get(), "not yet committed");
+
+        ImmutableMap.Builder<ColumnHandle, BlocksFileStats> stats = ImmutableMap.builder();
+        for (Map.Entry<ColumnHandle, BlocksFileWriter> entry : writers.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().getStats());
+        }
+        return stats.build();
+    }
+
     public static class Builder
     {
         private final long shardId;
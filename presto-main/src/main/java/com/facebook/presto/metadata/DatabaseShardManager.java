@@ -14,19 +14,30 @@
 package com.facebook.presto.metadata;
 
 import com.facebook.presto.metadata.ShardManagerDao.Utils;
+import com.facebook.presto.spi.ColumnType;
 import com.facebook.presto.spi.PartitionKey;
 import com.facebook.presto.spi.TableHandle;
 import com.facebook.presto.split.NativePartitionKey;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import io.airlift.stats.CounterStat;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.TransactionStatus;
 import org.skife.jdbi.v2.VoidTransactionCallback;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
 
 import java.util.List;
@@ -44,13 +55,64 @@ public class DatabaseShardManager
     private final IDBI dbi;
     private final ShardManagerDao dao;
 
+    // Each cache holds at most this many partitions, partition keys or shard nodes.  An entry
+    // takes in the order of 100 bytes, so a full cache uses about 100MB of coordinator memory.
+    // The least recently used tables are evicted first.
+    private static final long MAX_CACHED_ENTRIES = 1_000_000;
+
+    // The partitions and shard nodes of a table are cached until a change through this
+    // shard manager invalidates them.  Changes to a known table only invalidate that table.
+    // The generation is bumped by every invalidation, so that a load that overlaps a change
+    // does not cache what it read before the change.
+    private final Cache<Long, Set<TablePartition>> partitionsCache;
+    private final Cache<Long, Multimap<String, ? extends PartitionKey>> partitionKeysCache;
+    private final Cache<Long, Multimap<Long, Entry<Long, String>>> partitionShardNodesCache;
+    @GuardedBy("this")
+    private long cacheGeneration;
+
+    private final CounterStat cacheHits = new CounterStat();
+    private final CounterStat cacheMisses = new CounterStat();
+    private final CounterStat cacheInvalidations = new CounterStat();
+
     @Inject
     public DatabaseShardManager(@ForShardManager IDBI dbi)
             throws InterruptedException
+    {
+        this(dbi, MAX_CACHED_ENTRIES);
+    }
+
+    @VisibleForTesting
+    DatabaseShardManager(IDBI dbi, long maxCachedEntries)
+            throws InterruptedException
     {
         this.dbi = dbi;
         this.dao = dbi.onDemand(ShardManagerDao.class);
 
+        this.partitionsCache = createCache(maxCachedEntries, new Weigher<Long, Set<TablePartition>>()
+        {
+            @Override
+            public int weigh(Long tableId, Set<TablePartition> partitions)
+            {
+                return partitions.size() + 1;
+            }
+        });
+        this.partitionKeysCache = createCache(maxCachedEntries, new Weigher<Long, Multimap<String, ? extends PartitionKey>>()
+        {
+            @Override
+            public int weigh(Long tableId, Multimap<String, ? extends PartitionKey> partitionKeys)
+            {
+                return partitionKeys.size() + 1;
+            }
+        });
+        this.partitionShardNodesCache = createCache(maxCachedEntries, new Weigher<Long, Multimap<Long, Entry<Long, String>>>()
+        {
+            @Override
+            public int weigh(Long tableId, Multimap<Long, Entry<Long, String>> shardNodes)
+            {
+                return shardNodes.size() + 1;
+            }
+        });
+
         // keep retrying if database is unavailable when the server starts
         Utils.createShardTablesWithRetry(dao);
     }
@@ -78,6 +140,7 @@ public class DatabaseShardManager
                 dao.insertShardNode(shardId, nodeId);
             }
         });
+        invalidateAllTables();
     }
 
     @Override
@@ -112,12 +175,14 @@ public class DatabaseShardManager
                 }
             }
         });
+        invalidateTable(tableId);
     }
 
     @Override
     public void disassociateShard(long shardId, @Nullable String nodeIdentifier)
     {
         dao.dropShardNode(shardId, nodeIdentifier);
+        invalidateAllTables();
     }
 
     @Override
@@ -130,9 +195,50 @@ public class DatabaseShardManager
             {
                 ShardManagerDao dao = handle.attach(ShardManagerDao.class);
                 dao.deleteShardFromPartitionShards(shardId);
+                dao.deleteShardColumnStats(shardId);
                 dao.deleteShard(shardId);
             }
         });
+        invalidateAllTables();
+    }
+
+    @Override
+    public void addShardColumnStats(final Iterable<ShardColumnStats> columnStats)
+    {
+        checkNotNull(columnStats, "columnStats is null");
+
+        dbi.inTransaction(new VoidTransactionCallback()
+        {
+            @Override
+            protected void execute(Handle handle, TransactionStatus status)
+            {
+                ShardManagerDao dao = handle.attach(ShardManagerDao.class);
+                for (ShardColumnStats stats : columnStats) {
+                    if (stats.getType() == ColumnType.LONG) {
+                        dao.insertShardColumnStats(stats.getShardId(), stats.getColumnId(), stats.getType().name(), stats.getNullCount(),
+                                (Long) stats.getMin(), (Long) stats.getMax(), null, null);
+                    }
+                    else {
+                        dao.insertShardColumnStats(stats.getShardId(), stats.getColumnId(), stats.getType().name(), stats.getNullCount(),
+                                null, null, (Double) stats.getMin(), (Double) stats.getMax());
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public Multimap<Long, ShardColumnStats> getCommittedShardColumnStats(TableHandle tableHandle)
+    {
+        checkNotNull(tableHandle, "tableHandle is null");
+        checkState(tableHandle instanceof NativeTableHandle, "tableHandle not a native table");
+        final long tableId = ((NativeTableHandle) tableHandle).getTableId();
+
+        ImmutableMultimap.Builder<Long, ShardColumnStats> map = ImmutableMultimap.builder();
+        for (ShardColumnStats stats : dao.getCommittedShardColumnStats(tableId)) {
+            map.put(stats.getShardId(), stats);
+        }
+        return map.build();
     }
 
     @Override
@@ -141,7 +247,15 @@ public class DatabaseShardManager
         checkNotNull(tableHandle, "tableHandle is null");
         checkState(tableHandle instanceof NativeTableHandle, "can only commit partitions for native tables");
         final long tableId = ((NativeTableHandle) tableHandle).getTableId();
-        return dao.getPartitions(tableId);
+
+        return getCached(partitionsCache, tableId, new Supplier<Set<TablePartition>>()
+        {
+            @Override
+            public Set<TablePartition> get()
+            {
+                return ImmutableSet.copyOf(dao.getPartitions(tableId));
+            }
+        });
     }
 
     @Override
@@ -151,13 +265,19 @@ public class DatabaseShardManager
         checkState(tableHandle instanceof NativeTableHandle, "can only commit partitions for native tables");
         final long tableId = ((NativeTableHandle) tableHandle).getTableId();
 
-        Set<NativePartitionKey> partitionKeys = dao.getPartitionKeys(tableId);
-        ImmutableMultimap.Builder<String, PartitionKey> builder = ImmutableMultimap.builder();
-        for (NativePartitionKey partitionKey : partitionKeys) {
-            builder.put(partitionKey.getPartitionName(), partitionKey);
-        }
-
-        return builder.build();
+        return getCached(partitionKeysCache, tableId, new Supplier<Multimap<String, ? extends PartitionKey>>()
+        {
+            @Override
+            public Multimap<String, ? extends PartitionKey> get()
+            {
+                Set<NativePartitionKey> partitionKeys = dao.getPartitionKeys(tableId);
+                ImmutableMultimap.Builder<String, PartitionKey> builder = ImmutableMultimap.builder();
+                for (NativePartitionKey partitionKey : partitionKeys) {
+                    builder.put(partitionKey.getPartitionName(), partitionKey);
+                }
+                return builder.build();
+            }
+        });
     }
 
     @Override
@@ -167,13 +287,20 @@ public class DatabaseShardManager
         checkState(tableHandle instanceof NativeTableHandle, "tableHandle not a native table");
         final long tableId = ((NativeTableHandle) tableHandle).getTableId();
 
-        ImmutableMultimap.Builder<Long, Entry<Long, String>> map = ImmutableMultimap.builder();
+        return getCached(partitionShardNodesCache, tableId, new Supplier<Multimap<Long, Entry<Long, String>>>()
+        {
+            @Override
+            public Multimap<Long, Entry<Long, String>> get()
+            {
+                ImmutableMultimap.Builder<Long, Entry<Long, String>> map = ImmutableMultimap.builder();
 
-        List<ShardNode> shardNodes = dao.getCommittedShardNodesByTableId(tableId);
-        for (ShardNode shardNode : shardNodes) {
-            map.put(shardNode.getPartitionId(), Maps.immutableEntry(shardNode.getShardId(), shardNode.getNodeIdentifier()));
-        }
-        return map.build();
+                List<ShardNode> shardNodes = dao.getCommittedShardNodesByTableId(tableId);
+                for (ShardNode shardNode : shardNodes) {
+                    map.put(shardNode.getPartitionId(), Maps.immutableEntry(shardNode.getShardId(), shardNode.getNodeIdentifier()));
+                }
+                return map.build();
+            }
+        });
     }
 
     @Override
@@ -213,6 +340,25 @@ public class DatabaseShardManager
         checkState(tableHandle instanceof NativeTableHandle, "can only commit partitions for native tables");
         final long tableId = ((NativeTableHandle) tableHandle).getTableId();
 
+        dbi.inTransaction(new VoidTransactionCallback()
+        {
+            @Override
+            protected void execute(Handle handle, TransactionStatus status)
+                    throws Exception
+            {
+                dropPartition(handle.attach(ShardManagerDao.class), tableId, partitionName);
+            }
+        });
+        invalidateTable(tableId);
+    }
+
+    @Override
+    public void dropTable(TableHandle tableHandle)
+    {
+        checkNotNull(tableHandle, "tableHandle is null");
+        checkState(tableHandle instanceof NativeTableHandle, "can only drop native tables");
+        final long tableId = ((NativeTableHandle) tableHandle).getTableId();
+
         dbi.inTransaction(new VoidTransactionCallback()
         {
             @Override
@@ -220,14 +366,22 @@ public class DatabaseShardManager
                     throws Exception
             {
                 ShardManagerDao dao = handle.attach(ShardManagerDao.class);
-                List<Long> shardIds = dao.getAllShards(tableId, partitionName);
-                for (Long shardId : shardIds) {
-                    dao.deleteShardFromPartitionShards(shardId);
+                for (TablePartition partition : dao.getPartitions(tableId)) {
+                    dropPartition(dao, tableId, partition.getPartitionName());
                 }
-                dao.dropPartitionKeys(tableId, partitionName);
-                dao.dropPartition(tableId, partitionName);
             }
         });
+        invalidateTable(tableId);
+    }
+
+    private static void dropPartition(ShardManagerDao dao, long tableId, String partitionName)
+    {
+        List<Long> shardIds = dao.getAllShards(tableId, partitionName);
+        for (Long shardId : shardIds) {
+            dao.deleteShardFromPartitionShards(shardId);
+        }
+        dao.dropPartitionKeys(tableId, partitionName);
+        dao.dropPartition(tableId, partitionName);
     }
 
     @Override
@@ -245,6 +399,102 @@ public class DatabaseShardManager
     public void dropOrphanedPartitions()
     {
         dao.dropAllOrphanedPartitions();
+        invalidateAllTables();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCacheHits()
+    {
+        return cacheHits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCacheMisses()
+    {
+        return cacheMisses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCacheInvalidations()
+    {
+        return cacheInvalidations;
+    }
+
+    @Managed
+    public double getCacheHitRate()
+    {
+        double requests = cacheHits.getTotalCount() + cacheMisses.getTotalCount();
+        if (requests == 0) {
+            return 0;
+        }
+        return cacheHits.getTotalCount() / requests;
+    }
+
+    @Managed
+    public int getCachedTables()
+    {
+        return ImmutableSet.<Long>builder()
+                .addAll(partitionsCache.asMap().keySet())
+                .addAll(partitionKeysCache.asMap().keySet())
+                .addAll(partitionShardNodesCache.asMap().keySet())
+                .build()
+                .size();
+    }
+
+    private static <T> Cache<Long, T> createCache(long maxCachedEntries, Weigher<Long, T> weigher)
+    {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maxCachedEntries)
+                .weigher(weigher)
+                .build();
+    }
+
+    private <T> T getCached(Cache<Long, T> cache, long tableId, Supplier<T> loader)
+    {
+        long generation;
+        synchronized (this) {
+            T value = cache.getIfPresent(tableId);
+            if (value != null) {
+                cacheHits.update(1);
+                return value;
+            }
+            generation = cacheGeneration;
+        }
+
+        // load outside of the lock, so slow queries for one table do not block the others
+        cacheMisses.update(1);
+        T value = loader.get();
+
+        synchronized (this) {
+            if (generation == cacheGeneration) {
+                cache.put(tableId, value);
+            }
+        }
+        return value;
+    }
+
+    private synchronized void invalidateTable(long tableId)
+    {
+        cacheGeneration++;
+        partitionsCache.invalidate(tableId);
+        partitionKeysCache.invalidate(tableId);
+        partitionShardNodesCache.invalidate(tableId);
+        cacheInvalidations.update(1);
+    }
+
+    /**
+     * Invalidates all tables, for changes to shards whose table is not known.
+     */
+    private synchronized void invalidateAllTables()
+    {
+        cacheGeneration++;
+        partitionsCache.invalidateAll();
+        partitionKeysCache.invalidateAll();
+        partitionShardNodesCache.invalidateAll();
+        cacheInvalidations.update(1);
     }
 
     private long getOrCreateNodeId(final String nodeIdentifier)
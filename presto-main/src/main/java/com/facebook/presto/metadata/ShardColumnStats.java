@@ -0,0 +1,217 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.metadata;
+
+import com.facebook.presto.serde.BlocksFileStats;
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.tuple.Tuple;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.Range;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static com.facebook.presto.spi.ColumnType.DOUBLE;
+import static com.facebook.presto.spi.ColumnType.LONG;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Zone map of one column of a shard: the number of nulls and the range of the non-null values.
+ * Only numeric columns are tracked.
+ */
+public class ShardColumnStats
+{
+    private final long shardId;
+    private final long columnId;
+    private final ColumnType type;
+    private final long nullCount;
+    private final Comparable<?> min;
+    private final Comparable<?> max;
+
+    public static Optional<ShardColumnStats> fromFileStats(long shardId, long columnId, BlocksFileStats stats)
+    {
+        checkNotNull(stats, "stats is null");
+
+        Tuple min = stats.getMin();
+        Tuple max = stats.getMax();
+        if (min == null || max == null) {
+            // no zone map or no non-null values
+            return Optional.absent();
+        }
+
+        switch (min.getTupleInfo().getTypes().get(0)) {
+            case FIXED_INT_64:
+                return Optional.of(new ShardColumnStats(shardId, columnId, LONG, stats.getNullCount(), min.getLong(0), max.getLong(0)));
+            case DOUBLE:
+                double minDouble = min.getDouble(0);
+                double maxDouble = max.getDouble(0);
+                if (Double.isNaN(minDouble) || Double.isNaN(maxDouble) || Double.isInfinite(minDouble) || Double.isInfinite(maxDouble)) {
+                    return Optional.absent();
+                }
+                // -0.0 and 0.0 are equal in a query, but not in the natural ordering of Double
+                if (minDouble == 0.0) {
+                    minDouble = -0.0;
+                }
+                if (maxDouble == 0.0) {
+                    maxDouble = 0.0;
+                }
+                return Optional.of(new ShardColumnStats(shardId, columnId, DOUBLE, stats.getNullCount(), minDouble, maxDouble));
+            default:
+                return Optional.absent();
+        }
+    }
+
+    public static ShardColumnStats forMap(Map<String, Object> map)
+    {
+        return new ShardColumnStats(
+                ((Number) map.get("shardId")).longValue(),
+                ((Number) map.get("columnId")).longValue(),
+                ColumnType.valueOf((String) map.get("type")),
+                ((Number) map.get("nullCount")).longValue(),
+                map.get("min"),
+                map.get("max"));
+    }
+
+    @JsonCreator
+    public ShardColumnStats(
+            @JsonProperty("shardId") long shardId,
+            @JsonProperty("columnId") long columnId,
+            @JsonProperty("type") ColumnType type,
+            @JsonProperty("nullCount") long nullCount,
+            @JsonProperty("min") Object min,
+            @JsonProperty("max") Object max)
+    {
+        checkNotNull(type, "type is null");
+        checkArgument(type == LONG || type == DOUBLE, "Unsupported type %s", type);
+
+        this.shardId = shardId;
+        this.columnId = columnId;
+        this.type = type;
+        this.nullCount = nullCount;
+        this.min = toValue(type, checkNotNull(min, "min is null"));
+        this.max = toValue(type, checkNotNull(max, "max is null"));
+    }
+
+    private static Comparable<?> toValue(ColumnType type, Object value)
+    {
+        // values that went through json may come back as any type of number
+        if (type == LONG) {
+            return ((Number) value).longValue();
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    @JsonProperty
+    public long getShardId()
+    {
+        return shardId;
+    }
+
+    @JsonProperty
+    public long getColumnId()
+    {
+        return columnId;
+    }
+
+    @JsonProperty
+    public ColumnType getType()
+    {
+        return type;
+    }
+
+    @JsonProperty
+    public long getNullCount()
+    {
+        return nullCount;
+    }
+
+    @JsonProperty
+    public Comparable<?> getMin()
+    {
+        return min;
+    }
+
+    @JsonProperty
+    public Comparable<?> getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Returns false if no non-null value of the column in this shard can be within the range.
+     */
+    public boolean canMatch(Range<Comparable<?>> range)
+    {
+        checkNotNull(range, "range is null");
+
+        Comparable<?> endpoint = range.hasLowerBound() ? range.lowerEndpoint() : (range.hasUpperBound() ? range.upperEndpoint() : null);
+        if (endpoint == null) {
+            return true;
+        }
+        if (endpoint.getClass() != min.getClass()) {
+            // mixed type comparisons are not pruned
+            return true;
+        }
+
+        Range<Comparable<?>> shardRange = Range.<Comparable<?>>closed(min, max);
+        return range.isConnected(shardRange) && !range.intersection(shardRange).isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        return Objects.toStringHelper(this)
+                .add("shardId", shardId)
+                .add("columnId", columnId)
+                .add("type", type)
+                .add("nullCount", nullCount)
+                .add("min", min)
+                .add("max", max)
+                .toString();
+    }
+
+    public static class Mapper
+            implements ResultSetMapper<ShardColumnStats>
+    {
+        @Override
+        public ShardColumnStats map(int index, ResultSet r, StatementContext ctx)
+                throws SQLException
+        {
+            ColumnType type = ColumnType.valueOf(r.getString("column_type"));
+            Object min;
+            Object max;
+            if (type == LONG) {
+                min = r.getLong("min_long");
+                max = r.getLong("max_long");
+            }
+            else {
+                min = r.getDouble("min_double");
+                max = r.getDouble("max_double");
+            }
+            return new ShardColumnStats(r.getLong("shard_id"),
+                    r.getLong("column_id"),
+                    type,
+                    r.getLong("null_count"),
+                    min,
+                    max);
+        }
+    }
+}
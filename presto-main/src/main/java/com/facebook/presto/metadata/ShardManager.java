@@ -53,6 +53,18 @@ public interface ShardManager
      */
     void commitPartition(TableHandle tableHandle, String partition, List<? extends PartitionKey> partitionKeys, Map<Long, String> shards);
 
+    /**
+     * Record the zone maps of the columns of shards.
+     */
+    void addShardColumnStats(Iterable<ShardColumnStats> columnStats);
+
+    /**
+     * Get the zone maps of all committed shards in a table.
+     *
+     * @return mapping of shard ID to column zone maps
+     */
+    Multimap<Long, ShardColumnStats> getCommittedShardColumnStats(TableHandle tableHandle);
+
     /**
      * Get the names of all partitions that have been successfully imported.
      *
@@ -94,6 +106,11 @@ public interface ShardManager
      */
     void dropPartition(TableHandle tableHandle, String partitionName);
 
+    /**
+     * Drop all record of the partitions of the specified table
+     */
+    void dropTable(TableHandle tableHandle);
+
     /**
      * remove all partitions that are no longer referred from any shard.
      */
@@ -82,6 +82,20 @@ public interface ShardManagerDao
             ")")
     void createPartitionShards();
 
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS shard_column_stats (\n" +
+            "  shard_id BIGINT NOT NULL,\n" +
+            "  column_id BIGINT NOT NULL,\n" +
+            "  column_type VARCHAR(255) NOT NULL,\n" +
+            "  null_count BIGINT NOT NULL,\n" +
+            "  min_long BIGINT,\n" +
+            "  max_long BIGINT,\n" +
+            "  min_double DOUBLE,\n" +
+            "  max_double DOUBLE,\n" +
+            "  PRIMARY KEY (shard_id, column_id),\n" +
+            "  FOREIGN KEY (shard_id) REFERENCES shards (shard_id)\n" +
+            ")")
+    void createShardColumnStats();
+
     @SqlUpdate("INSERT INTO nodes (node_identifier) VALUES (:nodeIdentifier)")
     void insertNode(@Bind("nodeIdentifier") String nodeIdentifier);
 
@@ -122,6 +136,18 @@ public interface ShardManagerDao
             @Bind("tableId") long tableId,
             @Bind("partitionId") long partitionId);
 
+    @SqlUpdate("INSERT INTO shard_column_stats (shard_id, column_id, column_type, null_count, min_long, max_long, min_double, max_double)\n" +
+            "VALUES (:shardId, :columnId, :columnType, :nullCount, :minLong, :maxLong, :minDouble, :maxDouble)\n")
+    void insertShardColumnStats(
+            @Bind("shardId") long shardId,
+            @Bind("columnId") long columnId,
+            @Bind("columnType") String columnType,
+            @Bind("nullCount") long nullCount,
+            @Nullable @Bind("minLong") Long minLong,
+            @Nullable @Bind("maxLong") Long maxLong,
+            @Nullable @Bind("minDouble") Double minDouble,
+            @Nullable @Bind("maxDouble") Double maxDouble);
+
     @SqlUpdate("UPDATE shards SET committed = TRUE WHERE shard_id = :shardId")
     void commitShard(@Bind("shardId") long shardId);
 
@@ -170,6 +196,14 @@ public interface ShardManagerDao
     @Mapper(ShardNode.Mapper.class)
     List<ShardNode> getAllShardNodes(@Bind("tableId") long tableId, @Bind("partitionName") String partitionName);
 
+    @SqlQuery("SELECT scs.*\n" +
+            "FROM shard_column_stats scs\n" +
+            "JOIN shards s ON (scs.shard_id = s.shard_id)\n" +
+            "WHERE s.committed IS TRUE\n" +
+            "  AND s.table_id = :tableId\n")
+    @Mapper(ShardColumnStats.Mapper.class)
+    List<ShardColumnStats> getCommittedShardColumnStats(@Bind("tableId") long tableId);
+
     @SqlQuery("SELECT node_identifier FROM nodes")
     List<String> getAllNodesInUse();
 
@@ -188,6 +222,10 @@ public interface ShardManagerDao
             "WHERE shard_id = :shardId\n")
     void deleteShardFromPartitionShards(@Bind("shardId") long shardId);
 
+    @SqlUpdate("DELETE FROM shard_column_stats\n" +
+            "WHERE shard_id = :shardId\n")
+    void deleteShardColumnStats(@Bind("shardId") long shardId);
+
     @SqlUpdate("DELETE FROM shards\n" +
             "  WHERE shard_id = :shardId\n")
     void deleteShard(@Bind("shardId") long shardId);
@@ -254,6 +292,7 @@ public interface ShardManagerDao
             dao.createTablePartitions();
             dao.createPartitionKeys();
             dao.createPartitionShards();
+            dao.createShardColumnStats();
         }
     }
 }
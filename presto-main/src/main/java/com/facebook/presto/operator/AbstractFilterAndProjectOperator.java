@@ -30,6 +30,7 @@ public abstract class AbstractFilterAndProjectOperator
     private final List<TupleInfo> tupleInfos;
 
     private final PageBuilder pageBuilder;
+    private final FilterSelectivity filterSelectivity = new FilterSelectivity();
     private boolean finishing;
 
     public AbstractFilterAndProjectOperator(OperatorContext operatorContext, Iterable<TupleInfo> tupleInfos)
@@ -41,6 +42,16 @@ public abstract class AbstractFilterAndProjectOperator
 
     protected abstract void filterAndProjectRowOriented(Block[] blocks, PageBuilder pageBuilder);
 
+    /**
+     * Filters the page into a selection vector before projecting the selected rows, and returns
+     * the number of selected rows.  Operators without a separate filter pass use the fused loop.
+     */
+    protected int filterAndProjectSelectedPositions(Block[] blocks, PageBuilder pageBuilder)
+    {
+        filterAndProjectRowOriented(blocks, pageBuilder);
+        return blocks.length == 0 ? 0 : blocks[0].getPositionCount();
+    }
+
     @Override
     public OperatorContext getOperatorContext()
     {
@@ -84,8 +95,7 @@ public abstract class AbstractFilterAndProjectOperator
         checkNotNull(page, "page is null");
         checkState(!pageBuilder.isFull(), "Page buffer is full");
 
-        Block[] blocks = page.getBlocks();
-        filterAndProjectRowOriented(blocks, pageBuilder);
+        filterAndProject(page);
     }
 
     @Override
@@ -99,4 +109,16 @@ public abstract class AbstractFilterAndProjectOperator
         pageBuilder.reset();
         return page;
     }
+
+    private void filterAndProject(Page page)
+    {
+        Block[] blocks = page.getBlocks();
+        if (filterSelectivity.useSelectedPositions(blocks)) {
+            int selectedCount = filterAndProjectSelectedPositions(blocks, pageBuilder);
+            filterSelectivity.recordSelectedPositions(page.getPositionCount(), selectedCount);
+        }
+        else {
+            filterAndProjectRowOriented(blocks, pageBuilder);
+        }
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.tuple.TupleInfo.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
+
+import java.io.Closeable;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.units.DataSize.Unit.BYTE;
+
+/**
+ * Projects each field of a record cursor into a separate channel.  Subclasses decide how
+ * the positions of the cursor are read into the blocks of a page, and this class decides
+ * when a page is produced.
+ */
+public abstract class AbstractRecordProjectOperator
+        implements Operator, Closeable
+{
+    protected static final int ROWS_PER_REQUEST = 16384;
+
+    private final OperatorContext operatorContext;
+    private final RecordCursor cursor;
+    private final List<TupleInfo> tupleInfos;
+    private final long maxBlockSize;
+    private boolean finishing;
+    private long completedBytes;
+
+    protected AbstractRecordProjectOperator(OperatorContext operatorContext, List<ColumnType> columnTypes, RecordCursor cursor)
+    {
+        this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
+        checkNotNull(columnTypes, "columnTypes is null");
+        this.cursor = checkNotNull(cursor, "cursor is null");
+
+        // project each field into a separate channel
+        ImmutableList.Builder<TupleInfo> tupleInfos = ImmutableList.builder();
+        for (ColumnType columnType : columnTypes) {
+            tupleInfos.add(new TupleInfo(Type.fromColumnType(columnType)));
+        }
+        this.tupleInfos = tupleInfos.build();
+
+        maxBlockSize = columnTypes.isEmpty() ? 0 : PageBuilder.DEFAULT_MAX_PAGE_SIZE.toBytes() / columnTypes.size();
+    }
+
+    /**
+     * Reads at most the given number of positions from the cursor into the blocks of
+     * the next page, and returns the number of positions read, or 0 if the cursor is
+     * exhausted.
+     */
+    protected abstract int readPositions(int maxPositions);
+
+    /**
+     * Returns the size of the block of the channel in the row-packed tuple layout, which
+     * is how blocks are sized everywhere else.
+     */
+    protected abstract long getBlockSize(int channel);
+
+    protected abstract boolean isEmpty();
+
+    /**
+     * Returns the blocks of the next page, and starts new blocks.
+     */
+    protected abstract Block[] buildBlocks();
+
+    @Override
+    public OperatorContext getOperatorContext()
+    {
+        return operatorContext;
+    }
+
+    public RecordCursor getCursor()
+    {
+        return cursor;
+    }
+
+    @Override
+    public final List<TupleInfo> getTupleInfos()
+    {
+        return tupleInfos;
+    }
+
+    @Override
+    public final void finish()
+    {
+        close();
+    }
+
+    @Override
+    public final void close()
+    {
+        finishing = true;
+        cursor.close();
+    }
+
+    @Override
+    public final boolean isFinished()
+    {
+        return finishing && isEmpty();
+    }
+
+    @Override
+    public final ListenableFuture<?> isBlocked()
+    {
+        return NOT_BLOCKED;
+    }
+
+    @Override
+    public final boolean needsInput()
+    {
+        return false;
+    }
+
+    @Override
+    public final void addInput(Page page)
+    {
+        throw new UnsupportedOperationException(getClass().getName() + " can not take input");
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        if (!finishing) {
+            int rows = 0;
+            while (rows < ROWS_PER_REQUEST && !isFull()) {
+                int positions = readPositions(ROWS_PER_REQUEST - rows);
+                if (positions == 0) {
+                    finishing = true;
+                    break;
+                }
+                rows += positions;
+            }
+            recordCompletedBytes(rows);
+        }
+
+        // only return a full page is buffer is full or we are finishing
+        if (isEmpty() || (!finishing && !isFull())) {
+            return null;
+        }
+
+        Page page = new Page(buildBlocks());
+        operatorContext.recordGeneratedInput(page.getDataSize(), page.getPositionCount());
+        return page;
+    }
+
+    protected final boolean isFinishing()
+    {
+        return finishing;
+    }
+
+    protected final void setFinishing()
+    {
+        finishing = true;
+    }
+
+    /**
+     * Records the bytes read by the cursor since the last call as the input of the given
+     * number of positions.
+     */
+    protected final void recordCompletedBytes(int positions)
+    {
+        long bytesProcessed = cursor.getCompletedBytes() - completedBytes;
+        operatorContext.recordGeneratedInput(new DataSize(bytesProcessed, BYTE), positions);
+        completedBytes += bytesProcessed;
+    }
+
+    private boolean isFull()
+    {
+        long sizeInBytes = 0;
+        for (int channel = 0; channel < tupleInfos.size(); channel++) {
+            long blockSize = getBlockSize(channel);
+            if (blockSize > maxBlockSize) {
+                return true;
+            }
+            sizeInBytes += blockSize;
+        }
+        return sizeInBytes > PageBuilder.DEFAULT_MAX_PAGE_SIZE.toBytes();
+    }
+}
@@ -43,6 +43,7 @@ public abstract class AbstractScanFilterAndProjectOperator
     private final List<TupleInfo> tupleInfos;
     private final List<ColumnHandle> columns;
     private final PageBuilder pageBuilder;
+    private final FilterSelectivity filterSelectivity = new FilterSelectivity();
 
     @GuardedBy("this")
     private RecordCursor cursor;
@@ -72,6 +73,16 @@ public abstract class AbstractScanFilterAndProjectOperator
 
     protected abstract void filterAndProjectRowOriented(Block[] blocks, PageBuilder pageBuilder);
 
+    /**
+     * Filters the page into a selection vector before projecting the selected rows, and returns
+     * the number of selected rows.  Operators without a separate filter pass use the fused loop.
+     */
+    protected int filterAndProjectSelectedPositions(Block[] blocks, PageBuilder pageBuilder)
+    {
+        filterAndProjectRowOriented(blocks, pageBuilder);
+        return blocks.length == 0 ? 0 : blocks[0].getPositionCount();
+    }
+
     protected abstract int filterAndProjectRowOriented(RecordCursor cursor, PageBuilder pageBuilder);
 
     @Override
@@ -187,7 +198,7 @@ public abstract class AbstractScanFilterAndProjectOperator
             else {
                 Page output = operator.getOutput();
                 if (output != null) {
-                    filterAndProjectRowOriented(output.getBlocks(), pageBuilder);
+                    filterAndProject(output);
                 }
             }
         }
@@ -201,4 +212,16 @@ public abstract class AbstractScanFilterAndProjectOperator
         pageBuilder.reset();
         return page;
     }
+
+    private void filterAndProject(Page page)
+    {
+        Block[] blocks = page.getBlocks();
+        if (filterSelectivity.useSelectedPositions(blocks)) {
+            int selectedCount = filterAndProjectSelectedPositions(blocks, pageBuilder);
+            filterSelectivity.recordSelectedPositions(page.getPositionCount(), selectedCount);
+        }
+        else {
+            filterAndProjectRowOriented(blocks, pageBuilder);
+        }
+    }
 }
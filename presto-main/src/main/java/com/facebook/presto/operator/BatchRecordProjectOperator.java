@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.columnar.BooleanArrayBlock;
+import com.facebook.presto.block.columnar.DoubleArrayBlock;
+import com.facebook.presto.block.columnar.LongArrayBlock;
+import com.facebook.presto.block.columnar.SliceArrayBlock;
+import com.facebook.presto.block.lazy.LazyBlock;
+import com.facebook.presto.spi.BatchRecordCursor;
+import com.facebook.presto.spi.ColumnBatch;
+import com.facebook.presto.spi.ColumnBatchLoader;
+import com.facebook.presto.spi.ColumnType;
+import com.facebook.presto.spi.LazyBatchRecordCursor;
+import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.RecordSet;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slices;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+
+/**
+ * Projects each field of a batched record cursor into a separate channel.  The cursor
+ * fills a column batch per field, and the batch arrays become the blocks of the page
+ * without being copied.
+ * <p/>
+ * If the cursor can defer decoding, each page covers a single lazy batch, and its blocks
+ * are only decoded when a downstream operator reads their values.
+ *
+ * @see RecordProjectOperator for cursors that can only be read a row at a time
+ */
+public class BatchRecordProjectOperator
+        extends AbstractRecordProjectOperator
+{
+    private static final int ROWS_PER_BATCH = 1024;
+    private static final int INITIAL_BATCH_POSITIONS = 1024;
+
+    private final BatchRecordCursor cursor;
+    private final LazyBatchRecordCursor lazyCursor;
+    private final List<ColumnType> columnTypes;
+    private ColumnBatch[] batches;
+
+    /**
+     * Creates an operator for the record set, using this operator if the cursor of the
+     * record set can be read in batches, and a {@link RecordProjectOperator} otherwise.
+     */
+    public static Operator createRecordProjectOperator(OperatorContext operatorContext, RecordSet recordSet)
+    {
+        List<ColumnType> columnTypes = recordSet.getColumnTypes();
+        RecordCursor cursor = recordSet.cursor();
+        if (cursor instanceof BatchRecordCursor && !columnTypes.isEmpty()) {
+            return new BatchRecordProjectOperator(operatorContext, columnTypes, (BatchRecordCursor) cursor);
+        }
+        return new RecordProjectOperator(operatorContext, columnTypes, cursor);
+    }
+
+    public BatchRecordProjectOperator(OperatorContext operatorContext, List<ColumnType> columnTypes, BatchRecordCursor cursor)
+    {
+        super(operatorContext, columnTypes, cursor);
+        this.columnTypes = ImmutableList.copyOf(columnTypes);
+        checkArgument(!this.columnTypes.isEmpty(), "columnTypes is empty");
+        this.cursor = cursor;
+        this.lazyCursor = (cursor instanceof LazyBatchRecordCursor) ? (LazyBatchRecordCursor) cursor : null;
+        resetBatches();
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        if (lazyCursor != null) {
+            return getLazyOutput();
+        }
+        return super.getOutput();
+    }
+
+    @Override
+    protected int readPositions(int maxPositions)
+    {
+        return cursor.advanceNextBatch(batches, Math.min(ROWS_PER_BATCH, maxPositions));
+    }
+
+    @Override
+    protected Block[] buildBlocks()
+    {
+        Block[] blocks = new Block[batches.length];
+        for (int column = 0; column < blocks.length; column++) {
+            blocks[column] = toBlock(batches[column]);
+        }
+        resetBatches();
+        return blocks;
+    }
+
+    private Page getLazyOutput()
+    {
+        if (isFinishing()) {
+            return null;
+        }
+
+        ColumnBatchLoader[] loaders = new ColumnBatchLoader[columnTypes.size()];
+        int positions = lazyCursor.advanceNextLazyBatch(loaders, ROWS_PER_REQUEST);
+
+        // the page size is not known until the blocks are loaded, so only the bytes read by the cursor are recorded
+        recordCompletedBytes(positions);
+
+        if (positions == 0) {
+            setFinishing();
+            return null;
+        }
+
+        List<TupleInfo> tupleInfos = getTupleInfos();
+        Block[] blocks = new Block[loaders.length];
+        for (int column = 0; column < blocks.length; column++) {
+            blocks[column] = new LazyBlock(tupleInfos.get(column), positions, new ColumnBatchBlockLoader(loaders[column], positions));
+        }
+        return new Page(blocks);
+    }
+
+    private static Block toBlock(ColumnBatch batch)
+    {
+        int positionCount = batch.getPositionCount();
+        switch (batch.getType()) {
+            case BOOLEAN:
+                return new BooleanArrayBlock(positionCount, batch.getNulls(), batch.getBooleans());
+            case LONG:
+                return new LongArrayBlock(positionCount, batch.getNulls(), batch.getLongs());
+            case DOUBLE:
+                return new DoubleArrayBlock(positionCount, batch.getNulls(), batch.getDoubles());
+            case STRING:
+                return new SliceArrayBlock(positionCount, batch.getNulls(), batch.getOffsets(), Slices.wrappedBuffer(batch.getBytes()).slice(0, batch.getBytesSize()));
+            default:
+                throw new AssertionError("unimplemented type: " + batch.getType());
+        }
+    }
+
+    @Override
+    protected boolean isEmpty()
+    {
+        return batches[0].isEmpty();
+    }
+
+    @Override
+    protected long getBlockSize(int channel)
+    {
+        ColumnBatch batch = batches[channel];
+        if (batch.getType() == ColumnType.STRING) {
+            return batch.getPositionCount() * (long) (SIZE_OF_BYTE + SIZE_OF_INT) + batch.getBytesSize();
+        }
+        return batch.getPositionCount() * (long) getTupleInfos().get(channel).getFixedSize();
+    }
+
+    private void resetBatches()
+    {
+        batches = new ColumnBatch[columnTypes.size()];
+        for (int column = 0; column < batches.length; column++) {
+            batches[column] = new ColumnBatch(columnTypes.get(column), INITIAL_BATCH_POSITIONS);
+        }
+    }
+
+    private static class ColumnBatchBlockLoader
+            implements Supplier<Block>
+    {
+        private final ColumnBatchLoader loader;
+        private final int positionCount;
+
+        private ColumnBatchBlockLoader(ColumnBatchLoader loader, int positionCount)
+        {
+            this.loader = checkNotNull(loader, "loader is null");
+            this.positionCount = positionCount;
+        }
+
+        @Override
+        public Block get()
+        {
+            ColumnBatch batch = loader.load();
+            checkState(batch.getPositionCount() == positionCount, "Loaded batch has %s positions, expected %s", batch.getPositionCount(), positionCount);
+            return toBlock(batch);
+        }
+    }
+}
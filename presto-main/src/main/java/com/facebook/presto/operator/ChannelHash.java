@@ -15,75 +15,116 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.block.BlockCursor;
 import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.airlift.slice.Slice;
-import io.airlift.units.DataSize;
-import io.airlift.units.DataSize.Unit;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenCustomHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongHash;
 import it.unimi.dsi.fastutil.longs.LongHash.Strategy;
 
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceOffset;
-import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
 import static io.airlift.slice.SizeOf.sizeOf;
 
 public class ChannelHash
 {
     //
-    // This class is effectively a Multimap<KeyAddress,Position>.
+    // This class is effectively a Multimap<Key,Position>.
     //
-    // The key address is a SyntheticAddress and the position is the position of the key withing the
-    // channel index.
+    // The keys of the map are positions within the channel index, and the hash code of the key at every
+    // position is computed once when the hash is built.  The positions are split into partitions using
+    // the hash code, and each partition has its own key to position map, so the partitions can be built
+    // concurrently.  Once built, the maps are never modified.
     //
-    // The multimap itself is formed out of a regular map and position chaining array.  To perform a
-    // lookup, the "lookup" slice is set in the hash, and a synthetic address within the "lookup" slice
-    // is created. The "lookup" slice is given index -1 as to not conflict with any slices
-    // in the channel index.  Then first position is retrieved from the main address to position map.
-    // If a position was found, the remaining value positions are located using the position links array.
+    // To perform a lookup, the "lookup" slice is set in the hash, and the lookup tuple and its hash code
+    // are set in the strategy.  The map of the partition for the hash code is then queried with the
+    // special LOOKUP_POSITION key.  Then first position is retrieved from the key to position map.  If a
+    // position was found, the remaining value positions are located using the position links array.
     //
 
-    private static final int LOOKUP_SLICE_INDEX = 0xFF_FF_FF_FF;
+    private static final long LOOKUP_POSITION = -1;
 
     private final SliceHashStrategy hashStrategy;
-    private final AddressToPositionMap addressToPositionMap;
-    private final IntArrayList positionLinks;
+    private final KeyToPositionMap[] partitions;
+    private final int partitionShift;
+    private final int[] positionLinks;
 
     public ChannelHash(ChannelIndex channelIndex, OperatorContext operatorContext)
     {
-        hashStrategy = new SliceHashStrategy(channelIndex.getTupleInfo(), channelIndex.getSlices().elements());
-        addressToPositionMap = new AddressToPositionMap(channelIndex.getPositionCount(), hashStrategy);
-        addressToPositionMap.defaultReturnValue(-1);
-        positionLinks = new IntArrayList(new int[channelIndex.getValueAddresses().size()]);
-        Arrays.fill(positionLinks.elements(), -1);
-        for (int position = 0; position < channelIndex.getValueAddresses().size(); position++) {
-            operatorContext.setMemoryReservation(getEstimatedSize());
-            long sliceAddress = channelIndex.getValueAddresses().elements()[position];
-            int oldPosition = addressToPositionMap.put(sliceAddress, position);
-            if (oldPosition >= 0) {
-                // link the new position to the old position
-                positionLinks.set(position, oldPosition);
-            }
+        this(channelIndex, operatorContext, 1, MoreExecutors.sameThreadExecutor());
+    }
+
+    public ChannelHash(ChannelIndex channelIndex, OperatorContext operatorContext, int partitionCount, Executor executor)
+    {
+        checkNotNull(channelIndex, "channelIndex is null");
+        checkNotNull(operatorContext, "operatorContext is null");
+        checkArgument(partitionCount > 0 && Integer.bitCount(partitionCount) == 1, "partitionCount must be a power of two");
+        checkNotNull(executor, "executor is null");
+
+        hashStrategy = new SliceHashStrategy(channelIndex.getTupleInfo(), channelIndex.getSlices().elements(), channelIndex.getValueAddresses());
+        partitionShift = Integer.SIZE - Integer.numberOfTrailingZeros(partitionCount);
+
+        int positionCount = channelIndex.getValueAddresses().size();
+        positionLinks = new int[positionCount];
+        Arrays.fill(positionLinks, -1);
+
+        // group the positions by partition, keeping them in position order
+        int[] partitionSizes = new int[partitionCount];
+        for (int position = 0; position < positionCount; position++) {
+            partitionSizes[getPartition(hashStrategy.hashCodes[position])]++;
+        }
+        final int[][] partitionPositions = new int[partitionCount][];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitionPositions[partition] = new int[partitionSizes[partition]];
         }
+        int[] partitionOffsets = new int[partitionCount];
+        for (int position = 0; position < positionCount; position++) {
+            int partition = getPartition(hashStrategy.hashCodes[position]);
+            partitionPositions[partition][partitionOffsets[partition]++] = position;
+        }
+
+        // the maps are sized for their contents up front, so the memory can be reserved before building them
+        long estimatedSize = sizeOf(positionLinks) + sizeOf(hashStrategy.hashCodes);
+        for (int partitionSize : partitionSizes) {
+            estimatedSize += KeyToPositionMap.getEstimatedSize(partitionSize);
+        }
+        operatorContext.setMemoryReservation(estimatedSize);
+
+        partitions = new KeyToPositionMap[partitionCount];
+        buildPartitions(partitionPositions, executor);
     }
 
     public ChannelHash(ChannelHash hash)
     {
         // hash strategy can not be shared across threads, but everything else can
-        this.hashStrategy = new SliceHashStrategy(hash.hashStrategy.tupleInfo, hash.hashStrategy.slices);
-        this.addressToPositionMap = new AddressToPositionMap(hash.addressToPositionMap, hashStrategy);
-        addressToPositionMap.defaultReturnValue(-1);
+        this.hashStrategy = new SliceHashStrategy(hash.hashStrategy);
+        this.partitions = new KeyToPositionMap[hash.partitions.length];
+        for (int partition = 0; partition < partitions.length; partition++) {
+            partitions[partition] = new KeyToPositionMap(hash.partitions[partition], hashStrategy);
+            partitions[partition].defaultReturnValue(-1);
+        }
+        this.partitionShift = hash.partitionShift;
         this.positionLinks = hash.positionLinks;
     }
 
-    private long getEstimatedSize()
+    public int getPartitionCount()
     {
-        long addressToPositionSize = addressToPositionMap.getEstimatedSize().toBytes();
-        long positionLinksSize = sizeOf(positionLinks.elements());
-        return addressToPositionSize + positionLinksSize;
+        return partitions.length;
     }
 
     public void setLookupSlice(Slice lookupSlice)
@@ -93,13 +134,79 @@ public class ChannelHash
 
     public int get(BlockCursor cursor)
     {
-        int position = addressToPositionMap.get(encodeSyntheticAddress(LOOKUP_SLICE_INDEX, cursor.getRawOffset()));
-        return position;
+        hashStrategy.setLookupOffset(cursor.getRawOffset());
+        return partitions[getPartition(hashStrategy.lookupHashCode)].get(LOOKUP_POSITION);
     }
 
     public int getNextPosition(int currentPosition)
     {
-        return positionLinks.getInt(currentPosition);
+        return positionLinks[currentPosition];
+    }
+
+    private int getPartition(int hashCode)
+    {
+        // the maps select buckets with the low bits of the mixed hash, so use the high bits to pick the partition
+        return (int) ((HashCommon.murmurHash3(hashCode) & 0xFFFF_FFFFL) >>> partitionShift);
+    }
+
+    private void buildPartitions(final int[][] partitionPositions, Executor executor)
+    {
+        final AtomicInteger nextPartition = new AtomicInteger();
+        final CountDownLatch remainingPartitions = new CountDownLatch(partitions.length);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Runnable builder = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int partition = nextPartition.getAndIncrement(); partition < partitions.length; partition = nextPartition.getAndIncrement()) {
+                    try {
+                        partitions[partition] = buildPartition(partitionPositions[partition]);
+                    }
+                    catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                    finally {
+                        remainingPartitions.countDown();
+                    }
+                }
+            }
+        };
+
+        // helpers that start after all partitions are claimed exit immediately, and the
+        // current thread builds partitions too, so this never waits on a busy executor
+        int helpers = Math.min(partitions.length, Runtime.getRuntime().availableProcessors()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            executor.execute(builder);
+        }
+        builder.run();
+
+        try {
+            remainingPartitions.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+        if (failure.get() != null) {
+            throw Throwables.propagate(failure.get());
+        }
+    }
+
+    private KeyToPositionMap buildPartition(int[] positions)
+    {
+        // inserts never touch the lookup state of the strategy, so the builders can share it
+        KeyToPositionMap keyToPositionMap = new KeyToPositionMap(positions.length, hashStrategy);
+        keyToPositionMap.defaultReturnValue(-1);
+        for (int position : positions) {
+            int oldPosition = keyToPositionMap.put(position, position);
+            if (oldPosition >= 0) {
+                // link the new position to the old position
+                positionLinks[position] = oldPosition;
+            }
+        }
+        return keyToPositionMap;
     }
 
     public static class SliceHashStrategy
@@ -107,12 +214,36 @@ public class ChannelHash
     {
         private final TupleInfo tupleInfo;
         private final Slice[] slices;
+        private final long[] valueAddresses;
+        private final int[] hashCodes;
+
         private Slice lookupSlice;
+        private int lookupOffset;
+        private int lookupLength;
+        private int lookupHashCode;
 
-        public SliceHashStrategy(TupleInfo tupleInfo, Slice[] slices)
+        public SliceHashStrategy(TupleInfo tupleInfo, Slice[] slices, LongArrayList valueAddresses)
         {
             this.tupleInfo = tupleInfo;
             this.slices = slices;
+            this.valueAddresses = valueAddresses.elements();
+
+            // hash every key once, so probes, rehashes and resizes only read the cached value
+            this.hashCodes = new int[valueAddresses.size()];
+            for (int position = 0; position < hashCodes.length; position++) {
+                long sliceAddress = this.valueAddresses[position];
+                Slice slice = slices[decodeSliceIndex(sliceAddress)];
+                int offset = decodeSliceOffset(sliceAddress);
+                hashCodes[position] = slice.hashCode(offset, tupleInfo.size(slice, offset));
+            }
+        }
+
+        public SliceHashStrategy(SliceHashStrategy strategy)
+        {
+            this.tupleInfo = strategy.tupleInfo;
+            this.slices = strategy.slices;
+            this.valueAddresses = strategy.valueAddresses;
+            this.hashCodes = strategy.hashCodes;
         }
 
         public void setLookupSlice(Slice lookupSlice)
@@ -120,60 +251,86 @@ public class ChannelHash
             this.lookupSlice = lookupSlice;
         }
 
+        public void setLookupOffset(int lookupOffset)
+        {
+            this.lookupOffset = lookupOffset;
+            this.lookupLength = tupleInfo.size(lookupSlice, lookupOffset);
+            this.lookupHashCode = lookupSlice.hashCode(lookupOffset, lookupLength);
+        }
+
         @Override
-        public int hashCode(long sliceAddress)
+        public int hashCode(long position)
         {
-            Slice slice = getSliceForSyntheticAddress(sliceAddress);
-            int offset = (int) sliceAddress;
-            int length = tupleInfo.size(slice, offset);
-            int hashCode = slice.hashCode(offset, length);
-            return hashCode;
+            if (position == LOOKUP_POSITION) {
+                return lookupHashCode;
+            }
+            return hashCodes[(int) position];
         }
 
         @Override
-        public boolean equals(long leftSliceAddress, long rightSliceAddress)
+        public boolean equals(long leftPosition, long rightPosition)
         {
-            Slice leftSlice = getSliceForSyntheticAddress(leftSliceAddress);
-            int leftOffset = decodeSliceOffset(leftSliceAddress);
-            int leftLength = tupleInfo.size(leftSlice, leftOffset);
+            if (leftPosition == rightPosition) {
+                return true;
+            }
 
-            Slice rightSlice = getSliceForSyntheticAddress(rightSliceAddress);
-            int rightOffset = decodeSliceOffset(rightSliceAddress);
-            int rightLength = tupleInfo.size(rightSlice, rightOffset);
+            // most keys that share a bucket are not equal, so check the cached hash codes first
+            if (hashCode(leftPosition) != hashCode(rightPosition)) {
+                return false;
+            }
 
-            return leftSlice.equals(leftOffset, leftLength, rightSlice, rightOffset, rightLength);
-        }
+            Slice leftSlice;
+            int leftOffset;
+            int leftLength;
+            if (leftPosition == LOOKUP_POSITION) {
+                leftSlice = lookupSlice;
+                leftOffset = lookupOffset;
+                leftLength = lookupLength;
+            }
+            else {
+                long leftSliceAddress = valueAddresses[(int) leftPosition];
+                leftSlice = slices[decodeSliceIndex(leftSliceAddress)];
+                leftOffset = decodeSliceOffset(leftSliceAddress);
+                leftLength = tupleInfo.size(leftSlice, leftOffset);
+            }
 
-        private Slice getSliceForSyntheticAddress(long sliceAddress)
-        {
-            int sliceIndex = decodeSliceIndex(sliceAddress);
-            Slice slice;
-            if (sliceIndex == LOOKUP_SLICE_INDEX) {
-                slice = lookupSlice;
+            Slice rightSlice;
+            int rightOffset;
+            int rightLength;
+            if (rightPosition == LOOKUP_POSITION) {
+                rightSlice = lookupSlice;
+                rightOffset = lookupOffset;
+                rightLength = lookupLength;
             }
             else {
-                slice = slices[sliceIndex];
+                long rightSliceAddress = valueAddresses[(int) rightPosition];
+                rightSlice = slices[decodeSliceIndex(rightSliceAddress)];
+                rightOffset = decodeSliceOffset(rightSliceAddress);
+                rightLength = tupleInfo.size(rightSlice, rightOffset);
             }
-            return slice;
+
+            return leftSlice.equals(leftOffset, leftLength, rightSlice, rightOffset, rightLength);
         }
     }
 
-    private static class AddressToPositionMap
+    private static class KeyToPositionMap
             extends Long2IntOpenCustomHashMap
     {
-        private AddressToPositionMap(int expected, LongHash.Strategy strategy)
+        private KeyToPositionMap(int expected, LongHash.Strategy strategy)
         {
             super(expected, strategy);
         }
 
-        private AddressToPositionMap(Long2IntMap m, LongHash.Strategy strategy)
+        private KeyToPositionMap(Long2IntMap m, LongHash.Strategy strategy)
         {
             super(m, strategy);
         }
 
-        public DataSize getEstimatedSize()
+        public static long getEstimatedSize(int expected)
         {
-            return new DataSize(sizeOf(this.key) + sizeOf(this.value) + sizeOf(this.used), Unit.BYTE);
+            // key, value and used arrays
+            long arraySize = HashCommon.arraySize(expected, Hash.DEFAULT_LOAD_FACTOR);
+            return arraySize * (SIZE_OF_LONG + SIZE_OF_INT + SIZE_OF_BYTE);
         }
     }
 }
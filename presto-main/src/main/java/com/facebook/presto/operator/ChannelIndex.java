@@ -86,6 +86,14 @@ public class ChannelIndex
         return valueAddresses;
     }
 
+    public void clear()
+    {
+        positionCount = 0;
+        valueAddresses.clear();
+        slices.clear();
+        slicesMemorySize = 0;
+    }
+
     public void swap(int a, int b)
     {
         long[] elements = valueAddresses.elements();
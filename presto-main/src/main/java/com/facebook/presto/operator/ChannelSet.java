@@ -16,7 +16,6 @@ package com.facebook.presto.operator;
 import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.BlockCursor;
-import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.tuple.TupleInfo;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
@@ -24,7 +23,8 @@ import io.airlift.units.DataSize;
 import it.unimi.dsi.fastutil.longs.LongHash;
 import it.unimi.dsi.fastutil.longs.LongOpenCustomHashSet;
 
-import static com.facebook.presto.operator.SliceHashStrategy.LOOKUP_SLICE_INDEX;
+import static com.facebook.presto.block.BlockUtils.toUncompressedBlock;
+import static com.facebook.presto.operator.SliceHashStrategy.LOOKUP_POSITION;
 import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -65,7 +65,8 @@ public class ChannelSet
 
     public boolean contains(BlockCursor cursor)
     {
-        return addressValueSet.contains(SyntheticAddress.encodeSyntheticAddress(LOOKUP_SLICE_INDEX, cursor.getRawOffset()));
+        strategy.setLookupOffset(cursor.getRawOffset());
+        return addressValueSet.contains(LOOKUP_POSITION);
     }
 
     public int size()
@@ -132,7 +133,7 @@ public class ChannelSet
             operatorContext.setMemoryReservation(getEstimatedSize());
 
             BlockCursor sourceCursor = sourceBlock.cursor();
-            Slice sourceSlice = ((UncompressedBlock) sourceBlock).getSlice();
+            Slice sourceSlice = toUncompressedBlock(sourceBlock).getSlice();
             strategy.setLookupSlice(sourceSlice);
 
             for (int position = 0; position < sourceBlock.getPositionCount(); position++) {
@@ -141,9 +142,10 @@ public class ChannelSet
                 // Record whether we have seen a null
                 containsNull |= sourceCursor.isNull(0); // There should only be one field in this channel!
 
-                long sourceAddress = encodeSyntheticAddress(LOOKUP_SLICE_INDEX, sourceCursor.getRawOffset());
+                // hash the value once for both the lookup and the insert
+                strategy.setLookupOffset(sourceCursor.getRawOffset());
 
-                if (!addressValueSet.contains(sourceAddress)) {
+                if (!addressValueSet.contains(LOOKUP_POSITION)) {
                     int length = tupleInfo.size(sourceSlice, sourceCursor.getRawOffset());
                     if (blockBuilder.writableBytes() < length) {
                         Slice slice = Slices.allocate(Math.max((int) BlockBuilder.DEFAULT_MAX_BLOCK_SIZE.toBytes(), length));
@@ -153,7 +155,7 @@ public class ChannelSet
                     }
                     int blockRawOffset = blockBuilder.size();
                     blockBuilder.appendTuple(sourceSlice, sourceCursor.getRawOffset(), length);
-                    addressValueSet.add(encodeSyntheticAddress(currentBlockId, blockRawOffset));
+                    addressValueSet.add(strategy.addValue(encodeSyntheticAddress(currentBlockId, blockRawOffset), strategy.getLookupHashCode()));
                 }
             }
         }
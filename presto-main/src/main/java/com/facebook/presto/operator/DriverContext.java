@@ -24,6 +24,7 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.joda.time.DateTime;
 
+import java.io.File;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -138,6 +139,11 @@ public class DriverContext
         return pipelineContext.getMaxMemorySize();
     }
 
+    public File getSpillPath()
+    {
+        return pipelineContext.getSpillPath();
+    }
+
     public boolean reserveMemory(long bytes)
     {
         boolean result = pipelineContext.reserveMemory(bytes);
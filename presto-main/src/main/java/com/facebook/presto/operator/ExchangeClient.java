@@ -22,6 +22,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.http.client.AsyncHttpClient;
 import io.airlift.units.DataSize;
+import io.airlift.units.DataSize.Unit;
 import io.airlift.units.Duration;
 
 import javax.annotation.Nullable;
@@ -32,9 +33,11 @@ import java.io.Closeable;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -56,6 +59,7 @@ public class ExchangeClient
     private final long maxBufferedBytes;
     private final DataSize maxResponseSize;
     private final int concurrentRequestMultiplier;
+    private final boolean compressionEnabled;
     private final AsyncHttpClient httpClient;
     private final Executor executor;
 
@@ -70,6 +74,9 @@ public class ExchangeClient
     @GuardedBy("this")
     private final Deque<HttpPageBufferClient> queuedClients = new LinkedList<>();
 
+    @GuardedBy("this")
+    private final Map<HttpPageBufferClient, Long> outstandingRequestBytes = new HashMap<>();
+
     private final Set<HttpPageBufferClient> completedClients = Sets.newSetFromMap(new ConcurrentHashMap<HttpPageBufferClient, Boolean>());
     private final LinkedBlockingDeque<Page> pageBuffer = new LinkedBlockingDeque<>();
 
@@ -90,10 +97,21 @@ public class ExchangeClient
             int concurrentRequestMultiplier,
             AsyncHttpClient httpClient,
             Executor executor)
+    {
+        this(maxBufferedBytes, maxResponseSize, concurrentRequestMultiplier, false, httpClient, executor);
+    }
+
+    public ExchangeClient(DataSize maxBufferedBytes,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            boolean compressionEnabled,
+            AsyncHttpClient httpClient,
+            Executor executor)
     {
         this.maxBufferedBytes = maxBufferedBytes.toBytes();
         this.maxResponseSize = maxResponseSize;
         this.concurrentRequestMultiplier = concurrentRequestMultiplier;
+        this.compressionEnabled = compressionEnabled;
         this.httpClient = httpClient;
         this.executor = checkNotSameThreadExecutor(executor, "executor");
     }
@@ -105,11 +123,15 @@ public class ExchangeClient
             bufferedPages--;
         }
 
+        long bytesReceived = 0;
+        long uncompressedBytesReceived = 0;
         ImmutableList.Builder<PageBufferClientStatus> exchangeStatus = ImmutableList.builder();
         for (HttpPageBufferClient client : allClients.values()) {
             exchangeStatus.add(client.getStatus());
+            bytesReceived += client.getBytesReceived();
+            uncompressedBytesReceived += client.getUncompressedBytesReceived();
         }
-        return new ExchangeClientStatus(bufferBytes, averageBytesPerRequest, bufferedPages, exchangeStatus.build());
+        return new ExchangeClientStatus(bufferBytes, averageBytesPerRequest, bufferedPages, bytesReceived, uncompressedBytesReceived, exchangeStatus.build());
     }
 
     public synchronized void addLocation(URI location)
@@ -206,6 +228,7 @@ public class ExchangeClient
             Closeables.closeQuietly(client);
         }
         pageBuffer.clear();
+        outstandingRequestBytes.clear();
         bufferBytes = 0;
         if (pageBuffer.peekLast() != NO_MORE_PAGES) {
             checkState(pageBuffer.add(NO_MORE_PAGES), "Could not add no more pages marker");
@@ -234,7 +257,7 @@ public class ExchangeClient
         // add clients for new locations
         for (URI location : locations) {
             if (!allClients.containsKey(location)) {
-                HttpPageBufferClient client = new HttpPageBufferClient(httpClient, maxResponseSize, location, new ExchangeClientCallback(), executor);
+                HttpPageBufferClient client = new HttpPageBufferClient(httpClient, maxResponseSize, location, compressionEnabled, new ExchangeClientCallback(), executor);
                 allClients.put(location, client);
                 queuedClients.add(client);
             }
@@ -251,18 +274,50 @@ public class ExchangeClient
 
         int clientCount = (int) ((1.0 * neededBytes / averageBytesPerRequest) * concurrentRequestMultiplier);
         clientCount = Math.max(clientCount, 1);
+        clientCount -= outstandingRequestBytes.size();
 
-        int pendingClients = allClients.size() - queuedClients.size() - completedClients.size();
-        clientCount -= pendingClients;
+        // every running request is charged the most bytes its response may contain, so the
+        // buffered pages and the pending responses together never exceed the buffer limit
+        long reservedBytes = bufferBytes;
+        for (long requestBytes : outstandingRequestBytes.values()) {
+            reservedBytes += requestBytes;
+        }
 
-        for (int i = 0; i < clientCount; i++) {
-            HttpPageBufferClient client = queuedClients.poll();
+        while (clientCount > 0 && reservedBytes < maxBufferedBytes) {
+            HttpPageBufferClient client = pollFullestClient();
             if (client == null) {
                 // no more clients available
                 return;
             }
-            client.scheduleRequest();
+
+            long requestBytes = Math.min(client.getRequestSize().toBytes(), maxBufferedBytes - reservedBytes);
+            if (client.scheduleRequest(new DataSize(requestBytes, Unit.BYTE))) {
+                outstandingRequestBytes.put(client, requestBytes);
+                reservedBytes += requestBytes;
+                clientCount--;
+            }
+        }
+    }
+
+    /**
+     * Removes the queued client whose recent responses were the fullest, since its upstream
+     * buffer has the most data queued and is the closest to blocking its producer.
+     */
+    private synchronized HttpPageBufferClient pollFullestClient()
+    {
+        HttpPageBufferClient fullestClient = null;
+        double fullestRatio = -1;
+        for (HttpPageBufferClient client : queuedClients) {
+            double fillRatio = client.getAverageFillRatio();
+            if (fillRatio > fullestRatio) {
+                fullestClient = client;
+                fullestRatio = fillRatio;
+            }
+        }
+        if (fullestClient != null) {
+            queuedClients.remove(fullestClient);
         }
+        return fullestClient;
     }
 
     public synchronized ListenableFuture<?> isBlocked()
@@ -306,6 +361,7 @@ public class ExchangeClient
 
     private synchronized void requestComplete(HttpPageBufferClient client)
     {
+        outstandingRequestBytes.remove(client);
         if (!queuedClients.contains(client)) {
             queuedClients.add(client);
         }
@@ -315,6 +371,7 @@ public class ExchangeClient
     private synchronized void clientFinished(HttpPageBufferClient client)
     {
         checkNotNull(client, "client is null");
+        outstandingRequestBytes.remove(client);
         completedClients.add(client);
         scheduleRequestIfNecessary();
     }
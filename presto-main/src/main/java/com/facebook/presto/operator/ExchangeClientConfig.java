@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 
@@ -24,6 +25,7 @@ public class ExchangeClientConfig
 {
     private DataSize exchangeMaxBufferSize = new DataSize(32, Unit.MEGABYTE);
     private int exchangeConcurrentRequestMultiplier = 3;
+    private boolean exchangeCompressionEnabled;
 
     @NotNull
     public DataSize getExchangeMaxBufferSize()
@@ -50,4 +52,17 @@ public class ExchangeClientConfig
         this.exchangeConcurrentRequestMultiplier = exchangeConcurrentRequestMultiplier;
         return this;
     }
+
+    public boolean isExchangeCompressionEnabled()
+    {
+        return exchangeCompressionEnabled;
+    }
+
+    @Config("exchange.compression-enabled")
+    @ConfigDescription("Request Snappy compressed pages from remote buffers")
+    public ExchangeClientConfig setExchangeCompressionEnabled(boolean exchangeCompressionEnabled)
+    {
+        this.exchangeCompressionEnabled = exchangeCompressionEnabled;
+        return this;
+    }
 }
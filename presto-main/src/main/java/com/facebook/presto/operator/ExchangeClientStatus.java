@@ -27,6 +27,8 @@ public class ExchangeClientStatus
     private final long bufferedBytes;
     private final long averageBytesPerRequest;
     private final int bufferedPages;
+    private final long bytesReceived;
+    private final long uncompressedBytesReceived;
     private final List<PageBufferClientStatus> pageBufferClientStatuses;
 
     @JsonCreator
@@ -34,11 +36,15 @@ public class ExchangeClientStatus
             @JsonProperty("bufferedBytes") long bufferedBytes,
             @JsonProperty("averageBytesPerRequest") long averageBytesPerRequest,
             @JsonProperty("bufferedPages") int bufferedPages,
+            @JsonProperty("bytesReceived") long bytesReceived,
+            @JsonProperty("uncompressedBytesReceived") long uncompressedBytesReceived,
             @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses)
     {
         this.bufferedBytes = bufferedBytes;
         this.averageBytesPerRequest = averageBytesPerRequest;
         this.bufferedPages = bufferedPages;
+        this.bytesReceived = bytesReceived;
+        this.uncompressedBytesReceived = uncompressedBytesReceived;
         this.pageBufferClientStatuses = ImmutableList.copyOf(checkNotNull(pageBufferClientStatuses, "pageBufferClientStatuses is null"));
     }
 
@@ -60,6 +66,24 @@ public class ExchangeClientStatus
         return bufferedPages;
     }
 
+    /**
+     * Bytes of page data received from the remote buffers, as sent over the wire.
+     */
+    @JsonProperty
+    public long getBytesReceived()
+    {
+        return bytesReceived;
+    }
+
+    /**
+     * Bytes of page data received from the remote buffers, after decompression.
+     */
+    @JsonProperty
+    public long getUncompressedBytesReceived()
+    {
+        return uncompressedBytesReceived;
+    }
+
     @JsonProperty
     public List<PageBufferClientStatus> getPageBufferClientStatuses()
     {
@@ -73,6 +97,8 @@ public class ExchangeClientStatus
                 .add("bufferBytes", bufferedBytes)
                 .add("averageBytesPerRequest", averageBytesPerRequest)
                 .add("bufferedPages", bufferedPages)
+                .add("bytesReceived", bytesReceived)
+                .add("uncompressedBytesReceived", uncompressedBytesReceived)
                 .add("pageBufferClientStatuses", pageBufferClientStatuses)
                 .toString();
     }
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.lazy.LazyBlock;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Chooses between filtering a page into a selection vector before projecting the selected
+ * rows, and filtering and projecting each row in a single fused loop.  The separate filter
+ * pass only pays off when it keeps lazily loaded columns from being loaded, so it is used
+ * for pages with unloaded blocks while the filter passes at most half of the rows.  Once
+ * more rows pass, the fused loop is used, and the selectivity is measured again every
+ * few pages.
+ */
+@NotThreadSafe
+final class FilterSelectivity
+{
+    private static final int MEASURE_INTERVAL_PAGES = 16;
+
+    private boolean selective = true;
+    private int fusedPages;
+
+    public boolean useSelectedPositions(Block[] blocks)
+    {
+        if (!hasUnloadedBlock(blocks)) {
+            return false;
+        }
+        if (selective) {
+            return true;
+        }
+        fusedPages++;
+        if (fusedPages < MEASURE_INTERVAL_PAGES) {
+            return false;
+        }
+        fusedPages = 0;
+        return true;
+    }
+
+    public void recordSelectedPositions(int positionCount, int selectedCount)
+    {
+        selective = selectedCount <= positionCount / 2;
+    }
+
+    private static boolean hasUnloadedBlock(Block[] blocks)
+    {
+        for (Block block : blocks) {
+            if (block instanceof LazyBlock && !((LazyBlock) block).isLoaded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
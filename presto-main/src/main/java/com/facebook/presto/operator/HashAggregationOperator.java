@@ -17,6 +17,7 @@ import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.BlockCursor;
 import com.facebook.presto.block.uncompressed.UncompressedBlock;
+import com.facebook.presto.operator.Spiller.RunCursor;
 import com.facebook.presto.operator.aggregation.AggregationFunction;
 import com.facebook.presto.operator.aggregation.FixedWidthAggregationFunction;
 import com.facebook.presto.operator.aggregation.VariableWidthAggregationFunction;
@@ -25,6 +26,7 @@ import com.facebook.presto.sql.tree.Input;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
@@ -32,14 +34,21 @@ import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.slice.SizeOf;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenCustomHashMap;
 import it.unimi.dsi.fastutil.longs.LongHash.Strategy;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
+import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 
+import static com.facebook.presto.block.BlockUtils.toUncompressedBlock;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceOffset;
 import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
@@ -47,7 +56,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 public class HashAggregationOperator
-        implements Operator
+        implements Operator, Closeable
 {
     public static class HashAggregationOperatorFactory
             implements OperatorFactory
@@ -120,6 +129,8 @@ public class HashAggregationOperator
     private final List<TupleInfo> tupleInfos;
     private final HashMemoryManager memoryManager;
 
+    private final Spiller spiller;
+
     private GroupByHashAggregationBuilder aggregationBuilder;
     private Iterator<Page> outputIterator;
     private boolean finishing;
@@ -144,6 +155,7 @@ public class HashAggregationOperator
         this.step = step;
         this.expectedGroups = expectedGroups;
         this.memoryManager = new HashMemoryManager(operatorContext);
+        this.spiller = new Spiller(operatorContext, "hash-aggregation");
 
         this.tupleInfos = toTupleInfos(groupByTupleInfo, step, functionDefinitions);
     }
@@ -169,7 +181,16 @@ public class HashAggregationOperator
     @Override
     public boolean isFinished()
     {
-        return finishing && aggregationBuilder == null && (outputIterator == null || !outputIterator.hasNext());
+        return finishing && aggregationBuilder == null && spiller.isEmpty() && (outputIterator == null || !outputIterator.hasNext());
+    }
+
+    /**
+     * Removes the spilled runs that have not been merged.
+     */
+    @Override
+    public void close()
+    {
+        spiller.close();
     }
 
     @Override
@@ -210,21 +231,36 @@ public class HashAggregationOperator
     public Page getOutput()
     {
         if (outputIterator == null || !outputIterator.hasNext()) {
-            // no data
-            if (aggregationBuilder == null) {
-                return null;
+            if (finishing && !spiller.isEmpty()) {
+                // spill the remaining groups so every group is in exactly one sorted run, and merge the runs
+                if (aggregationBuilder != null) {
+                    spiller.spill(aggregationBuilder.spill());
+                    aggregationBuilder = null;
+                }
+                outputIterator = new SpilledRunsMerger(spiller.openRuns());
             }
+            else {
+                // no data
+                if (aggregationBuilder == null) {
+                    return null;
+                }
 
-            // only flush if we are finishing or the aggregation builder is full
-            if (!finishing && !aggregationBuilder.isFull()) {
-                return null;
-            }
+                // only flush if we are finishing or the aggregation builder is full
+                if (!finishing && !aggregationBuilder.isFull()) {
+                    return null;
+                }
 
-            // Only partial aggregation can flush early. Also, check that we are not flushing tiny bits at a time
-            checkState(finishing || step == Step.PARTIAL, "Task exceeded max memory size of %s", memoryManager.getMaxMemorySize());
+                // Only partial aggregation can flush early, other steps must spill to disk
+                if (!finishing && step != Step.PARTIAL) {
+                    checkState(spiller.isEnabled(), "Task exceeded max memory size of %s", memoryManager.getMaxMemorySize());
+                    spiller.spill(aggregationBuilder.spill());
+                    aggregationBuilder = null;
+                    return null;
+                }
 
-            outputIterator = aggregationBuilder.build();
-            aggregationBuilder = null;
+                outputIterator = aggregationBuilder.build();
+                aggregationBuilder = null;
+            }
 
             if (!outputIterator.hasNext()) {
                 return null;
@@ -249,6 +285,117 @@ public class HashAggregationOperator
         return tupleInfos.build();
     }
 
+    /**
+     * Merges spilled runs back into final groups.  Each run is sorted by the hash of the
+     * group key, so all the rows for a key are seen together and the merge only needs
+     * enough memory for the groups of one hash value.
+     */
+    private class SpilledRunsMerger
+            extends AbstractIterator<Page>
+    {
+        private final List<AggregationFunctionDefinition> mergeFunctionDefinitions;
+        private final PriorityQueue<SpilledRun> runs;
+        private Iterator<Page> output = Iterators.emptyIterator();
+
+        private SpilledRunsMerger(List<RunCursor> spilledRuns)
+        {
+            // spilled pages are laid out as the group key followed by one intermediate value per aggregation
+            ImmutableList.Builder<AggregationFunctionDefinition> mergeFunctionDefinitions = ImmutableList.builder();
+            for (int i = 0; i < functionDefinitions.size(); i++) {
+                mergeFunctionDefinitions.add(AggregationFunctionDefinition.aggregation(functionDefinitions.get(i).getFunction(), new Input(i + 1, 0)));
+            }
+            this.mergeFunctionDefinitions = mergeFunctionDefinitions.build();
+
+            runs = new PriorityQueue<>(Math.max(spilledRuns.size(), 1), new Comparator<SpilledRun>()
+            {
+                @Override
+                public int compare(SpilledRun left, SpilledRun right)
+                {
+                    return Integer.compare(left.getHash(), right.getHash());
+                }
+            });
+            for (RunCursor spilledRun : spilledRuns) {
+                SpilledRun run = new SpilledRun(spilledRun, groupByTupleInfo);
+                if (run.advance()) {
+                    runs.add(run);
+                }
+            }
+        }
+
+        @Override
+        protected Page computeNext()
+        {
+            while (!output.hasNext()) {
+                if (runs.isEmpty()) {
+                    return endOfData();
+                }
+
+                GroupByHashAggregationBuilder builder = new GroupByHashAggregationBuilder(
+                        mergeFunctionDefinitions,
+                        Step.FINAL,
+                        expectedGroups,
+                        0,
+                        groupByTupleInfo,
+                        memoryManager);
+
+                // equal keys have equal hashes, so the builder can only be flushed between hash values
+                int currentHash = runs.peek().getHash();
+                while (!runs.isEmpty()) {
+                    SpilledRun run = runs.peek();
+                    if (run.getHash() != currentHash) {
+                        if (builder.isFull()) {
+                            break;
+                        }
+                        currentHash = run.getHash();
+                    }
+
+                    runs.poll();
+                    builder.processRow(run.getCursors());
+                    if (run.advance()) {
+                        runs.add(run);
+                    }
+                }
+                output = builder.build();
+            }
+            return output.next();
+        }
+    }
+
+    private static class SpilledRun
+    {
+        private final RunCursor cursor;
+        private final TupleInfo groupByTupleInfo;
+        private int hash;
+
+        private SpilledRun(RunCursor cursor, TupleInfo groupByTupleInfo)
+        {
+            this.cursor = cursor;
+            this.groupByTupleInfo = groupByTupleInfo;
+        }
+
+        public BlockCursor[] getCursors()
+        {
+            return cursor.getCursors();
+        }
+
+        public int getHash()
+        {
+            return hash;
+        }
+
+        public boolean advance()
+        {
+            if (!cursor.advanceNextPosition()) {
+                return false;
+            }
+
+            Slice slice = cursor.getRawSlice(0);
+            int offset = cursor.getRawOffset(0);
+            hash = slice.hashCode(offset, groupByTupleInfo.size(slice, offset));
+            return true;
+        }
+    }
+
     private static class GroupByHashAggregationBuilder
     {
         private final List<Aggregator> aggregates;
@@ -303,7 +450,7 @@ public class HashAggregationOperator
                 cursors[i] = blocks[i].cursor();
             }
 
-            Slice groupBySlice = ((UncompressedBlock) blocks[groupByChannel]).getSlice();
+            Slice groupBySlice = toUncompressedBlock(blocks[groupByChannel]).getSlice();
             hashStrategy.setLookupSlice(groupBySlice);
 
             // process row at a time
@@ -325,6 +472,15 @@ public class HashAggregationOperator
             }
         }
 
+        private void processRow(BlockCursor[] cursors)
+        {
+            Slice groupBySlice = cursors[groupByChannel].getRawSlice();
+            hashStrategy.setLookupSlice(groupBySlice);
+
+            int groupId = putIfAbsent(groupBySlice, cursors);
+            processRow(cursors, groupId);
+        }
+
         private int putIfAbsent(Slice groupBySlice, BlockCursor[] cursors)
         {
             // lookup the group id (row number of the key)
@@ -383,6 +539,66 @@ public class HashAggregationOperator
             return memoryManager.canUse(memorySize);
         }
 
+        /**
+         * Returns pages of the group keys and intermediate values sorted by the hash of the group key.
+         */
+        public Iterator<Page> spill()
+        {
+            final long[] groupAddresses = new long[nextGroupId];
+            for (Long2IntMap.Entry entry : addressToGroupId.long2IntEntrySet()) {
+                groupAddresses[entry.getIntValue()] = entry.getLongKey();
+            }
+
+            final int[] groupIds = new int[nextGroupId];
+            final int[] groupHashes = new int[nextGroupId];
+            for (int groupId = 0; groupId < nextGroupId; groupId++) {
+                groupIds[groupId] = groupId;
+                groupHashes[groupId] = hashStrategy.hashCode(groupAddresses[groupId]);
+            }
+            IntArrays.quickSort(groupIds, new AbstractIntComparator()
+            {
+                @Override
+                public int compare(int left, int right)
+                {
+                    return Integer.compare(groupHashes[left], groupHashes[right]);
+                }
+            });
+
+            ImmutableList.Builder<TupleInfo> tupleInfos = ImmutableList.builder();
+            tupleInfos.add(groupByTupleInfo);
+            for (Aggregator aggregate : aggregates) {
+                tupleInfos.add(aggregate.getIntermediateTupleInfo());
+            }
+            final PageBuilder pageBuilder = new PageBuilder(tupleInfos.build());
+
+            return new AbstractIterator<Page>()
+            {
+                private int index;
+
+                @Override
+                protected Page computeNext()
+                {
+                    if (index == groupIds.length) {
+                        return endOfData();
+                    }
+
+                    pageBuilder.reset();
+                    while (!pageBuilder.isFull() && index < groupIds.length) {
+                        int groupId = groupIds[index];
+                        long address = groupAddresses[groupId];
+                        Slice slice = hashStrategy.getSliceForSyntheticAddress(address);
+                        int offset = decodeSliceOffset(address);
+                        pageBuilder.getBlockBuilder(0).appendTuple(slice, offset, groupByTupleInfo.size(slice, offset));
+                        for (int i = 0; i < aggregates.size(); i++) {
+                            aggregates.get(i).evaluateIntermediate(groupId, pageBuilder.getBlockBuilder(i + 1));
+                        }
+                        index++;
+                    }
+                    return pageBuilder.build();
+                }
+            };
+        }
+
         public Iterator<Page> build()
         {
             // add the last block if it is not empty
@@ -478,11 +694,15 @@ public class HashAggregationOperator
 
         TupleInfo getTupleInfo();
 
+        TupleInfo getIntermediateTupleInfo();
+
         void initialize(int position);
 
         void addValue(BlockCursor[] cursors, int position);
 
         void evaluate(int position, BlockBuilder output);
+
+        void evaluateIntermediate(int position, BlockBuilder output);
     }
 
     private static class FixedWidthAggregator
@@ -526,6 +746,12 @@ public class HashAggregationOperator
             }
         }
 
+        @Override
+        public TupleInfo getIntermediateTupleInfo()
+        {
+            return function.getIntermediateTupleInfo();
+        }
+
         @Override
         public void initialize(int position)
         {
@@ -589,6 +815,17 @@ public class HashAggregationOperator
                 function.evaluateFinal(slice, sliceOffset, output);
             }
         }
+
+        @Override
+        public void evaluateIntermediate(int position, BlockBuilder output)
+        {
+            int offset = position * fixedWidthSize;
+
+            int sliceIndex = offset / sliceSize;
+            Slice slice = slices.get(sliceIndex);
+            int sliceOffset = offset - (sliceIndex * sliceSize);
+            function.evaluateIntermediate(slice, sliceOffset, output);
+        }
     }
 
     private static class VariableWidthAggregator<T>
@@ -636,6 +873,12 @@ public class HashAggregationOperator
             }
         }
 
+        @Override
+        public TupleInfo getIntermediateTupleInfo()
+        {
+            return function.getIntermediateTupleInfo();
+        }
+
         @Override
         public void initialize(int position)
         {
@@ -685,6 +928,12 @@ public class HashAggregationOperator
                 function.evaluateFinal(value, output);
             }
         }
+
+        @Override
+        public void evaluateIntermediate(int position, BlockBuilder output)
+        {
+            function.evaluateIntermediate(intermediateValues.get(position), output);
+        }
     }
 
     public static class SliceHashStrategy
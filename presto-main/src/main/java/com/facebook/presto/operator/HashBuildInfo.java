@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import io.airlift.units.Duration;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class HashBuildInfo
+{
+    private final Duration buildWall;
+    private final int partitionCount;
+    private final int positionCount;
+
+    @JsonCreator
+    public HashBuildInfo(
+            @JsonProperty("buildWall") Duration buildWall,
+            @JsonProperty("partitionCount") int partitionCount,
+            @JsonProperty("positionCount") int positionCount)
+    {
+        this.buildWall = checkNotNull(buildWall, "buildWall is null");
+        this.partitionCount = partitionCount;
+        this.positionCount = positionCount;
+    }
+
+    @JsonProperty
+    public Duration getBuildWall()
+    {
+        return buildWall;
+    }
+
+    @JsonProperty
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    @JsonProperty
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Objects.toStringHelper(this)
+                .add("buildWall", buildWall)
+                .add("partitionCount", partitionCount)
+                .add("positionCount", positionCount)
+                .toString();
+    }
+}
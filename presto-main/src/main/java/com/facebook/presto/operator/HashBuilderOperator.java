@@ -16,14 +16,18 @@ package com.facebook.presto.operator;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.units.Duration;
 
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
@@ -32,6 +36,9 @@ import static com.google.common.base.Preconditions.checkState;
 public class HashBuilderOperator
         implements Operator
 {
+    // below this size the hash is built in a single partition on the driver thread
+    private static final int PARALLEL_BUILD_MIN_POSITIONS = 100_000;
+
     public static class HashSupplier
     {
         private final List<TupleInfo> tupleInfos;
@@ -89,19 +96,22 @@ public class HashBuilderOperator
         private final HashSupplier hashSupplier;
         private final int hashChannel;
         private final int expectedPositions;
+        private final Executor buildExecutor;
         private boolean closed;
 
         public HashBuilderOperatorFactory(
                 int operatorId,
                 List<TupleInfo> tupleInfos,
                 int hashChannel,
-                int expectedPositions)
+                int expectedPositions,
+                Executor buildExecutor)
         {
             this.operatorId = operatorId;
             this.hashSupplier = new HashSupplier(checkNotNull(tupleInfos, "tupleInfos is null"));
             Preconditions.checkArgument(hashChannel >= 0, "hashChannel is negative");
             this.hashChannel = hashChannel;
             this.expectedPositions = checkNotNull(expectedPositions, "expectedPositions is null");
+            this.buildExecutor = checkNotNull(buildExecutor, "buildExecutor is null");
         }
 
         public HashSupplier getHashSupplier()
@@ -124,7 +134,8 @@ public class HashBuilderOperator
                     operatorContext,
                     hashSupplier,
                     hashChannel,
-                    expectedPositions);
+                    expectedPositions,
+                    buildExecutor);
         }
 
         @Override
@@ -137,6 +148,7 @@ public class HashBuilderOperator
     private final OperatorContext operatorContext;
     private final HashSupplier hashSupplier;
     private final int hashChannel;
+    private final Executor buildExecutor;
 
     private final PagesIndex pagesIndex;
 
@@ -146,11 +158,13 @@ public class HashBuilderOperator
             OperatorContext operatorContext,
             HashSupplier hashSupplier,
             int hashChannel,
-            int expectedPositions)
+            int expectedPositions,
+            Executor buildExecutor)
     {
         this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
         this.hashSupplier = checkNotNull(hashSupplier, "hashSupplier is null");
         this.hashChannel = hashChannel;
+        this.buildExecutor = checkNotNull(buildExecutor, "buildExecutor is null");
         this.pagesIndex = new PagesIndex(hashSupplier.getTupleInfos(), expectedPositions, operatorContext);
     }
 
@@ -173,11 +187,35 @@ public class HashBuilderOperator
             return;
         }
 
-        ChannelHash channelHash = new ChannelHash(pagesIndex.getIndex(hashChannel), operatorContext);
+        long start = System.nanoTime();
+        int partitionCount = getPartitionCount(pagesIndex.getPositionCount());
+        ChannelHash channelHash = new ChannelHash(pagesIndex.getIndex(hashChannel), operatorContext, partitionCount, buildExecutor);
+        final HashBuildInfo hashBuildInfo = new HashBuildInfo(
+                new Duration(System.nanoTime() - start, TimeUnit.NANOSECONDS).convertToMostSuccinctTimeUnit(),
+                channelHash.getPartitionCount(),
+                pagesIndex.getPositionCount());
+        operatorContext.setInfoSupplier(new Supplier<Object>()
+        {
+            @Override
+            public Object get()
+            {
+                return hashBuildInfo;
+            }
+        });
+
         hashSupplier.setHash(channelHash, pagesIndex);
         finished = true;
     }
 
+    private static int getPartitionCount(int positionCount)
+    {
+        if (positionCount < PARALLEL_BUILD_MIN_POSITIONS) {
+            return 1;
+        }
+        // a few partitions per processor, so a slow partition does not hold up the build
+        return Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+    }
+
     @Override
     public boolean isFinished()
     {
@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
 
+import static com.facebook.presto.block.BlockUtils.toUncompressedBlock;
 import static com.facebook.presto.util.MoreFutures.tryGetUnchecked;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
@@ -193,7 +194,7 @@ public class HashJoinOperator
         }
 
         // set hashing strategy to use probe block
-        UncompressedBlock probeJoinBlock = (UncompressedBlock) page.getBlock(probeJoinChannel);
+        UncompressedBlock probeJoinBlock = toUncompressedBlock(page.getBlock(probeJoinChannel));
         hash.setProbeSlice(probeJoinBlock.getSlice());
 
         // initialize to invalid join position to force output code to advance the cursors
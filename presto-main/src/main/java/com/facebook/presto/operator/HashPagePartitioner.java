@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import io.airlift.slice.Slice;
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Splits pages into one page list per partition using the hash of the partitioning channels.
+ * Rows with equal values in the partitioning channels are always assigned to the same partition.
+ */
+public class HashPagePartitioner
+{
+    private final List<TupleInfo> tupleInfos;
+    private final int[] partitionChannels;
+    private final int partitionCount;
+
+    public HashPagePartitioner(List<TupleInfo> tupleInfos, List<Integer> partitionChannels, int partitionCount)
+    {
+        this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
+        checkNotNull(partitionChannels, "partitionChannels is null");
+        checkArgument(!partitionChannels.isEmpty(), "partitionChannels is empty");
+        for (int channel : partitionChannels) {
+            checkArgument(channel >= 0 && channel < tupleInfos.size(), "Invalid partition channel %s", channel);
+        }
+        checkArgument(partitionCount > 0, "partitionCount must be at least 1");
+
+        this.partitionChannels = Ints.toArray(partitionChannels);
+        this.partitionCount = partitionCount;
+    }
+
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    /**
+     * Returns the rows of the page grouped by partition.  The list for a partition is empty
+     * if none of the rows hash to that partition.
+     */
+    public List<List<Page>> partition(Page page)
+    {
+        checkNotNull(page, "page is null");
+        checkArgument(page.getChannelCount() == tupleInfos.size(), "Expected page with %s channels, but got %s", tupleInfos.size(), page.getChannelCount());
+
+        List<List<Page>> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ArrayList<Page>());
+        }
+
+        if (partitionCount == 1) {
+            partitions.get(0).add(page);
+            return partitions;
+        }
+
+        BlockCursor[] cursors = new BlockCursor[page.getChannelCount()];
+        for (int channel = 0; channel < cursors.length; channel++) {
+            cursors[channel] = page.getBlock(channel).cursor();
+        }
+
+        PageBuilder[] pageBuilders = new PageBuilder[partitionCount];
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            for (BlockCursor cursor : cursors) {
+                checkState(cursor.advanceNextPosition());
+            }
+
+            int partition = getPartition(cursors);
+
+            PageBuilder pageBuilder = pageBuilders[partition];
+            if (pageBuilder == null) {
+                pageBuilder = new PageBuilder(tupleInfos);
+                pageBuilders[partition] = pageBuilder;
+            }
+
+            for (int channel = 0; channel < cursors.length; channel++) {
+                cursors[channel].appendTupleTo(pageBuilder.getBlockBuilder(channel));
+            }
+
+            if (pageBuilder.isFull()) {
+                partitions.get(partition).add(pageBuilder.build());
+                pageBuilder.reset();
+            }
+        }
+
+        for (int partition = 0; partition < partitionCount; partition++) {
+            PageBuilder pageBuilder = pageBuilders[partition];
+            if (pageBuilder != null && !pageBuilder.isEmpty()) {
+                partitions.get(partition).add(pageBuilder.build());
+            }
+        }
+        return partitions;
+    }
+
+    private int getPartition(BlockCursor[] cursors)
+    {
+        int hashCode = 0;
+        for (int channel : partitionChannels) {
+            BlockCursor cursor = cursors[channel];
+            Slice slice = cursor.getRawSlice();
+            int offset = cursor.getRawOffset();
+            int length = tupleInfos.get(channel).size(slice, offset);
+            hashCode = 31 * hashCode + slice.hashCode(offset, length);
+        }
+
+        // the downstream hash tables select buckets with the low bits of the mixed hash,
+        // so use the high bits to pick the partition to keep the two choices independent
+        long mixed = HashCommon.murmurHash3(hashCode) & 0xFFFF_FFFFL;
+        return (int) ((mixed * partitionCount) >>> 32);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Objects.toStringHelper(this)
+                .add("partitionChannels", Ints.asList(partitionChannels))
+                .add("partitionCount", partitionCount)
+                .toString();
+    }
+}
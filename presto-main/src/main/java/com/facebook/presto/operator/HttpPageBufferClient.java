@@ -14,9 +14,11 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.serde.PagesSerde;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingInputStream;
 import com.google.common.net.MediaType;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.FutureCallback;
@@ -31,6 +33,8 @@ import io.airlift.http.client.ResponseHandler;
 import io.airlift.log.Logger;
 import io.airlift.slice.InputStreamSliceInput;
 import io.airlift.units.DataSize;
+import io.airlift.units.DataSize.Unit;
+import io.airlift.units.Duration;
 import org.joda.time.DateTime;
 
 import javax.annotation.concurrent.GuardedBy;
@@ -39,25 +43,40 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_COMPRESSED_PAGES;
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_COMPRESSED_PAGES_TYPE;
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES_TYPE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_SIZE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_SEQUENCE_ID;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.net.HttpHeaders.ACCEPT;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static io.airlift.http.client.Request.Builder.prepareDelete;
 import static io.airlift.http.client.Request.Builder.prepareGet;
 import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 @ThreadSafe
 public class HttpPageBufferClient
         implements Closeable
 {
     private static final Logger log = Logger.get(HttpPageBufferClient.class);
+
+    private static final DataSize MIN_REQUEST_SIZE = new DataSize(1, Unit.MEGABYTE);
+    private static final Duration TARGET_RESPONSE_TIME = new Duration(500, MILLISECONDS);
+    // weight of the latest response in the running averages
+    private static final double AVERAGE_WEIGHT = 0.25;
+
     private final Executor executor;
 
     /**
@@ -80,6 +99,7 @@ public class HttpPageBufferClient
     private final AsyncHttpClient httpClient;
     private final DataSize maxResponseSize;
     private final URI location;
+    private final boolean compressionEnabled;
     private final ClientCallback clientCallback;
     @GuardedBy("this")
     private boolean closed;
@@ -90,18 +110,45 @@ public class HttpPageBufferClient
     @GuardedBy("this")
     private long sequenceId;
 
+    private final long minRequestBytes;
+    @GuardedBy("this")
+    private long requestBytes;
+    @GuardedBy("this")
+    private long scheduledRequestBytes;
+    @GuardedBy("this")
+    private long requestStartNanos;
+    @GuardedBy("this")
+    private boolean responseMeasured;
+    @GuardedBy("this")
+    private double averageFillRatio;
+    @GuardedBy("this")
+    private double averageBytesPerSecond;
+
     private final AtomicInteger pagesReceived = new AtomicInteger();
 
     private final AtomicInteger requestsScheduled = new AtomicInteger();
     private final AtomicInteger requestsCompleted = new AtomicInteger();
 
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong uncompressedBytesReceived = new AtomicLong();
+
     public HttpPageBufferClient(AsyncHttpClient httpClient, DataSize maxResponseSize, URI location, ClientCallback clientCallback, Executor executor)
+    {
+        this(httpClient, maxResponseSize, location, false, clientCallback, executor);
+    }
+
+    public HttpPageBufferClient(AsyncHttpClient httpClient, DataSize maxResponseSize, URI location, boolean compressionEnabled, ClientCallback clientCallback, Executor executor)
     {
         this.httpClient = checkNotNull(httpClient, "httpClient is null");
         this.maxResponseSize = checkNotNull(maxResponseSize, "maxResponseSize is null");
         this.location = checkNotNull(location, "location is null");
+        this.compressionEnabled = compressionEnabled;
         this.clientCallback = checkNotNull(clientCallback, "clientCallback is null");
         this.executor = checkNotNull(executor, "executor is null");
+
+        // start small and grow while the upstream fills the requests, so a new location can not overshoot the buffer
+        this.minRequestBytes = Math.min(MIN_REQUEST_SIZE.toBytes(), maxResponseSize.toBytes());
+        this.requestBytes = minRequestBytes;
     }
 
     public synchronized PageBufferClientStatus getStatus()
@@ -123,6 +170,53 @@ public class HttpPageBufferClient
         return new PageBufferClientStatus(location, state, lastUpdate, pagesReceived.get(), requestsScheduled.get(), requestsCompleted.get(), httpRequestState);
     }
 
+    /**
+     * Bytes of page data received over the wire.
+     */
+    public long getBytesReceived()
+    {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Bytes of page data received, after decompression.
+     */
+    public long getUncompressedBytesReceived()
+    {
+        return uncompressedBytesReceived.get();
+    }
+
+    /**
+     * Size of the next request.  A response that fills at least half of the request means the
+     * upstream buffer had more data queued, so the size was the limit: if the response arrived
+     * within the target time the size doubles, otherwise it shrinks to what the link delivers
+     * in the target time, so a slow link does not hold buffer space other locations could use.
+     */
+    public synchronized DataSize getRequestSize()
+    {
+        return new DataSize(requestBytes, Unit.BYTE);
+    }
+
+    /**
+     * Fraction of the requested size the recent responses contained.  Upstream buffers with a
+     * high ratio have the most data queued.  Locations without a response yet report 1.0.
+     */
+    public synchronized double getAverageFillRatio()
+    {
+        if (!responseMeasured) {
+            return 1.0;
+        }
+        return averageFillRatio;
+    }
+
+    /**
+     * Transfer rate of the recent non-empty responses.
+     */
+    public synchronized double getAverageBytesPerSecond()
+    {
+        return averageBytesPerSecond;
+    }
+
     public synchronized boolean isRunning()
     {
         return future != null;
@@ -160,18 +254,31 @@ public class HttpPageBufferClient
 
     public synchronized void scheduleRequest()
     {
+        scheduleRequest(getRequestSize());
+    }
+
+    /**
+     * Requests at most the specified bytes from the upstream buffer.  Returns false if the
+     * client is closed or already has a request running.
+     */
+    public synchronized boolean scheduleRequest(DataSize requestSize)
+    {
+        checkNotNull(requestSize, "requestSize is null");
         if (closed) {
             log.debug("scheduleRequest() called, but client has been closed");
-            return;
+            return false;
         }
         if (future != null) {
             log.debug("scheduleRequest() called, but future is not null");
-            return;
+            return false;
         }
 
         final URI uri = HttpUriBuilder.uriBuilderFrom(location).appendPath(String.valueOf(sequenceId)).build();
+        // the server falls back to raw pages if it does not support compression
+        String accept = compressionEnabled ? PRESTO_COMPRESSED_PAGES + ", " + PRESTO_PAGES + ";q=0.5" : PRESTO_PAGES;
         future = httpClient.executeAsync(prepareGet()
-                .setHeader(PRESTO_MAX_SIZE, maxResponseSize.toString())
+                .setHeader(PRESTO_MAX_SIZE, requestSize.toString())
+                .setHeader(ACCEPT, accept)
                 .setUri(uri).build(), new PageResponseHandler());
 
         Futures.addCallback(future, new FutureCallback<PagesResponse>()
@@ -184,11 +291,16 @@ public class HttpPageBufferClient
                 }
 
                 requestsCompleted.incrementAndGet();
+                bytesReceived.addAndGet(result.getBytes());
+                uncompressedBytesReceived.addAndGet(result.getUncompressedBytes());
 
                 List<Page> pages;
                 synchronized (HttpPageBufferClient.this) {
                     pages = result.getPages(sequenceId);
                     sequenceId += pages.size();
+                    if (!result.isClientClosed()) {
+                        recordResponse(pages);
+                    }
                 }
 
                 // add pages
@@ -233,8 +345,55 @@ public class HttpPageBufferClient
             }
         }, executor);
 
+        scheduledRequestBytes = Math.max(1, requestSize.toBytes());
+        requestStartNanos = System.nanoTime();
         lastUpdate = DateTime.now();
         requestsScheduled.incrementAndGet();
+        return true;
+    }
+
+    private synchronized void recordResponse(List<Page> pages)
+    {
+        long bytes = 0;
+        for (Page page : pages) {
+            bytes += page.getDataSize().toBytes();
+        }
+        recordResponse(scheduledRequestBytes, bytes, System.nanoTime() - requestStartNanos);
+    }
+
+    @VisibleForTesting
+    synchronized void recordResponse(long requestedBytes, long bytes, long elapsedNanos)
+    {
+        double fillRatio = Math.min(1.0, bytes / (double) requestedBytes);
+        if (!responseMeasured) {
+            averageFillRatio = fillRatio;
+            responseMeasured = true;
+        }
+        else {
+            averageFillRatio += AVERAGE_WEIGHT * (fillRatio - averageFillRatio);
+        }
+
+        if (bytes > 0 && elapsedNanos > 0) {
+            double bytesPerSecond = bytes * (double) SECONDS.toNanos(1) / elapsedNanos;
+            if (averageBytesPerSecond == 0) {
+                averageBytesPerSecond = bytesPerSecond;
+            }
+            else {
+                averageBytesPerSecond += AVERAGE_WEIGHT * (bytesPerSecond - averageBytesPerSecond);
+            }
+        }
+
+        // empty and partially filled responses are limited by the upstream, not by the request size
+        if (bytes * 2 < requestedBytes) {
+            return;
+        }
+        if (elapsedNanos <= TARGET_RESPONSE_TIME.roundTo(NANOSECONDS)) {
+            requestBytes = Math.min(maxResponseSize.toBytes(), Math.max(requestBytes, requestedBytes * 2));
+        }
+        else {
+            long targetBytes = (long) (averageBytesPerSecond * TARGET_RESPONSE_TIME.getValue(SECONDS));
+            requestBytes = Math.max(minRequestBytes, Math.min(requestBytes, targetBytes));
+        }
     }
 
     @Override
@@ -318,15 +477,30 @@ public class HttpPageBufferClient
             }
 
             String contentType = response.getHeader(CONTENT_TYPE);
-            if (contentType == null || !MediaType.parse(contentType).is(PRESTO_PAGES_TYPE)) {
+            MediaType mediaType = contentType == null ? null : MediaType.parse(contentType);
+            if (mediaType == null || !(mediaType.is(PRESTO_PAGES_TYPE) || mediaType.is(PRESTO_COMPRESSED_PAGES_TYPE))) {
                 // this can happen when an error page is returned, but is unlikely given the above 200
                 log.debug("Expected %s response from server but got %s: uri=%s, response=%s", PRESTO_PAGES_TYPE, contentType, request.getUri(), response);
                 return PagesResponse.createEmptyPagesResponse(startingSequenceId);
             }
 
             try {
-                InputStreamSliceInput sliceInput = new InputStreamSliceInput(response.getInputStream());
-                return PagesResponse.createPagesResponse(startingSequenceId, ImmutableList.copyOf(PagesSerde.readPages(sliceInput)));
+                CountingInputStream input = new CountingInputStream(response.getInputStream());
+                InputStreamSliceInput sliceInput = new InputStreamSliceInput(input);
+                Iterator<Page> pageIterator;
+                if (mediaType.is(PRESTO_COMPRESSED_PAGES_TYPE)) {
+                    pageIterator = PagesSerde.readCompressedPages(sliceInput);
+                }
+                else {
+                    pageIterator = PagesSerde.readPages(sliceInput);
+                }
+                List<Page> pages = ImmutableList.copyOf(pageIterator);
+
+                long uncompressedBytes = 0;
+                for (Page page : pages) {
+                    uncompressedBytes += page.getDataSize().toBytes();
+                }
+                return PagesResponse.createPagesResponse(startingSequenceId, pages, input.getCount(), uncompressedBytes);
             }
             catch (IOException e) {
                 throw Throwables.propagate(e);
@@ -338,28 +512,52 @@ public class HttpPageBufferClient
     {
         public static PagesResponse createPagesResponse(long startingSequenceId, Iterable<Page> pages)
         {
-            return new PagesResponse(startingSequenceId, pages, false);
+            return new PagesResponse(startingSequenceId, pages, false, 0, 0);
+        }
+
+        public static PagesResponse createPagesResponse(long startingSequenceId, Iterable<Page> pages, long bytes, long uncompressedBytes)
+        {
+            return new PagesResponse(startingSequenceId, pages, false, bytes, uncompressedBytes);
         }
 
         public static PagesResponse createEmptyPagesResponse(long startingSequenceId)
         {
-            return new PagesResponse(startingSequenceId, ImmutableList.<Page>of(), false);
+            return new PagesResponse(startingSequenceId, ImmutableList.<Page>of(), false, 0, 0);
         }
 
         public static PagesResponse createClosedResponse(long startingSequenceId)
         {
-            return new PagesResponse(startingSequenceId, ImmutableList.<Page>of(), true);
+            return new PagesResponse(startingSequenceId, ImmutableList.<Page>of(), true, 0, 0);
         }
 
         private final long startingSequenceId;
         private final List<Page> pages;
         private final boolean clientClosed;
+        private final long bytes;
+        private final long uncompressedBytes;
 
         public PagesResponse(long startingSequenceId, Iterable<Page> pages, boolean clientClosed)
+        {
+            this(startingSequenceId, pages, clientClosed, 0, 0);
+        }
+
+        public PagesResponse(long startingSequenceId, Iterable<Page> pages, boolean clientClosed, long bytes, long uncompressedBytes)
         {
             this.startingSequenceId = startingSequenceId;
             this.pages = ImmutableList.copyOf(pages);
             this.clientClosed = clientClosed;
+            this.bytes = bytes;
+            this.uncompressedBytes = uncompressedBytes;
+        }
+
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        public long getUncompressedBytes()
+        {
+            return uncompressedBytes;
         }
 
         public List<Page> getPages(long sequenceId)
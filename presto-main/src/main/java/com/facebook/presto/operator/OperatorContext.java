@@ -24,6 +24,7 @@ import io.airlift.units.Duration;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.File;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.util.Set;
@@ -74,6 +75,9 @@ public class OperatorContext
 
     private final AtomicLong memoryReservation = new AtomicLong();
 
+    private final CounterStat spilledDataSize = new CounterStat();
+    private final AtomicLong spillWallNanos = new AtomicLong();
+
     private final AtomicReference<Supplier<Object>> infoSupplier = new AtomicReference<>();
 
     public OperatorContext(int operatorId, String operatorType, DriverContext driverContext, Executor executor)
@@ -173,6 +177,12 @@ public class OperatorContext
         finishUserNanos.getAndAdd(nanosBetween(intervalUserStart.get(), currentThreadUserTime()));
     }
 
+    public void recordSpill(long bytes, long wallNanos)
+    {
+        spilledDataSize.update(bytes);
+        spillWallNanos.getAndAdd(wallNanos);
+    }
+
     public DataSize getMaxMemorySize()
     {
         return driverContext.getMaxMemorySize();
@@ -183,6 +193,14 @@ public class OperatorContext
         return driverContext.getOperatorPreAllocatedMemory();
     }
 
+    /**
+     * Returns the directory this operator may spill to, or null if spilling is disabled.
+     */
+    public File getSpillPath()
+    {
+        return driverContext.getSpillPath();
+    }
+
     public boolean reserveMemory(long bytes)
     {
         boolean result = driverContext.reserveMemory(bytes);
@@ -193,6 +211,16 @@ public class OperatorContext
     }
 
     public synchronized long setMemoryReservation(long newMemoryReservation)
+    {
+        checkState(trySetMemoryReservation(newMemoryReservation), "Task exceeded max memory size of %s", getMaxMemorySize());
+        return newMemoryReservation;
+    }
+
+    /**
+     * Like {@link #setMemoryReservation}, but returns false instead of failing when the
+     * task memory limit would be exceeded.
+     */
+    public synchronized boolean trySetMemoryReservation(long newMemoryReservation)
     {
         checkArgument(newMemoryReservation >= 0, "newMemoryReservation is negative");
 
@@ -200,10 +228,9 @@ public class OperatorContext
 
         // currently, operator memory is not be released
         if (delta > 0) {
-            checkState(reserveMemory(delta), "Task exceeded max memory size of %s", getMaxMemorySize());
+            return reserveMemory(delta);
         }
-
-        return newMemoryReservation;
+        return true;
     }
 
     public void setInfoSupplier(Supplier<Object> infoSupplier)
@@ -272,6 +299,10 @@ public class OperatorContext
                 new Duration(finishUserNanos.get(), NANOSECONDS).convertToMostSuccinctTimeUnit(),
 
                 new DataSize(memoryReservation.get(), BYTE).convertToMostSuccinctDataSize(),
+
+                new DataSize(spilledDataSize.getTotalCount(), BYTE).convertToMostSuccinctDataSize(),
+                new Duration(spillWallNanos.get(), NANOSECONDS).convertToMostSuccinctTimeUnit(),
+
                 info);
     }
 
@@ -13,18 +13,20 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.operator.SpilledSortRuns.MergingCursor;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import it.unimi.dsi.fastutil.booleans.BooleanArrays;
 
+import java.io.Closeable;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 public class OrderByOperator
-        implements Operator
+        implements Operator, Closeable
 {
     public static class InMemoryOrderByOperatorFactory
             implements OperatorFactory
@@ -120,6 +122,8 @@ public class OrderByOperator
     private final List<TupleInfo> tupleInfos;
 
     private final PagesIndex pageIndex;
+    private final SpilledSortRuns spilledRuns;
+    private MergingCursor mergingCursor;
 
     private final PageBuilder pageBuilder;
     private int currentPosition;
@@ -143,6 +147,7 @@ public class OrderByOperator
         this.sortOrder = checkNotNull(sortOrder, "sortOrder is null");
 
         this.pageIndex = new PagesIndex(sourceTupleInfos, expectedPositions, operatorContext);
+        this.spilledRuns = new SpilledSortRuns(operatorContext, sourceTupleInfos, orderByChannel, sortFields, sortOrder);
 
         this.pageBuilder = new PageBuilder(this.tupleInfos);
     }
@@ -165,8 +170,18 @@ public class OrderByOperator
         if (state == State.NEEDS_INPUT) {
             state = State.HAS_OUTPUT;
 
-            // sort the index
-            pageIndex.sort(orderByChannel, sortFields, sortOrder);
+            if (spilledRuns.isEmpty()) {
+                // sort the index
+                pageIndex.sort(orderByChannel, sortFields, sortOrder);
+            }
+            else {
+                // spill the rest of the input and merge all of the runs
+                if (pageIndex.getPositionCount() > 0) {
+                    spilledRuns.spill(pageIndex);
+                    pageIndex.clear();
+                }
+                mergingCursor = spilledRuns.merge();
+            }
         }
     }
 
@@ -176,6 +191,15 @@ public class OrderByOperator
         return state == State.FINISHED;
     }
 
+    /**
+     * Removes the spilled runs that have not been merged.
+     */
+    @Override
+    public void close()
+    {
+        spilledRuns.close();
+    }
+
     @Override
     public ListenableFuture<?> isBlocked()
     {
@@ -194,7 +218,14 @@ public class OrderByOperator
         checkState(state == State.NEEDS_INPUT, "Operator is already finishing");
         checkNotNull(page, "page is null");
 
-        pageIndex.addPage(page);
+        if (!spilledRuns.isSpillEnabled()) {
+            pageIndex.addPage(page);
+        }
+        else if (!pageIndex.tryAddPage(page)) {
+            // the index no longer fits in memory, so write it out as a sorted run
+            spilledRuns.spill(pageIndex);
+            pageIndex.clear();
+        }
     }
 
     @Override
@@ -204,6 +235,10 @@ public class OrderByOperator
             return null;
         }
 
+        if (mergingCursor != null) {
+            return getMergedOutput();
+        }
+
         if (currentPosition >= pageIndex.getPositionCount()) {
             state = State.FINISHED;
             return null;
@@ -228,6 +263,22 @@ public class OrderByOperator
         return page;
     }
 
+    private Page getMergedOutput()
+    {
+        pageBuilder.reset();
+        while (!pageBuilder.isFull() && mergingCursor.advanceNextPosition()) {
+            for (int i = 0; i < outputChannels.length; i++) {
+                mergingCursor.appendTupleTo(outputChannels[i], pageBuilder.getBlockBuilder(i));
+            }
+        }
+
+        if (pageBuilder.isEmpty()) {
+            state = State.FINISHED;
+            return null;
+        }
+        return pageBuilder.build();
+    }
+
     private static boolean[] defaultSortOrder(List<TupleInfo> sourceTupleInfos, int orderByChannel)
     {
         TupleInfo orderByTupleInfo = sourceTupleInfos.get(orderByChannel);
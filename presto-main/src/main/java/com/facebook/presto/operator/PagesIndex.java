@@ -15,7 +15,6 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
-import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleInfo.Type;
 import io.airlift.slice.Slice;
@@ -27,6 +26,8 @@ import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
 
 import java.util.List;
 
+import static com.facebook.presto.block.BlockUtils.toUncompressedBlock;
+
 /**
  * PagesIndex a low-level data structure which contains the address of every value position of every channel.
  * This data structure is not general purpose and is designed for a few specific uses:
@@ -67,14 +68,46 @@ public class PagesIndex
     }
 
     public void addPage(Page page)
+    {
+        indexPage(page);
+        estimatedSize = operatorContext.setMemoryReservation(calculateEstimatedSize());
+    }
+
+    /**
+     * Adds the page to the index, and returns false if the memory for the index could not
+     * be reserved.  The page is added in either case, so the caller is expected to release
+     * the index (for example, by spilling it) when this returns false.
+     */
+    public boolean tryAddPage(Page page)
+    {
+        indexPage(page);
+        long newEstimatedSize = calculateEstimatedSize();
+        if (!operatorContext.trySetMemoryReservation(newEstimatedSize)) {
+            return false;
+        }
+        estimatedSize = newEstimatedSize;
+        return true;
+    }
+
+    private void indexPage(Page page)
     {
         positionCount += page.getPositionCount();
         Block[] blocks = page.getBlocks();
         for (int channel = 0; channel < indexes.length; channel++) {
-            indexes[channel].indexBlock((UncompressedBlock) blocks[channel]);
+            indexes[channel].indexBlock(toUncompressedBlock(blocks[channel]));
         }
+    }
 
-        estimatedSize = operatorContext.setMemoryReservation(calculateEstimatedSize());
+    /**
+     * Removes all positions from the index.  The memory reservation of the operator is not released.
+     */
+    public void clear()
+    {
+        positionCount = 0;
+        for (ChannelIndex index : indexes) {
+            index.clear();
+        }
+        estimatedSize = calculateEstimatedSize();
     }
 
     public DataSize getEstimatedSize()
@@ -158,6 +191,11 @@ public class PagesIndex
             Slice rightSlice = slices[((int) (rightSliceAddress >> 32))];
             int rightOffset = (int) rightSliceAddress;
 
+            return compare(leftSlice, leftOffset, rightSlice, rightOffset);
+        }
+
+        public int compare(Slice leftSlice, int leftOffset, Slice rightSlice, int rightOffset)
+        {
             for (int i = 0; i < sortFields.length; i++) {
                 int field = sortFields[i];
                 Type type = types[field];
@@ -27,6 +27,7 @@ import io.airlift.units.Duration;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
@@ -190,6 +191,11 @@ public class PipelineContext
         return taskContext.getOperatorPreAllocatedMemory();
     }
 
+    public File getSpillPath()
+    {
+        return taskContext.getSpillPath();
+    }
+
     public synchronized boolean reserveMemory(long bytes)
     {
         boolean result = taskContext.reserveMemory(bytes);
@@ -13,32 +13,28 @@
  */
 package com.facebook.presto.operator;
 
-import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.columnar.ColumnarBlockBuilder;
 import com.facebook.presto.spi.ColumnType;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.spi.RecordSet;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleInfo.Type;
-import com.google.common.collect.ImmutableList;
-import com.google.common.util.concurrent.ListenableFuture;
-import io.airlift.units.DataSize;
+import io.airlift.slice.Slices;
 
-import java.io.Closeable;
 import java.util.List;
 
-import static com.google.common.base.Preconditions.checkNotNull;
-import static io.airlift.units.DataSize.Unit.BYTE;
-
+/**
+ * Projects each field of a record cursor into a separate channel.  The channels
+ * are built as columnar blocks, so downstream operators can read the values
+ * without going through the row-packed tuple layout.
+ */
 public class RecordProjectOperator
-        implements Operator, Closeable
+        extends AbstractRecordProjectOperator
 {
-    private static final int ROWS_PER_REQUEST = 16384;
-    private final OperatorContext operatorContext;
-    private final RecordCursor cursor;
-    private final List<TupleInfo> tupleInfos;
-    private final PageBuilder pageBuilder;
-    private boolean finishing;
-    private long completedBytes;
+    private static final int INITIAL_BLOCK_POSITIONS = 1024;
+    private final Type[] types;
+    private ColumnarBlockBuilder[] blockBuilders;
 
     public RecordProjectOperator(OperatorContext operatorContext, RecordSet recordSet)
     {
@@ -47,129 +43,81 @@ public class RecordProjectOperator
 
     public RecordProjectOperator(OperatorContext operatorContext, List<ColumnType> columnTypes, RecordCursor cursor)
     {
-        this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
-        this.cursor = checkNotNull(cursor, "cursor is null");
+        super(operatorContext, columnTypes, cursor);
 
-        // project each field into a separate channel
-        ImmutableList.Builder<TupleInfo> tupleInfos = ImmutableList.builder();
-        for (ColumnType columnType : columnTypes) {
-            tupleInfos.add(new TupleInfo(Type.fromColumnType(columnType)));
+        List<TupleInfo> tupleInfos = getTupleInfos();
+        types = new Type[tupleInfos.size()];
+        for (int column = 0; column < types.length; column++) {
+            types[column] = tupleInfos.get(column).getTypes().get(0);
         }
-        this.tupleInfos = tupleInfos.build();
-
-        pageBuilder = new PageBuilder(getTupleInfos());
-    }
-
-    @Override
-    public OperatorContext getOperatorContext()
-    {
-        return operatorContext;
-    }
-
-    public RecordCursor getCursor()
-    {
-        return cursor;
+        resetBlockBuilders();
     }
 
     @Override
-    public List<TupleInfo> getTupleInfos()
+    protected int readPositions(int maxPositions)
     {
-        return tupleInfos;
-    }
-
-    @Override
-    public void finish()
-    {
-        close();
-    }
-
-    public void close()
-    {
-        finishing = true;
-        cursor.close();
-    }
+        RecordCursor cursor = getCursor();
+        if (!cursor.advanceNextPosition()) {
+            return 0;
+        }
 
-    @Override
-    public boolean isFinished()
-    {
-        return finishing && pageBuilder.isEmpty();
+        for (int column = 0; column < types.length; column++) {
+            ColumnarBlockBuilder output = blockBuilders[column];
+            if (cursor.isNull(column)) {
+                output.appendNull();
+            }
+            else {
+                Type type = types[column];
+                switch (type) {
+                    case BOOLEAN:
+                        output.append(cursor.getBoolean(column));
+                        break;
+                    case FIXED_INT_64:
+                        output.append(cursor.getLong(column));
+                        break;
+                    case DOUBLE:
+                        output.append(cursor.getDouble(column));
+                        break;
+                    case VARIABLE_BINARY:
+                        output.append(Slices.wrappedBuffer(cursor.getString(column)));
+                        break;
+                    default:
+                        throw new AssertionError("unimplemented type: " + type);
+                }
+            }
+        }
+        return 1;
     }
 
     @Override
-    public ListenableFuture<?> isBlocked()
+    protected long getBlockSize(int channel)
     {
-        return NOT_BLOCKED;
+        return blockBuilders[channel].size();
     }
 
     @Override
-    public boolean needsInput()
+    protected boolean isEmpty()
     {
-        return false;
+        return blockBuilders.length == 0 || blockBuilders[0].isEmpty();
     }
 
     @Override
-    public void addInput(Page page)
+    protected Block[] buildBlocks()
     {
-        throw new UnsupportedOperationException(getClass().getName() + " can not take input");
+        Block[] blocks = new Block[blockBuilders.length];
+        for (int column = 0; column < blocks.length; column++) {
+            blocks[column] = blockBuilders[column].build();
+        }
+        resetBlockBuilders();
+        return blocks;
     }
 
-    @Override
-    public Page getOutput()
+    private void resetBlockBuilders()
     {
-        if (!finishing) {
-            int i = 0;
-            for (; i < ROWS_PER_REQUEST; i++) {
-                if (pageBuilder.isFull()) {
-                    break;
-                }
-
-                if (!cursor.advanceNextPosition()) {
-                    finishing = true;
-                    break;
-                }
-
-                for (int column = 0; column < tupleInfos.size(); column++) {
-                    BlockBuilder output = pageBuilder.getBlockBuilder(column);
-                    if (cursor.isNull(column)) {
-                        output.appendNull();
-                    }
-                    else {
-                        Type type = getTupleInfos().get(column).getTypes().get(0);
-                        switch (type) {
-                            case BOOLEAN:
-                                output.append(cursor.getBoolean(column));
-                                break;
-                            case FIXED_INT_64:
-                                output.append(cursor.getLong(column));
-                                break;
-                            case DOUBLE:
-                                output.append(cursor.getDouble(column));
-                                break;
-                            case VARIABLE_BINARY:
-                                output.append(cursor.getString(column));
-                                break;
-                            default:
-                                throw new AssertionError("unimplemented type: " + type);
-                        }
-                    }
-                }
-            }
-
-            long bytesProcessed = cursor.getCompletedBytes() - completedBytes;
-            operatorContext.recordGeneratedInput(new DataSize(bytesProcessed, BYTE), i);
-            completedBytes += bytesProcessed;
+        List<TupleInfo> tupleInfos = getTupleInfos();
+        blockBuilders = new ColumnarBlockBuilder[tupleInfos.size()];
+        for (int column = 0; column < blockBuilders.length; column++) {
+            blockBuilders[column] = new ColumnarBlockBuilder(tupleInfos.get(column), INITIAL_BLOCK_POSITIONS);
         }
-
-        // only return a full page is buffer is full or we are finishing
-        if (pageBuilder.isEmpty() || (!finishing && !pageBuilder.isFull())) {
-            return null;
-        }
-
-        Page page = pageBuilder.build();
-        pageBuilder.reset();
-
-        operatorContext.recordGeneratedInput(page.getDataSize(), page.getPositionCount());
-
-        return page;
     }
 }
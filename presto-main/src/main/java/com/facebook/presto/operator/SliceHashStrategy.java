@@ -16,6 +16,8 @@ package com.facebook.presto.operator;
 import com.facebook.presto.tuple.TupleInfo;
 import io.airlift.slice.Slice;
 import io.airlift.units.DataSize;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongHash;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
@@ -24,26 +26,35 @@ import java.util.List;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceOffset;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.slice.SizeOf.sizeOf;
 
 public class SliceHashStrategy
         implements LongHash.Strategy
 {
-    // The sliceAddress is a SyntheticAddress.
+    // The keys hashed with this strategy are positions of the values added with addValue.  The hash code of
+    // a value is computed once when it is added, and is compared before the value bytes.
     //
-    // To perform a lookup using this strategy, the "lookup" slice is set in the strategy, and a synthetic address
-    // within the "lookup" slice is created. The "lookup" slice is given an index of -1 so that it does not conflict
-    // with any other slices that are stored in this strategy.
-    public static final int LOOKUP_SLICE_INDEX = 0xFF_FF_FF_FF;
+    // To perform a lookup using this strategy, the "lookup" slice and the offset of the lookup value are set
+    // in the strategy, and LOOKUP_POSITION is used as the key.
+    public static final long LOOKUP_POSITION = -1;
 
     private final TupleInfo tupleInfo;
     private final List<Slice> slices;
-    private Slice lookupSlice;
+    private final LongArrayList valueAddresses;
+    private final IntArrayList valueHashCodes;
     private long memorySize;
 
+    private Slice lookupSlice;
+    private int lookupOffset;
+    private int lookupLength;
+    private int lookupHashCode;
+
     public SliceHashStrategy(TupleInfo tupleInfo)
     {
         this.tupleInfo = checkNotNull(tupleInfo, "tupleInfo is null");
         this.slices = ObjectArrayList.wrap(new Slice[1024], 0);
+        this.valueAddresses = new LongArrayList();
+        this.valueHashCodes = new IntArrayList();
     }
 
     public SliceHashStrategy(SliceHashStrategy strategy)
@@ -51,11 +62,14 @@ public class SliceHashStrategy
         checkNotNull(strategy, "strategy is null");
         this.tupleInfo = strategy.tupleInfo;
         this.slices = strategy.slices;
+        this.valueAddresses = strategy.valueAddresses;
+        this.valueHashCodes = strategy.valueHashCodes;
     }
 
     public DataSize getEstimatedSize()
     {
-        return new DataSize(memorySize, DataSize.Unit.BYTE);
+        long size = memorySize + sizeOf(valueAddresses.elements()) + sizeOf(valueHashCodes.elements());
+        return new DataSize(size, DataSize.Unit.BYTE);
     }
 
     public void setLookupSlice(Slice lookupSlice)
@@ -64,6 +78,21 @@ public class SliceHashStrategy
         this.lookupSlice = lookupSlice;
     }
 
+    /**
+     * Sets the offset of the lookup value within the lookup slice, and hashes the value.
+     */
+    public void setLookupOffset(int lookupOffset)
+    {
+        this.lookupOffset = lookupOffset;
+        this.lookupLength = tupleInfo.size(lookupSlice, lookupOffset);
+        this.lookupHashCode = lookupSlice.hashCode(lookupOffset, lookupLength);
+    }
+
+    public int getLookupHashCode()
+    {
+        return lookupHashCode;
+    }
+
     public void addSlices(Iterable<Slice> slices)
     {
         for (Slice slice : slices) {
@@ -77,32 +106,68 @@ public class SliceHashStrategy
         slices.add(slice);
     }
 
+    /**
+     * Adds the value at the specified synthetic address, and returns the position to use as its key.
+     */
+    public int addValue(long sliceAddress, int hashCode)
+    {
+        int position = valueAddresses.size();
+        valueAddresses.add(sliceAddress);
+        valueHashCodes.add(hashCode);
+        return position;
+    }
+
     @Override
-    public int hashCode(long sliceAddress)
+    public int hashCode(long position)
     {
-        Slice slice = getSliceForSyntheticAddress(sliceAddress);
-        int offset = (int) sliceAddress;
-        int length = tupleInfo.size(slice, offset);
-        return slice.hashCode(offset, length);
+        if (position == LOOKUP_POSITION) {
+            return lookupHashCode;
+        }
+        return valueHashCodes.getInt((int) position);
     }
 
     @Override
-    public boolean equals(long leftSliceAddress, long rightSliceAddress)
+    public boolean equals(long leftPosition, long rightPosition)
     {
-        Slice leftSlice = getSliceForSyntheticAddress(leftSliceAddress);
-        int leftOffset = decodeSliceOffset(leftSliceAddress);
-        int leftLength = tupleInfo.size(leftSlice, leftOffset);
+        if (leftPosition == rightPosition) {
+            return true;
+        }
 
-        Slice rightSlice = getSliceForSyntheticAddress(rightSliceAddress);
-        int rightOffset = decodeSliceOffset(rightSliceAddress);
-        int rightLength = tupleInfo.size(rightSlice, rightOffset);
+        // most values that share a bucket are not equal, so check the cached hash codes first
+        if (hashCode(leftPosition) != hashCode(rightPosition)) {
+            return false;
+        }
 
-        return leftSlice.equals(leftOffset, leftLength, rightSlice, rightOffset, rightLength);
-    }
+        Slice leftSlice;
+        int leftOffset;
+        int leftLength;
+        if (leftPosition == LOOKUP_POSITION) {
+            leftSlice = lookupSlice;
+            leftOffset = lookupOffset;
+            leftLength = lookupLength;
+        }
+        else {
+            long leftSliceAddress = valueAddresses.getLong((int) leftPosition);
+            leftSlice = slices.get(decodeSliceIndex(leftSliceAddress));
+            leftOffset = decodeSliceOffset(leftSliceAddress);
+            leftLength = tupleInfo.size(leftSlice, leftOffset);
+        }
 
-    private Slice getSliceForSyntheticAddress(long sliceAddress)
-    {
-        int sliceIndex = decodeSliceIndex(sliceAddress);
-        return sliceIndex == LOOKUP_SLICE_INDEX ? lookupSlice : slices.get(sliceIndex);
+        Slice rightSlice;
+        int rightOffset;
+        int rightLength;
+        if (rightPosition == LOOKUP_POSITION) {
+            rightSlice = lookupSlice;
+            rightOffset = lookupOffset;
+            rightLength = lookupLength;
+        }
+        else {
+            long rightSliceAddress = valueAddresses.getLong((int) rightPosition);
+            rightSlice = slices.get(decodeSliceIndex(rightSliceAddress));
+            rightOffset = decodeSliceOffset(rightSliceAddress);
+            rightLength = tupleInfo.size(rightSlice, rightOffset);
+        }
+
+        return leftSlice.equals(leftOffset, leftLength, rightSlice, rightOffset, rightLength);
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.operator.PagesIndex.MultiSliceFieldOrderedTupleComparator;
+import com.facebook.presto.operator.Spiller.RunCursor;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Sorted runs of a {@link PagesIndex} written to the spill directory of the operator.
+ * Once all of the input has been spilled, the runs are read back with a streaming
+ * k-way merge, so only one page per run is held in memory.
+ */
+public class SpilledSortRuns
+        implements Closeable
+{
+    private final Spiller spiller;
+    private final List<TupleInfo> tupleInfos;
+    private final int orderByChannel;
+    private final int[] sortFields;
+    private final boolean[] sortOrder;
+
+    public SpilledSortRuns(OperatorContext operatorContext, List<TupleInfo> tupleInfos, int orderByChannel, int[] sortFields, boolean[] sortOrder)
+    {
+        this.spiller = new Spiller(checkNotNull(operatorContext, "operatorContext is null"), "sort");
+        this.tupleInfos = ImmutableList.copyOf(checkNotNull(tupleInfos, "tupleInfos is null"));
+        this.orderByChannel = orderByChannel;
+        this.sortFields = checkNotNull(sortFields, "sortFields is null");
+        this.sortOrder = checkNotNull(sortOrder, "sortOrder is null");
+    }
+
+    public boolean isSpillEnabled()
+    {
+        return spiller.isEnabled();
+    }
+
+    public boolean isEmpty()
+    {
+        return spiller.isEmpty();
+    }
+
+    /**
+     * Sorts the index and writes it to a new run.
+     */
+    public void spill(final PagesIndex pagesIndex)
+    {
+        pagesIndex.sort(orderByChannel, sortFields, sortOrder);
+        spiller.spill(new AbstractIterator<Page>()
+        {
+            private final PageBuilder pageBuilder = new PageBuilder(tupleInfos);
+            private int position;
+
+            @Override
+            protected Page computeNext()
+            {
+                if (position == pagesIndex.getPositionCount()) {
+                    return endOfData();
+                }
+                pageBuilder.reset();
+                while (!pageBuilder.isFull() && position < pagesIndex.getPositionCount()) {
+                    for (int channel = 0; channel < tupleInfos.size(); channel++) {
+                        pagesIndex.appendTupleTo(channel, position, pageBuilder.getBlockBuilder(channel));
+                    }
+                    position++;
+                }
+                return pageBuilder.build();
+            }
+        });
+    }
+
+    /**
+     * Removes the runs that have not been merged.
+     */
+    @Override
+    public void close()
+    {
+        spiller.close();
+    }
+
+    /**
+     * Opens a merge over all runs.  The run files are removed from disk and this object is
+     * empty after this call.
+     */
+    public MergingCursor merge()
+    {
+        return new MergingCursor(spiller.openRuns(), tupleInfos.get(orderByChannel), orderByChannel, sortFields, sortOrder);
+    }
+
+    /**
+     * Iterates over the rows of all runs in sort order.
+     */
+    public static class MergingCursor
+    {
+        private final PriorityQueue<RunCursor> queue;
+        private RunCursor current;
+
+        private MergingCursor(List<RunCursor> runs, TupleInfo orderByTupleInfo, final int orderByChannel, int[] sortFields, boolean[] sortOrder)
+        {
+            final MultiSliceFieldOrderedTupleComparator comparator = new MultiSliceFieldOrderedTupleComparator(sortFields, sortOrder, orderByTupleInfo, new long[0]);
+            queue = new PriorityQueue<>(Math.max(runs.size(), 1), new Comparator<RunCursor>()
+            {
+                @Override
+                public int compare(RunCursor left, RunCursor right)
+                {
+                    return comparator.compare(
+                            left.getRawSlice(orderByChannel),
+                            left.getRawOffset(orderByChannel),
+                            right.getRawSlice(orderByChannel),
+                            right.getRawOffset(orderByChannel));
+                }
+            });
+
+            for (RunCursor run : runs) {
+                if (run.advanceNextPosition()) {
+                    queue.add(run);
+                }
+            }
+        }
+
+        /**
+         * Moves to the next row in sort order, and returns false when all runs are exhausted.
+         */
+        public boolean advanceNextPosition()
+        {
+            if (current != null && current.advanceNextPosition()) {
+                queue.add(current);
+            }
+            current = queue.poll();
+            return current != null;
+        }
+
+        public Slice getRawSlice(int channel)
+        {
+            checkState(current != null, "cursor is not positioned on a row");
+            return current.getRawSlice(channel);
+        }
+
+        public int getRawOffset(int channel)
+        {
+            checkState(current != null, "cursor is not positioned on a row");
+            return current.getRawOffset(channel);
+        }
+
+        public void appendTupleTo(int channel, BlockBuilder output)
+        {
+            checkState(current != null, "cursor is not positioned on a row");
+            current.appendTupleTo(channel, output);
+        }
+    }
+}
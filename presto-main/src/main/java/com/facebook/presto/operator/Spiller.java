@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockBuilder;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.serde.PagesSerde;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import io.airlift.log.Logger;
+import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Runs of pages spilled by an operator to the spill path of its task.
+ * <p/>
+ * A run file is removed as soon as it is opened for reading, and {@link #close()} removes
+ * the runs that were never read, so the operator owning the spiller must close it when it
+ * is closed, which the driver does when the task fails or is canceled.
+ */
+public class Spiller
+        implements Closeable
+{
+    private static final Logger log = Logger.get(Spiller.class);
+
+    private final OperatorContext operatorContext;
+    private final File spillPath;
+    private final String prefix;
+    private final List<File> runs = new ArrayList<>();
+    private boolean closed;
+
+    public Spiller(OperatorContext operatorContext, String prefix)
+    {
+        this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
+        this.spillPath = operatorContext.getSpillPath();
+        this.prefix = checkNotNull(prefix, "prefix is null");
+    }
+
+    public boolean isEnabled()
+    {
+        return spillPath != null;
+    }
+
+    public boolean isEmpty()
+    {
+        return runs.isEmpty();
+    }
+
+    /**
+     * Writes the pages to a new run.
+     */
+    public void spill(Iterator<Page> pages)
+    {
+        checkState(spillPath != null, "Task exceeded max memory size of %s", operatorContext.getMaxMemorySize());
+        checkState(!closed, "Spiller is closed");
+
+        long start = System.nanoTime();
+        try {
+            if (!spillPath.isDirectory() && !spillPath.mkdirs()) {
+                throw new IOException("Could not create spill directory " + spillPath);
+            }
+            File file = File.createTempFile(prefix + "-", ".spill", spillPath);
+            runs.add(file);
+            try (SliceOutput sliceOutput = new OutputStreamSliceOutput(new BufferedOutputStream(new FileOutputStream(file)))) {
+                PagesSerde.writePages(sliceOutput, pages);
+            }
+            operatorContext.recordSpill(file.length(), System.nanoTime() - start);
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Opens a cursor over each run.  The run files are removed from disk and the spiller is
+     * empty after this call.
+     */
+    public List<RunCursor> openRuns()
+    {
+        checkState(!closed, "Spiller is closed");
+
+        ImmutableList.Builder<RunCursor> cursors = ImmutableList.builder();
+        try {
+            for (File run : runs) {
+                cursors.add(new RunCursor(run));
+            }
+        }
+        finally {
+            deleteRuns();
+        }
+        return cursors.build();
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        deleteRuns();
+    }
+
+    private void deleteRuns()
+    {
+        for (File run : runs) {
+            if (!run.delete() && run.exists()) {
+                log.warn("Could not delete spill file %s", run);
+            }
+        }
+        runs.clear();
+    }
+
+    /**
+     * Iterates over the rows of a run.  The channels of the current row are read through
+     * the block cursors of the current page.
+     */
+    public static class RunCursor
+    {
+        private final Iterator<Page> pages;
+        private BlockCursor[] cursors;
+
+        private RunCursor(File file)
+        {
+            // the mapping stays valid after the file is removed
+            try {
+                pages = PagesSerde.readPages(Slices.mapFileReadOnly(file).getInput());
+            }
+            catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        /**
+         * Moves to the next row, and returns false when the run is exhausted.
+         */
+        public boolean advanceNextPosition()
+        {
+            while (cursors == null || !advanceCursors()) {
+                if (!pages.hasNext()) {
+                    cursors = null;
+                    return false;
+                }
+                Page page = pages.next();
+                cursors = new BlockCursor[page.getChannelCount()];
+                for (int channel = 0; channel < cursors.length; channel++) {
+                    cursors[channel] = page.getBlock(channel).cursor();
+                }
+            }
+            return true;
+        }
+
+        private boolean advanceCursors()
+        {
+            boolean advanced = cursors[0].advanceNextPosition();
+            for (int channel = 1; channel < cursors.length; channel++) {
+                checkState(cursors[channel].advanceNextPosition() == advanced);
+            }
+            return advanced;
+        }
+
+        public BlockCursor[] getCursors()
+        {
+            checkState(cursors != null, "cursor is not positioned on a row");
+            return cursors;
+        }
+
+        public Slice getRawSlice(int channel)
+        {
+            return getCursors()[channel].getRawSlice();
+        }
+
+        public int getRawOffset(int channel)
+        {
+            return getCursors()[channel].getRawOffset();
+        }
+
+        public void appendTupleTo(int channel, BlockBuilder output)
+        {
+            getCursors()[channel].appendTupleTo(output);
+        }
+    }
+}
@@ -17,6 +17,9 @@ import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.metadata.ColumnFileHandle;
 import com.facebook.presto.metadata.LocalStorageManager;
+import com.facebook.presto.metadata.NativeColumnHandle;
+import com.facebook.presto.metadata.ShardColumnStats;
+import com.facebook.presto.serde.BlocksFileStats;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.Split;
 import com.facebook.presto.split.NativeSplit;
@@ -30,6 +33,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
@@ -227,10 +231,21 @@ public class TableWriterOperator
                 throw Throwables.propagate(e);
             }
 
-            operatorContext.addOutputItems(sourceId, ImmutableSet.of(new TableWriterResult(input.get().getShardId(), nodeIdentifier)));
+            long shardId = input.get().getShardId();
+            operatorContext.addOutputItems(sourceId, ImmutableSet.of(new TableWriterResult(shardId, nodeIdentifier, getColumnStats(shardId))));
         }
 
         Block block = new BlockBuilder(SINGLE_LONG).append(rowCount).build();
         return new Page(block);
     }
+
+    private List<ShardColumnStats> getColumnStats(long shardId)
+    {
+        ImmutableList.Builder<ShardColumnStats> columnStats = ImmutableList.builder();
+        for (Map.Entry<ColumnHandle, BlocksFileStats> entry : columnFileHandle.getStats().entrySet()) {
+            long columnId = ((NativeColumnHandle) entry.getKey()).getColumnId();
+            columnStats.addAll(ShardColumnStats.fromFileStats(shardId, columnId, entry.getValue()).asSet());
+        }
+        return columnStats.build();
+    }
 }
@@ -13,10 +13,13 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.metadata.ShardColumnStats;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 
+import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -25,20 +28,33 @@ public class TableWriterResult
 {
     private final long shardId;
     private final String nodeIdentifier;
+    private final List<ShardColumnStats> columnStats;
 
     public static TableWriterResult forMap(Map<String, Object> map)
     {
+        ImmutableList.Builder<ShardColumnStats> columnStats = ImmutableList.builder();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> columnStatsMaps = (List<Map<String, Object>>) map.get("columnStats");
+        if (columnStatsMaps != null) {
+            for (Map<String, Object> columnStatsMap : columnStatsMaps) {
+                columnStats.add(ShardColumnStats.forMap(columnStatsMap));
+            }
+        }
+
         return new TableWriterResult(
                 ((Number) map.get("shardId")).longValue(),
-                (String) map.get("nodeIdentifier"));
+                (String) map.get("nodeIdentifier"),
+                columnStats.build());
     }
 
     @JsonCreator
     public TableWriterResult(@JsonProperty("shardId") long shardId,
-            @JsonProperty("nodeIdentifier") String nodeIdentifier)
+            @JsonProperty("nodeIdentifier") String nodeIdentifier,
+            @JsonProperty("columnStats") List<ShardColumnStats> columnStats)
     {
         this.shardId = shardId;
         this.nodeIdentifier = checkNotNull(nodeIdentifier, "nodeIdentifier is null");
+        this.columnStats = ImmutableList.copyOf(checkNotNull(columnStats, "columnStats is null"));
     }
 
     @JsonProperty
@@ -53,12 +69,19 @@ public class TableWriterResult
         return nodeIdentifier;
     }
 
+    @JsonProperty
+    public List<ShardColumnStats> getColumnStats()
+    {
+        return columnStats;
+    }
+
     @Override
     public String toString()
     {
         return Objects.toStringHelper(this)
                 .add("shardId", shardId)
                 .add("nodeIdentifier", nodeIdentifier)
+                .add("columnStats", columnStats)
                 .toString();
     }
 }
@@ -29,8 +29,10 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.joda.time.DateTime;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -57,6 +59,8 @@ public class TaskContext
 
     private final long maxMemory;
     private final DataSize operatorPreAllocatedMemory;
+    @Nullable
+    private final File spillPath;
 
     private final AtomicLong memoryReservation = new AtomicLong();
 
@@ -96,12 +100,24 @@ public class TaskContext
     }
 
     public TaskContext(TaskStateMachine taskStateMachine, Executor executor, Session session, DataSize maxMemory, DataSize operatorPreAllocatedMemory, boolean cpuTimerEnabled)
+    {
+        this(taskStateMachine, executor, session, maxMemory, operatorPreAllocatedMemory, cpuTimerEnabled, null);
+    }
+
+    public TaskContext(TaskStateMachine taskStateMachine,
+            Executor executor,
+            Session session,
+            DataSize maxMemory,
+            DataSize operatorPreAllocatedMemory,
+            boolean cpuTimerEnabled,
+            @Nullable File spillPath)
     {
         this.taskStateMachine = checkNotNull(taskStateMachine, "taskStateMachine is null");
         this.executor = checkNotNull(executor, "executor is null");
         this.session = session;
         this.maxMemory = checkNotNull(maxMemory, "maxMemory is null").toBytes();
         this.operatorPreAllocatedMemory = checkNotNull(operatorPreAllocatedMemory, "operatorPreAllocatedMemory is null");
+        this.spillPath = spillPath;
 
         taskStateMachine.addStateChangeListener(new StateChangeListener<TaskState>()
         {
@@ -169,6 +185,15 @@ public class TaskContext
         return operatorPreAllocatedMemory;
     }
 
+    /**
+     * Returns the directory operators may spill to, or null if spilling is disabled.
+     */
+    @Nullable
+    public File getSpillPath()
+    {
+        return spillPath;
+    }
+
     public synchronized boolean reserveMemory(long bytes)
     {
         checkArgument(bytes >= 0, "bytes is negative");
@@ -254,4 +254,34 @@ public class TaskStats
     {
         return pipelines;
     }
+
+    /**
+     * Returns these stats without the per pipeline and per operator detail, which
+     * makes up most of the encoded size of a task info.
+     */
+    public TaskStats summarize()
+    {
+        return new TaskStats(
+                createTime,
+                startTime,
+                endTime,
+                elapsedTime,
+                queuedTime,
+                totalDrivers,
+                queuedDrivers,
+                runningDrivers,
+                completedDrivers,
+                memoryReservation,
+                totalScheduledTime,
+                totalCpuTime,
+                totalUserTime,
+                totalBlockedTime,
+                rawInputDataSize,
+                rawInputPositions,
+                processedInputDataSize,
+                processedInputPositions,
+                outputDataSize,
+                outputPositions,
+                ImmutableList.<PipelineStats>of());
+    }
 }
@@ -14,23 +14,29 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.tuple.Tuple;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleReadable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
 import com.google.common.util.concurrent.ListenableFuture;
-import io.airlift.units.DataSize;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.NoSuchElementException;
 
+import static com.facebook.presto.operator.SyntheticAddress.decodeSliceOffset;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.sizeOf;
 
 /**
  * Returns the top N rows from the source sorted according to the specified ordering in the keyChannelIndex channel.
@@ -94,8 +100,9 @@ public class TopNOperator
         }
     }
 
-    private static final int MAX_INITIAL_PRIORITY_QUEUE_SIZE = 10000;
-    private static final DataSize OVERHEAD_PER_TUPLE = new DataSize(100, DataSize.Unit.BYTE); // for estimating in-memory size. This is a completely arbitrary number
+    private static final int MAX_INITIAL_HEAP_SIZE = 10000;
+    private static final int MIN_COMPACTION_ROWS = 1024;
+    private static final int ESTIMATED_TUPLE_SIZE = 16;
 
     private final OperatorContext operatorContext;
     private final int n;
@@ -111,7 +118,7 @@ public class TopNOperator
     private TopNBuilder topNBuilder;
     private boolean finishing;
 
-    private Iterator<KeyAndTuples> outputIterator;
+    private Iterator<TupleReadable[]> outputIterator;
 
     public TopNOperator(
             OperatorContext operatorContext,
@@ -132,7 +139,7 @@ public class TopNOperator
         this.projections = ImmutableList.copyOf(checkNotNull(projections, "projections is null"));
         checkArgument(!projections.isEmpty(), "projections is empty");
 
-        // the priority queue needs to sort in reverse order to be able to remove the least element in O(1)
+        // the heap needs to sort in reverse order to be able to remove the least element in O(1)
         this.ordering = checkNotNull(ordering, "ordering is null").reverse();
 
         this.partial = partial;
@@ -186,11 +193,16 @@ public class TopNOperator
         checkState(!finishing, "Operator is already finishing");
         checkNotNull(page, "page is null");
         if (topNBuilder == null) {
+            ImmutableList.Builder<TupleInfo> sourceTupleInfos = ImmutableList.builder();
+            for (Block block : page.getBlocks()) {
+                sourceTupleInfos.add(block.getTupleInfo());
+            }
             topNBuilder = new TopNBuilder(
                     n,
                     keyChannelIndex,
                     ordering,
-                    memoryManager);
+                    memoryManager,
+                    sourceTupleInfos.build());
         }
 
         checkState(!topNBuilder.isFull(), "Aggregation buffer is full");
@@ -220,9 +232,9 @@ public class TopNOperator
 
         pageBuilder.reset();
         while (!pageBuilder.isFull() && outputIterator.hasNext()) {
-            KeyAndTuples next = outputIterator.next();
+            TupleReadable[] next = outputIterator.next();
             for (int i = 0; i < projections.size(); i++) {
-                projections.get(i).project(next.getTuples(), pageBuilder.getBlockBuilder(i));
+                projections.get(i).project(next, pageBuilder.getBlockBuilder(i));
             }
         }
 
@@ -239,103 +251,256 @@ public class TopNOperator
         return tupleInfos.build();
     }
 
+    /**
+     * Keeps the best n rows seen so far.  The candidate rows are copied into channel indexes,
+     * and a heap of row ids, with the worst candidate at the root, decides which rows are kept.
+     * A row of the current page is only copied if it is still a candidate once the whole page
+     * has been processed, and rows that are pushed out of the heap by later pages are reclaimed
+     * by periodically compacting the channel indexes.  Rows are compared in place, so no
+     * objects are allocated per row.
+     */
     private static class TopNBuilder
     {
         private final int n;
         private final int keyChannelIndex;
         private final Ordering<TupleReadable> ordering;
         private final TopNMemoryManager memoryManager;
-        private final PriorityQueue<KeyAndTuples> globalCandidates;
+        private final List<TupleInfo> sourceTupleInfos;
+
+        private ChannelIndex[] channels;
+
+        // row ids of the candidates, where a negative id is the complement of a position in the current page
+        private int[] heap;
+        private int heapSize;
+        private int pendingCount;
+
+        private Slice pageKeySlice;
+        private int[] pageKeyOffsets = new int[0];
+
+        private final SliceTupleReadable left;
+        private final SliceTupleReadable right;
 
         private long memorySize;
 
-        private TopNBuilder(int n, int keyChannelIndex, Ordering<TupleReadable> ordering, TopNMemoryManager memoryManager)
+        private TopNBuilder(int n, int keyChannelIndex, Ordering<TupleReadable> ordering, TopNMemoryManager memoryManager, List<TupleInfo> sourceTupleInfos)
         {
             this.n = n;
             this.keyChannelIndex = keyChannelIndex;
             this.ordering = ordering;
             this.memoryManager = memoryManager;
-            this.globalCandidates = new PriorityQueue<>(Math.min(n, MAX_INITIAL_PRIORITY_QUEUE_SIZE), KeyAndTuples.keyComparator(ordering));
+            this.sourceTupleInfos = sourceTupleInfos;
+
+            this.channels = createChannelIndexes(Math.min(n, MAX_INITIAL_HEAP_SIZE));
+            this.heap = new int[Math.min(n, MAX_INITIAL_HEAP_SIZE)];
+
+            TupleInfo keyTupleInfo = sourceTupleInfos.get(keyChannelIndex);
+            this.left = new SliceTupleReadable(keyTupleInfo);
+            this.right = new SliceTupleReadable(keyTupleInfo);
         }
 
         public void processPage(Page page)
         {
-            Iterable<KeyAndPosition> keyAndPositions = computePageCandidatePositions(globalCandidates, page);
-            long sizeDelta = mergeWithGlobalCandidates(globalCandidates, page, keyAndPositions);
-            memorySize += sizeDelta;
+            BlockCursor cursor = page.getBlock(keyChannelIndex).cursor();
+            while (cursor.advanceNextPosition()) {
+                if (heapSize < n) {
+                    addPageKey(cursor, page.getPositionCount());
+                    push(~cursor.getPosition());
+                    pendingCount++;
+                }
+                else if (ordering.compare(cursor, setRow(right, heap[0])) > 0) {
+                    addPageKey(cursor, page.getPositionCount());
+                    if (heap[0] < 0) {
+                        pendingCount--;
+                    }
+                    heap[0] = ~cursor.getPosition();
+                    pendingCount++;
+                    siftDown(0);
+                }
+            }
+
+            if (pendingCount > 0) {
+                copyPendingRows(page);
+            }
+            pageKeySlice = null;
+
+            // rows that were pushed out of the heap are still in the channel indexes
+            int unusedRows = channels[0].getPositionCount() - heapSize;
+            if (unusedRows > Math.max(heapSize, MIN_COMPACTION_ROWS)) {
+                compact();
+            }
+
+            memorySize = calculateMemorySize();
         }
 
-        private long mergeWithGlobalCandidates(PriorityQueue<KeyAndTuples> globalCandidates, Page page, Iterable<KeyAndPosition> pageValueAndPositions)
+        private void addPageKey(BlockCursor cursor, int positionCount)
         {
-            long sizeDelta = 0;
+            if (pageKeySlice == null) {
+                pageKeySlice = cursor.getRawSlice();
+                if (pageKeyOffsets.length < positionCount) {
+                    pageKeyOffsets = new int[positionCount];
+                }
+            }
+            pageKeyOffsets[cursor.getPosition()] = cursor.getRawOffset();
+        }
 
-            // Sort by positions so that we can advance through the values via cursors
-            List<KeyAndPosition> positionSorted = Ordering.from(KeyAndPosition.positionComparator()).sortedCopy(pageValueAndPositions);
+        private void copyPendingRows(Page page)
+        {
+            // copy the rows in position order, so the page can be read with forward only cursors
+            long[] pending = new long[pendingCount];
+            int index = 0;
+            for (int i = 0; i < heapSize; i++) {
+                if (heap[i] < 0) {
+                    pending[index++] = ((long) ~heap[i] << 32) | i;
+                }
+            }
+            Arrays.sort(pending);
 
             Block[] blocks = page.getBlocks();
             BlockCursor[] cursors = new BlockCursor[blocks.length];
-            for (int i = 0; i < blocks.length; i++) {
-                cursors[i] = blocks[i].cursor();
+            BlockBuilder[] builders = new BlockBuilder[blocks.length];
+            for (int channel = 0; channel < blocks.length; channel++) {
+                cursors[channel] = blocks[channel].cursor();
+                builders[channel] = createBlockBuilder(channel, pending.length);
             }
-            for (KeyAndPosition keyAndPosition : positionSorted) {
-                for (BlockCursor cursor : cursors) {
-                    checkState(cursor.advanceToPosition(keyAndPosition.getPosition()));
-                }
-                if (globalCandidates.size() < n) {
-                    Tuple[] tuples = getTuples(keyAndPosition, cursors);
-                    for (Tuple tuple : tuples) {
-                        sizeDelta += tuple.size();
-                    }
-                    sizeDelta += OVERHEAD_PER_TUPLE.toBytes();
-                    globalCandidates.add(new KeyAndTuples(keyAndPosition.getKey(), tuples));
+
+            int firstRowId = channels[0].getPositionCount();
+            for (int i = 0; i < pending.length; i++) {
+                int position = (int) (pending[i] >>> 32);
+                for (int channel = 0; channel < cursors.length; channel++) {
+                    checkState(cursors[channel].advanceToPosition(position));
+                    cursors[channel].appendTupleTo(builders[channel]);
                 }
-                else if (ordering.compare(keyAndPosition.getKey(), globalCandidates.peek().getKey()) > 0) {
-                    KeyAndTuples previous = globalCandidates.remove();
-                    for (Tuple tuple : previous.getTuples()) {
-                        sizeDelta -= tuple.size();
-                    }
+                heap[(int) pending[i]] = firstRowId + i;
+            }
+            indexBlocks(channels, builders);
+            pendingCount = 0;
+        }
 
-                    Tuple[] tuples = getTuples(keyAndPosition, cursors);
-                    globalCandidates.add(new KeyAndTuples(keyAndPosition.getKey(), tuples));
-                    for (Tuple tuple : tuples) {
-                        sizeDelta += tuple.size();
-                    }
-                    sizeDelta += keyAndPosition.getKey().size();
+        private void compact()
+        {
+            ChannelIndex[] compacted = createChannelIndexes(heapSize);
+            BlockBuilder[] builders = new BlockBuilder[channels.length];
+            for (int channel = 0; channel < channels.length; channel++) {
+                builders[channel] = createBlockBuilder(channel, heapSize);
+            }
+
+            // the rows are copied in heap order, so the heap does not change shape
+            for (int i = 0; i < heapSize; i++) {
+                for (int channel = 0; channel < channels.length; channel++) {
+                    channels[channel].appendTo(heap[i], builders[channel]);
                 }
+                heap[i] = i;
+            }
+            if (heapSize > 0) {
+                indexBlocks(compacted, builders);
             }
+            channels = compacted;
+        }
 
-            return sizeDelta;
+        private ChannelIndex[] createChannelIndexes(int expectedPositions)
+        {
+            ChannelIndex[] indexes = new ChannelIndex[sourceTupleInfos.size()];
+            for (int channel = 0; channel < indexes.length; channel++) {
+                indexes[channel] = new ChannelIndex(expectedPositions, sourceTupleInfos.get(channel));
+            }
+            return indexes;
         }
 
-        private Iterable<KeyAndPosition> computePageCandidatePositions(PriorityQueue<KeyAndTuples> globalCandidates, Page page)
+        private BlockBuilder createBlockBuilder(int channel, int expectedPositions)
         {
-            PriorityQueue<KeyAndPosition> pageCandidates = new PriorityQueue<>(Math.min(n, MAX_INITIAL_PRIORITY_QUEUE_SIZE), KeyAndPosition.keyComparator(ordering));
-            KeyAndTuples smallestGlobalCandidate = globalCandidates.peek(); // This can be null if globalCandidates is empty
-            BlockCursor cursor = page.getBlock(keyChannelIndex).cursor();
-            while (cursor.advanceNextPosition()) {
-                // Only consider value if it would be a candidate when compared against the current global candidates
-                if (globalCandidates.size() < n || ordering.compare(cursor, smallestGlobalCandidate.getKey()) > 0) {
-                    if (pageCandidates.size() < n) {
-                        pageCandidates.add(new KeyAndPosition(cursor.getTuple(), cursor.getPosition()));
-                    }
-                    else if (ordering.compare(cursor, pageCandidates.peek().getKey()) > 0) {
-                        pageCandidates.remove();
-                        pageCandidates.add(new KeyAndPosition(cursor.getTuple(), cursor.getPosition()));
-                    }
+            return new BlockBuilder(sourceTupleInfos.get(channel), Integer.MAX_VALUE, new DynamicSliceOutput(expectedPositions * ESTIMATED_TUPLE_SIZE));
+        }
+
+        private static void indexBlocks(ChannelIndex[] indexes, BlockBuilder[] builders)
+        {
+            for (int channel = 0; channel < indexes.length; channel++) {
+                UncompressedBlock block = builders[channel].build();
+                // copy the block, so the index only retains the bytes of the rows
+                Slice slice = block.getSlice();
+                Slice copy = Slices.allocate(slice.length());
+                copy.setBytes(0, slice);
+                indexes[channel].indexBlock(new UncompressedBlock(block.getPositionCount(), block.getTupleInfo(), copy));
+            }
+        }
+
+        private long calculateMemorySize()
+        {
+            long size = sizeOf(heap) + sizeOf(pageKeyOffsets);
+            for (ChannelIndex channel : channels) {
+                size += channel.getEstimatedSize().toBytes();
+            }
+            return size;
+        }
+
+        private SliceTupleReadable setRow(SliceTupleReadable readable, int row)
+        {
+            if (row < 0) {
+                readable.set(pageKeySlice, pageKeyOffsets[~row]);
+            }
+            else {
+                ChannelIndex keyIndex = channels[keyChannelIndex];
+                long address = keyIndex.getValueAddresses().getLong(row);
+                readable.set(keyIndex.getSliceForSyntheticAddress(address), decodeSliceOffset(address));
+            }
+            return readable;
+        }
+
+        private int compareRows(int leftRow, int rightRow)
+        {
+            return ordering.compare(setRow(left, leftRow), setRow(right, rightRow));
+        }
+
+        private void push(int row)
+        {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, Math.min(n, heap.length * 2));
+            }
+            int index = heapSize++;
+            heap[index] = row;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (compareRows(heap[index], heap[parent]) >= 0) {
+                    break;
                 }
+                swap(index, parent);
+                index = parent;
             }
-            return pageCandidates;
         }
 
-        private Tuple[] getTuples(KeyAndPosition keyAndPosition, BlockCursor[] cursors)
+        private int pop()
         {
-            // TODO: pre-project columns to minimize storage in global candidate set
-            Tuple[] tuples = new Tuple[cursors.length];
-            for (int channel = 0; channel < cursors.length; channel++) {
-                // Optimization since key channel already has a materialized Tuple
-                tuples[channel] = (channel == keyChannelIndex) ? keyAndPosition.getKey() : cursors[channel].getTuple();
+            int row = heap[0];
+            heapSize--;
+            if (heapSize > 0) {
+                heap[0] = heap[heapSize];
+                siftDown(0);
             }
-            return tuples;
+            return row;
+        }
+
+        private void siftDown(int index)
+        {
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= heapSize) {
+                    return;
+                }
+                if (child + 1 < heapSize && compareRows(heap[child + 1], heap[child]) < 0) {
+                    child++;
+                }
+                if (compareRows(heap[child], heap[index]) >= 0) {
+                    return;
+                }
+                swap(index, child);
+                index = child;
+            }
+        }
+
+        private void swap(int a, int b)
+        {
+            int temp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = temp;
         }
 
         private boolean isFull()
@@ -343,13 +508,51 @@ public class TopNOperator
             return memoryManager.canUse(memorySize);
         }
 
-        public Iterator<KeyAndTuples> build()
+        public Iterator<TupleReadable[]> build()
         {
-            ImmutableList.Builder<KeyAndTuples> minSortedGlobalCandidates = ImmutableList.builder();
-            while (!globalCandidates.isEmpty()) {
-                minSortedGlobalCandidates.add(globalCandidates.remove());
+            // the heap removes the worst row first
+            final int[] rows = new int[heapSize];
+            for (int i = rows.length - 1; i >= 0; i--) {
+                rows[i] = pop();
             }
-            return minSortedGlobalCandidates.build().reverse().iterator();
+
+            final ChannelIndex[] channels = this.channels;
+            final SliceTupleReadable[] readables = new SliceTupleReadable[channels.length];
+            for (int channel = 0; channel < channels.length; channel++) {
+                readables[channel] = new SliceTupleReadable(channels[channel].getTupleInfo());
+            }
+
+            // the same readables are returned for every row, positioned on that row
+            return new Iterator<TupleReadable[]>()
+            {
+                private int index;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return index < rows.length;
+                }
+
+                @Override
+                public TupleReadable[] next()
+                {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int row = rows[index++];
+                    for (int channel = 0; channel < channels.length; channel++) {
+                        long address = channels[channel].getValueAddresses().getLong(row);
+                        readables[channel].set(channels[channel].getSliceForSyntheticAddress(address), decodeSliceOffset(address));
+                    }
+                    return readables;
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
         }
     }
 
@@ -388,83 +591,67 @@ public class TopNOperator
         }
     }
 
-    private static class KeyAndPosition
+    /**
+     * A tuple in a slice, which can be moved to another tuple without allocating.
+     */
+    private static class SliceTupleReadable
+            implements TupleReadable
     {
-        private final Tuple key;
-        private final int position;
+        private final TupleInfo tupleInfo;
+        private Slice slice;
+        private int offset;
 
-        private KeyAndPosition(Tuple key, int position)
+        private SliceTupleReadable(TupleInfo tupleInfo)
         {
-            this.key = key;
-            this.position = position;
+            this.tupleInfo = tupleInfo;
         }
 
-        public Tuple getKey()
+        public void set(Slice slice, int offset)
         {
-            return key;
+            this.slice = slice;
+            this.offset = offset;
         }
 
-        public int getPosition()
+        @Override
+        public TupleInfo getTupleInfo()
         {
-            return position;
+            return tupleInfo;
         }
 
-        public static Comparator<KeyAndPosition> keyComparator(final Comparator<TupleReadable> tupleReadableComparator)
+        @Override
+        public Tuple getTuple()
         {
-            return new Comparator<KeyAndPosition>()
-            {
-                @Override
-                public int compare(KeyAndPosition o1, KeyAndPosition o2)
-                {
-                    return tupleReadableComparator.compare(o1.getKey(), o2.getKey());
-                }
-            };
+            return new Tuple(slice.slice(offset, tupleInfo.size(slice, offset)), tupleInfo);
         }
 
-        public static Comparator<KeyAndPosition> positionComparator()
+        @Override
+        public boolean getBoolean(int index)
         {
-            return new Comparator<KeyAndPosition>()
-            {
-                @Override
-                public int compare(KeyAndPosition o1, KeyAndPosition o2)
-                {
-                    return Long.compare(o1.getPosition(), o2.getPosition());
-                }
-            };
+            return tupleInfo.getBoolean(slice, offset, index);
         }
-    }
 
-    private static class KeyAndTuples
-    {
-        private final Tuple key;
-        private final Tuple[] tuples;
-
-        private KeyAndTuples(Tuple key, Tuple[] tuples)
+        @Override
+        public long getLong(int index)
         {
-            this.key = key;
-            this.tuples = tuples;
+            return tupleInfo.getLong(slice, offset, index);
         }
 
-        public Tuple getKey()
+        @Override
+        public double getDouble(int index)
         {
-            return key;
+            return tupleInfo.getDouble(slice, offset, index);
         }
 
-        public Tuple[] getTuples()
+        @Override
+        public Slice getSlice(int index)
         {
-            return tuples;
+            return tupleInfo.getSlice(slice, offset, index);
         }
 
-        public static Comparator<KeyAndTuples> keyComparator(final Comparator<TupleReadable> tupleReadableComparator)
+        @Override
+        public boolean isNull(int field)
         {
-            return new Comparator<KeyAndTuples>()
-            {
-                @Override
-                public int compare(KeyAndTuples o1, KeyAndTuples o2)
-                {
-                    return tupleReadableComparator.compare(o1.getKey(), o2.getKey());
-                }
-            };
+            return tupleInfo.isNull(slice, offset, field);
         }
     }
 }
@@ -14,14 +14,17 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.operator.PagesIndex.MultiSliceFieldOrderedTupleComparator;
+import com.facebook.presto.operator.SpilledSortRuns.MergingCursor;
 import com.facebook.presto.operator.window.WindowFunction;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Booleans;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.slice.Slice;
 import it.unimi.dsi.fastutil.ints.IntComparator;
 
+import java.io.Closeable;
 import java.util.Arrays;
 import java.util.List;
 
@@ -29,7 +32,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 public class WindowOperator
-        implements Operator
+        implements Operator, Closeable
 {
     public static class InMemoryWindowOperatorFactory
             implements OperatorFactory
@@ -109,15 +112,23 @@ public class WindowOperator
     }
 
     private final OperatorContext operatorContext;
+    private final List<TupleInfo> sourceTupleInfos;
     private final int orderingChannel;
     private final int[] outputChannels;
     private final List<WindowFunction> windowFunctions;
     private final int[] partitionFields;
+    private final boolean[] partitionOrder;
     private final int[] sortFields;
     private final boolean[] sortOrder;
+    private final int[] orderFields;
+    private final boolean[] ordering;
     private final List<TupleInfo> tupleInfos;
 
     private final PagesIndex pageIndex;
+    private final SpilledSortRuns spilledRuns;
+    private final MultiSliceFieldOrderedTupleComparator mergePartitionComparator;
+    private MergingCursor mergingCursor;
+    private boolean mergingCursorHasRow;
 
     private final PageBuilder pageBuilder;
 
@@ -144,6 +155,7 @@ public class WindowOperator
             int expectedPositions)
     {
         this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
+        this.sourceTupleInfos = ImmutableList.copyOf(checkNotNull(sourceTupleInfos, "sourceTupleInfos is null"));
         this.orderingChannel = orderingChannel;
         this.outputChannels = checkNotNull(outputChannels, "outputChannels is null").clone();
         this.windowFunctions = checkNotNull(windowFunctions, "windowFunctions is null");
@@ -153,7 +165,15 @@ public class WindowOperator
 
         this.tupleInfos = toTupleInfos(sourceTupleInfos, outputChannels, windowFunctions);
 
+        // sort by partition fields, then sort fields
+        this.orderFields = Ints.concat(this.partitionFields, this.sortFields);
+        this.partitionOrder = new boolean[this.partitionFields.length];
+        Arrays.fill(partitionOrder, true);
+        this.ordering = Booleans.concat(partitionOrder, this.sortOrder);
+
         this.pageIndex = new PagesIndex(sourceTupleInfos, expectedPositions, operatorContext);
+        this.spilledRuns = new SpilledSortRuns(operatorContext, sourceTupleInfos, orderingChannel, orderFields, ordering);
+        this.mergePartitionComparator = new MultiSliceFieldOrderedTupleComparator(this.partitionFields, partitionOrder, sourceTupleInfos.get(orderingChannel), new long[0]);
         this.pageBuilder = new PageBuilder(this.tupleInfos);
     }
 
@@ -175,24 +195,75 @@ public class WindowOperator
         if (state == State.NEEDS_INPUT) {
             state = State.HAS_OUTPUT;
 
-            // sort by partition fields, then sort fields
-            int[] orderFields = Ints.concat(partitionFields, sortFields);
+            if (spilledRuns.isEmpty()) {
+                // sort the index
+                pageIndex.sort(orderingChannel, orderFields, ordering);
+                createComparators();
+            }
+            else {
+                // spill the rest of the input and merge all of the runs
+                if (pageIndex.getPositionCount() > 0) {
+                    spilledRuns.spill(pageIndex);
+                    pageIndex.clear();
+                }
+                mergingCursor = spilledRuns.merge();
+                mergingCursorHasRow = mergingCursor.advanceNextPosition();
+            }
+        }
+    }
 
-            boolean[] partitionOrder = new boolean[partitionFields.length];
-            Arrays.fill(partitionOrder, true);
-            boolean[] ordering = Booleans.concat(partitionOrder, sortOrder);
+    private void createComparators()
+    {
+        // create partition comparator
+        ChannelIndex index = pageIndex.getIndex(orderingChannel);
+        partitionComparator = new MultiSliceFieldOrderedTupleComparator(partitionFields, partitionOrder, index);
 
-            // sort the index
-            pageIndex.sort(orderingChannel, orderFields, ordering);
+        // create order comparator
+        index = pageIndex.getIndex(orderingChannel);
+        orderComparator = new MultiSliceFieldOrderedTupleComparator(sortFields, sortOrder, index);
+    }
 
-            // create partition comparator
-            ChannelIndex index = pageIndex.getIndex(orderingChannel);
-            partitionComparator = new MultiSliceFieldOrderedTupleComparator(partitionFields, partitionOrder, index);
+    /**
+     * Loads the next partition from the merged runs into the index.  Partitions must fit in memory,
+     * since the window functions are told the size of the partition before processing any rows.
+     */
+    private boolean loadNextPartition()
+    {
+        if (mergingCursor == null || !mergingCursorHasRow) {
+            return false;
+        }
 
-            // create order comparator
-            index = pageIndex.getIndex(orderingChannel);
-            orderComparator = new MultiSliceFieldOrderedTupleComparator(sortFields, sortOrder, index);
+        pageIndex.clear();
+        currentPosition = 0;
+        partitionEnd = 0;
+        peerGroupEnd = 0;
+
+        // rows of a partition are adjacent in the merged output
+        Slice partitionSlice = mergingCursor.getRawSlice(orderingChannel);
+        int partitionOffset = mergingCursor.getRawOffset(orderingChannel);
+        PageBuilder partitionPageBuilder = new PageBuilder(sourceTupleInfos);
+        do {
+            for (int channel = 0; channel < sourceTupleInfos.size(); channel++) {
+                mergingCursor.appendTupleTo(channel, partitionPageBuilder.getBlockBuilder(channel));
+            }
+            if (partitionPageBuilder.isFull()) {
+                pageIndex.addPage(partitionPageBuilder.build());
+                partitionPageBuilder.reset();
+            }
+            mergingCursorHasRow = mergingCursor.advanceNextPosition();
+        }
+        while (mergingCursorHasRow && mergePartitionComparator.compare(
+                partitionSlice,
+                partitionOffset,
+                mergingCursor.getRawSlice(orderingChannel),
+                mergingCursor.getRawOffset(orderingChannel)) == 0);
+
+        if (!partitionPageBuilder.isEmpty()) {
+            pageIndex.addPage(partitionPageBuilder.build());
         }
+
+        createComparators();
+        return true;
     }
 
     @Override
@@ -201,6 +272,15 @@ public class WindowOperator
         return state == State.FINISHED;
     }
 
+    /**
+     * Removes the spilled runs that have not been merged.
+     */
+    @Override
+    public void close()
+    {
+        spilledRuns.close();
+    }
+
     @Override
     public ListenableFuture<?> isBlocked()
     {
@@ -219,7 +299,14 @@ public class WindowOperator
         checkState(state == State.NEEDS_INPUT, "Operator is already finishing");
         checkNotNull(page, "page is null");
 
-        pageIndex.addPage(page);
+        if (!spilledRuns.isSpillEnabled()) {
+            pageIndex.addPage(page);
+        }
+        else if (!pageIndex.tryAddPage(page)) {
+            // the index no longer fits in memory, so write it out as a sorted run
+            spilledRuns.spill(pageIndex);
+            pageIndex.clear();
+        }
     }
 
     @Override
@@ -229,14 +316,14 @@ public class WindowOperator
             return null;
         }
 
-        if (currentPosition >= pageIndex.getPositionCount()) {
-            state = State.FINISHED;
-            return null;
-        }
-
         // iterate through the positions sequentially until we have one full page
         pageBuilder.reset();
-        while (!pageBuilder.isFull() && currentPosition < pageIndex.getPositionCount()) {
+        while (!pageBuilder.isFull()) {
+            // when merging spilled runs, move on to the next partition
+            if (currentPosition >= pageIndex.getPositionCount() && !loadNextPartition()) {
+                break;
+            }
+
             // check for new partition
             boolean newPartition = (currentPosition == 0) || (currentPosition == partitionEnd);
             if (newPartition) {
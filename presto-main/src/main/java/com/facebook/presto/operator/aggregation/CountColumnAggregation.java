@@ -16,6 +16,7 @@ package com.facebook.presto.operator.aggregation;
 import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.columnar.ColumnarBlock;
 import com.facebook.presto.tuple.TupleInfo;
 import io.airlift.slice.Slice;
 
@@ -69,10 +70,21 @@ public class CountColumnAggregation
         long count = SINGLE_LONG.getLong(valueSlice, valueOffset, 0);
 
         // process block
-        BlockCursor cursor = block.cursor();
-        while (cursor.advanceNextPosition()) {
-            if (!cursor.isNull(field)) {
-                count++;
+        if (block instanceof ColumnarBlock) {
+            // columnar blocks are read directly from the value arrays
+            ColumnarBlock values = (ColumnarBlock) block;
+            for (int position = 0; position < positionCount; position++) {
+                if (!values.isNull(position)) {
+                    count++;
+                }
+            }
+        }
+        else {
+            BlockCursor cursor = block.cursor();
+            while (cursor.advanceNextPosition()) {
+                if (!cursor.isNull(field)) {
+                    count++;
+                }
             }
         }
 
@@ -16,6 +16,7 @@ package com.facebook.presto.operator.aggregation;
 import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.columnar.DoubleArrayBlock;
 import com.facebook.presto.tuple.TupleInfo;
 import io.airlift.slice.Slice;
 
@@ -76,11 +77,23 @@ public class DoubleSumAggregation
         double sum = SINGLE_DOUBLE.getDouble(valueSlice, valueOffset, 0);
 
         // process block
-        BlockCursor cursor = block.cursor();
-        while (cursor.advanceNextPosition()) {
-            if (!cursor.isNull(field)) {
-                hasNonNull = true;
-                sum += cursor.getDouble(field);
+        if (block instanceof DoubleArrayBlock) {
+            // columnar blocks are read directly from the value arrays
+            DoubleArrayBlock values = (DoubleArrayBlock) block;
+            for (int position = 0; position < positionCount; position++) {
+                if (!values.isNull(position)) {
+                    hasNonNull = true;
+                    sum += values.getDouble(position);
+                }
+            }
+        }
+        else {
+            BlockCursor cursor = block.cursor();
+            while (cursor.advanceNextPosition()) {
+                if (!cursor.isNull(field)) {
+                    hasNonNull = true;
+                    sum += cursor.getDouble(field);
+                }
             }
         }
 
@@ -16,6 +16,7 @@ package com.facebook.presto.operator.aggregation;
 import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.columnar.LongArrayBlock;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleInfo.Type;
 import io.airlift.slice.Slice;
@@ -85,12 +86,25 @@ public class LongAverageAggregation
         double sum = TUPLE_INFO.getDouble(valueSlice, valueOffset, 1);
 
         // process block
-        BlockCursor cursor = block.cursor();
-        while (cursor.advanceNextPosition()) {
-            if (!cursor.isNull(field)) {
-                hasNonNull = true;
-                count++;
-                sum += cursor.getLong(field);
+        if (block instanceof LongArrayBlock) {
+            // columnar blocks are read directly from the value arrays
+            LongArrayBlock values = (LongArrayBlock) block;
+            for (int position = 0; position < positionCount; position++) {
+                if (!values.isNull(position)) {
+                    hasNonNull = true;
+                    count++;
+                    sum += values.getLong(position);
+                }
+            }
+        }
+        else {
+            BlockCursor cursor = block.cursor();
+            while (cursor.advanceNextPosition()) {
+                if (!cursor.isNull(field)) {
+                    hasNonNull = true;
+                    count++;
+                    sum += cursor.getLong(field);
+                }
             }
         }
 
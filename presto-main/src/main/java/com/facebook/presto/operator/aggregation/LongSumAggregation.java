@@ -16,6 +16,7 @@ package com.facebook.presto.operator.aggregation;
 import com.facebook.presto.block.Block;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.columnar.LongArrayBlock;
 import com.facebook.presto.tuple.TupleInfo;
 import io.airlift.slice.Slice;
 
@@ -75,11 +76,23 @@ public class LongSumAggregation
         long sum = SINGLE_LONG.getLong(valueSlice, valueOffset, 0);
 
         // process block
-        BlockCursor cursor = block.cursor();
-        while (cursor.advanceNextPosition()) {
-            if (!cursor.isNull(field)) {
-                hasNonNull = true;
-                sum += cursor.getLong(field);
+        if (block instanceof LongArrayBlock) {
+            // columnar blocks are read directly from the value arrays
+            LongArrayBlock values = (LongArrayBlock) block;
+            for (int position = 0; position < positionCount; position++) {
+                if (!values.isNull(position)) {
+                    hasNonNull = true;
+                    sum += values.getLong(position);
+                }
+            }
+        }
+        else {
+            BlockCursor cursor = block.cursor();
+            while (cursor.advanceNextPosition()) {
+                if (!cursor.isNull(field)) {
+                    hasNonNull = true;
+                    sum += cursor.getLong(field);
+                }
             }
         }
 
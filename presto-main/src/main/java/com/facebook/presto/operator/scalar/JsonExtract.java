@@ -150,7 +150,7 @@ public final class JsonExtract
         return extract(JSON_CACHE, jsonInput, jsonPath);
     }
 
-    public static Slice extract(ThreadLocalCache<Slice, JsonExtractor> cache, @Nullable Slice jsonInput, Slice jsonPath)
+    public static Slice extract(ThreadLocalCache<Slice, JsonPathScanner> cache, @Nullable Slice jsonInput, Slice jsonPath)
             throws IOException
     {
         checkNotNull(jsonPath, "jsonPath is null");
@@ -158,20 +158,14 @@ public final class JsonExtract
             return null;
         }
 
-        try {
-            return extractInternal(jsonInput, cache.get(jsonPath));
-        }
-        catch (JsonParseException e) {
-            // Return null if we failed to parse something
-            return null;
-        }
+        return extract(jsonInput, cache.get(jsonPath));
     }
 
-    public static Slice extract(Slice jsonInput, JsonExtractor jsonExtractor)
+    public static Slice extract(Slice jsonInput, JsonPathScanner jsonPathScanner)
             throws IOException
     {
         try {
-            return extractInternal(jsonInput, jsonExtractor);
+            return jsonPathScanner.extract(jsonInput);
         }
         catch (JsonParseException e) {
             // Return null if we failed to parse something
@@ -179,6 +173,10 @@ public final class JsonExtract
         }
     }
 
+    /**
+     * Extracts the value with a parser over the whole document.  This is the reference
+     * implementation of the {@link JsonPathScanner}.
+     */
     @VisibleForTesting
     static Slice extractInternal(Slice jsonInput, JsonExtractor jsonExtractor)
             throws IOException
@@ -194,7 +192,7 @@ public final class JsonExtract
         }
     }
 
-    private static Iterable<String> tokenizePath(String path)
+    static Iterable<String> tokenizePath(String path)
     {
         checkArgument(EXPECTED_PATH.matcher(path).matches(), "Invalid/unsupported JSON path: '%s'", path);
         // This performs the following transformation:
@@ -380,7 +378,7 @@ public final class JsonExtract
     }
 
     public static class JsonExtractCache
-            extends ThreadLocalCache<Slice, JsonExtractor>
+            extends ThreadLocalCache<Slice, JsonPathScanner>
     {
         private final boolean isScalarValue;
 
@@ -391,9 +389,9 @@ public final class JsonExtract
         }
 
         @Override
-        protected JsonExtractor load(Slice jsonPath)
+        protected JsonPathScanner load(Slice jsonPath)
         {
-            return generateExtractor(jsonPath.toString(Charsets.UTF_8), isScalarValue);
+            return JsonPathScanner.compile(jsonPath.toString(Charsets.UTF_8), isScalarValue);
         }
     }
 }
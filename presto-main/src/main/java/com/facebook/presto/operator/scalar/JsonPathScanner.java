@@ -0,0 +1,417 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.scalar;
+
+import com.facebook.presto.operator.scalar.JsonExtract.JsonExtractor;
+import com.facebook.presto.operator.scalar.JsonExtract.JsonValueJsonExtractor;
+import com.facebook.presto.operator.scalar.JsonExtract.ScalarValueJsonExtractor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.fasterxml.jackson.core.JsonFactory.Feature.CANONICALIZE_FIELD_NAMES;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A JSON path compiled to a scanner over the bytes of a JSON document.  The scanner walks
+ * down the path one step at a time, skips the values that are not on the path by matching
+ * brackets and quotes without tokenizing them, and stops as soon as the target value is
+ * found, so most of a large document is never parsed.  Only the target value is handed to
+ * Jackson, and only when it is a structure or a string with escapes.
+ * <p/>
+ * Skipped values are not validated, so a document that is malformed outside of the path
+ * to the target may still produce a value.
+ */
+public final class JsonPathScanner
+{
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(CANONICALIZE_FIELD_NAMES);
+
+    private static final JsonExtractor SCALAR_VALUE_EXTRACTOR = new ScalarValueJsonExtractor();
+    private static final JsonExtractor JSON_VALUE_EXTRACTOR = new JsonValueJsonExtractor();
+
+    // for each step, either the field name, or null if the step is an array subscript
+    private final byte[][] fieldNames;
+    private final String[] fieldNameStrings;
+    private final int[] indexes;
+    private final boolean scalarValue;
+
+    private JsonPathScanner(List<String> filters, boolean scalarValue)
+    {
+        int steps = filters.size();
+        fieldNames = new byte[steps][];
+        fieldNameStrings = new String[steps];
+        indexes = new int[steps];
+        for (int step = 0; step < steps; step++) {
+            String filter = filters.get(step);
+            if (filter.startsWith("[")) {
+                int index = Integer.parseInt(filter.substring(1).trim());
+                checkArgument(index >= 0, "index must be greater than or equal to zero: %s", index);
+                indexes[step] = index;
+            }
+            else {
+                fieldNameStrings[step] = filter;
+                fieldNames[step] = filter.getBytes(Charsets.UTF_8);
+            }
+        }
+        this.scalarValue = scalarValue;
+    }
+
+    public static JsonPathScanner compile(String path, boolean scalarValue)
+    {
+        checkNotNull(path, "path is null");
+        Iterator<String> iterator = JsonExtract.tokenizePath(path).iterator();
+        checkArgument(iterator.hasNext() && iterator.next().equals("$"), "JSON path must begin with root: '$'");
+        return new JsonPathScanner(ImmutableList.copyOf(iterator), scalarValue);
+    }
+
+    /**
+     * Returns the value at the path as a scalar or as json, or null if the document does not
+     * have the value, or the value is not a scalar when a scalar is extracted.
+     *
+     * @throws JsonParseException if the document is malformed on the path to the value
+     */
+    public Slice extract(Slice json)
+            throws IOException
+    {
+        int position = skipWhitespace(json, 0);
+        for (int step = 0; step < fieldNames.length; step++) {
+            if (fieldNames[step] != null) {
+                position = findField(json, position, step);
+            }
+            else {
+                position = findElement(json, position, indexes[step]);
+            }
+            if (position < 0) {
+                return null;
+            }
+        }
+
+        if (scalarValue) {
+            return extractScalar(json, position);
+        }
+        return parseValue(json, position, skipValue(json, position), JSON_VALUE_EXTRACTOR);
+    }
+
+    /**
+     * Returns the position of the value of the field, or -1 if the value at the position
+     * is not an object or does not have the field.
+     */
+    private int findField(Slice json, int position, int step)
+            throws IOException
+    {
+        if (getByte(json, position) != '{') {
+            return -1;
+        }
+        position = skipWhitespace(json, position + 1);
+        if (getByte(json, position) == '}') {
+            return -1;
+        }
+
+        while (true) {
+            if (getByte(json, position) != '"') {
+                throw parseException("Expected a field name", position);
+            }
+            int nameEnd = findStringEnd(json, position);
+            boolean matches = fieldNameEquals(json, position, nameEnd, step);
+
+            position = skipWhitespace(json, nameEnd);
+            if (getByte(json, position) != ':') {
+                throw parseException("Expected ':'", position);
+            }
+            position = skipWhitespace(json, position + 1);
+            if (matches) {
+                return position;
+            }
+
+            position = skipWhitespace(json, skipValue(json, position));
+            byte next = getByte(json, position);
+            if (next == '}') {
+                return -1;
+            }
+            if (next != ',') {
+                throw parseException("Expected ',' or '}'", position);
+            }
+            position = skipWhitespace(json, position + 1);
+        }
+    }
+
+    /**
+     * Returns the position of the element, or -1 if the value at the position is not an
+     * array or does not have the element.
+     */
+    private static int findElement(Slice json, int position, int index)
+            throws IOException
+    {
+        if (getByte(json, position) != '[') {
+            return -1;
+        }
+        position = skipWhitespace(json, position + 1);
+        if (getByte(json, position) == ']') {
+            return -1;
+        }
+
+        for (int element = 0; element < index; element++) {
+            position = skipWhitespace(json, skipValue(json, position));
+            byte next = getByte(json, position);
+            if (next == ']') {
+                return -1;
+            }
+            if (next != ',') {
+                throw parseException("Expected ',' or ']'", position);
+            }
+            position = skipWhitespace(json, position + 1);
+        }
+        return position;
+    }
+
+    private static Slice extractScalar(Slice json, int position)
+            throws IOException
+    {
+        byte value = getByte(json, position);
+        switch (value) {
+            case '{':
+            case '[':
+                return null;
+            case '"':
+                int end = findStringEnd(json, position);
+                for (int i = position + 1; i < end - 1; i++) {
+                    if (json.getByte(i) == '\\') {
+                        // only strings with escapes need to be decoded
+                        return parseValue(json, position, end, SCALAR_VALUE_EXTRACTOR);
+                    }
+                }
+                return json.slice(position + 1, end - position - 2);
+            case 'n':
+                expectLiteral(json, position, "null");
+                return null;
+            case 't':
+                return json.slice(position, expectLiteral(json, position, "true") - position);
+            case 'f':
+                return json.slice(position, expectLiteral(json, position, "false") - position);
+            default:
+                int numberEnd = skipValue(json, position);
+                if (!isNumber(json, position, numberEnd)) {
+                    throw parseException("Invalid value", position);
+                }
+                return json.slice(position, numberEnd - position);
+        }
+    }
+
+    private static Slice parseValue(Slice json, int start, int end, JsonExtractor extractor)
+            throws IOException
+    {
+        try (JsonParser jsonParser = JSON_FACTORY.createJsonParser(json.slice(start, end - start).getInput())) {
+            if (jsonParser.nextToken() == null) {
+                throw new JsonParseException("Missing starting token", jsonParser.getCurrentLocation());
+            }
+            return extractor.extract(jsonParser);
+        }
+    }
+
+    private boolean fieldNameEquals(Slice json, int start, int end, int step)
+            throws IOException
+    {
+        byte[] fieldName = fieldNames[step];
+        int length = end - start - 2;
+        boolean escaped = false;
+        for (int i = start + 1; i < end - 1; i++) {
+            if (json.getByte(i) == '\\') {
+                escaped = true;
+                break;
+            }
+        }
+        if (escaped) {
+            Slice name = parseValue(json, start, end, SCALAR_VALUE_EXTRACTOR);
+            return name.toString(Charsets.UTF_8).equals(fieldNameStrings[step]);
+        }
+
+        if (length != fieldName.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (json.getByte(start + 1 + i) != fieldName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position after the value that starts at the position.
+     */
+    private static int skipValue(Slice json, int position)
+            throws IOException
+    {
+        byte value = getByte(json, position);
+        if (value == '"') {
+            return findStringEnd(json, position);
+        }
+        if (value == '{' || value == '[') {
+            int depth = 0;
+            while (true) {
+                value = getByte(json, position);
+                if (value == '"') {
+                    position = findStringEnd(json, position);
+                    continue;
+                }
+                if (value == '{' || value == '[') {
+                    depth++;
+                }
+                else if (value == '}' || value == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return position + 1;
+                    }
+                }
+                position++;
+            }
+        }
+
+        // a number or a literal ends at the next delimiter
+        int length = json.length();
+        while (position < length) {
+            value = json.getByte(position);
+            if (value == ',' || value == '}' || value == ']' || isWhitespace(value)) {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position after the closing quote of the string that starts at the position.
+     */
+    private static int findStringEnd(Slice json, int position)
+            throws IOException
+    {
+        int length = json.length();
+        position++;
+        while (position < length) {
+            byte value = json.getByte(position);
+            if (value == '"') {
+                return position + 1;
+            }
+            if (value == '\\') {
+                position++;
+            }
+            position++;
+        }
+        throw parseException("Unexpected end of string", position);
+    }
+
+    private static int expectLiteral(Slice json, int position, String literal)
+            throws IOException
+    {
+        int end = skipValue(json, position);
+        if (end - position != literal.length()) {
+            throw parseException("Invalid value", position);
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (json.getByte(position + i) != literal.charAt(i)) {
+                throw parseException("Invalid value", position);
+            }
+        }
+        return end;
+    }
+
+    private static int skipWhitespace(Slice json, int position)
+    {
+        int length = json.length();
+        while (position < length && isWhitespace(json.getByte(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static byte getByte(Slice json, int position)
+            throws IOException
+    {
+        if (position >= json.length()) {
+            throw parseException("Unexpected end of input", position);
+        }
+        return json.getByte(position);
+    }
+
+    private static boolean isWhitespace(byte value)
+    {
+        return value == ' ' || value == '\n' || value == '\r' || value == '\t';
+    }
+
+    /**
+     * Returns true if the bytes are a number in the JSON grammar: an optional minus sign, an
+     * integer part without leading zeros, an optional fraction, and an optional exponent.
+     */
+    private static boolean isNumber(Slice json, int start, int end)
+    {
+        int position = start;
+        if (position < end && json.getByte(position) == '-') {
+            position++;
+        }
+        if (position < end && json.getByte(position) == '0') {
+            position++;
+        }
+        else {
+            position = skipDigits(json, position, end);
+        }
+
+        if (position >= 0 && position < end && json.getByte(position) == '.') {
+            position = skipDigits(json, position + 1, end);
+        }
+        if (position >= 0 && position < end && (json.getByte(position) == 'e' || json.getByte(position) == 'E')) {
+            position++;
+            if (position < end && (json.getByte(position) == '+' || json.getByte(position) == '-')) {
+                position++;
+            }
+            position = skipDigits(json, position, end);
+        }
+        return position == end;
+    }
+
+    /**
+     * Returns the position after the digits that start at the position, or -1 if there
+     * are no digits.
+     */
+    private static int skipDigits(Slice json, int position, int end)
+    {
+        int start = position;
+        while (position < end && isDigit(json.getByte(position))) {
+            position++;
+        }
+        if (position == start) {
+            return -1;
+        }
+        return position;
+    }
+
+    private static boolean isDigit(byte value)
+    {
+        return value >= '0' && value <= '9';
+    }
+
+    private static JsonParseException parseException(String message, int position)
+    {
+        return new JsonParseException(message + " at position " + position, JsonLocation.NA);
+    }
+}
@@ -24,8 +24,16 @@ import com.facebook.presto.util.ThreadLocalCache;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
+import io.airlift.slice.SliceOutput;
 import io.airlift.slice.Slices;
+import org.jcodings.specific.UTF8Encoding;
+import org.joni.Matcher;
+import org.joni.Option;
+import org.joni.Regex;
+import org.joni.Region;
+import org.joni.Syntax;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -34,13 +42,17 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import static com.facebook.presto.sql.planner.LikeUtils.getCharacterLength;
+import static com.facebook.presto.sql.planner.LikeUtils.getUtf8Bytes;
 import static java.lang.invoke.MethodHandles.lookup;
 import static java.lang.invoke.MethodType.methodType;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Regular expression functions with Java regular expression syntax.  The expressions are
+ * matched with joni directly against the UTF-8 bytes of the value, so a value is never
+ * decoded to a String.
+ */
 public final class RegexpFunctions
 {
     private static final PatternCache CACHE = new PatternCache(100);
@@ -61,9 +73,10 @@ public final class RegexpFunctions
         return regexpLike(source, patternCache.get(pattern));
     }
 
-    public static boolean regexpLike(Slice source, Pattern pattern)
+    public static boolean regexpLike(Slice source, Regex pattern)
     {
-        return pattern.matcher(source.toString(UTF_8)).find();
+        byte[] bytes = getUtf8Bytes(source);
+        return pattern.matcher(bytes).search(0, bytes.length, Option.NONE) != -1;
     }
 
     @Description("removes substrings matching a regular expression")
@@ -85,11 +98,98 @@ public final class RegexpFunctions
         return regexpReplace(source, patternCache.get(pattern), replacement);
     }
 
-    public static Slice regexpReplace(Slice source, Pattern pattern, Slice replacement)
+    public static Slice regexpReplace(Slice source, Regex pattern, Slice replacement)
     {
-        Matcher matcher = pattern.matcher(source.toString(UTF_8));
-        String replaced = matcher.replaceAll(replacement.toString(UTF_8));
-        return Slices.copiedBuffer(replaced, UTF_8);
+        byte[] bytes = getUtf8Bytes(source);
+        byte[] replacementBytes = replacement.getBytes();
+        Matcher matcher = pattern.matcher(bytes);
+
+        SliceOutput output = null;
+        int appended = 0;
+        int start = 0;
+        while (start <= bytes.length) {
+            if (matcher.search(start, bytes.length, Option.NONE) == -1) {
+                break;
+            }
+            if (output == null) {
+                output = new DynamicSliceOutput(bytes.length + replacementBytes.length);
+            }
+
+            int matchStart = matcher.getBegin();
+            int matchEnd = matcher.getEnd();
+            output.writeBytes(bytes, appended, matchStart - appended);
+            appendReplacement(output, bytes, replacementBytes, matcher, pattern.numberOfCaptures());
+            appended = matchEnd;
+
+            if (matchEnd == matchStart) {
+                // an empty match would match again at the same position, so skip a character
+                if (matchEnd == bytes.length) {
+                    break;
+                }
+                int next = matchEnd + getCharacterLength(bytes[matchEnd]);
+                output.writeBytes(bytes, matchEnd, next - matchEnd);
+                appended = next;
+                start = next;
+            }
+            else {
+                start = matchEnd;
+            }
+        }
+
+        if (output == null) {
+            // no match
+            return source;
+        }
+        output.writeBytes(bytes, appended, bytes.length - appended);
+        return output.slice();
+    }
+
+    /**
+     * Appends the replacement, with the same syntax as {@link java.util.regex.Matcher#appendReplacement}:
+     * {@code $n} is replaced by the n-th group of the match, and a backslash escapes the next character.
+     */
+    private static void appendReplacement(SliceOutput output, byte[] source, byte[] replacement, Matcher matcher, int groupCount)
+    {
+        int index = 0;
+        while (index < replacement.length) {
+            byte value = replacement[index];
+            if (value == '\\') {
+                index++;
+                if (index == replacement.length) {
+                    throw new IllegalArgumentException("character to be escaped is missing");
+                }
+                output.writeByte(replacement[index]);
+                index++;
+            }
+            else if (value == '$') {
+                index++;
+                if (index == replacement.length || !isDigit(replacement[index])) {
+                    throw new IllegalArgumentException("Illegal group reference");
+                }
+                // like java, take as many digits as still make a valid group number
+                int group = replacement[index] - '0';
+                index++;
+                while (index < replacement.length && isDigit(replacement[index])) {
+                    int nextGroup = group * 10 + (replacement[index] - '0');
+                    if (nextGroup > groupCount) {
+                        break;
+                    }
+                    group = nextGroup;
+                    index++;
+                }
+                if (group > groupCount) {
+                    throw new IllegalArgumentException("No group " + group);
+                }
+                int groupStart = getGroupStart(matcher, group);
+                if (groupStart != -1) {
+                    output.writeBytes(source, groupStart, getGroupEnd(matcher, group) - groupStart);
+                }
+            }
+            else {
+                output.writeByte(value);
+                index++;
+            }
+        }
     }
 
     @Nullable
@@ -115,17 +215,54 @@ public final class RegexpFunctions
     }
 
     @Nullable
-    public static Slice regexpExtract(Slice source, Pattern pattern, long group)
+    public static Slice regexpExtract(Slice source, Regex pattern, long group)
     {
-        Matcher matcher = pattern.matcher(source.toString(UTF_8));
-        if ((group < 0) || (group > matcher.groupCount())) {
+        if ((group < 0) || (group > pattern.numberOfCaptures())) {
             throw new IllegalArgumentException("invalid group count");
         }
-        if (!matcher.find()) {
+        byte[] bytes = getUtf8Bytes(source);
+        Matcher matcher = pattern.matcher(bytes);
+        if (matcher.search(0, bytes.length, Option.NONE) == -1) {
             return null;
         }
-        String extracted = matcher.group(Ints.checkedCast(group));
-        return Slices.copiedBuffer(extracted, UTF_8);
+        int groupStart = getGroupStart(matcher, Ints.checkedCast(group));
+        if (groupStart == -1) {
+            // the group did not take part in the match
+            return null;
+        }
+        int groupEnd = getGroupEnd(matcher, Ints.checkedCast(group));
+        // the bytes are a private copy of the value, so they can be shared with the result
+        return Slices.wrappedBuffer(bytes).slice(groupStart, groupEnd - groupStart);
+    }
+
+    public static Regex compilePattern(Slice pattern)
+    {
+        byte[] bytes = pattern.getBytes();
+        return new Regex(bytes, 0, bytes.length, Option.NONE, UTF8Encoding.INSTANCE, Syntax.Java);
+    }
+
+    private static int getGroupStart(Matcher matcher, int group)
+    {
+        Region region = matcher.getEagerRegion();
+        if (region == null) {
+            // the pattern has no groups
+            return matcher.getBegin();
+        }
+        return region.beg[group];
+    }
+
+    private static int getGroupEnd(Matcher matcher, int group)
+    {
+        Region region = matcher.getEagerRegion();
+        if (region == null) {
+            return matcher.getEnd();
+        }
+        return region.end[group];
+    }
+
+    private static boolean isDigit(byte value)
+    {
+        return value >= '0' && value <= '9';
     }
 
     public static class RegexFunctionBinder
@@ -140,11 +277,11 @@ public final class RegexpFunctions
 
         static {
             try {
-                constantRegexpLike = lookup().findStatic(RegexpFunctions.class, "regexpLike", methodType(boolean.class, Slice.class, Pattern.class));
+                constantRegexpLike = lookup().findStatic(RegexpFunctions.class, "regexpLike", methodType(boolean.class, Slice.class, Regex.class));
                 dynamicRegexpLike = lookup().findStatic(RegexpFunctions.class, "regexpLike", methodType(boolean.class, PatternCache.class, Slice.class, Slice.class));
-                constantRegexpReplace = lookup().findStatic(RegexpFunctions.class, "regexpReplace", methodType(Slice.class, Slice.class, Pattern.class, Slice.class));
+                constantRegexpReplace = lookup().findStatic(RegexpFunctions.class, "regexpReplace", methodType(Slice.class, Slice.class, Regex.class, Slice.class));
                 dynamicRegexpReplace = lookup().findStatic(RegexpFunctions.class, "regexpReplace", methodType(Slice.class, PatternCache.class, Slice.class, Slice.class, Slice.class));
-                constantRegexpExtract = lookup().findStatic(RegexpFunctions.class, "regexpExtract", methodType(Slice.class, Slice.class, Pattern.class, long.class));
+                constantRegexpExtract = lookup().findStatic(RegexpFunctions.class, "regexpExtract", methodType(Slice.class, Slice.class, Regex.class, long.class));
                 dynamicRegexpExtract = lookup().findStatic(RegexpFunctions.class, "regexpExtract", methodType(Slice.class, PatternCache.class, Slice.class, Slice.class, long.class));
             }
             catch (ReflectiveOperationException e) {
@@ -181,7 +318,7 @@ public final class RegexpFunctions
 
                 Slice patternSlice = (Slice) ((Constant) patternNode.getNode()).getValue();
 
-                Pattern pattern = Pattern.compile(patternSlice.toString(UTF_8));
+                Regex pattern = compilePattern(patternSlice);
 
                 methodHandle = MethodHandles.insertArguments(methodHandle, 1, pattern);
 
@@ -220,7 +357,7 @@ public final class RegexpFunctions
     }
 
     public static class PatternCache
-            extends ThreadLocalCache<Slice, Pattern>
+            extends ThreadLocalCache<Slice, Regex>
     {
         public PatternCache(int maxSizePerThread)
         {
@@ -229,9 +366,9 @@ public final class RegexpFunctions
 
         @Nonnull
         @Override
-        protected Pattern load(Slice patternSlice)
+        protected Regex load(Slice patternSlice)
         {
-            return Pattern.compile(patternSlice.toString(UTF_8));
+            return compilePattern(patternSlice);
         }
     }
 }
@@ -13,23 +13,40 @@
  */
 package com.facebook.presto.serde;
 
+import com.facebook.presto.tuple.Tuple;
+import com.facebook.presto.tuple.TupleInfo;
 import io.airlift.slice.Slice;
 import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
 
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
 public class BlocksFileStats
 {
     private final long rowCount;
     private final long runsCount;
     private final long avgRunLength;
     private final int uniqueCount;
+    private final long nullCount;
+    private final Tuple min;
+    private final Tuple max;
 
     public BlocksFileStats(long rowCount, long runsCount, long avgRunLength, int uniqueCount)
+    {
+        this(rowCount, runsCount, avgRunLength, uniqueCount, -1, null, null);
+    }
+
+    public BlocksFileStats(long rowCount, long runsCount, long avgRunLength, int uniqueCount, long nullCount, @Nullable Tuple min, @Nullable Tuple max)
     {
         this.rowCount = rowCount;
         this.runsCount = runsCount;
         this.avgRunLength = avgRunLength;
         this.uniqueCount = uniqueCount;
+        this.nullCount = nullCount;
+        this.min = min;
+        this.max = max;
     }
 
     public static void serialize(BlocksFileStats stats, SliceOutput sliceOutput)
@@ -39,21 +56,55 @@ public class BlocksFileStats
                 .appendLong(stats.getRunsCount())
                 .appendLong(stats.getAvgRunLength())
                 .appendInt(stats.getUniqueCount());
+
+        // zone map: files written before these fields existed end here
+        sliceOutput.appendLong(stats.getNullCount());
+        serializeTuple(stats.getMin(), sliceOutput);
+        serializeTuple(stats.getMax(), sliceOutput);
     }
 
-    public static BlocksFileStats deserialize(Slice slice)
+    private static void serializeTuple(Tuple tuple, SliceOutput sliceOutput)
+    {
+        if (tuple == null) {
+            sliceOutput.appendInt(-1);
+            return;
+        }
+        Slice slice = tuple.getTupleSlice();
+        sliceOutput.appendInt(slice.length())
+                .writeBytes(slice);
+    }
+
+    public static BlocksFileStats deserialize(Slice slice, TupleInfo tupleInfo)
     {
         SliceInput input = slice.getInput();
-        return deserialize(input);
+        return deserialize(input, tupleInfo);
     }
 
-    public static BlocksFileStats deserialize(SliceInput input)
+    public static BlocksFileStats deserialize(SliceInput input, TupleInfo tupleInfo)
     {
+        checkNotNull(tupleInfo, "tupleInfo is null");
+
         long rowCount = input.readLong();
         long runsCount = input.readLong();
         long avgRunLength = input.readLong();
         int uniqueCount = input.readInt();
-        return new BlocksFileStats(rowCount, runsCount, avgRunLength, uniqueCount);
+        if (!input.isReadable()) {
+            return new BlocksFileStats(rowCount, runsCount, avgRunLength, uniqueCount);
+        }
+
+        long nullCount = input.readLong();
+        Tuple min = deserializeTuple(input, tupleInfo);
+        Tuple max = deserializeTuple(input, tupleInfo);
+        return new BlocksFileStats(rowCount, runsCount, avgRunLength, uniqueCount, nullCount, min, max);
+    }
+
+    private static Tuple deserializeTuple(SliceInput input, TupleInfo tupleInfo)
+    {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new Tuple(input.readSlice(length), tupleInfo);
     }
 
     public long getRowCount()
@@ -75,4 +126,32 @@ public class BlocksFileStats
     {
         return uniqueCount;
     }
+
+    /**
+     * Number of null values in the file, or -1 if the file was written without a zone map.
+     */
+    public long getNullCount()
+    {
+        return nullCount;
+    }
+
+    /**
+     * Smallest non-null value in the file, or null if the file has no non-null values or was
+     * written without a zone map.
+     */
+    @Nullable
+    public Tuple getMin()
+    {
+        return min;
+    }
+
+    /**
+     * Largest non-null value in the file, or null if the file has no non-null values or was
+     * written without a zone map.
+     */
+    @Nullable
+    public Tuple getMax()
+    {
+        return max;
+    }
 }
@@ -15,6 +15,7 @@ package com.facebook.presto.serde;
 
 import com.facebook.presto.block.Block;
 import com.facebook.presto.tuple.Tuple;
+import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -103,6 +104,14 @@ public class BlocksFileWriter
         }
     }
 
+    /**
+     * Returns the statistics of the tuples appended so far.
+     */
+    public BlocksFileStats getStats()
+    {
+        return statsBuilder.build();
+    }
+
     public void close()
     {
         if (!closed && encoder != null) {
@@ -138,7 +147,10 @@ public class BlocksFileWriter
 
         private long rowCount;
         private long runsCount;
+        private long nullCount;
         private Tuple lastTuple;
+        private Tuple min;
+        private Tuple max;
         private final Set<Tuple> set = new HashSet<>(MAX_UNIQUE_COUNT);
 
         public void process(Iterable<Tuple> tuples)
@@ -151,6 +163,7 @@ public class BlocksFileWriter
                     if (set.size() < MAX_UNIQUE_COUNT) {
                         set.add(lastTuple);
                     }
+                    updateZoneMap(tuple);
                 }
                 else if (!tuple.equals(lastTuple)) {
                     runsCount++;
@@ -158,15 +171,50 @@ public class BlocksFileWriter
                     if (set.size() < MAX_UNIQUE_COUNT) {
                         set.add(lastTuple);
                     }
+                    updateZoneMap(tuple);
+                }
+                else if (tuple.isNull(0)) {
+                    nullCount++;
                 }
                 rowCount++;
             }
         }
 
+        private void updateZoneMap(Tuple tuple)
+        {
+            if (tuple.isNull(0)) {
+                nullCount++;
+                return;
+            }
+            if (min == null || compare(tuple, min) < 0) {
+                min = tuple;
+            }
+            if (max == null || compare(tuple, max) > 0) {
+                max = tuple;
+            }
+        }
+
+        private static int compare(Tuple left, Tuple right)
+        {
+            TupleInfo.Type type = left.getTupleInfo().getTypes().get(0);
+            switch (type) {
+                case BOOLEAN:
+                    return Boolean.compare(left.getBoolean(0), right.getBoolean(0));
+                case FIXED_INT_64:
+                    return Long.compare(left.getLong(0), right.getLong(0));
+                case DOUBLE:
+                    return Double.compare(left.getDouble(0), right.getDouble(0));
+                case VARIABLE_BINARY:
+                    return left.getSlice(0).compareTo(right.getSlice(0));
+                default:
+                    throw new AssertionError("Unimplemented type: " + type);
+            }
+        }
+
         public BlocksFileStats build()
         {
             // TODO: expose a way to indicate whether the unique count is EXACT or APPROXIMATE
-            return new BlocksFileStats(rowCount, runsCount + 1, rowCount / (runsCount + 1), (set.size() == MAX_UNIQUE_COUNT) ? Integer.MAX_VALUE : set.size());
+            return new BlocksFileStats(rowCount, runsCount + 1, rowCount / (runsCount + 1), (set.size() == MAX_UNIQUE_COUNT) ? Integer.MAX_VALUE : set.size(), nullCount, min, max);
         }
     }
 }
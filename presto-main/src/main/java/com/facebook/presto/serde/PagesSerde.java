@@ -19,8 +19,12 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.io.InputSupplier;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
 import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import org.iq80.snappy.Snappy;
 
 import java.io.IOException;
 import java.util.Iterator;
@@ -30,11 +34,24 @@ import static java.util.Arrays.asList;
 
 public final class PagesSerde
 {
+    // a page is only sent compressed if this saves at least 20% of its size
+    private static final double MAX_COMPRESSION_RATIO = 0.8;
+
     private PagesSerde()
     {
     }
 
-    public static PagesWriter createPagesWriter(final SliceOutput sliceOutput)
+    public static PagesWriter createPagesWriter(SliceOutput sliceOutput)
+    {
+        return createPagesWriter(sliceOutput, false);
+    }
+
+    /**
+     * Creates a writer for a stream of pages.  If compressed is set, the blocks of each page are
+     * compressed with Snappy, and pages that do not compress well are written as is.  A compressed
+     * stream must be read with {@link #readCompressedPages}.
+     */
+    public static PagesWriter createPagesWriter(final SliceOutput sliceOutput, final boolean compressed)
     {
         checkNotNull(sliceOutput, "sliceOutput is null");
         return new PagesWriter()
@@ -59,6 +76,11 @@ public final class PagesSerde
                 }
 
                 sliceOutput.writeInt(page.getPositionCount());
+                if (compressed) {
+                    writeCompressedBlocks(sliceOutput, blockEncodings, page);
+                    return this;
+                }
+
                 Block[] blocks = page.getBlocks();
                 for (int i = 0; i < blocks.length; i++) {
                     blockEncodings[i].writeBlock(sliceOutput, blocks[i]);
@@ -69,6 +91,32 @@ public final class PagesSerde
         };
     }
 
+    private static void writeCompressedBlocks(SliceOutput sliceOutput, BlockEncoding[] blockEncodings, Page page)
+    {
+        DynamicSliceOutput pageOutput = new DynamicSliceOutput((int) Math.min(page.getDataSize().toBytes() + 64, Integer.MAX_VALUE));
+        Block[] blocks = page.getBlocks();
+        for (int i = 0; i < blocks.length; i++) {
+            blockEncodings[i].writeBlock(pageOutput, blocks[i]);
+        }
+        byte[] uncompressed = pageOutput.slice().getBytes();
+
+        byte[] compressed = new byte[Snappy.maxCompressedLength(uncompressed.length)];
+        int compressedLength = Snappy.compress(uncompressed, 0, uncompressed.length, compressed, 0);
+
+        if (compressedLength <= uncompressed.length * MAX_COMPRESSION_RATIO) {
+            sliceOutput.writeBoolean(true);
+            sliceOutput.writeInt(uncompressed.length);
+            sliceOutput.writeInt(compressedLength);
+            sliceOutput.writeBytes(compressed, 0, compressedLength);
+        }
+        else {
+            sliceOutput.writeBoolean(false);
+            sliceOutput.writeInt(uncompressed.length);
+            sliceOutput.writeInt(uncompressed.length);
+            sliceOutput.writeBytes(uncompressed);
+        }
+    }
+
     public static void writePages(SliceOutput sliceOutput, Page... pages)
     {
         writePages(sliceOutput, asList(pages).iterator());
@@ -81,7 +129,16 @@ public final class PagesSerde
 
     public static void writePages(SliceOutput sliceOutput, Iterator<Page> pages)
     {
-        PagesWriter pagesWriter = createPagesWriter(sliceOutput);
+        writePages(createPagesWriter(sliceOutput), pages);
+    }
+
+    public static void writeCompressedPages(SliceOutput sliceOutput, Iterable<Page> pages)
+    {
+        writePages(createPagesWriter(sliceOutput, true), pages.iterator());
+    }
+
+    private static void writePages(PagesWriter pagesWriter, Iterator<Page> pages)
+    {
         while (pages.hasNext()) {
             pagesWriter.append(pages.next());
         }
@@ -109,7 +166,13 @@ public final class PagesSerde
     public static Iterator<Page> readPages(SliceInput sliceInput)
     {
         Preconditions.checkNotNull(sliceInput, "sliceInput is null");
-        return new PagesReader(sliceInput);
+        return new PagesReader(sliceInput, false);
+    }
+
+    public static Iterator<Page> readCompressedPages(SliceInput sliceInput)
+    {
+        Preconditions.checkNotNull(sliceInput, "sliceInput is null");
+        return new PagesReader(sliceInput, true);
     }
 
     private static class PagesReader
@@ -117,10 +180,12 @@ public final class PagesSerde
     {
         private final BlockEncoding[] blockEncodings;
         private final SliceInput sliceInput;
+        private final boolean compressed;
 
-        public PagesReader(SliceInput sliceInput)
+        public PagesReader(SliceInput sliceInput, boolean compressed)
         {
             this.sliceInput = sliceInput;
+            this.compressed = compressed;
 
             int channelCount = sliceInput.readInt();
 
@@ -138,12 +203,28 @@ public final class PagesSerde
             }
 
             int positions = sliceInput.readInt();
+            SliceInput blocksInput = compressed ? readCompressedBlocks(sliceInput) : sliceInput;
             Block[] blocks = new Block[blockEncodings.length];
             for (int i = 0; i < blocks.length; i++) {
-                blocks[i] = blockEncodings[i].readBlock(sliceInput);
+                blocks[i] = blockEncodings[i].readBlock(blocksInput);
             }
             Page page = new Page(positions, blocks);
             return page;
         }
+
+        private static SliceInput readCompressedBlocks(SliceInput sliceInput)
+        {
+            boolean isCompressed = sliceInput.readByte() != 0;
+            int uncompressedLength = sliceInput.readInt();
+            int length = sliceInput.readInt();
+            Slice slice = sliceInput.readSlice(length);
+            if (!isCompressed) {
+                return slice.getInput();
+            }
+
+            byte[] uncompressed = new byte[uncompressedLength];
+            Snappy.uncompress(slice.getBytes(), 0, length, uncompressed, 0);
+            return Slices.wrappedBuffer(uncompressed).getInput();
+        }
     }
 }
@@ -14,6 +14,7 @@
 package com.facebook.presto.serde;
 
 import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockUtils;
 import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.tuple.TupleInfo;
 import com.google.common.base.Preconditions;
@@ -47,7 +48,7 @@ public class UncompressedBlockEncoding
     @Override
     public void writeBlock(SliceOutput sliceOutput, Block block)
     {
-        UncompressedBlock uncompressedBlock = (UncompressedBlock) block;
+        UncompressedBlock uncompressedBlock = BlockUtils.toUncompressedBlock(block);
         Preconditions.checkArgument(block.getTupleInfo().equals(tupleInfo), "Invalid tuple info");
         writeUncompressedBlock(sliceOutput,
                 uncompressedBlock.getPositionCount(),
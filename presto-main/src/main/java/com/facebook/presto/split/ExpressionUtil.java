@@ -15,6 +15,7 @@ package com.facebook.presto.split;
 
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.tree.BetweenPredicate;
 import com.facebook.presto.sql.tree.BooleanLiteral;
 import com.facebook.presto.sql.tree.ComparisonExpression;
 import com.facebook.presto.sql.tree.DoubleLiteral;
@@ -25,6 +26,7 @@ import com.facebook.presto.sql.tree.QualifiedNameReference;
 import com.facebook.presto.sql.tree.StringLiteral;
 import com.facebook.presto.util.IterableTransformer;
 import com.google.common.base.Optional;
+import com.google.common.collect.Range;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -101,6 +103,137 @@ public final class ExpressionUtil
         return Optional.of(bindings);
     }
 
+    /**
+     * Extract the range of values allowed for each column by the conjuncts of the expression of the
+     * form <column> <comparison> <numeric literal> or <column> BETWEEN <numeric literal> AND <numeric literal>.
+     *
+     * @return the ranges or absent if expression will always be false
+     */
+    public static Optional<Map<ColumnHandle, Range<Comparable<?>>>> extractColumnRanges(Expression predicate, Map<Symbol, ColumnHandle> symbolToColumnName)
+    {
+        Map<ColumnHandle, Range<Comparable<?>>> ranges = new HashMap<>();
+        for (Expression conjunct : extractConjuncts(predicate)) {
+            QualifiedNameReference reference;
+            Range<Comparable<?>> range;
+            if (conjunct instanceof ComparisonExpression) {
+                ComparisonExpression comparison = (ComparisonExpression) conjunct;
+                if (comparison.getLeft() instanceof QualifiedNameReference && isNumericLiteral(comparison.getRight())) {
+                    reference = (QualifiedNameReference) comparison.getLeft();
+                    range = toRange(comparison.getType(), getNumericValue(comparison.getRight()));
+                }
+                else if (isNumericLiteral(comparison.getLeft()) && comparison.getRight() instanceof QualifiedNameReference) {
+                    reference = (QualifiedNameReference) comparison.getRight();
+                    range = toRange(flip(comparison.getType()), getNumericValue(comparison.getLeft()));
+                }
+                else {
+                    continue;
+                }
+            }
+            else if (conjunct instanceof BetweenPredicate) {
+                BetweenPredicate between = (BetweenPredicate) conjunct;
+                if (!(between.getValue() instanceof QualifiedNameReference) || !isNumericLiteral(between.getMin()) || !isNumericLiteral(between.getMax())) {
+                    continue;
+                }
+                Comparable<?> min = getNumericValue(between.getMin());
+                Comparable<?> max = getNumericValue(between.getMax());
+                if (min.getClass() != max.getClass()) {
+                    continue;
+                }
+                reference = (QualifiedNameReference) between.getValue();
+                // an inverted between is always false, which is represented as an empty range
+                range = isLessThanOrEqual(min, max) ? Range.<Comparable<?>>closed(min, max) : Range.<Comparable<?>>closedOpen(min, min);
+            }
+            else {
+                continue;
+            }
+
+            ColumnHandle column = symbolToColumnName.get(Symbol.fromQualifiedName(reference.getName()));
+            if (column == null || range == null) {
+                continue;
+            }
+
+            Range<Comparable<?>> previous = ranges.get(column);
+            if (previous != null) {
+                if (getEndpointClass(previous) != getEndpointClass(range)) {
+                    // mixed type comparisons on the same column are not combined
+                    continue;
+                }
+                // if the ranges do not overlap, the expression will always be false
+                if (!previous.isConnected(range)) {
+                    return Optional.absent();
+                }
+                range = previous.intersection(range);
+            }
+            if (range.isEmpty()) {
+                return Optional.absent();
+            }
+            ranges.put(column, range);
+        }
+        return Optional.of(ranges);
+    }
+
+    private static boolean isNumericLiteral(Expression expression)
+    {
+        return expression instanceof LongLiteral || expression instanceof DoubleLiteral;
+    }
+
+    private static Comparable<?> getNumericValue(Expression literal)
+    {
+        if (literal instanceof LongLiteral) {
+            return ((LongLiteral) literal).getValue();
+        }
+        return ((DoubleLiteral) literal).getValue();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static boolean isLessThanOrEqual(Comparable<?> left, Comparable<?> right)
+    {
+        return ((Comparable) left).compareTo(right) <= 0;
+    }
+
+    private static Class<?> getEndpointClass(Range<Comparable<?>> range)
+    {
+        return range.hasLowerBound() ? range.lowerEndpoint().getClass() : range.upperEndpoint().getClass();
+    }
+
+    private static Range<Comparable<?>> toRange(ComparisonExpression.Type type, Comparable<?> value)
+    {
+        if (value instanceof Double && ((Double) value).isNaN()) {
+            // comparisons with NaN are always false, but that is left to the filter
+            return null;
+        }
+        switch (type) {
+            case EQUAL:
+                return Range.<Comparable<?>>singleton(value);
+            case LESS_THAN:
+                return Range.<Comparable<?>>lessThan(value);
+            case LESS_THAN_OR_EQUAL:
+                return Range.<Comparable<?>>atMost(value);
+            case GREATER_THAN:
+                return Range.<Comparable<?>>greaterThan(value);
+            case GREATER_THAN_OR_EQUAL:
+                return Range.<Comparable<?>>atLeast(value);
+            default:
+                return null;
+        }
+    }
+
+    private static ComparisonExpression.Type flip(ComparisonExpression.Type type)
+    {
+        switch (type) {
+            case LESS_THAN:
+                return ComparisonExpression.Type.GREATER_THAN;
+            case LESS_THAN_OR_EQUAL:
+                return ComparisonExpression.Type.GREATER_THAN_OR_EQUAL;
+            case GREATER_THAN:
+                return ComparisonExpression.Type.LESS_THAN;
+            case GREATER_THAN_OR_EQUAL:
+                return ComparisonExpression.Type.LESS_THAN_OR_EQUAL;
+            default:
+                return type;
+        }
+    }
+
     private static Literal extractLiteral(ComparisonExpression expression)
     {
         if (expression.getLeft() instanceof Literal) {
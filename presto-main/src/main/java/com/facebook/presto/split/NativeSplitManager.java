@@ -14,9 +14,11 @@
 package com.facebook.presto.split;
 
 import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.metadata.NativeColumnHandle;
 import com.facebook.presto.metadata.NativeTableHandle;
 import com.facebook.presto.metadata.Node;
 import com.facebook.presto.metadata.NodeManager;
+import com.facebook.presto.metadata.ShardColumnStats;
 import com.facebook.presto.metadata.ShardManager;
 import com.facebook.presto.metadata.TablePartition;
 import com.facebook.presto.spi.ColumnHandle;
@@ -31,8 +33,10 @@ import com.google.common.base.Objects;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Range;
 import io.airlift.log.Logger;
 
 import javax.inject.Inject;
@@ -40,6 +44,7 @@ import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -113,6 +118,15 @@ public class NativeSplitManager
 
     @Override
     public Iterable<Split> getPartitionSplits(TableHandle tableHandle, List<Partition> partitions)
+    {
+        return getPartitionSplits(tableHandle, partitions, ImmutableMap.<ColumnHandle, Range<Comparable<?>>>of());
+    }
+
+    /**
+     * Get the splits of the partitions, skipping shards whose column zone maps show that no row
+     * can have a value within the specified range for the column.
+     */
+    public Iterable<Split> getPartitionSplits(TableHandle tableHandle, List<Partition> partitions, Map<ColumnHandle, Range<Comparable<?>>> columnRanges)
     {
         Stopwatch splitTimer = new Stopwatch();
         splitTimer.start();
@@ -128,6 +142,18 @@ public class NativeSplitManager
 
         Multimap<Long, Entry<Long, String>> partitionShardNodes = shardManager.getCommittedPartitionShardNodes(tableHandle);
 
+        Map<Long, Range<Comparable<?>>> rangesByColumnId = new HashMap<>();
+        for (Map.Entry<ColumnHandle, Range<Comparable<?>>> entry : columnRanges.entrySet()) {
+            if (entry.getKey() instanceof NativeColumnHandle) {
+                rangesByColumnId.put(((NativeColumnHandle) entry.getKey()).getColumnId(), entry.getValue());
+            }
+        }
+        Multimap<Long, ShardColumnStats> shardColumnStats = ImmutableMultimap.of();
+        if (!rangesByColumnId.isEmpty()) {
+            shardColumnStats = shardManager.getCommittedShardColumnStats(tableHandle);
+        }
+        int prunedShards = 0;
+
         for (Partition partition : partitions) {
             checkArgument(partition instanceof NativePartition, "Partition must be a native partition");
             NativePartition nativePartition = (NativePartition) partition;
@@ -138,6 +164,10 @@ public class NativeSplitManager
             }
 
             for (Map.Entry<Long, Collection<String>> entry : shardNodes.build().asMap().entrySet()) {
+                if (!canMatch(shardColumnStats.get(entry.getKey()), rangesByColumnId)) {
+                    prunedShards++;
+                    continue;
+                }
                 List<HostAddress> addresses = getAddressesForNodes(nodesById, entry.getValue());
                 checkState(addresses.size() > 0, "no host for shard %s found", entry.getKey());
                 Split split = new NativeSplit(entry.getKey(), addresses);
@@ -145,7 +175,7 @@ public class NativeSplitManager
             }
         }
 
-        log.debug("Split retrieval for %d partitions (%d splits): %dms", partitions.size(), splits.size(), splitTimer.elapsed(TimeUnit.MILLISECONDS));
+        log.debug("Split retrieval for %d partitions (%d splits, %d shards pruned): %dms", partitions.size(), splits.size(), prunedShards, splitTimer.elapsed(TimeUnit.MILLISECONDS));
 
         // the query engine assumes that splits are returned in a somewhat random fashion. The native split manager,
         // because it loads the data from a db table will return the splits somewhat ordered by node id so only a sub
@@ -155,6 +185,17 @@ public class NativeSplitManager
         return ImmutableList.copyOf(splits);
     }
 
+    private static boolean canMatch(Collection<ShardColumnStats> shardColumnStats, Map<Long, Range<Comparable<?>>> rangesByColumnId)
+    {
+        for (ShardColumnStats columnStats : shardColumnStats) {
+            Range<Comparable<?>> range = rangesByColumnId.get(columnStats.getColumnId());
+            if (range != null && !columnStats.canMatch(range)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static List<HostAddress> getAddressesForNodes(Map<String, Node> nodeMap, Iterable<String> nodeIdentifiers)
     {
         return ImmutableList.copyOf(transform(transform(nodeIdentifiers, forMap(nodeMap)), hostAndPortGetter()));
@@ -15,13 +15,13 @@ package com.facebook.presto.split;
 
 import com.facebook.presto.operator.Operator;
 import com.facebook.presto.operator.OperatorContext;
-import com.facebook.presto.operator.RecordProjectOperator;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorRecordSetProvider;
 import com.facebook.presto.spi.Split;
 
 import java.util.List;
 
+import static com.facebook.presto.operator.BatchRecordProjectOperator.createRecordProjectOperator;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class RecordSetDataStreamProvider
@@ -43,6 +43,6 @@ public class RecordSetDataStreamProvider
     @Override
     public Operator createNewDataStream(OperatorContext operatorContext, Split split, List<ColumnHandle> columns)
     {
-        return new RecordProjectOperator(operatorContext, recordSetProvider.getRecordSet(split, columns));
+        return createRecordProjectOperator(operatorContext, recordSetProvider.getRecordSet(split, columns));
     }
 }
@@ -18,6 +18,7 @@ import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorSplitManager;
 import com.facebook.presto.spi.Partition;
+import com.facebook.presto.spi.Split;
 import com.facebook.presto.spi.TableHandle;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.planner.ExpressionInterpreter;
@@ -31,6 +32,7 @@ import com.google.common.collect.BiMap;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
@@ -71,8 +73,23 @@ public class SplitManager
 
         ConnectorSplitManager connectorSplitManager = getConnectorSplitManager(handle);
 
+        Iterable<Split> splits;
+        if (connectorSplitManager instanceof NativeSplitManager) {
+            // native shards have zone maps, so push down the column ranges of the predicate
+            Optional<Map<ColumnHandle, Range<Comparable<?>>>> columnRanges = ExpressionUtil.extractColumnRanges(and(predicate, upstreamHint), mappings);
+            if (!columnRanges.isPresent()) {
+                splits = ImmutableList.of();
+            }
+            else {
+                splits = ((NativeSplitManager) connectorSplitManager).getPartitionSplits(handle, partitions, columnRanges.get());
+            }
+        }
+        else {
+            splits = connectorSplitManager.getPartitionSplits(handle, partitions);
+        }
+
         String connectorId = connectorSplitManager.getConnectorId();
-        return new DataSource(connectorId, connectorSplitManager.getPartitionSplits(handle, partitions));
+        return new DataSource(connectorId, splits);
     }
 
     private List<Partition> getPartitions(Session session,
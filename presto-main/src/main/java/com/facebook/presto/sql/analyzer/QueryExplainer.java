@@ -29,6 +29,7 @@ import com.google.common.base.Optional;
 
 import java.util.List;
 
+import static com.facebook.presto.SessionProperties.isDistributedJoinEnabled;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class QueryExplainer
@@ -38,18 +39,33 @@ public class QueryExplainer
     public final Metadata metadata;
     public final PeriodicImportManager periodicImportManager;
     public final StorageManager storageManager;
+    public final boolean distributedAggregationsEnabled;
+    public final boolean distributedJoinsEnabled;
 
     public QueryExplainer(Session session,
             List<PlanOptimizer> planOptimizers,
             Metadata metadata,
             PeriodicImportManager periodicImportManager,
             StorageManager storageManager)
+    {
+        this(session, planOptimizers, metadata, periodicImportManager, storageManager, false, false);
+    }
+
+    public QueryExplainer(Session session,
+            List<PlanOptimizer> planOptimizers,
+            Metadata metadata,
+            PeriodicImportManager periodicImportManager,
+            StorageManager storageManager,
+            boolean distributedAggregationsEnabled,
+            boolean distributedJoinsEnabled)
     {
         this.session = checkNotNull(session, "session is null");
         this.planOptimizers = checkNotNull(planOptimizers, "planOptimizers is null");
         this.metadata = checkNotNull(metadata, "metadata is null");
         this.periodicImportManager = checkNotNull(periodicImportManager, "periodicImportManager is null");
         this.storageManager = checkNotNull(storageManager, "storageManager is null");
+        this.distributedAggregationsEnabled = distributedAggregationsEnabled;
+        this.distributedJoinsEnabled = distributedJoinsEnabled;
     }
 
     public String getPlan(Query query, ExplainType.Type planType)
@@ -103,6 +119,6 @@ public class QueryExplainer
         LogicalPlanner logicalPlanner = new LogicalPlanner(session, planOptimizers, idAllocator, metadata, periodicImportManager, storageManager);
         Plan plan = logicalPlanner.plan(analysis);
 
-        return new DistributedLogicalPlanner(metadata, idAllocator).createSubplans(plan, false);
+        return new DistributedLogicalPlanner(metadata, idAllocator).createSubplans(plan, false, distributedAggregationsEnabled, isDistributedJoinEnabled(session, distributedJoinsEnabled));
     }
 }
@@ -16,9 +16,12 @@ package com.facebook.presto.sql.analyzer;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
 
 import javax.annotation.Nullable;
 
+import java.util.Map;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class Session
@@ -33,12 +36,23 @@ public class Session
     private final String catalog;
     private final String schema;
     private final long startTime;
+    private final Map<String, String> properties;
 
     public Session(@Nullable String user, String source, String catalog, String schema, String remoteUserAddress, String userAgent)
     {
         this(user, source, catalog, schema, remoteUserAddress, userAgent, System.currentTimeMillis());
     }
 
+    public Session(@Nullable String user, String source, String catalog, String schema, String remoteUserAddress, String userAgent, Map<String, String> properties)
+    {
+        this(user, source, catalog, schema, remoteUserAddress, userAgent, System.currentTimeMillis(), properties);
+    }
+
+    public Session(@Nullable String user, String source, String catalog, String schema, String remoteUserAddress, String userAgent, long startTime)
+    {
+        this(user, source, catalog, schema, remoteUserAddress, userAgent, startTime, ImmutableMap.<String, String>of());
+    }
+
     @JsonCreator
     public Session(
             @JsonProperty("user") @Nullable String user,
@@ -47,7 +61,8 @@ public class Session
             @JsonProperty("schema") String schema,
             @JsonProperty("remoteUserAddress") String remoteUserAddress,
             @JsonProperty("userAgent") String userAgent,
-            @JsonProperty("startTime") long startTime)
+            @JsonProperty("startTime") long startTime,
+            @JsonProperty("properties") @Nullable Map<String, String> properties)
     {
         this.user = user;
         this.source = source;
@@ -56,6 +71,7 @@ public class Session
         this.remoteUserAddress = remoteUserAddress;
         this.userAgent = userAgent;
         this.startTime = startTime;
+        this.properties = properties == null ? ImmutableMap.<String, String>of() : ImmutableMap.copyOf(properties);
     }
 
     @JsonProperty
@@ -101,6 +117,15 @@ public class Session
         return startTime;
     }
 
+    /**
+     * Returns the session properties set by the client.  Property names and values are not validated here.
+     */
+    @JsonProperty
+    public Map<String, String> getProperties()
+    {
+        return properties;
+    }
+
     @Override
     public String toString()
     {
@@ -112,6 +137,7 @@ public class Session
                 .add("catalog", catalog)
                 .add("schema", schema)
                 .add("startTime", startTime)
+                .add("properties", properties)
                 .toString();
     }
 }
@@ -48,6 +48,7 @@ import com.facebook.presto.split.DataStreamProvider;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.analyzer.Type;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.facebook.presto.sql.tree.BooleanLiteral;
 import com.facebook.presto.sql.tree.Expression;
 import com.facebook.presto.sql.tree.Input;
 import com.facebook.presto.tuple.TupleInfo;
@@ -255,6 +256,9 @@ public class ExpressionCompiler
                 .ret();
 
         generateFilterAndProjectRowOriented(classDefinition, projections, inputTypes);
+        if (!filter.equals(BooleanLiteral.TRUE_LITERAL)) {
+            generateFilterAndProjectSelectedPositions(classDefinition, projections, inputTypes);
+        }
 
         //
         // filter method
@@ -388,6 +392,9 @@ public class ExpressionCompiler
                 .ret();
 
         generateFilterAndProjectRowOriented(classDefinition, projections, inputTypes);
+        if (!filter.equals(BooleanLiteral.TRUE_LITERAL)) {
+            generateFilterAndProjectSelectedPositions(classDefinition, projections, inputTypes);
+        }
         generateFilterAndProjectCursorMethod(classDefinition, projections);
 
         //
@@ -561,6 +568,267 @@ public class ExpressionCompiler
         filterAndProjectMethod.getBody().ret();
     }
 
+    /**
+     * Generates a filterAndProjectSelectedPositions method that first evaluates the filter over the
+     * entire page, recording the positions that pass in a selected positions buffer, and then evaluates
+     * the projections over only the selected positions.  It returns the number of selected positions.
+     * When most rows pass, the projection cursors are stepped over every position as in the fused
+     * loop, and otherwise they are moved directly to each selected position, so the lazy blocks that
+     * are only projected are not loaded for pages where no row passes.
+     */
+    private void generateFilterAndProjectSelectedPositions(ClassDefinition classDefinition,
+            List<Expression> projections,
+            Map<Input, Type> inputTypes)
+    {
+        FieldDefinition selectedPositionsField = classDefinition.declareField(a(PRIVATE), "selectedPositions", int[].class);
+
+        MethodDefinition filterAndProjectMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
+                a(PUBLIC),
+                "filterAndProjectSelectedPositions",
+                type(int.class),
+                arg("blocks", com.facebook.presto.block.Block[].class),
+                arg("pageBuilder", PageBuilder.class));
+
+        CompilerContext compilerContext = filterAndProjectMethod.getCompilerContext();
+
+        LocalVariableDefinition positionVariable = compilerContext.declareVariable(int.class, "position");
+        LocalVariableDefinition selectedPositionsVariable = compilerContext.declareVariable(int[].class, "selectedPositions");
+        LocalVariableDefinition selectedCountVariable = compilerContext.declareVariable(int.class, "selectedCount");
+        LocalVariableDefinition indexVariable = compilerContext.declareVariable(int.class, "index");
+
+        LocalVariableDefinition rowsVariable = compilerContext.declareVariable(int.class, "rows");
+        filterAndProjectMethod.getBody()
+                .comment("int rows = blocks[0].getPositionCount();")
+                .getVariable("blocks")
+                .push(0)
+                .getObjectArrayElement()
+                .invokeInterface(com.facebook.presto.block.Block.class, "getPositionCount", int.class)
+                .putVariable(rowsVariable)
+                .comment("this.selectedPositions = ensureCapacity(this.selectedPositions, rows);")
+                .pushThis()
+                .pushThis()
+                .getField(selectedPositionsField)
+                .getVariable(rowsVariable)
+                .invokeStatic(Operations.class, "ensureCapacity", int[].class, int[].class, int.class)
+                .putField(selectedPositionsField)
+                .comment("int[] selectedPositions = this.selectedPositions;")
+                .pushThis()
+                .getField(selectedPositionsField)
+                .putVariable(selectedPositionsVariable)
+                .comment("int selectedCount = 0;")
+                .putVariable(selectedCountVariable, 0);
+
+        int channels = Ordering.natural().max(transform(inputTypes.keySet(), Input.channelGetter())) + 1;
+        List<LocalVariableDefinition> cursorVariables = new ArrayList<>();
+        for (int i = 0; i < channels; i++) {
+            cursorVariables.add(compilerContext.declareVariable(BlockCursor.class, "cursor_" + i));
+        }
+        filterAndProjectMethod.getBody().append(openCursors(compilerContext, cursorVariables));
+
+        //
+        // filter loop
+        //
+
+        // for (position = 0; position < rows; position++)
+        ForLoopBuilder filterLoop = forLoopBuilder(compilerContext)
+                .comment("for (position = 0; position < rows; position++)")
+                .initialize(new Block(compilerContext).putVariable(positionVariable, 0))
+                .condition(new Block(compilerContext)
+                        .getVariable(positionVariable)
+                        .getVariable(rowsVariable)
+                        .invokeStatic(Operations.class, "lessThan", boolean.class, int.class, int.class))
+                .update(new Block(compilerContext).incrementVariable(positionVariable, (byte) 1));
+
+        Block filterLoopBody = new Block(compilerContext);
+
+        // cursor.advanceNextPosition()
+        for (LocalVariableDefinition cursorVariable : cursorVariables) {
+            filterLoopBody
+                    .comment("checkState(%s.advanceNextPosition());", cursorVariable.getName())
+                    .getVariable(cursorVariable)
+                    .invokeInterface(BlockCursor.class, "advanceNextPosition", boolean.class)
+                    .invokeStatic(Preconditions.class, "checkState", void.class, boolean.class);
+        }
+
+        IfStatementBuilder ifStatement = new IfStatementBuilder(compilerContext)
+                .comment("if (filter(cursors...)");
+        Block condition = new Block(compilerContext);
+        condition.pushThis();
+        for (LocalVariableDefinition cursorVariable : cursorVariables) {
+            condition.getVariable(cursorVariable);
+        }
+        condition.invokeVirtual(classDefinition.getType(), "filter", type(boolean.class), nCopies(channels, type(TupleReadable.class)));
+        ifStatement.condition(condition);
+
+        ifStatement.ifTrue(new Block(compilerContext)
+                .comment("selectedPositions[selectedCount] = position;")
+                .getVariable(selectedPositionsVariable)
+                .getVariable(selectedCountVariable)
+                .getVariable(positionVariable)
+                .putIntArrayElement()
+                .comment("selectedCount++;")
+                .incrementVariable(selectedCountVariable, (byte) 1));
+
+        filterLoopBody.append(ifStatement.build());
+        filterAndProjectMethod.getBody().append(filterLoop.body(filterLoopBody).build());
+
+        //
+        //  Verify all cursors ended together
+        //
+
+        // checkState(!cursor.advanceNextPosition());
+        for (LocalVariableDefinition cursorVariable : cursorVariables) {
+            filterAndProjectMethod.getBody()
+                    .comment("checkState(not(%s.advanceNextPosition))", cursorVariable.getName())
+                    .getVariable(cursorVariable)
+                    .invokeInterface(BlockCursor.class, "advanceNextPosition", boolean.class)
+                    .invokeStatic(Operations.class, "not", boolean.class, boolean.class)
+                    .invokeStatic(Preconditions.class, "checkState", void.class, boolean.class);
+        }
+
+        //
+        // projection loop
+        //
+
+        if (projections.isEmpty()) {
+            // for (index = 0; index < selectedCount; index++)
+            ForLoopBuilder declareLoop = forLoopBuilder(compilerContext)
+                    .comment("for (index = 0; index < selectedCount; index++)")
+                    .initialize(new Block(compilerContext).putVariable(indexVariable, 0))
+                    .condition(new Block(compilerContext)
+                            .getVariable(indexVariable)
+                            .getVariable(selectedCountVariable)
+                            .invokeStatic(Operations.class, "lessThan", boolean.class, int.class, int.class))
+                    .update(new Block(compilerContext).incrementVariable(indexVariable, (byte) 1));
+
+            filterAndProjectMethod.getBody().append(declareLoop.body(new Block(compilerContext)
+                    .comment("pageBuilder.declarePosition()")
+                    .getVariable("pageBuilder")
+                    .invokeVirtual(PageBuilder.class, "declarePosition", void.class))
+                    .build());
+            filterAndProjectMethod.getBody()
+                    .getVariable(selectedCountVariable)
+                    .retInt();
+            return;
+        }
+
+        // cursors can not move backwards, so the projections get one fresh set of cursors
+        filterAndProjectMethod.getBody().append(openCursors(compilerContext, cursorVariables));
+
+        // when most rows are selected, stepping the cursors is cheaper than seeking them
+        // for (index = 0, position = 0; index < selectedCount; position++)
+        ForLoopBuilder sequentialLoop = forLoopBuilder(compilerContext)
+                .comment("for (index = 0, position = 0; index < selectedCount; position++)")
+                .initialize(new Block(compilerContext)
+                        .putVariable(indexVariable, 0)
+                        .putVariable(positionVariable, 0))
+                .condition(new Block(compilerContext)
+                        .getVariable(indexVariable)
+                        .getVariable(selectedCountVariable)
+                        .invokeStatic(Operations.class, "lessThan", boolean.class, int.class, int.class))
+                .update(new Block(compilerContext).incrementVariable(positionVariable, (byte) 1));
+
+        Block sequentialLoopBody = new Block(compilerContext);
+        for (LocalVariableDefinition cursorVariable : cursorVariables) {
+            sequentialLoopBody
+                    .comment("checkState(%s.advanceNextPosition());", cursorVariable.getName())
+                    .getVariable(cursorVariable)
+                    .invokeInterface(BlockCursor.class, "advanceNextPosition", boolean.class)
+                    .invokeStatic(Preconditions.class, "checkState", void.class, boolean.class);
+        }
+        sequentialLoopBody.append(new IfStatementBuilder(compilerContext)
+                .comment("if (position == selectedPositions[index])")
+                .condition(new Block(compilerContext)
+                        .getVariable(positionVariable)
+                        .getVariable(selectedPositionsVariable)
+                        .getVariable(indexVariable)
+                        .getIntArrayElement()
+                        .invokeStatic(Operations.class, "equal", boolean.class, int.class, int.class))
+                .ifTrue(new Block(compilerContext)
+                        .append(projectRow(compilerContext, classDefinition, projections, cursorVariables))
+                        .comment("index++;")
+                        .incrementVariable(indexVariable, (byte) 1))
+                .build());
+
+        // otherwise seek the cursors to the selected positions
+        // for (index = 0; index < selectedCount; index++)
+        ForLoopBuilder seekLoop = forLoopBuilder(compilerContext)
+                .comment("for (index = 0; index < selectedCount; index++)")
+                .initialize(new Block(compilerContext).putVariable(indexVariable, 0))
+                .condition(new Block(compilerContext)
+                        .getVariable(indexVariable)
+                        .getVariable(selectedCountVariable)
+                        .invokeStatic(Operations.class, "lessThan", boolean.class, int.class, int.class))
+                .update(new Block(compilerContext).incrementVariable(indexVariable, (byte) 1));
+
+        Block seekLoopBody = new Block(compilerContext)
+                .comment("position = selectedPositions[index];")
+                .getVariable(selectedPositionsVariable)
+                .getVariable(indexVariable)
+                .getIntArrayElement()
+                .putVariable(positionVariable);
+        for (LocalVariableDefinition cursorVariable : cursorVariables) {
+            seekLoopBody
+                    .comment("checkState(%s.advanceToPosition(position));", cursorVariable.getName())
+                    .getVariable(cursorVariable)
+                    .getVariable(positionVariable)
+                    .invokeInterface(BlockCursor.class, "advanceToPosition", boolean.class, int.class)
+                    .invokeStatic(Preconditions.class, "checkState", void.class, boolean.class);
+        }
+        seekLoopBody.append(projectRow(compilerContext, classDefinition, projections, cursorVariables));
+
+        filterAndProjectMethod.getBody().append(new IfStatementBuilder(compilerContext)
+                .comment("if (rows / 2 < selectedCount)")
+                .condition(new Block(compilerContext)
+                        .getVariable(rowsVariable)
+                        .push(1)
+                        .intRightShift()
+                        .getVariable(selectedCountVariable)
+                        .invokeStatic(Operations.class, "lessThan", boolean.class, int.class, int.class))
+                .ifTrue(sequentialLoop.body(sequentialLoopBody).build())
+                .ifFalse(seekLoop.body(seekLoopBody).build())
+                .build());
+
+        filterAndProjectMethod.getBody()
+                .getVariable(selectedCountVariable)
+                .retInt();
+    }
+
+    private static Block projectRow(CompilerContext compilerContext, ClassDefinition classDefinition, List<Expression> projections, List<LocalVariableDefinition> cursorVariables)
+    {
+        Block block = new Block(compilerContext);
+        for (int projectionIndex = 0; projectionIndex < projections.size(); projectionIndex++) {
+            block.comment("project_%s(cursors..., pageBuilder.getBlockBuilder(%s))", projectionIndex, projectionIndex);
+            block.pushThis();
+            for (LocalVariableDefinition cursorVariable : cursorVariables) {
+                block.getVariable(cursorVariable);
+            }
+            block.getVariable("pageBuilder")
+                    .push(projectionIndex)
+                    .invokeVirtual(PageBuilder.class, "getBlockBuilder", BlockBuilder.class, int.class);
+            block.invokeVirtual(classDefinition.getType(),
+                    "project_" + projectionIndex,
+                    type(void.class),
+                    ImmutableList.<ParameterizedType>builder().addAll(nCopies(cursorVariables.size(), type(TupleReadable.class))).add(type(BlockBuilder.class)).build());
+        }
+        return block;
+    }
+
+    private static Block openCursors(CompilerContext compilerContext, List<LocalVariableDefinition> cursorVariables)
+    {
+        Block block = new Block(compilerContext);
+        for (int i = 0; i < cursorVariables.size(); i++) {
+            LocalVariableDefinition cursorVariable = cursorVariables.get(i);
+            block.comment("BlockCursor %s = blocks[%s].cursor();", cursorVariable.getName(), i)
+                    .getVariable("blocks")
+                    .push(i)
+                    .getObjectArrayElement()
+                    .invokeInterface(com.facebook.presto.block.Block.class, "cursor", BlockCursor.class)
+                    .putVariable(cursorVariable);
+        }
+        return block;
+    }
+
     private void generateFilterAndProjectCursorMethod(ClassDefinition classDefinition, List<Expression> projections)
     {
         MethodDefinition filterAndProjectMethod = classDefinition.declareMethod(new CompilerContext(bootstrapMethod),
@@ -153,11 +153,28 @@ public final class Operations
         return left != right;
     }
 
+    public static boolean equal(int left, int right)
+    {
+        return left == right;
+    }
+
     public static boolean lessThan(int left, int right)
     {
         return left < right;
     }
 
+    /**
+     * Returns the buffer if it holds at least the given number of values, and otherwise
+     * a new buffer that does.
+     */
+    public static int[] ensureCapacity(int[] buffer, int capacity)
+    {
+        if (buffer == null || buffer.length < capacity) {
+            return new int[capacity];
+        }
+        return buffer;
+    }
+
     public static boolean lessThan(long left, long right)
     {
         return left < right;
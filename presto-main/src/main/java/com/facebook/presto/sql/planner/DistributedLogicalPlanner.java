@@ -43,6 +43,7 @@ import com.facebook.presto.sql.tree.QualifiedNameReference;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 import java.util.HashMap;
 import java.util.List;
@@ -68,7 +69,12 @@ public class DistributedLogicalPlanner
 
     public SubPlan createSubplans(Plan plan, boolean createSingleNodePlan)
     {
-        Visitor visitor = new Visitor(plan.getSymbolAllocator(), createSingleNodePlan);
+        return createSubplans(plan, createSingleNodePlan, false, false);
+    }
+
+    public SubPlan createSubplans(Plan plan, boolean createSingleNodePlan, boolean distributedAggregations, boolean distributedJoins)
+    {
+        Visitor visitor = new Visitor(plan.getSymbolAllocator(), createSingleNodePlan, distributedAggregations, distributedJoins);
         SubPlanBuilder builder = plan.getRoot().accept(visitor, null);
 
         SubPlan subplan = builder.build();
@@ -84,11 +90,15 @@ public class DistributedLogicalPlanner
 
         private final SymbolAllocator allocator;
         private final boolean createSingleNodePlan;
+        private final boolean distributedAggregations;
+        private final boolean distributedJoins;
 
-        public Visitor(SymbolAllocator allocator, boolean createSingleNodePlan)
+        public Visitor(SymbolAllocator allocator, boolean createSingleNodePlan, boolean distributedAggregations, boolean distributedJoins)
         {
             this.allocator = allocator;
             this.createSingleNodePlan = createSingleNodePlan;
+            this.distributedAggregations = distributedAggregations;
+            this.distributedJoins = distributedJoins;
         }
 
         @Override
@@ -106,7 +116,7 @@ public class DistributedLogicalPlanner
             Map<Symbol, FunctionHandle> functions = node.getFunctions();
             List<Symbol> groupBy = node.getGroupBy();
 
-            // else, we need to "close" the current fragment and create an unpartitioned fragment for the final aggregation
+            // else, we need to "close" the current fragment and create a new fragment for the final aggregation
             return addDistributedAggregation(current, aggregations, functions, groupBy);
         }
 
@@ -134,7 +144,15 @@ public class DistributedLogicalPlanner
             ExchangeNode source = new ExchangeNode(idAllocator.getNextId(), plan.getId(), plan.getRoot().getOutputSymbols());
             AggregationNode merged = new AggregationNode(idAllocator.getNextId(), source, groupBy, finalCalls, functions, FINAL);
 
-            return newSubPlan(merged)
+            SubPlanBuilder mergePlan = newSubPlan(merged);
+            if (distributedAggregations && !groupBy.isEmpty()) {
+                // hash partition the partial results on the group by keys so every group ends up in exactly one
+                // task, and run the final aggregation on every node instead of funneling all groups through one
+                plan.setHashOutputPartitioning(groupBy);
+                mergePlan.setFixedDistribution();
+            }
+
+            return mergePlan
                     .addChild(plan.build());
         }
 
@@ -316,7 +334,13 @@ public class DistributedLogicalPlanner
             SubPlanBuilder left = node.getLeft().accept(this, context);
             SubPlanBuilder right = node.getRight().accept(this, context);
 
-            if (left.isPartitioned() || right.isPartitioned()) {
+            // a build side produced by a single task (e.g., the result of a global aggregation or a limit) is
+            // cheap to broadcast, but a build side read from a distributed table can be arbitrarily large
+            SubPlanBuilder build = (node.getType() == JoinNode.Type.RIGHT) ? left : right;
+            if (distributedJoins && build.isPartitioned() && !node.getCriteria().isEmpty()) {
+                return addPartitionedJoin(node, left, right);
+            }
+            else if (left.isPartitioned() || right.isPartitioned()) {
                 switch (node.getType()) {
                     case INNER:
                     case LEFT:
@@ -351,6 +375,30 @@ public class DistributedLogicalPlanner
             }
         }
 
+        private SubPlanBuilder addPartitionedJoin(JoinNode node, SubPlanBuilder left, SubPlanBuilder right)
+        {
+            // hash partition both sides on the join keys, so each task only builds the slice of the
+            // right side that can match the slice of the left side it receives
+            List<Symbol> leftKeys = Lists.transform(node.getCriteria(), JoinNode.EquiJoinClause.leftGetter());
+            List<Symbol> rightKeys = Lists.transform(node.getCriteria(), JoinNode.EquiJoinClause.rightGetter());
+
+            left.setRoot(new SinkNode(idAllocator.getNextId(), left.getRoot(), left.getRoot().getOutputSymbols()))
+                    .setHashOutputPartitioning(leftKeys);
+            right.setRoot(new SinkNode(idAllocator.getNextId(), right.getRoot(), right.getRoot().getOutputSymbols()))
+                    .setHashOutputPartitioning(rightKeys);
+
+            JoinNode join = new JoinNode(node.getId(),
+                    node.getType(),
+                    new ExchangeNode(idAllocator.getNextId(), left.getId(), left.getRoot().getOutputSymbols()),
+                    new ExchangeNode(idAllocator.getNextId(), right.getId(), right.getRoot().getOutputSymbols()),
+                    node.getCriteria());
+
+            return newSubPlan(join)
+                    .setFixedDistribution()
+                    .addChild(left.build())
+                    .addChild(right.build());
+        }
+
         @Override
         public SubPlanBuilder visitSemiJoin(SemiJoinNode node, Void context)
         {
@@ -58,12 +58,7 @@ public final class LikeUtils
 
     public static boolean regexMatches(Regex regex, Slice value)
     {
-        // Joni doesn't handle invalid UTF-8, so replace invalid characters
-        byte[] bytes = value.getBytes();
-        if (isAscii(bytes)) {
-            return regexMatches(regex, bytes);
-        }
-        return regexMatches(regex, value.toString(UTF_8).getBytes(UTF_8));
+        return regexMatches(regex, getUtf8Bytes(value));
     }
 
     public static boolean regexMatches(Regex regex, byte[] bytes)
@@ -88,6 +83,20 @@ public final class LikeUtils
         return escapeChar;
     }
 
+    /**
+     * Returns the bytes of the value for matching with joni.  Joni doesn't handle invalid
+     * UTF-8, so invalid characters are replaced.  Most values are ASCII, so only values with
+     * high bytes are validated, and only invalid values are decoded.
+     */
+    public static byte[] getUtf8Bytes(Slice value)
+    {
+        byte[] bytes = value.getBytes();
+        if (isAscii(bytes) || isValidUtf8(bytes)) {
+            return bytes;
+        }
+        return value.toString(UTF_8).getBytes(UTF_8);
+    }
+
     public static boolean isAscii(byte[] bytes)
     {
         boolean high = false;
@@ -97,6 +106,48 @@ public final class LikeUtils
         return !high;
     }
 
+    public static boolean isValidUtf8(byte[] bytes)
+    {
+        int index = 0;
+        while (index < bytes.length) {
+            if ((bytes[index] & 0x80) == 0) {
+                index++;
+                continue;
+            }
+
+            int length = getCharacterLength(bytes[index]);
+            if (length == 1 || index + length > bytes.length) {
+                return false;
+            }
+            for (int i = 1; i < length; i++) {
+                if ((bytes[index + i] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            index += length;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the length of the UTF-8 sequence that starts with the byte, or 1 if the
+     * byte can not start a multi byte sequence.
+     */
+    public static int getCharacterLength(byte leadByte)
+    {
+        int value = leadByte & 0xFF;
+        if (value >= 0xC2 && value <= 0xDF) {
+            return 2;
+        }
+        if (value >= 0xE0 && value <= 0xEF) {
+            return 3;
+        }
+        if (value >= 0xF0 && value <= 0xF4) {
+            return 4;
+        }
+        return 1;
+    }
+
     public static Regex likeToPattern(Slice pattern, @Nullable Slice escapeSlice)
     {
         String patternString = pattern.toString(UTF_8);
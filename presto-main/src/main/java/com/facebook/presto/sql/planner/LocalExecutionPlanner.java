@@ -24,6 +24,7 @@ import com.facebook.presto.operator.ExchangeOperator.ExchangeOperatorFactory;
 import com.facebook.presto.operator.FilterAndProjectOperator.FilterAndProjectOperatorFactory;
 import com.facebook.presto.operator.FilterFunction;
 import com.facebook.presto.operator.FilterFunctions;
+import com.facebook.presto.operator.ForHashBuild;
 import com.facebook.presto.operator.HashAggregationOperator.HashAggregationOperatorFactory;
 import com.facebook.presto.operator.HashBuilderOperator.HashBuilderOperatorFactory;
 import com.facebook.presto.operator.HashBuilderOperator.HashSupplier;
@@ -108,6 +109,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static com.facebook.presto.sql.planner.plan.JoinNode.EquiJoinClause.leftGetter;
 import static com.facebook.presto.sql.planner.plan.JoinNode.EquiJoinClause.rightGetter;
@@ -128,6 +130,7 @@ public class LocalExecutionPlanner
     private final LocalStorageManager storageManager;
     private final Supplier<ExchangeClient> exchangeClientSupplier;
     private final ExpressionCompiler compiler;
+    private final Executor hashBuildExecutor;
 
     @Inject
     public LocalExecutionPlanner(NodeInfo nodeInfo,
@@ -135,7 +138,8 @@ public class LocalExecutionPlanner
             DataStreamProvider dataStreamProvider,
             LocalStorageManager storageManager,
             Supplier<ExchangeClient> exchangeClientSupplier,
-            ExpressionCompiler compiler)
+            ExpressionCompiler compiler,
+            @ForHashBuild Executor hashBuildExecutor)
     {
         this.nodeInfo = checkNotNull(nodeInfo, "nodeInfo is null");
         this.dataStreamProvider = dataStreamProvider;
@@ -143,6 +147,7 @@ public class LocalExecutionPlanner
         this.metadata = checkNotNull(metadata, "metadata is null");
         this.storageManager = checkNotNull(storageManager, "storageManager is null");
         this.compiler = checkNotNull(compiler, "compiler is null");
+        this.hashBuildExecutor = checkNotNull(hashBuildExecutor, "hashBuildExecutor is null");
     }
 
     public LocalExecutionPlan plan(Session session,
@@ -725,7 +730,8 @@ public class LocalExecutionPlanner
                     buildContext.getNextOperatorId(),
                     buildSource.getTupleInfos(),
                     buildChannel,
-                    100_000);
+                    100_000,
+                    hashBuildExecutor);
             HashSupplier hashSupplier = hashBuilderOperatorFactory.getHashSupplier();
             DriverFactory buildDriverFactory = new DriverFactory(
                     buildContext.isInputDriver(),
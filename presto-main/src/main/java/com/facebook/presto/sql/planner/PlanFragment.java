@@ -35,22 +35,79 @@ import java.util.Map;
 @Immutable
 public class PlanFragment
 {
+    public static enum PlanDistribution
+    {
+        /**
+         * Fragment is executed by a single task.
+         */
+        NONE,
+        /**
+         * Fragment is executed by one task on every node, without a partitioned source.
+         */
+        FIXED,
+        /**
+         * Fragment is executed by one task per node selected for the splits of the partitioned source.
+         */
+        SOURCE
+    }
+
+    public static enum OutputPartitioning
+    {
+        /**
+         * Every output buffer receives all of the output pages.
+         */
+        NONE,
+        /**
+         * Each output row is routed to exactly one output buffer based on the hash of the partitionBy symbols.
+         */
+        HASH
+    }
+
     private final PlanFragmentId id;
     private final PlanNode root;
     private final PlanNodeId partitionedSource;
     private final Map<Symbol, Type> symbols;
+    private final PlanDistribution distribution;
+    private final OutputPartitioning outputPartitioning;
+    private final List<Symbol> partitionBy;
+
+    public PlanFragment(PlanFragmentId id, PlanNodeId partitionedSource, Map<Symbol, Type> symbols, PlanNode root)
+    {
+        this(id,
+                partitionedSource,
+                symbols,
+                root,
+                partitionedSource != null ? PlanDistribution.SOURCE : PlanDistribution.NONE,
+                OutputPartitioning.NONE,
+                ImmutableList.<Symbol>of());
+    }
 
     @JsonCreator
-    public PlanFragment(@JsonProperty("id") PlanFragmentId id, @JsonProperty("partitionedSource") PlanNodeId partitionedSource, @JsonProperty("symbols") Map<Symbol, Type> symbols, @JsonProperty("root") PlanNode root)
+    public PlanFragment(@JsonProperty("id") PlanFragmentId id,
+            @JsonProperty("partitionedSource") PlanNodeId partitionedSource,
+            @JsonProperty("symbols") Map<Symbol, Type> symbols,
+            @JsonProperty("root") PlanNode root,
+            @JsonProperty("distribution") PlanDistribution distribution,
+            @JsonProperty("outputPartitioning") OutputPartitioning outputPartitioning,
+            @JsonProperty("partitionBy") List<Symbol> partitionBy)
     {
         Preconditions.checkNotNull(id, "id is null");
         Preconditions.checkNotNull(symbols, "symbols is null");
         Preconditions.checkNotNull(root, "root is null");
+        Preconditions.checkNotNull(distribution, "distribution is null");
+        Preconditions.checkNotNull(outputPartitioning, "outputPartitioning is null");
+        Preconditions.checkNotNull(partitionBy, "partitionBy is null");
+        Preconditions.checkArgument((partitionedSource != null) == (distribution == PlanDistribution.SOURCE), "partitionedSource must be set only for SOURCE distribution");
+        Preconditions.checkArgument((outputPartitioning == OutputPartitioning.HASH) == !partitionBy.isEmpty(), "partitionBy must be set only for HASH output partitioning");
+        Preconditions.checkArgument(root.getOutputSymbols().containsAll(partitionBy), "partitionBy must be a subset of the fragment output symbols");
 
         this.id = id;
         this.root = root;
         this.partitionedSource = partitionedSource;
         this.symbols = symbols;
+        this.distribution = distribution;
+        this.outputPartitioning = outputPartitioning;
+        this.partitionBy = ImmutableList.copyOf(partitionBy);
     }
 
     @JsonProperty
@@ -70,6 +127,37 @@ public class PlanFragment
         return partitionedSource;
     }
 
+    @JsonProperty
+    public PlanDistribution getDistribution()
+    {
+        return distribution;
+    }
+
+    @JsonProperty
+    public OutputPartitioning getOutputPartitioning()
+    {
+        return outputPartitioning;
+    }
+
+    @JsonProperty
+    public List<Symbol> getPartitionBy()
+    {
+        return partitionBy;
+    }
+
+    /**
+     * Returns the output channels of the partitionBy symbols.  The fragment output
+     * is always laid out one symbol per channel in the order of the root output symbols.
+     */
+    public List<Integer> getPartitionChannels()
+    {
+        ImmutableList.Builder<Integer> channels = ImmutableList.builder();
+        for (Symbol symbol : partitionBy) {
+            channels.add(root.getOutputSymbols().indexOf(symbol));
+        }
+        return channels.build();
+    }
+
     @JsonProperty
     public PlanNode getRoot()
     {
@@ -122,6 +210,9 @@ public class PlanFragment
         return Objects.toStringHelper(this)
                 .add("id", id)
                 .add("partitionedSource", partitionedSource)
+                .add("distribution", distribution)
+                .add("outputPartitioning", outputPartitioning)
+                .add("partitionBy", partitionBy)
                 .toString();
     }
 
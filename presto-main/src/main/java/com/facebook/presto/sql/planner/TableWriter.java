@@ -90,6 +90,11 @@ public class TableWriter
                 checkState(oldValue == null || oldValue.equals(tableWriterResult.getNodeIdentifier()),
                         "Seen a different node committing a shard (%s vs %s)", oldValue, tableWriterResult.getNodeIdentifier());
 
+                // record zone maps once per shard, before the partition of the shard is committed
+                if (oldValue == null && !tableWriterResult.getColumnStats().isEmpty()) {
+                    shardManager.addShardColumnStats(tableWriterResult.getColumnStats());
+                }
+
                 for (Map.Entry<String, PartitionInfo> entry : finishedPartitions.entrySet()) {
                     if (!partitionsDone.contains(entry.getKey())) {
                         considerCommittingPartition(entry.getKey(), entry.getValue());
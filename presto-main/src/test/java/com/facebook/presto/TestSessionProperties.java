@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto;
+
+import com.facebook.presto.sql.analyzer.Session;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static com.facebook.presto.SessionProperties.DISTRIBUTED_JOIN;
+import static com.facebook.presto.SessionProperties.isDistributedJoinEnabled;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestSessionProperties
+{
+    @Test
+    public void testDistributedJoin()
+    {
+        assertTrue(isDistributedJoinEnabled(createSession(ImmutableMap.<String, String>of()), true));
+        assertFalse(isDistributedJoinEnabled(createSession(ImmutableMap.<String, String>of()), false));
+        assertTrue(isDistributedJoinEnabled(createSession(ImmutableMap.of(DISTRIBUTED_JOIN, "true")), false));
+        assertTrue(isDistributedJoinEnabled(createSession(ImmutableMap.of(DISTRIBUTED_JOIN, "TRUE")), false));
+        assertFalse(isDistributedJoinEnabled(createSession(ImmutableMap.of(DISTRIBUTED_JOIN, "false")), true));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBoolean()
+    {
+        isDistributedJoinEnabled(createSession(ImmutableMap.of(DISTRIBUTED_JOIN, "yes")), false);
+    }
+
+    private static Session createSession(Map<String, String> properties)
+    {
+        return new Session("user", "test", Session.DEFAULT_CATALOG, Session.DEFAULT_SCHEMA, null, null, properties);
+    }
+}
@@ -72,6 +72,11 @@ public abstract class AbstractOperatorBenchmark
         this.tpchBlocksProvider = checkNotNull(tpchBlocksProvider, "tpchBlocksProvider is null");
     }
 
+    protected ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
     protected TpchBlocksProvider getTpchBlocksProvider()
     {
         return tpchBlocksProvider;
@@ -47,6 +47,7 @@ public class BenchmarkSuite
                 new OrderByBenchmark(executor, tpchBlocksProvider),
                 new HashBuildBenchmark(executor, tpchBlocksProvider),
                 new HashJoinBenchmark(executor, tpchBlocksProvider),
+                new HashJoinWideKeyBenchmark(executor, tpchBlocksProvider),
                 new HashBuildAndJoinBenchmark(executor, tpchBlocksProvider),
                 new HandTpchQuery1(executor, tpchBlocksProvider),
                 new HandTpchQuery6(executor, tpchBlocksProvider),
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.benchmark;
+
+import com.facebook.presto.execution.SplitRunner;
+import com.facebook.presto.execution.TaskExecutor;
+import com.facebook.presto.execution.TaskExecutor.TaskHandle;
+import com.facebook.presto.execution.TaskId;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.Duration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Measures how fast the task executor can dispatch splits that do almost no work,
+ * so the time is dominated by queueing and bookkeeping in the executor.
+ * <p/>
+ * The reported cpu time is the wall time of an iteration, input rows are splits, and
+ * output rows are the quanta run for those splits.
+ */
+public class TaskExecutorDispatchBenchmark
+        extends AbstractBenchmark
+{
+    private static final int TASKS = 64;
+    private static final int SPLITS_PER_TASK = 200;
+    private static final int QUANTA_PER_SPLIT = 10;
+
+    private final int runnerThreads;
+    private TaskExecutor taskExecutor;
+    private int iteration;
+
+    public TaskExecutorDispatchBenchmark(int runnerThreads)
+    {
+        super("task_executor_dispatch_" + runnerThreads, 5, 20);
+        this.runnerThreads = runnerThreads;
+    }
+
+    @Override
+    protected void setUp()
+    {
+        taskExecutor = new TaskExecutor(runnerThreads);
+        taskExecutor.start();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        taskExecutor.stop();
+    }
+
+    @Override
+    protected Map<String, Long> runOnce()
+    {
+        iteration++;
+        long start = System.nanoTime();
+
+        ImmutableList.Builder<TaskHandle> tasks = ImmutableList.builder();
+        ImmutableList.Builder<ListenableFuture<?>> futures = ImmutableList.builder();
+        for (int task = 0; task < TASKS; task++) {
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("dispatch" + iteration, "0", String.valueOf(task)));
+            tasks.add(taskHandle);
+            for (int split = 0; split < SPLITS_PER_TASK; split++) {
+                futures.add(taskExecutor.enqueueSplit(taskHandle, new NoopSplitRunner(QUANTA_PER_SPLIT)));
+            }
+        }
+
+        try {
+            Futures.allAsList(futures.build()).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+
+        for (TaskHandle taskHandle : tasks.build()) {
+            taskExecutor.removeTask(taskHandle);
+        }
+
+        long splits = TASKS * SPLITS_PER_TASK;
+        return ImmutableMap.<String, Long>builder()
+                .put("cpu_nanos", System.nanoTime() - start)
+                .put("input_rows", splits)
+                .put("input_bytes", 0L)
+                .put("output_rows", splits * QUANTA_PER_SPLIT)
+                .put("output_bytes", 0L)
+                .build();
+    }
+
+    private static class NoopSplitRunner
+            implements SplitRunner
+    {
+        private final int quanta;
+        private int completedQuanta;
+
+        private NoopSplitRunner(int quanta)
+        {
+            this.quanta = quanta;
+        }
+
+        @Override
+        public void initialize()
+        {
+        }
+
+        @Override
+        public synchronized boolean isFinished()
+        {
+            return completedQuanta >= quanta;
+        }
+
+        @Override
+        public synchronized ListenableFuture<?> processFor(Duration duration)
+        {
+            completedQuanta++;
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        List<Integer> threadCounts = ImmutableList.of(1, 4, 16, 32, 64);
+        for (int threads : threadCounts) {
+            new TaskExecutorDispatchBenchmark(threads).runBenchmark(new SimpleLineBenchmarkResultWriter(System.out));
+        }
+    }
+}
@@ -32,7 +32,8 @@ import static org.testng.Assert.fail;
 
 public abstract class AbstractTestBlockCursor
 {
-    private final SortedMap<Integer, Tuple> expectedValues = BlockCursorAssertions.toTuplesMap(createTestCursor());
+    // computed on first use, so subclasses can create the values from constructor arguments
+    private SortedMap<Integer, Tuple> expectedValues;
 
     protected abstract Block createExpectedValues();
 
@@ -48,6 +49,9 @@ public abstract class AbstractTestBlockCursor
 
     public final SortedMap<Integer, Tuple> getExpectedValues()
     {
+        if (expectedValues == null) {
+            expectedValues = BlockCursorAssertions.toTuplesMap(createTestCursor());
+        }
         return expectedValues;
     }
 
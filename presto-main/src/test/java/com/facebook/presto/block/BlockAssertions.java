@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.block;
 
+import com.facebook.presto.block.columnar.ColumnarBlock;
+import com.facebook.presto.block.columnar.ColumnarBlockBuilder;
 import com.facebook.presto.tuple.Tuple;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleInfo.Type;
@@ -107,6 +109,33 @@ public class BlockAssertions
         assertEqualsIgnoreOrder(actualTuples, expectedTuples);
     }
 
+    public static ColumnarBlock toColumnarBlock(Block block)
+    {
+        ColumnarBlockBuilder builder = new ColumnarBlockBuilder(block.getTupleInfo(), 1);
+        BlockCursor cursor = block.cursor();
+        while (cursor.advanceNextPosition()) {
+            if (cursor.isNull(0)) {
+                builder.appendNull();
+                continue;
+            }
+            switch (block.getTupleInfo().getTypes().get(0)) {
+                case BOOLEAN:
+                    builder.append(cursor.getBoolean(0));
+                    break;
+                case FIXED_INT_64:
+                    builder.append(cursor.getLong(0));
+                    break;
+                case DOUBLE:
+                    builder.append(cursor.getDouble(0));
+                    break;
+                case VARIABLE_BINARY:
+                    builder.append(cursor.getSlice(0));
+                    break;
+            }
+        }
+        return builder.build();
+    }
+
     public static List<Tuple> toTuplesList(Block Block)
     {
         ImmutableList.Builder<Tuple> tuples = ImmutableList.builder();
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.columnar;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.block.uncompressed.UncompressedBlock;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.block.BlockAssertions.assertBlockEquals;
+import static com.facebook.presto.block.BlockAssertions.createBooleansBlock;
+import static com.facebook.presto.block.BlockAssertions.createDoublesBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
+import static com.facebook.presto.block.BlockAssertions.toColumnarBlock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestColumnarBlock
+{
+    @Test
+    public void testRowLayout()
+    {
+        assertRowLayout(createBooleansBlock(true, null, false, true));
+        assertRowLayout(createLongsBlock(1L, null, 3L, 4L));
+        assertRowLayout(createDoublesBlock(1.0, null, 3.0, 4.0));
+        assertRowLayout(createStringsBlock("apple", null, "", "banana"));
+    }
+
+    @Test
+    public void testRegion()
+    {
+        ColumnarBlock block = toColumnarBlock(createStringsBlock("apple", null, "cherry", "date", "banana"));
+
+        assertBlockEquals(block.getRegion(1, 3), createStringsBlock(null, "cherry", "date"));
+        ColumnarBlock region = (ColumnarBlock) block.getRegion(2, 3);
+        assertEquals(region.toUncompressedBlock().getSlice(), ((UncompressedBlock) createStringsBlock("cherry", "date", "banana")).getSlice());
+
+        BlockCursor cursor = block.cursor();
+        assertTrue(cursor.advanceNextPosition());
+        assertBlockEquals(cursor.getRegionAndAdvance(2), createStringsBlock(null, "cherry"));
+        assertEquals(cursor.getPosition(), 2);
+    }
+
+    @Test
+    public void testAccessors()
+    {
+        ColumnarBlock block = toColumnarBlock(createLongsBlock(1L, null, 3L));
+        assertEquals(block.getLong(0), 1L);
+        assertTrue(block.isNull(1));
+        assertEquals(block.getLong(2), 3L);
+
+        // values of another type are rejected like the row-packed cursors reject them
+        try {
+            block.getSlice(0);
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException expected) {
+        }
+        try {
+            toColumnarBlock(createStringsBlock("apple")).getDouble(0);
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException expected) {
+        }
+    }
+
+    private static void assertRowLayout(Block expected)
+    {
+        UncompressedBlock uncompressedBlock = (UncompressedBlock) expected;
+        ColumnarBlock block = toColumnarBlock(expected);
+
+        assertEquals(block.getPositionCount(), expected.getPositionCount());
+        assertEquals(block.getDataSize(), expected.getDataSize());
+        assertBlockEquals(block, expected);
+
+        // the row-packed form and the raw offsets must match the uncompressed block exactly
+        assertEquals(block.toUncompressedBlock().getSlice(), uncompressedBlock.getSlice());
+        BlockCursor cursor = block.cursor();
+        BlockCursor expectedCursor = expected.cursor();
+        while (expectedCursor.advanceNextPosition()) {
+            assertTrue(cursor.advanceNextPosition());
+            assertEquals(cursor.getRawOffset(), expectedCursor.getRawOffset());
+            assertEquals(cursor.getRawSlice(), expectedCursor.getRawSlice());
+        }
+    }
+}
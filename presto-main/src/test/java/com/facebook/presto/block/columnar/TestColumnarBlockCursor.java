@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.columnar;
+
+import com.facebook.presto.block.AbstractTestBlockCursor;
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.tuple.Tuple;
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+import java.util.Map.Entry;
+
+import static com.facebook.presto.block.BlockAssertions.createBooleansBlock;
+import static com.facebook.presto.block.BlockAssertions.createDoublesBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
+import static com.facebook.presto.block.BlockAssertions.toColumnarBlock;
+import static com.facebook.presto.block.BlockCursorAssertions.assertNextPosition;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.testing.Assertions.assertInstanceOf;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class TestColumnarBlockCursor
+        extends AbstractTestBlockCursor
+{
+    private final Block expectedValues;
+
+    @Factory
+    public static Object[] createTests()
+    {
+        return new Object[] {
+                new TestColumnarBlockCursor(createBooleansBlock(true, true, true, false, false, false, false, false, true, true, false)),
+                new TestColumnarBlockCursor(createLongsBlock(1111L, 1111L, 1111L, 2222L, 2222L, 2222L, 2222L, 2222L, 3333L, 3333L, 4444L)),
+                new TestColumnarBlockCursor(createLongsBlock(null, 1111L, null, 2222L, null, 2222L, null, 2222L, null, 3333L, null)),
+                new TestColumnarBlockCursor(createDoublesBlock(11.11, 11.11, 11.11, 22.22, 22.22, 22.22, 22.22, 22.22, 33.33, 33.33, 44.44)),
+                new TestColumnarBlockCursor(createStringsBlock("apple", "apple", "apple", "banana", "banana", "banana", "banana", "banana", "cherry", "cherry", "date")),
+                new TestColumnarBlockCursor(createStringsBlock(null, "apple", null, "banana", null, "banana", null, "banana", null, "cherry", null)),
+        };
+    }
+
+    public TestColumnarBlockCursor(Block expectedValues)
+    {
+        this.expectedValues = checkNotNull(expectedValues, "expectedValues is null");
+    }
+
+    @Override
+    protected BlockCursor createTestCursor()
+    {
+        return toColumnarBlock(createExpectedValues()).cursor();
+    }
+
+    @Override
+    protected Block createExpectedValues()
+    {
+        return expectedValues;
+    }
+
+    @Test
+    public void testCursorType()
+    {
+        assertInstanceOf(createTestCursor(), ColumnarBlockCursor.class);
+    }
+
+    @Test
+    public void testNullValues()
+    {
+        BlockCursor cursor = createTestCursor();
+
+        for (Entry<Integer, Tuple> entry : getExpectedValues().entrySet()) {
+            assertNextPosition(cursor, entry.getKey(), entry.getValue());
+            assertEquals(cursor.isNull(0), entry.getValue().isNull(0));
+        }
+
+        assertFalse(cursor.advanceNextPosition());
+    }
+
+    @Override
+    public String toString()
+    {
+        return expectedValues.getTupleInfo().toString();
+    }
+}
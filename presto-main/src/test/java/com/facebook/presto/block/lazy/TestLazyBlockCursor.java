@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.block.lazy;
+
+import com.facebook.presto.block.AbstractTestBlockCursor;
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.BlockCursor;
+import com.google.common.base.Supplier;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestLazyBlockCursor
+        extends AbstractTestBlockCursor
+{
+    @Override
+    protected BlockCursor createTestCursor()
+    {
+        return createLazyBlock(new AtomicInteger()).cursor();
+    }
+
+    @Override
+    protected Block createExpectedValues()
+    {
+        return createLongsBlock(1111L, 1111L, 1111L, 2222L, 2222L, 2222L, 2222L, 2222L, 3333L, 3333L, 4444L);
+    }
+
+    @Test
+    public void testMovingDoesNotLoad()
+    {
+        AtomicInteger loads = new AtomicInteger();
+        LazyBlock block = createLazyBlock(loads);
+        assertEquals(block.getPositionCount(), 11);
+
+        BlockCursor cursor = block.cursor();
+        while (cursor.advanceNextPosition()) {
+            cursor.getPosition();
+        }
+        assertTrue(cursor.isFinished());
+        assertFalse(block.isLoaded());
+        assertEquals(loads.get(), 0);
+    }
+
+    @Test
+    public void testLoadOnValueAccess()
+    {
+        AtomicInteger loads = new AtomicInteger();
+        LazyBlock block = createLazyBlock(loads);
+
+        BlockCursor cursor = block.cursor();
+        assertTrue(cursor.advanceToPosition(8));
+        assertEquals(cursor.getLong(0), 3333L);
+        assertTrue(block.isLoaded());
+        assertEquals(cursor.getPosition(), 8);
+        assertTrue(cursor.advanceNextPosition());
+        assertEquals(cursor.getLong(0), 3333L);
+
+        // a second cursor uses the loaded block
+        BlockCursor other = block.cursor();
+        assertTrue(other.advanceNextPosition());
+        assertEquals(other.getLong(0), 1111L);
+        assertEquals(loads.get(), 1);
+    }
+
+    private LazyBlock createLazyBlock(final AtomicInteger loads)
+    {
+        final Block block = createExpectedValues();
+        return new LazyBlock(block.getTupleInfo(), block.getPositionCount(), new Supplier<Block>()
+        {
+            @Override
+            public Block get()
+            {
+                loads.incrementAndGet();
+                return block;
+            }
+        });
+    }
+}
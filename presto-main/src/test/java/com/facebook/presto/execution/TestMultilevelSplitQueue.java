@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.google.common.base.Ticker;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestMultilevelSplitQueue
+{
+    @Test
+    public void testOrderWithinLevel()
+            throws Exception
+    {
+        MultilevelSplitQueue<Integer> queue = new MultilevelSplitQueue<>(3, 1, new TestingTicker());
+        queue.offer(3, 0);
+        queue.offer(1, 0);
+        queue.offer(2, 0);
+        assertEquals(queue.size(), 3);
+        assertEquals(queue.getLevelSize(0), 3);
+
+        assertEquals((int) queue.take(0), 1);
+        assertEquals((int) queue.take(0), 2);
+        assertEquals((int) queue.take(0), 3);
+        assertEquals(queue.size(), 0);
+    }
+
+    @Test
+    public void testLevelShares()
+            throws Exception
+    {
+        MultilevelSplitQueue<Integer> queue = new MultilevelSplitQueue<>(3, 1, new TestingTicker());
+        queue.offer(0, 0);
+        queue.offer(2, 2);
+
+        // level 0 has four times the share of level 2
+        queue.addLevelTime(0, TimeUnit.SECONDS.toNanos(3));
+        queue.addLevelTime(2, TimeUnit.SECONDS.toNanos(1));
+        assertEquals((int) queue.take(0), 0);
+
+        queue.offer(0, 0);
+        queue.addLevelTime(0, TimeUnit.SECONDS.toNanos(2));
+        assertEquals((int) queue.take(0), 2);
+        assertEquals((int) queue.take(0), 0);
+    }
+
+    @Test
+    public void testIdleLevelDoesNotMonopolize()
+            throws Exception
+    {
+        MultilevelSplitQueue<Integer> queue = new MultilevelSplitQueue<>(2, 1, new TestingTicker());
+
+        // level 1 runs alone for a long time
+        queue.offer(1, 1);
+        assertEquals((int) queue.take(0), 1);
+        queue.addLevelTime(1, TimeUnit.MINUTES.toNanos(10));
+
+        // level 0 wakes up while level 1 is still busy
+        queue.offer(1, 1);
+        queue.offer(0, 0);
+        assertEquals((int) queue.take(0), 0);
+
+        // once level 0 has used its share, level 1 runs again, even though level 0 was idle for ten minutes
+        queue.offer(0, 0);
+        queue.addLevelTime(0, TimeUnit.SECONDS.toNanos(1));
+        assertEquals((int) queue.take(0), 1);
+    }
+
+    @Test
+    public void testWorkStealing()
+            throws Exception
+    {
+        MultilevelSplitQueue<Integer> queue = new MultilevelSplitQueue<>(3, 4, new TestingTicker());
+        queue.offer(1, 0, 1);
+        queue.offer(2, 0, 3);
+        assertEquals(queue.size(), 2);
+
+        // the split on the runner's own stripe is taken first, then the other one is stolen
+        assertEquals((int) queue.take(3), 2);
+        assertEquals((int) queue.take(3), 1);
+        assertEquals(queue.size(), 0);
+        assertEquals(queue.getLevelSize(0), 0);
+    }
+
+    @Test
+    public void testWaitTime()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        MultilevelSplitQueue<Integer> queue = new MultilevelSplitQueue<>(3, 1, ticker);
+        queue.offer(1, 1);
+        ticker.increment(TimeUnit.MILLISECONDS.toNanos(5));
+        queue.take(0);
+
+        assertEquals(queue.getLevelWaitTime(1).getAllTime().getCount(), 1.0);
+        assertEquals(queue.getLevelWaitTime(1).getAllTime().getMax(), TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(queue.getLevelWaitTime(0).getAllTime().getCount(), 0.0);
+    }
+
+    private static class TestingTicker
+            extends Ticker
+    {
+        private long time;
+
+        @Override
+        public synchronized long read()
+        {
+            return time;
+        }
+
+        public synchronized void increment(long nanos)
+        {
+            time += nanos;
+        }
+    }
+}
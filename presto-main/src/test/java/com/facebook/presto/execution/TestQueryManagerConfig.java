@@ -33,7 +33,9 @@ public class TestQueryManagerConfig
                 .setMaxPendingSplitsPerNode(100)
                 .setQueryManagerExecutorPoolSize(5)
                 .setRemoteTaskMaxConsecutiveErrorCount(10)
-                .setRemoteTaskMinErrorDuration(new Duration(2, TimeUnit.MINUTES)));
+                .setRemoteTaskMinErrorDuration(new Duration(2, TimeUnit.MINUTES))
+                .setDistributedAggregationsEnabled(false)
+                .setDistributedJoinsEnabled(false));
     }
 
     @Test
@@ -47,6 +49,8 @@ public class TestQueryManagerConfig
                 .put("query.manager-executor-pool-size", "11")
                 .put("query.remote-task.max-consecutive-error-count", "300")
                 .put("query.remote-task.min-error-duration", "30s")
+                .put("query.distributed-aggregations-enabled", "true")
+                .put("query.distributed-joins-enabled", "true")
                 .build();
 
         QueryManagerConfig expected = new QueryManagerConfig()
@@ -56,7 +60,9 @@ public class TestQueryManagerConfig
                 .setMaxPendingSplitsPerNode(33)
                 .setQueryManagerExecutorPoolSize(11)
                 .setRemoteTaskMaxConsecutiveErrorCount(300)
-                .setRemoteTaskMinErrorDuration(new Duration(30, TimeUnit.SECONDS));
+                .setRemoteTaskMinErrorDuration(new Duration(30, TimeUnit.SECONDS))
+                .setDistributedAggregationsEnabled(true)
+                .setDistributedJoinsEnabled(true);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
@@ -24,20 +24,25 @@ import io.airlift.units.DataSize.Unit;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.facebook.presto.block.BlockAssertions.assertBlockEquals;
 import static com.facebook.presto.execution.BufferResult.bufferResult;
 import static com.facebook.presto.execution.BufferResult.emptyResults;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
@@ -594,6 +599,171 @@ public class TestSharedBuffer
         addPagesJob.waitForFinished();
     }
 
+    @Test
+    public void testHashPartitioned()
+            throws Exception
+    {
+        SharedBuffer sharedBuffer = new SharedBuffer(new DataSize(1, Unit.MEGABYTE), ImmutableList.of(SINGLE_LONG), ImmutableList.of(0));
+        sharedBuffer.addQueue("first");
+        sharedBuffer.addQueue("second");
+
+        // pages can not be partitioned until all queues are known
+        ListenableFuture<?> future = enqueuePage(sharedBuffer, new Page(BlockAssertions.createLongSequenceBlock(0, 100)));
+        sharedBuffer.noMoreQueues();
+        assertTrue(future.isDone());
+        addPage(sharedBuffer, new Page(BlockAssertions.createLongSequenceBlock(0, 100)));
+
+        BufferResult firstResult = sharedBuffer.get("first", 0, new DataSize(1, Unit.MEGABYTE), NO_WAIT);
+        BufferResult secondResult = sharedBuffer.get("second", 0, new DataSize(1, Unit.MEGABYTE), NO_WAIT);
+        List<List<Object>> first = toValues(firstResult);
+        List<List<Object>> second = toValues(secondResult);
+
+        // every row is delivered to exactly one queue, and equal rows to the same queue
+        assertEquals(first.size() + second.size(), 200);
+        assertFalse(first.isEmpty());
+        assertFalse(second.isEmpty());
+        for (long value = 0; value < 100; value++) {
+            List<Object> row = ImmutableList.<Object>of(value);
+            assertEquals(Collections.frequency(first, row) + Collections.frequency(second, row), 2);
+            assertTrue(Collections.frequency(first, row) == 0 || Collections.frequency(second, row) == 0);
+        }
+
+        sharedBuffer.finish();
+        sharedBuffer.acknowledge("first", firstResult.size());
+        sharedBuffer.acknowledge("second", secondResult.size());
+        assertFinished(sharedBuffer);
+    }
+
+    @Test
+    public void testSharedPagesAreCountedOnce()
+            throws Exception
+    {
+        SharedBuffer sharedBuffer = new SharedBuffer(sizeOfPages(10));
+        sharedBuffer.addQueue("first");
+        sharedBuffer.addQueue("second");
+        sharedBuffer.noMoreQueues();
+
+        for (int i = 0; i < 4; i++) {
+            addPage(sharedBuffer, createPage(i));
+        }
+        assertEquals(sharedBuffer.getInfo().getBufferedBytes(), sizeOfPages(4).toBytes());
+        assertEquals(sharedBuffer.getInfo().getMaxBufferedBytes(), sizeOfPages(10).toBytes());
+
+        // pages acknowledged by one queue are still held by the other
+        sharedBuffer.acknowledge("first", 3);
+        assertQueueState(sharedBuffer, "first", 1, 3);
+        assertQueueState(sharedBuffer, "second", 4, 0);
+        assertEquals(sharedBuffer.getInfo().getBufferedBytes(), sizeOfPages(4).toBytes());
+
+        // pages acknowledged by both queues are released
+        sharedBuffer.acknowledge("second", 2);
+        assertQueueState(sharedBuffer, "second", 2, 2);
+        assertEquals(sharedBuffer.getInfo().getBufferedBytes(), sizeOfPages(2).toBytes());
+
+        // an aborted queue releases its pages
+        sharedBuffer.abort("second");
+        assertEquals(sharedBuffer.getInfo().getBufferedBytes(), sizeOfPages(1).toBytes());
+    }
+
+    @Test
+    public void testConcurrentWriters()
+            throws Exception
+    {
+        int writers = 4;
+        int pagesPerWriter = 200;
+
+        SharedBuffer sharedBuffer = new SharedBuffer(sizeOfPages(5));
+        sharedBuffer.addQueue("queue");
+        sharedBuffer.noMoreQueues();
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            List<AddPagesJob> addPagesJobs = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                Page[] pages = new Page[pagesPerWriter];
+                for (int i = 0; i < pagesPerWriter; i++) {
+                    pages[i] = createPage(i);
+                }
+                AddPagesJob addPagesJob = new AddPagesJob(sharedBuffer, pages);
+                addPagesJobs.add(addPagesJob);
+                executor.submit(addPagesJob);
+            }
+
+            long sequenceId = 0;
+            while (sequenceId < writers * pagesPerWriter) {
+                BufferResult result = sharedBuffer.get("queue", sequenceId, sizeOfPages(3), MAX_WAIT);
+                assertFalse(result.isEmpty());
+                assertTrue(result.size() <= 3);
+                sequenceId = result.getStartingSequenceId() + result.size();
+            }
+
+            for (AddPagesJob addPagesJob : addPagesJobs) {
+                addPagesJob.waitForFinished();
+            }
+            assertEquals(sharedBuffer.getInfo().getPagesAdded(), writers * pagesPerWriter);
+
+            sharedBuffer.finish();
+            assertBufferResultEquals(sharedBuffer.get("queue", sequenceId, sizeOfPages(1), NO_WAIT), emptyResults(sequenceId, false));
+            assertFinished(sharedBuffer);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaitingReaderGetsPagePromptly()
+            throws Exception
+    {
+        final int pages = 2000;
+
+        final SharedBuffer sharedBuffer = new SharedBuffer(sizeOfPages(5));
+        sharedBuffer.addQueue("queue");
+        sharedBuffer.noMoreQueues();
+
+        // the reader waits far longer than the test, so a page that does not wake it up fails the test
+        final AtomicLong pagesRead = new AtomicLong();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            Future<?> reader = executor.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                        throws Exception
+                {
+                    while (pagesRead.get() < pages) {
+                        BufferResult result = sharedBuffer.get("queue", pagesRead.get(), sizeOfPages(1), new Duration(1, TimeUnit.HOURS));
+                        pagesRead.addAndGet(result.size());
+                    }
+                    return null;
+                }
+            });
+
+            // add each page while the reader is waiting for it
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            for (int i = 0; i < pages; i++) {
+                addPage(sharedBuffer, createPage(i));
+                while (pagesRead.get() <= i) {
+                    assertTrue(System.nanoTime() < deadline, "Reader did not get page " + i + " promptly");
+                    Thread.yield();
+                }
+            }
+            reader.get(1, TimeUnit.SECONDS);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<List<Object>> toValues(BufferResult result)
+    {
+        ImmutableList.Builder<List<Object>> values = ImmutableList.builder();
+        for (Page page : result.getElements()) {
+            values.addAll(BlockAssertions.toValues(page.getBlock(0)));
+        }
+        return values.build();
+    }
+
     private ListenableFuture<?> enqueuePage(SharedBuffer sharedBuffer, Page page)
     {
         ListenableFuture<?> future = sharedBuffer.enqueue(page);
@@ -608,12 +778,12 @@ public class TestSharedBuffer
 
     private void assertQueueState(SharedBuffer sharedBuffer, String queueId, int size, int pagesSent)
     {
-        assertEquals(getBufferInfo(sharedBuffer, queueId), new BufferInfo(queueId, false, size, pagesSent));
+        assertEquals(getBufferInfo(sharedBuffer, queueId), new BufferInfo(queueId, false, size, pagesSent, sizeOfPages(size).toBytes()));
     }
 
     private void assertQueueClosed(SharedBuffer sharedBuffer, String queueId, int pagesSent)
     {
-        assertEquals(getBufferInfo(sharedBuffer, queueId), new BufferInfo(queueId, true, 0, pagesSent));
+        assertEquals(getBufferInfo(sharedBuffer, queueId), new BufferInfo(queueId, true, 0, pagesSent, 0));
     }
 
     private BufferInfo getBufferInfo(SharedBuffer sharedBuffer, String queueId)
@@ -633,7 +803,9 @@ public class TestSharedBuffer
         for (BufferInfo bufferInfo : sharedBuffer.getInfo().getBuffers()) {
             assertTrue(bufferInfo.isFinished());
             assertEquals(bufferInfo.getBufferedPages(), 0);
+            assertEquals(bufferInfo.getBufferedBytes(), 0);
         }
+        assertEquals(sharedBuffer.getInfo().getBufferedBytes(), 0);
     }
 
     private void assertBufferResultEquals(BufferResult actual, BufferResult expected)
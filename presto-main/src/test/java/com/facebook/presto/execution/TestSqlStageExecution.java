@@ -47,6 +47,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
@@ -54,15 +55,18 @@ import io.airlift.units.Duration;
 import org.joda.time.DateTime;
 import org.testng.annotations.Test;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -74,6 +78,7 @@ import static com.facebook.presto.util.Failures.toFailures;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.fail;
 
 public class TestSqlStageExecution
@@ -110,7 +115,10 @@ public class TestSqlStageExecution
             long start = System.nanoTime();
             while (true) {
                 StageInfo stageInfo = stageExecution.getStageInfo();
-                assertEquals(stageInfo.getState(), StageState.SCHEDULING);
+                // the stage starts scheduling on the executor, so it can still be planned at first
+                if (stageInfo.getState() != StageState.PLANNED) {
+                    assertEquals(stageInfo.getState(), StageState.SCHEDULING);
+                }
 
                 StageInfo tableScanInfo = stageInfo.getSubStages().get(0);
                 StageState tableScanState = tableScanInfo.getState();
@@ -152,6 +160,99 @@ public class TestSqlStageExecution
         }
     }
 
+    @Test
+    public void testSplitsAreAssignedInBatches()
+            throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool(Threads.daemonThreadsNamed("test"));
+        SqlStageExecution stageExecution = null;
+        try {
+            MetadataManager metadata = new MetadataManager();
+            metadata.addInternalSchemaMetadata(new DualMetadata());
+
+            MockRemoteTaskFactory remoteTaskFactory = new MockRemoteTaskFactory(executor);
+            stageExecution = createStageExecution(createTableScanPlan("scan", metadata, 500), remoteTaskFactory, 1000, executor);
+            stageExecution.start().get(10, TimeUnit.SECONDS);
+
+            // the task gets the first split when it is created, and each batch holds back at most
+            // as many splits as the task has queued
+            MockRemoteTaskFactory.MockRemoteTask task = Iterables.getOnlyElement(remoteTaskFactory.getTasks());
+            assertEquals(task.getSplitBatches(), ImmutableList.of(2, 4, 8, 16, 32, 64, 100, 100, 100, 73));
+            assertEquals(task.getAddedSplits(), 500);
+        }
+        finally {
+            if (stageExecution != null) {
+                stageExecution.cancel(false);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTaskStateChangeWakesScheduler()
+            throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool(Threads.daemonThreadsNamed("test"));
+        SqlStageExecution stageExecution = null;
+        try {
+            MetadataManager metadata = new MetadataManager();
+            metadata.addInternalSchemaMetadata(new DualMetadata());
+
+            MockRemoteTaskFactory remoteTaskFactory = new MockRemoteTaskFactory(executor);
+            stageExecution = createStageExecution(createTableScanPlan("scan", metadata, 2), remoteTaskFactory, 1, executor);
+            Future<?> future = stageExecution.start();
+
+            // the queue of the task is full with the first split, so the scheduler waits
+            MockRemoteTaskFactory.MockRemoteTask task = waitForTask(remoteTaskFactory);
+            Thread.sleep(100);
+            assertFalse(future.isDone());
+            assertEquals(task.getAddedSplits(), 1);
+
+            // the queued split starts running, and the scheduler sends the next one well before
+            // the bounded wait would end
+            task.startQueuedSplits();
+            future.get(500, TimeUnit.MILLISECONDS);
+            assertEquals(task.getAddedSplits(), 2);
+        }
+        finally {
+            if (stageExecution != null) {
+                stageExecution.cancel(false);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    private static SqlStageExecution createStageExecution(StageExecutionPlan plan, RemoteTaskFactory remoteTaskFactory, int maxPendingSplitsPerNode, ExecutorService executor)
+    {
+        // the stage runs on the single local node
+        InMemoryNodeManager nodeManager = new InMemoryNodeManager();
+
+        SqlStageExecution stageExecution = new SqlStageExecution(new QueryId("query"),
+                new MockLocationFactory(),
+                plan,
+                new NodeScheduler(nodeManager, new NodeSchedulerConfig()), remoteTaskFactory,
+                SESSION,
+                maxPendingSplitsPerNode,
+                executor);
+
+        stageExecution.addOutputBuffer("out");
+        stageExecution.noMoreOutputBuffers();
+        return stageExecution;
+    }
+
+    private static MockRemoteTaskFactory.MockRemoteTask waitForTask(MockRemoteTaskFactory remoteTaskFactory)
+            throws InterruptedException
+    {
+        long start = System.nanoTime();
+        while (remoteTaskFactory.getTasks().isEmpty()) {
+            if (TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) > 10) {
+                fail("Expected a task to be created within 10 seconds");
+            }
+            Thread.sleep(10);
+        }
+        return Iterables.getOnlyElement(remoteTaskFactory.getTasks());
+    }
+
     private StageExecutionPlan createJoinPlan(String planId, MetadataManager metadata)
     {
         // create table scan for build data with a single split, so it is only waiting on the no-more buffers call
@@ -206,12 +307,18 @@ public class TestSqlStageExecution
             implements RemoteTaskFactory
     {
         private final Executor executor;
+        private final List<MockRemoteTask> tasks = new CopyOnWriteArrayList<>();
 
         private MockRemoteTaskFactory(Executor executor)
         {
             this.executor = executor;
         }
 
+        public List<MockRemoteTask> getTasks()
+        {
+            return ImmutableList.copyOf(tasks);
+        }
+
         public RemoteTask createRemoteTask(Session session,
                 TaskId taskId,
                 Node node,
@@ -221,10 +328,12 @@ public class TestSqlStageExecution
                 Multimap<PlanNodeId, URI> initialExchangeLocations,
                 Set<String> initialOutputIds)
         {
-            return new MockRemoteTask(taskId, fragment, executor);
+            MockRemoteTaskFactory.MockRemoteTask task = new MockRemoteTask(taskId, fragment, initialSplit, executor);
+            tasks.add(task);
+            return task;
         }
 
-        private static class MockRemoteTask
+        public static class MockRemoteTask
                 implements RemoteTask
         {
             private final AtomicLong nextTaskInfoVersion = new AtomicLong(TaskInfo.STARTING_VERSION);
@@ -239,11 +348,20 @@ public class TestSqlStageExecution
             @GuardedBy("this")
             private final Set<PlanNodeId> noMoreSplits = new HashSet<>();
 
+            private final List<StateChangeListener<TaskInfo>> stateChangeListeners = new CopyOnWriteArrayList<>();
+
             @GuardedBy("this")
             private int splits;
 
+            @GuardedBy("this")
+            private int addedSplits;
+
+            @GuardedBy("this")
+            private final List<Integer> splitBatches = new ArrayList<>();
+
             public MockRemoteTask(TaskId taskId,
                     PlanFragment fragment,
+                    @Nullable Split initialSplit,
                     Executor executor)
             {
                 this.taskStateMachine = new TaskStateMachine(checkNotNull(taskId, "taskId is null"), checkNotNull(executor, "executor is null"));
@@ -255,6 +373,35 @@ public class TestSqlStageExecution
 
                 this.sharedBuffer = new SharedBuffer(checkNotNull(new DataSize(1, Unit.BYTE), "maxBufferSize is null"));
                 this.fragment = checkNotNull(fragment, "fragment is null");
+
+                if (initialSplit != null) {
+                    splits++;
+                    addedSplits++;
+                }
+            }
+
+            public synchronized int getAddedSplits()
+            {
+                return addedSplits;
+            }
+
+            public synchronized List<Integer> getSplitBatches()
+            {
+                return ImmutableList.copyOf(splitBatches);
+            }
+
+            /**
+             * Starts running the queued splits, which changes the task info like a remote task does.
+             */
+            public void startQueuedSplits()
+            {
+                synchronized (this) {
+                    splits = 0;
+                }
+                TaskInfo taskInfo = getTaskInfo();
+                for (StateChangeListener<TaskInfo> stateChangeListener : stateChangeListeners) {
+                    stateChangeListener.stateChanged(taskInfo);
+                }
             }
 
             @Override
@@ -285,10 +432,20 @@ public class TestSqlStageExecution
             }
 
             @Override
-            public void addSplit(Split split)
+            public synchronized void addSplit(Split split)
             {
                 checkNotNull(split, "split is null");
                 splits++;
+                addedSplits++;
+            }
+
+            @Override
+            public synchronized void addSplits(List<Split> splits)
+            {
+                for (Split split : splits) {
+                    addSplit(split);
+                }
+                splitBatches.add(splits.size());
             }
 
             @Override
@@ -327,6 +484,7 @@ public class TestSqlStageExecution
             @Override
             public void addStateChangeListener(final StateChangeListener<TaskInfo> stateChangeListener)
             {
+                stateChangeListeners.add(stateChangeListener);
                 taskStateMachine.addStateChangeListener(new StateChangeListener<TaskState>()
                 {
                     @Override
@@ -357,7 +515,7 @@ public class TestSqlStageExecution
             }
 
             @Override
-            public int getQueuedSplits()
+            public synchronized int getQueuedSplits()
             {
                 if (taskStateMachine.getState().isDone()) {
                     return 0;
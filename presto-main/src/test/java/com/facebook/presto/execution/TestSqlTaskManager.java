@@ -60,9 +60,11 @@ import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 
 import static com.facebook.presto.sql.tree.BooleanLiteral.TRUE_LITERAL;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class TestSqlTaskManager
@@ -103,7 +105,8 @@ public class TestSqlTaskManager
                 new DataStreamManager(new DualDataStreamProvider()),
                 new MockLocalStorageManager(new File("target/temp")),
                 new MockExchangeClientSupplier(),
-                new ExpressionCompiler(metadata));
+                new ExpressionCompiler(metadata),
+                sameThreadExecutor());
 
         taskExecutor = new TaskExecutor(8);
         taskExecutor.start();
@@ -189,6 +192,38 @@ public class TestSqlTaskManager
         assertEquals(taskInfo.getState(), TaskState.FINISHED);
     }
 
+    @Test
+    public void testUpdateWithoutFragment()
+            throws Exception
+    {
+        TaskInfo taskInfo = sqlTaskManager.updateTask(session,
+                taskId,
+                testFragment,
+                ImmutableList.<TaskSource>of(),
+                new OutputBuffers(ImmutableSet.<String>of(), false));
+        assertEquals(taskInfo.getState(), TaskState.RUNNING);
+        assertTrue(taskInfo.getStats().getPipelines().isEmpty());
+
+        // once the task exists, updates do not need to carry the fragment
+        taskInfo = sqlTaskManager.updateTask(session,
+                taskId,
+                null,
+                ImmutableList.<TaskSource>of(new TaskSource(tableScanNodeId, ImmutableSet.<ScheduledSplit>of(), true)),
+                new OutputBuffers(ImmutableSet.<String>of(), true));
+        assertEquals(taskInfo.getState(), TaskState.FINISHED);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCreateWithoutFragment()
+            throws Exception
+    {
+        sqlTaskManager.updateTask(session,
+                taskId,
+                null,
+                ImmutableList.<TaskSource>of(),
+                new OutputBuffers(ImmutableSet.<String>of(), false));
+    }
+
     @Test
     public void testCancel()
             throws Exception
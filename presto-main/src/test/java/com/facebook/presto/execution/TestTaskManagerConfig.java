@@ -18,6 +18,7 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -34,11 +35,14 @@ public class TestTaskManagerConfig
         assertRecordedDefaults(recordDefaults(TaskManagerConfig.class)
                 .setTaskCpuTimerEnabled(true)
                 .setMaxShardProcessorThreads(Runtime.getRuntime().availableProcessors() * 4)
+                .setMaxHashBuildThreads(Runtime.getRuntime().availableProcessors())
                 .setInfoMaxAge(new Duration(15, TimeUnit.MINUTES))
                 .setClientTimeout(new Duration(5, TimeUnit.MINUTES))
                 .setMaxTaskMemoryUsage(new DataSize(256, Unit.MEGABYTE))
                 .setOperatorPreAllocatedMemory(new DataSize(16, Unit.MEGABYTE))
-                .setSinkMaxBufferSize(new DataSize(32, Unit.MEGABYTE)));
+                .setSinkMaxBufferSize(new DataSize(32, Unit.MEGABYTE))
+                .setSpillEnabled(false)
+                .setSpillPath(new File("var/spill")));
     }
 
     @Test
@@ -49,9 +53,12 @@ public class TestTaskManagerConfig
                 .put("task.max-memory", "2GB")
                 .put("task.operator-pre-allocated-memory", "2MB")
                 .put("task.shard.max-threads", "3")
+                .put("task.hash-build.max-threads", "5")
                 .put("task.info.max-age", "22m")
                 .put("task.client.timeout", "10s")
                 .put("sink.max-buffer-size", "42MB")
+                .put("task.spill-enabled", "true")
+                .put("task.spill-path", "/tmp/spill")
                 .build();
 
         TaskManagerConfig expected = new TaskManagerConfig()
@@ -59,9 +66,12 @@ public class TestTaskManagerConfig
                 .setMaxTaskMemoryUsage(new DataSize(2, Unit.GIGABYTE))
                 .setOperatorPreAllocatedMemory(new DataSize(2, Unit.MEGABYTE))
                 .setMaxShardProcessorThreads(3)
+                .setMaxHashBuildThreads(5)
                 .setInfoMaxAge(new Duration(22, TimeUnit.MINUTES))
                 .setClientTimeout(new Duration(10, TimeUnit.SECONDS))
-                .setSinkMaxBufferSize(new DataSize(42, Unit.MEGABYTE));
+                .setSinkMaxBufferSize(new DataSize(42, Unit.MEGABYTE))
+                .setSpillEnabled(true)
+                .setSpillPath(new File("/tmp/spill"));
 
         assertFullMapping(properties, expected);
     }
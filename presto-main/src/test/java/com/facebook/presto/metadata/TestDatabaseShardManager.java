@@ -35,9 +35,11 @@ import java.util.Set;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 public class TestDatabaseShardManager
 {
+    private IDBI dbi;
     private Handle dummyHandle;
     private File dataDir;
     private ShardManager shardManager;
@@ -46,7 +48,7 @@ public class TestDatabaseShardManager
     public void setup()
             throws Exception
     {
-        IDBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
+        dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
         dummyHandle = dbi.open();
         dataDir = Files.createTempDir();
         shardManager = new DatabaseShardManager(dbi);
@@ -95,4 +97,62 @@ public class TestDatabaseShardManager
         Collection<Entry<Long, String>> partitionShards = allShardNodes.get(partitionId);
         assertEquals(partitionShards.size(), 1);
     }
+
+    @Test
+    public void testCacheInvalidation()
+            throws Exception
+    {
+        DatabaseShardManager databaseShardManager = (DatabaseShardManager) shardManager;
+        TableHandle tableHandle = new NativeTableHandle("demo", "test", 1);
+        TableHandle otherTableHandle = new NativeTableHandle("demo", "other", 2);
+
+        long shardId1 = shardManager.allocateShard(tableHandle);
+        shardManager.commitPartition(tableHandle, "some-partition", ImmutableList.<PartitionKey>of(), ImmutableMap.of(shardId1, "some-node"));
+        assertEquals(shardManager.getPartitions(tableHandle).size(), 1);
+        assertEquals(shardManager.getPartitions(tableHandle).size(), 1);
+        assertEquals(databaseShardManager.getCacheMisses().getTotalCount(), 1);
+        assertEquals(databaseShardManager.getCacheHits().getTotalCount(), 1);
+
+        // a commit to another table does not invalidate the cached partitions
+        long otherShardId = shardManager.allocateShard(otherTableHandle);
+        shardManager.commitPartition(otherTableHandle, "other-table-partition", ImmutableList.<PartitionKey>of(), ImmutableMap.of(otherShardId, "some-node"));
+        assertEquals(shardManager.getPartitions(tableHandle).size(), 1);
+        assertEquals(databaseShardManager.getCacheHits().getTotalCount(), 2);
+
+        long shardId2 = shardManager.allocateShard(tableHandle);
+        shardManager.commitPartition(tableHandle, "some-other-partition", ImmutableList.<PartitionKey>of(), ImmutableMap.of(shardId2, "some-node"));
+        assertEquals(shardManager.getPartitions(tableHandle).size(), 2);
+        assertEquals(shardManager.getCommittedPartitionShardNodes(tableHandle).size(), 2);
+
+        shardManager.dropPartition(tableHandle, "some-other-partition");
+        assertEquals(shardManager.getPartitions(tableHandle).size(), 1);
+        assertEquals(shardManager.getCommittedPartitionShardNodes(tableHandle).size(), 1);
+
+        // dropping the table drops its cached partitions, and leaves the other table alone
+        shardManager.dropTable(tableHandle);
+        assertEquals(shardManager.getPartitions(tableHandle).size(), 0);
+        assertEquals(shardManager.getCommittedPartitionShardNodes(tableHandle).size(), 0);
+        assertEquals(shardManager.getPartitions(otherTableHandle).size(), 1);
+    }
+
+    @Test
+    public void testCacheIsBounded()
+            throws Exception
+    {
+        // the in-memory database is kept by the handle of the test
+        DatabaseShardManager databaseShardManager = new DatabaseShardManager(dbi, 20);
+
+        // each table weighs two entries
+        for (long tableId = 1; tableId <= 100; tableId++) {
+            TableHandle tableHandle = new NativeTableHandle("demo", "test" + tableId, tableId);
+            long shardId = databaseShardManager.allocateShard(tableHandle);
+            databaseShardManager.commitPartition(tableHandle, "some-partition", ImmutableList.<PartitionKey>of(), ImmutableMap.of(shardId, "some-node"));
+            assertEquals(databaseShardManager.getPartitions(tableHandle).size(), 1);
+        }
+        assertTrue(databaseShardManager.getCachedTables() <= 10, "cached tables: " + databaseShardManager.getCachedTables());
+
+        // evicted tables are loaded again
+        TableHandle tableHandle = new NativeTableHandle("demo", "test1", 1);
+        assertEquals(databaseShardManager.getPartitions(tableHandle).size(), 1);
+    }
 }
@@ -33,9 +33,11 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_COMPRESSED_PAGES;
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_SEQUENCE_ID;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.net.HttpHeaders.ACCEPT;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -45,14 +47,19 @@ public class MockExchangeRequestProcessor
 {
     private final ConcurrentMap<URI, BlockingQueue<Page>> pagesByLocation = new ConcurrentHashMap<>();
     private final ConcurrentMap<URI, Boolean> completeByLocation = new ConcurrentHashMap<>();
-    private final DataSize expectedMaxSize;
     private final ConcurrentMap<URI, Long> sequenceIdByLocation = new ConcurrentHashMap<>();
+    private volatile DataSize expectedMaxSize;
 
     public MockExchangeRequestProcessor(DataSize expectedMaxSize)
     {
         this.expectedMaxSize = expectedMaxSize;
     }
 
+    public void setExpectedMaxSize(DataSize expectedMaxSize)
+    {
+        this.expectedMaxSize = expectedMaxSize;
+    }
+
     public void addPage(URI location, Page page)
     {
         checkState(completeByLocation.get(location) != Boolean.TRUE, "Location %s is complete", location);
@@ -129,12 +136,21 @@ public class MockExchangeRequestProcessor
         // update sequence id
         sequenceIdByLocation.put(location, sequenceId + responsePages.size());
 
+        // respond with compressed pages if the client prefers them
+        String accept = request.getHeader(ACCEPT);
+        boolean compressed = accept != null && accept.startsWith(PRESTO_COMPRESSED_PAGES);
+
         DynamicSliceOutput sliceOutput = new DynamicSliceOutput(64);
-        PagesSerde.writePages(sliceOutput, responsePages);
+        if (compressed) {
+            PagesSerde.writeCompressedPages(sliceOutput, responsePages);
+        }
+        else {
+            PagesSerde.writePages(sliceOutput, responsePages);
+        }
         byte[] bytes = sliceOutput.slice().getBytes();
         return new TestingResponse(HttpStatus.OK,
                 ImmutableListMultimap.of(
-                        CONTENT_TYPE, PRESTO_PAGES,
+                        CONTENT_TYPE, compressed ? PRESTO_COMPRESSED_PAGES : PRESTO_PAGES,
                         PRESTO_PAGE_SEQUENCE_ID, String.valueOf(sequenceId)
                 ),
                 bytes);
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.spi.InMemoryRecordSet;
+import com.facebook.presto.sql.analyzer.Session;
+import com.facebook.presto.tuple.TupleInfo;
+import com.facebook.presto.util.InfiniteRecordSet;
+import com.facebook.presto.util.MaterializedResult;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.operator.BatchRecordProjectOperator.createRecordProjectOperator;
+import static com.facebook.presto.spi.ColumnType.DOUBLE;
+import static com.facebook.presto.spi.ColumnType.LONG;
+import static com.facebook.presto.spi.ColumnType.STRING;
+import static com.facebook.presto.tuple.TupleInfo.Type.FIXED_INT_64;
+import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
+import static com.facebook.presto.util.MaterializedResult.resultBuilder;
+import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertTrue;
+
+public class TestBatchRecordProjectOperator
+{
+    private ExecutorService executor;
+    private DriverContext driverContext;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test"));
+        Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+        driverContext = new TaskContext(new TaskId("query", "stage", "task"), executor, session)
+                .addPipelineContext(true, true)
+                .addDriverContext();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMultiColumnWithNulls()
+            throws Exception
+    {
+        InMemoryRecordSet records = new InMemoryRecordSet(ImmutableList.of(STRING, LONG, DOUBLE), ImmutableList.copyOf(new List<?>[] {
+                Arrays.asList("abc", 1L, 1.5),
+                Arrays.asList(null, 2L, null),
+                Arrays.asList("g", null, 0.0)}));
+
+        OperatorContext operatorContext = driverContext.addOperatorContext(0, BatchRecordProjectOperator.class.getSimpleName());
+        Operator operator = createRecordProjectOperator(operatorContext, records);
+        assertTrue(operator instanceof BatchRecordProjectOperator);
+
+        MaterializedResult expected = resultBuilder(VARIABLE_BINARY, FIXED_INT_64, TupleInfo.Type.DOUBLE)
+                .row("abc", 1, 1.5)
+                .row(null, 2, null)
+                .row("g", null, 0.0)
+                .build();
+
+        OperatorAssertion.assertOperatorEquals(operator, expected);
+    }
+
+    @Test
+    public void testMultipleBatches()
+            throws Exception
+    {
+        InMemoryRecordSet.Builder records = InMemoryRecordSet.builder(ImmutableList.of(LONG, STRING));
+        MaterializedResult.Builder expected = resultBuilder(FIXED_INT_64, VARIABLE_BINARY);
+        for (int i = 0; i < 5000; i++) {
+            records.addRow((long) i, "value" + i);
+            expected.row(i, "value" + i);
+        }
+
+        OperatorContext operatorContext = driverContext.addOperatorContext(0, BatchRecordProjectOperator.class.getSimpleName());
+        Operator operator = createRecordProjectOperator(operatorContext, records.build());
+
+        OperatorAssertion.assertOperatorEquals(operator, expected.build());
+    }
+
+    @Test
+    public void testRowCursorFallback()
+    {
+        InfiniteRecordSet records = new InfiniteRecordSet(ImmutableList.of(STRING, LONG), ImmutableList.of("abc", 1L));
+
+        OperatorContext operatorContext = driverContext.addOperatorContext(0, RecordProjectOperator.class.getSimpleName());
+        Operator operator = createRecordProjectOperator(operatorContext, records);
+        assertTrue(operator instanceof RecordProjectOperator);
+    }
+}
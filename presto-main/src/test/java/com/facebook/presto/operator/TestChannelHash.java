@@ -0,0 +1,214 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.sql.analyzer.Session;
+import com.facebook.presto.tuple.TupleInfo;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.facebook.presto.tuple.TupleInfo.Type.DOUBLE;
+import static com.facebook.presto.tuple.TupleInfo.Type.FIXED_INT_64;
+import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
+import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestChannelHash
+{
+    private static final TupleInfo WIDE_KEY = new TupleInfo(VARIABLE_BINARY, FIXED_INT_64, DOUBLE);
+    private static final String WIDE_KEY_PREFIX = Strings.repeat("wide key ", 20);
+
+    private ExecutorService executor;
+    private OperatorContext operatorContext;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test"));
+        Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+        operatorContext = new TaskContext(new TaskId("query", "stage", "task"), executor, session)
+                .addPipelineContext(true, true)
+                .addDriverContext()
+                .addOperatorContext(0, TestChannelHash.class.getSimpleName());
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSinglePartition()
+    {
+        assertLookups(1);
+    }
+
+    @Test
+    public void testPartitioned()
+    {
+        assertLookups(16);
+    }
+
+    @Test
+    public void testHashCollisionsSinglePartition()
+    {
+        assertHashCollisions(1);
+    }
+
+    @Test
+    public void testHashCollisionsPartitioned()
+    {
+        assertHashCollisions(16);
+    }
+
+    private void assertHashCollisions(int partitionCount)
+    {
+        List<int[]> collisions = findHashCollisions();
+        assertTrue(collisions.size() >= 2, "expected at least two hash collisions");
+
+        // both keys of the even collisions are present, but only the first key of the odd collisions
+        RowPagesBuilder build = rowPagesBuilder(WIDE_KEY);
+        RowPagesBuilder probe = rowPagesBuilder(WIDE_KEY);
+        int buildPositions = 0;
+        int[] expectedPositions = new int[collisions.size() * 2];
+        for (int i = 0; i < collisions.size(); i++) {
+            int[] collision = collisions.get(i);
+            appendWideKey(build, collision[0]);
+            expectedPositions[i * 2] = buildPositions++;
+            if (i % 2 == 0) {
+                appendWideKey(build, collision[1]);
+                expectedPositions[i * 2 + 1] = buildPositions++;
+            }
+            else {
+                expectedPositions[i * 2 + 1] = -1;
+            }
+            appendWideKey(probe, collision[0]);
+            appendWideKey(probe, collision[1]);
+        }
+
+        PagesIndex pagesIndex = new PagesIndex(ImmutableList.of(WIDE_KEY), 100, operatorContext);
+        for (Page page : build.build()) {
+            pagesIndex.addPage(page);
+        }
+        ChannelHash lookupHash = new ChannelHash(new ChannelHash(pagesIndex.getIndex(0), operatorContext, partitionCount, executor));
+
+        // a key only matches itself, even though its cached hash code matches the other key
+        int probePosition = 0;
+        for (Page page : probe.build()) {
+            BlockCursor cursor = page.getBlock(0).cursor();
+            while (cursor.advanceNextPosition()) {
+                lookupHash.setLookupSlice(cursor.getRawSlice());
+                int position = lookupHash.get(cursor);
+                assertEquals(position, expectedPositions[probePosition], "match for probe " + probePosition);
+                if (position >= 0) {
+                    assertEquals(lookupHash.getNextPosition(position), -1, "matches for probe " + probePosition);
+                }
+                probePosition++;
+            }
+        }
+        assertEquals(probePosition, expectedPositions.length);
+    }
+
+    /**
+     * Searches a fixed sequence of wide keys for pairs with the same hash code.
+     */
+    private static List<int[]> findHashCollisions()
+    {
+        ImmutableList.Builder<int[]> collisions = ImmutableList.builder();
+        Int2IntMap keysByHashCode = new Int2IntOpenHashMap();
+        for (int key = 0; key < 300_000; key++) {
+            int hashCode = createWideKey(key).hashCode();
+            if (keysByHashCode.containsKey(hashCode)) {
+                collisions.add(new int[] {keysByHashCode.get(hashCode), key});
+            }
+            else {
+                keysByHashCode.put(hashCode, key);
+            }
+        }
+        return collisions.build();
+    }
+
+    private static Slice createWideKey(int key)
+    {
+        return WIDE_KEY.builder()
+                .append(WIDE_KEY_PREFIX + key)
+                .append(key)
+                .append(key / 2.0)
+                .build()
+                .getTupleSlice();
+    }
+
+    private static void appendWideKey(RowPagesBuilder builder, int key)
+    {
+        builder.row(WIDE_KEY_PREFIX + key, key, key / 2.0);
+    }
+
+    private void assertLookups(int partitionCount)
+    {
+        // keys 500 to 999 are present twice
+        PagesIndex pagesIndex = new PagesIndex(ImmutableList.of(SINGLE_LONG), 100, operatorContext);
+        for (Page page : rowPagesBuilder(SINGLE_LONG).addSequencePage(1000, 0).addSequencePage(1000, 500).build()) {
+            pagesIndex.addPage(page);
+        }
+
+        ChannelHash channelHash = new ChannelHash(pagesIndex.getIndex(0), operatorContext, partitionCount, executor);
+        assertEquals(channelHash.getPartitionCount(), partitionCount);
+
+        // lookups go through a copy, as they do in the join operators
+        ChannelHash lookupHash = new ChannelHash(channelHash);
+
+        List<Page> probe = rowPagesBuilder(SINGLE_LONG).addSequencePage(2000, 0).build();
+        BlockCursor cursor = probe.get(0).getBlock(0).cursor();
+        while (cursor.advanceNextPosition()) {
+            long key = cursor.getLong(0);
+            lookupHash.setLookupSlice(cursor.getRawSlice());
+
+            int matches = 0;
+            for (int position = lookupHash.get(cursor); position >= 0; position = lookupHash.getNextPosition(position)) {
+                matches++;
+            }
+
+            int expected;
+            if (key < 500) {
+                expected = 1;
+            }
+            else if (key < 1000) {
+                expected = 2;
+            }
+            else if (key < 1500) {
+                expected = 1;
+            }
+            else {
+                expected = 0;
+            }
+            assertEquals(matches, expected, "matches for key " + key);
+        }
+    }
+}
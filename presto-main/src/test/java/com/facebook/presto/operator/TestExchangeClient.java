@@ -24,6 +24,7 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -62,7 +63,8 @@ public class TestExchangeClient
             throws Exception
     {
         DataSize maxResponseSize = new DataSize(10, Unit.MEGABYTE);
-        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(maxResponseSize);
+        // new locations start with a 1MB request, which these small pages never grow
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(new DataSize(1, Unit.MEGABYTE));
 
         URI location = URI.create("http://localhost:8080");
         processor.addPage(location, createPage(1));
@@ -96,12 +98,46 @@ public class TestExchangeClient
         assertStatus(exchangeClient.getStatus().getPageBufferClientStatuses().get(0), location, "closed", 3, 2, 2, "queued");
     }
 
+    @Test
+    public void testCompression()
+            throws Exception
+    {
+        DataSize maxResponseSize = new DataSize(10, Unit.MEGABYTE);
+        // new locations start with a 1MB request, which these small pages never grow
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(new DataSize(1, Unit.MEGABYTE));
+
+        URI location = URI.create("http://localhost:8080");
+        Page page = new Page(BlockAssertions.createLongsBlock(Collections.nCopies(1000, 42L)));
+        processor.addPage(location, page);
+        processor.addPage(location, page);
+        processor.setComplete(location);
+
+        ExchangeClient exchangeClient = new ExchangeClient(new DataSize(32, Unit.MEGABYTE),
+                maxResponseSize,
+                1,
+                true,
+                new TestingHttpClient(processor, executor),
+                executor);
+
+        exchangeClient.addLocation(location);
+        exchangeClient.noMoreLocations();
+
+        assertPageEquals(exchangeClient.getNextPage(new Duration(1, TimeUnit.SECONDS)), page);
+        assertPageEquals(exchangeClient.getNextPage(new Duration(1, TimeUnit.SECONDS)), page);
+        assertNull(exchangeClient.getNextPage(new Duration(1, TimeUnit.SECONDS)));
+
+        ExchangeClientStatus status = exchangeClient.getStatus();
+        assertEquals(status.getUncompressedBytesReceived(), 2 * page.getDataSize().toBytes());
+        assertLessThan(status.getBytesReceived(), status.getUncompressedBytesReceived());
+    }
+
     @Test
     public void testAddLocation()
             throws Exception
     {
         DataSize maxResponseSize = new DataSize(10, Unit.MEGABYTE);
-        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(maxResponseSize);
+        // new locations start with a 1MB request, which these small pages never grow
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(new DataSize(1, Unit.MEGABYTE));
 
         ExchangeClient exchangeClient = new ExchangeClient(new DataSize(32, Unit.MEGABYTE),
                 maxResponseSize,
@@ -164,19 +200,19 @@ public class TestExchangeClient
                 new TestingHttpClient(processor, newCachedThreadPool(daemonThreadsNamed("test-%s"))),
                 executor);
 
+        // add the pages before the location, so the first request can not race with them
         URI location = URI.create("http://localhost:8080");
+        processor.addPage(location, createPage(1));
+        processor.addPage(location, createPage(2));
+        processor.addPage(location, createPage(3));
+        processor.setComplete(location);
+
         exchangeClient.addLocation(location);
         exchangeClient.noMoreLocations();
         assertEquals(exchangeClient.isClosed(), false);
 
         long start = System.nanoTime();
 
-        // add a pages
-        processor.addPage(location, createPage(1));
-        processor.addPage(location, createPage(2));
-        processor.addPage(location, createPage(3));
-        processor.setComplete(location);
-
         // start fetching pages
         exchangeClient.scheduleRequestIfNecessary();
         // wait for a page to be fetched
@@ -13,21 +13,36 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.lazy.LazyBlock;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.operator.FilterAndProjectOperator.FilterAndProjectOperatorFactory;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.sql.analyzer.Session;
+import com.facebook.presto.sql.analyzer.Type;
+import com.facebook.presto.sql.gen.ExpressionCompiler;
+import com.facebook.presto.sql.tree.ComparisonExpression;
+import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.Input;
+import com.facebook.presto.sql.tree.InputReference;
+import com.facebook.presto.sql.tree.LongLiteral;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleReadable;
 import com.facebook.presto.util.MaterializedResult;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringSequenceBlock;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
 import static com.facebook.presto.operator.ProjectionFunctions.concat;
 import static com.facebook.presto.operator.ProjectionFunctions.singleColumn;
@@ -39,6 +54,9 @@ import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
 import static com.facebook.presto.util.MaterializedResult.resultBuilder;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestFilterAndProjectOperator
 {
@@ -106,4 +124,112 @@ public class TestFilterAndProjectOperator
 
         assertOperatorEquals(operator, input, expected);
     }
+
+    @Test
+    public void testCompiledSelectiveFilter()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG)
+                .addSequencePage(100, 0, 0)
+                .addSequencePage(100, 50, 50)
+                .build();
+
+        // the filter skips the leading rows of each page, so the projections must seek the cursors
+        Expression filter = new ComparisonExpression(ComparisonExpression.Type.GREATER_THAN_OR_EQUAL, new InputReference(new Input(1, 0)), new LongLiteral("140"));
+        OperatorFactory operatorFactory = new ExpressionCompiler(new MetadataManager()).compileFilterAndProjectOperator(
+                0,
+                filter,
+                ImmutableList.<Expression>of(new InputReference(new Input(1, 0)), new InputReference(new Input(0, 0))),
+                ImmutableMap.of(new Input(0, 0), Type.VARCHAR, new Input(1, 0), Type.BIGINT));
+
+        Operator operator = operatorFactory.createOperator(driverContext);
+
+        MaterializedResult.Builder expected = resultBuilder(SINGLE_LONG, SINGLE_VARBINARY);
+        for (int value = 140; value < 150; value++) {
+            expected.row(value, String.valueOf(value));
+        }
+
+        assertOperatorEquals(operator, input, expected.build());
+    }
+
+    @Test
+    public void testCompiledNonSelectiveFilter()
+            throws Exception
+    {
+        // the lazy block makes the operator filter the first page into a selection vector
+        List<Page> input = ImmutableList.of(new Page(createLazyStringSequenceBlock(0, 100, new AtomicInteger()), createLongSequenceBlock(0, 100)));
+
+        // the filter passes most rows, so the projections step the cursors over the skipped row
+        Expression filter = new ComparisonExpression(ComparisonExpression.Type.NOT_EQUAL, new InputReference(new Input(1, 0)), new LongLiteral("45"));
+        OperatorFactory operatorFactory = new ExpressionCompiler(new MetadataManager()).compileFilterAndProjectOperator(
+                0,
+                filter,
+                ImmutableList.<Expression>of(new InputReference(new Input(1, 0)), new InputReference(new Input(0, 0))),
+                ImmutableMap.of(new Input(0, 0), Type.VARCHAR, new Input(1, 0), Type.BIGINT));
+
+        Operator operator = operatorFactory.createOperator(driverContext);
+
+        MaterializedResult.Builder expected = resultBuilder(SINGLE_LONG, SINGLE_VARBINARY);
+        for (int value = 0; value < 100; value++) {
+            if (value != 45) {
+                expected.row(value, String.valueOf(value));
+            }
+        }
+
+        assertOperatorEquals(operator, input, expected.build());
+    }
+
+    @Test
+    public void testLazyProjectionsOnlyLoadedForSelectedRows()
+            throws Exception
+    {
+        AtomicInteger loads = new AtomicInteger();
+        LazyBlock rejected = createLazyStringSequenceBlock(0, 100, loads);
+        LazyBlock selected = createLazyStringSequenceBlock(100, 200, loads);
+        List<Page> input = ImmutableList.of(
+                new Page(createLongSequenceBlock(0, 100), rejected),
+                new Page(createLongSequenceBlock(100, 200), selected));
+
+        // the filter only reads channel 0, and rejects every row of the first page
+        Expression filter = new ComparisonExpression(ComparisonExpression.Type.GREATER_THAN_OR_EQUAL, new InputReference(new Input(0, 0)), new LongLiteral("190"));
+        OperatorFactory operatorFactory = new ExpressionCompiler(new MetadataManager()).compileFilterAndProjectOperator(
+                1,
+                filter,
+                ImmutableList.<Expression>of(new InputReference(new Input(1, 0))),
+                ImmutableMap.of(new Input(0, 0), Type.BIGINT, new Input(1, 0), Type.VARCHAR));
+
+        // run through a driver, which records the size of every page in the operator stats
+        MaterializingOperator materializingOperator = new MaterializingOperator(driverContext.addOperatorContext(2, "materialize"), operatorFactory.getTupleInfos());
+        Driver driver = new Driver(driverContext,
+                new StaticOperator(driverContext.addOperatorContext(0, "values"), input),
+                operatorFactory.createOperator(driverContext),
+                materializingOperator);
+        while (!driver.isFinished()) {
+            driver.process();
+        }
+
+        assertFalse(rejected.isLoaded());
+        assertTrue(selected.isLoaded());
+        assertEquals(loads.get(), 1);
+
+        MaterializedResult.Builder expected = resultBuilder(SINGLE_VARBINARY);
+        for (int value = 190; value < 200; value++) {
+            expected.row(String.valueOf(value));
+        }
+        assertEquals(materializingOperator.getMaterializedResult(), expected.build());
+    }
+
+    private static LazyBlock createLazyStringSequenceBlock(int start, int end, final AtomicInteger loads)
+    {
+        final Block block = createStringSequenceBlock(start, end);
+        return new LazyBlock(block.getTupleInfo(), block.getPositionCount(), new Supplier<Block>()
+        {
+            @Override
+            public Block get()
+            {
+                loads.incrementAndGet();
+                return block;
+            }
+        });
+    }
 }
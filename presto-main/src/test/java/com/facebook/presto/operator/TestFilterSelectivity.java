@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.block.Block;
+import com.facebook.presto.block.lazy.LazyBlock;
+import com.google.common.base.Suppliers;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestFilterSelectivity
+{
+    @Test
+    public void testLoadedBlocksUseFusedLoop()
+    {
+        FilterSelectivity filterSelectivity = new FilterSelectivity();
+        Block block = createLongSequenceBlock(0, 100);
+        assertFalse(filterSelectivity.useSelectedPositions(new Block[] {block}));
+
+        LazyBlock lazyBlock = createLazyBlock();
+        lazyBlock.getLoadedBlock();
+        assertFalse(filterSelectivity.useSelectedPositions(new Block[] {block, lazyBlock}));
+    }
+
+    @Test
+    public void testSelectivity()
+    {
+        FilterSelectivity filterSelectivity = new FilterSelectivity();
+        Block[] blocks = {createLongSequenceBlock(0, 100), createLazyBlock()};
+
+        // selective filters use the selection vector
+        assertTrue(filterSelectivity.useSelectedPositions(blocks));
+        filterSelectivity.recordSelectedPositions(100, 50);
+        assertTrue(filterSelectivity.useSelectedPositions(blocks));
+
+        // once most rows pass, the fused loop is used, with an occasional page to measure again
+        filterSelectivity.recordSelectedPositions(100, 51);
+        for (int page = 0; page < 15; page++) {
+            assertFalse(filterSelectivity.useSelectedPositions(blocks));
+        }
+        assertTrue(filterSelectivity.useSelectedPositions(blocks));
+        filterSelectivity.recordSelectedPositions(100, 10);
+        assertTrue(filterSelectivity.useSelectedPositions(blocks));
+    }
+
+    private static LazyBlock createLazyBlock()
+    {
+        Block block = createLongSequenceBlock(0, 100);
+        return new LazyBlock(block.getTupleInfo(), block.getPositionCount(), Suppliers.ofInstance(block));
+    }
+}
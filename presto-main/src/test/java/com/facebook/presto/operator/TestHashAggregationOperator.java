@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.operator.HashAggregationOperator.HashAggregationOperatorFactory;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.sql.planner.plan.AggregationNode.Step;
@@ -22,18 +23,23 @@ import com.facebook.presto.sql.tree.Input;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.util.MaterializedResult;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.io.Files;
+import io.airlift.testing.FileUtils;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 import static com.facebook.presto.block.BlockAssertions.COMPOSITE_SEQUENCE_TUPLE_INFO;
 import static com.facebook.presto.operator.AggregationFunctionDefinition.aggregation;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.OperatorAssertion.toPages;
 import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.operator.aggregation.CountAggregation.COUNT;
@@ -51,6 +57,7 @@ import static com.facebook.presto.util.MaterializedResult.resultBuilder;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestHashAggregationOperator
 {
@@ -146,6 +153,102 @@ public class TestHashAggregationOperator
         toPages(operator, input);
     }
 
+    @Test
+    public void testSpill()
+    {
+        List<Page> input = rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG)
+                .addSequencePage(1000, 0, 0)
+                .addSequencePage(1000, 500, 500)
+                .addSequencePage(1000, 1000, 1000)
+                .build();
+
+        HashAggregationOperatorFactory operatorFactory = new HashAggregationOperatorFactory(
+                0,
+                SINGLE_VARBINARY,
+                0,
+                Step.SINGLE,
+                ImmutableList.of(aggregation(COUNT, new Input(0, 0)),
+                        aggregation(LONG_SUM, new Input(1, 0)),
+                        aggregation(VAR_BINARY_MAX, new Input(0, 0))),
+                10);
+
+        Operator operator = operatorFactory.createOperator(driverContext);
+        MaterializedResult expected = toMaterializedResult(operator.getTupleInfos(), toPages(operator, input));
+
+        File spillPath = Files.createTempDir();
+        try {
+            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+            TaskContext taskContext = new TaskContext(
+                    new TaskStateMachine(new TaskId("query", "stage", "task"), executor),
+                    executor,
+                    session,
+                    new DataSize(10, Unit.BYTE),
+                    new DataSize(0, Unit.BYTE),
+                    true,
+                    spillPath);
+            DriverContext spillDriverContext = taskContext.addPipelineContext(true, true).addDriverContext();
+
+            Operator spillOperator = operatorFactory.createOperator(spillDriverContext);
+            MaterializedResult actual = toMaterializedResult(spillOperator.getTupleInfos(), toPages(spillOperator, input));
+
+            // spilled groups come back in hash order (the multisets are compared with equals, since assertEquals compares collections in iteration order)
+            assertTrue(ImmutableMultiset.copyOf(actual.getMaterializedTuples()).equals(ImmutableMultiset.copyOf(expected.getMaterializedTuples())));
+            assertTrue(spillOperator.getOperatorContext().getOperatorStats().getSpilledDataSize().toBytes() > 0);
+
+            // all runs are removed once they are merged
+            assertEquals(spillPath.list().length, 0);
+        }
+        finally {
+            FileUtils.deleteRecursively(spillPath);
+        }
+    }
+
+    @Test
+    public void testSpillFilesRemovedOnClose()
+    {
+        List<Page> input = rowPagesBuilder(SINGLE_VARBINARY, SINGLE_LONG)
+                .addSequencePage(1000, 0, 0)
+                .addSequencePage(1000, 500, 500)
+                .build();
+
+        File spillPath = Files.createTempDir();
+        try {
+            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+            TaskContext taskContext = new TaskContext(
+                    new TaskStateMachine(new TaskId("query", "stage", "task"), executor),
+                    executor,
+                    session,
+                    new DataSize(10, Unit.BYTE),
+                    new DataSize(0, Unit.BYTE),
+                    true,
+                    spillPath);
+            DriverContext spillDriverContext = taskContext.addPipelineContext(true, true).addDriverContext();
+
+            HashAggregationOperator operator = new HashAggregationOperator(
+                    spillDriverContext.addOperatorContext(0, HashAggregationOperator.class.getSimpleName()),
+                    SINGLE_VARBINARY,
+                    0,
+                    Step.SINGLE,
+                    ImmutableList.of(aggregation(COUNT, new Input(0, 0))),
+                    10);
+
+            // each page fills the memory of the task, so it is spilled to a separate run
+            for (Page page : input) {
+                assertTrue(operator.needsInput());
+                operator.addInput(page);
+                assertEquals(operator.getOutput(), null);
+            }
+            assertEquals(spillPath.list().length, 2);
+
+            // the runs are removed when the operator is closed before they are merged, e.g. when the task is canceled
+            operator.close();
+            assertEquals(spillPath.list().length, 0);
+        }
+        finally {
+            FileUtils.deleteRecursively(spillPath);
+        }
+    }
+
     @Test
     public void testMultiSliceAggregationOutput()
     {
@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.block.BlockAssertions.toValues;
+import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_LONG;
+import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestHashPagePartitioner
+{
+    @Test
+    public void testSinglePartition()
+    {
+        Page page = rowPagesBuilder(SINGLE_LONG)
+                .addSequencePage(10, 0)
+                .build()
+                .get(0);
+
+        HashPagePartitioner partitioner = new HashPagePartitioner(ImmutableList.of(SINGLE_LONG), ImmutableList.of(0), 1);
+        List<List<Page>> partitions = partitioner.partition(page);
+        assertEquals(partitions.size(), 1);
+        assertEquals(partitions.get(0).size(), 1);
+        assertSame(partitions.get(0).get(0), page);
+    }
+
+    @Test
+    public void testPartition()
+    {
+        List<Page> input = rowPagesBuilder(SINGLE_LONG, SINGLE_VARBINARY)
+                .addSequencePage(1000, 0, 0)
+                .addSequencePage(1000, 500, 500)
+                .build();
+
+        HashPagePartitioner partitioner = new HashPagePartitioner(ImmutableList.of(SINGLE_LONG, SINGLE_VARBINARY), ImmutableList.of(1), 4);
+
+        Map<List<Object>, Integer> partitionByRow = new HashMap<>();
+        int rowCount = 0;
+        for (Page page : input) {
+            List<List<Page>> partitions = partitioner.partition(page);
+            assertEquals(partitions.size(), 4);
+            for (int partition = 0; partition < partitions.size(); partition++) {
+                // with this many rows every partition should get something
+                assertTrue(!partitions.get(partition).isEmpty());
+                for (Page partitionPage : partitions.get(partition)) {
+                    assertEquals(partitionPage.getChannelCount(), 2);
+                    for (List<Object> row : toValues(partitionPage.getBlock(1))) {
+                        Integer previous = partitionByRow.put(row, partition);
+                        if (previous != null) {
+                            assertEquals(previous.intValue(), partition, "row " + row + " assigned to different partitions");
+                        }
+                        rowCount++;
+                    }
+                }
+            }
+        }
+        assertEquals(rowCount, 2000);
+        assertEquals(partitionByRow.size(), 1500);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidPartitionChannel()
+    {
+        new HashPagePartitioner(ImmutableList.of(SINGLE_LONG), ImmutableList.of(1), 2);
+    }
+}
@@ -43,10 +43,14 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestHttpPageBufferClient
 {
@@ -74,7 +78,8 @@ public class TestHttpPageBufferClient
         Page expectedPage = new Page(100);
 
         DataSize expectedMaxSize = new DataSize(11, Unit.MEGABYTE);
-        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(expectedMaxSize);
+        // a new location starts with a 1MB request
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(new DataSize(1, Unit.MEGABYTE));
 
         CyclicBarrier requestComplete = new CyclicBarrier(2);
 
@@ -138,6 +143,107 @@ public class TestHttpPageBufferClient
         assertStatus(client, location, "closed", 3, 4, 4, "queued");
     }
 
+    @Test
+    public void testRequestSizeAdaptsToResponses()
+            throws Exception
+    {
+        // a page larger than half of the initial request size, but smaller than half of the doubled size
+        Page page = new Page(createLongSequenceBlock(0, 100000));
+        assertTrue(page.getDataSize().toBytes() > new DataSize(512, Unit.KILOBYTE).toBytes());
+        assertTrue(page.getDataSize().toBytes() < new DataSize(1, Unit.MEGABYTE).toBytes());
+
+        DataSize maxSize = new DataSize(4, Unit.MEGABYTE);
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(new DataSize(1, Unit.MEGABYTE));
+
+        CyclicBarrier requestComplete = new CyclicBarrier(2);
+        TestingClientCallback callback = new TestingClientCallback(requestComplete);
+
+        URI location = URI.create("http://localhost:8080");
+        HttpPageBufferClient client = new HttpPageBufferClient(new TestingHttpClient(processor, executor),
+                maxSize,
+                location,
+                callback,
+                executor);
+
+        // a new location starts with a small request
+        assertEquals(client.getRequestSize(), new DataSize(1, Unit.MEGABYTE));
+        assertEquals(client.getAverageFillRatio(), 1.0);
+
+        // a full response doubles the request size
+        processor.addPage(location, page);
+        client.scheduleRequest();
+        requestComplete.await(1, TimeUnit.SECONDS);
+        assertEquals(callback.getPages().size(), 1);
+        assertEquals(client.getRequestSize(), new DataSize(2, Unit.MEGABYTE));
+        assertTrue(client.getAverageBytesPerSecond() > 0);
+
+        // a response limited by the upstream keeps the size
+        callback.resetStats();
+        processor.setExpectedMaxSize(new DataSize(2, Unit.MEGABYTE));
+        processor.addPage(location, page);
+        client.scheduleRequest();
+        requestComplete.await(1, TimeUnit.SECONDS);
+        assertEquals(callback.getPages().size(), 1);
+        assertEquals(client.getRequestSize(), new DataSize(2, Unit.MEGABYTE));
+        assertTrue(client.getAverageFillRatio() < 1.0);
+    }
+
+    @Test
+    public void testRequestSizeGrowth()
+    {
+        HttpPageBufferClient client = createIdleClient(new DataSize(4, Unit.MEGABYTE));
+        long megabyte = new DataSize(1, Unit.MEGABYTE).toBytes();
+        long fastNanos = MILLISECONDS.toNanos(100);
+
+        // a new location starts with a 1MB request
+        assertEquals(client.getRequestSize(), new DataSize(1, Unit.MEGABYTE));
+
+        // a fast response that is at least half full doubles the size
+        client.recordResponse(megabyte, megabyte / 2, fastNanos);
+        assertEquals(client.getRequestSize(), new DataSize(2, Unit.MEGABYTE));
+
+        // a partially filled response is limited by the upstream, so the size is kept
+        client.recordResponse(2 * megabyte, megabyte - 1, fastNanos);
+        assertEquals(client.getRequestSize(), new DataSize(2, Unit.MEGABYTE));
+
+        // growth is capped at the maximum response size
+        client.recordResponse(2 * megabyte, 2 * megabyte, fastNanos);
+        assertEquals(client.getRequestSize(), new DataSize(4, Unit.MEGABYTE));
+        client.recordResponse(4 * megabyte, 4 * megabyte, fastNanos);
+        assertEquals(client.getRequestSize(), new DataSize(4, Unit.MEGABYTE));
+    }
+
+    @Test
+    public void testRequestSizeShrink()
+    {
+        HttpPageBufferClient client = createIdleClient(new DataSize(8, Unit.MEGABYTE));
+        long megabyte = new DataSize(1, Unit.MEGABYTE).toBytes();
+
+        // responses within the 500ms target grow the size
+        client.recordResponse(megabyte, megabyte, MILLISECONDS.toNanos(500));
+        client.recordResponse(2 * megabyte, 2 * megabyte, MILLISECONDS.toNanos(500));
+        assertEquals(client.getRequestSize(), new DataSize(4, Unit.MEGABYTE));
+
+        // a slow full response shrinks the size to what the link delivers in the target time
+        client.recordResponse(4 * megabyte, 4 * megabyte, SECONDS.toNanos(4));
+        long targetBytes = (long) (client.getAverageBytesPerSecond() * 0.5);
+        assertTrue(targetBytes > megabyte && targetBytes < 2 * megabyte);
+        assertEquals(client.getRequestSize().toBytes(), targetBytes);
+
+        // but never below the 1MB minimum
+        client.recordResponse(targetBytes, targetBytes, SECONDS.toNanos(10));
+        assertEquals(client.getRequestSize(), new DataSize(1, Unit.MEGABYTE));
+    }
+
+    private HttpPageBufferClient createIdleClient(DataSize maxSize)
+    {
+        return new HttpPageBufferClient(new TestingHttpClient(new MockExchangeRequestProcessor(maxSize), executor),
+                maxSize,
+                URI.create("http://localhost:8080"),
+                new TestingClientCallback(new CyclicBarrier(2)),
+                executor);
+    }
+
     @Test
     public void testLifecycle()
             throws Exception
@@ -50,7 +50,11 @@ public class TestOperatorStats
             new Duration(17, NANOSECONDS),
 
             new DataSize(18, BYTE),
-            "19");
+
+            new DataSize(19, BYTE),
+            new Duration(20, NANOSECONDS),
+
+            "21");
 
     @Test
     public void testJson()
@@ -90,7 +94,11 @@ public class TestOperatorStats
         Assert.assertEquals(actual.getFinishUser(), new Duration(17, NANOSECONDS));
 
         Assert.assertEquals(actual.getMemoryReservation(), new DataSize(18, BYTE));
-        Assert.assertEquals(actual.getInfo(), "19");
+
+        Assert.assertEquals(actual.getSpilledDataSize(), new DataSize(19, BYTE));
+        Assert.assertEquals(actual.getSpillWall(), new Duration(20, NANOSECONDS));
+
+        Assert.assertEquals(actual.getInfo(), "21");
     }
 
     @Test
@@ -122,6 +130,10 @@ public class TestOperatorStats
         Assert.assertEquals(actual.getFinishCpu(), new Duration(3 * 16, NANOSECONDS));
         Assert.assertEquals(actual.getFinishUser(), new Duration(3 * 17, NANOSECONDS));
         Assert.assertEquals(actual.getMemoryReservation(), new DataSize(3 * 18, BYTE));
+
+        Assert.assertEquals(actual.getSpilledDataSize(), new DataSize(3 * 19, BYTE));
+        Assert.assertEquals(actual.getSpillWall(), new Duration(3 * 20, NANOSECONDS));
+
         Assert.assertEquals(actual.getInfo(), null);
     }
 }
@@ -14,17 +14,21 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.operator.OrderByOperator.InMemoryOrderByOperatorFactory;
 import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.util.MaterializedResult;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import io.airlift.testing.FileUtils;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
@@ -39,6 +43,8 @@ import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
 import static com.facebook.presto.util.MaterializedResult.resultBuilder;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestOrderByOperator
 {
@@ -185,4 +191,62 @@ public class TestOrderByOperator
 
         toPages(operator, input);
     }
+
+    @Test
+    public void testSpill()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(SINGLE_LONG, SINGLE_DOUBLE)
+                .row(1, 0.1)
+                .row(2, 0.2)
+                .pageBreak()
+                .row(-1, -0.1)
+                .row(4, 0.4)
+                .pageBreak()
+                .row(3, 0.3)
+                .row(0, 0.0)
+                .build();
+
+        File spillPath = Files.createTempDir();
+        try {
+            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+            DriverContext driverContext = new TaskContext(
+                    new TaskStateMachine(new TaskId("query", "stage", "task"), executor),
+                    executor,
+                    session,
+                    new DataSize(10, Unit.BYTE),
+                    new DataSize(0, Unit.BYTE),
+                    true,
+                    spillPath)
+                    .addPipelineContext(true, true)
+                    .addDriverContext();
+
+            InMemoryOrderByOperatorFactory operatorFactory = new InMemoryOrderByOperatorFactory(
+                    0,
+                    ImmutableList.of(SINGLE_LONG, SINGLE_DOUBLE),
+                    0,
+                    new int[] {1},
+                    10);
+
+            Operator operator = operatorFactory.createOperator(driverContext);
+
+            MaterializedResult expected = resultBuilder(DOUBLE)
+                    .row(-0.1)
+                    .row(0.0)
+                    .row(0.1)
+                    .row(0.2)
+                    .row(0.3)
+                    .row(0.4)
+                    .build();
+
+            assertOperatorEquals(operator, input, expected);
+            assertTrue(operator.getOperatorContext().getOperatorStats().getSpilledDataSize().toBytes() > 0);
+
+            // all runs are removed once they are merged
+            assertEquals(spillPath.list().length, 0);
+        }
+        finally {
+            FileUtils.deleteRecursively(spillPath);
+        }
+    }
 }
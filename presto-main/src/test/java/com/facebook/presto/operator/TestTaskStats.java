@@ -68,7 +68,27 @@ public class TestTaskStats
         assertExpectedTaskStats(actual);
     }
 
+    @Test
+    public void testSummarize()
+    {
+        JsonCodec<TaskStats> codec = JsonCodec.jsonCodec(TaskStats.class);
+
+        String json = codec.toJson(EXPECTED.summarize());
+        TaskStats actual = codec.fromJson(json);
+
+        assertExpectedTaskTotals(actual);
+        assertEquals(actual.getPipelines().size(), 0);
+    }
+
     public static void assertExpectedTaskStats(TaskStats actual)
+    {
+        assertExpectedTaskTotals(actual);
+
+        assertEquals(actual.getPipelines().size(), 1);
+        assertExpectedPipelineStats(actual.getPipelines().get(0));
+    }
+
+    private static void assertExpectedTaskTotals(TaskStats actual)
     {
         assertEquals(actual.getCreateTime(), new DateTime(1, UTC));
         assertEquals(actual.getStartTime(), new DateTime(2, UTC));
@@ -96,8 +116,5 @@ public class TestTaskStats
 
         assertEquals(actual.getOutputDataSize(), new DataSize(20, BYTE));
         assertEquals(actual.getOutputPositions(), 21);
-
-        assertEquals(actual.getPipelines().size(), 1);
-        assertExpectedPipelineStats(actual.getPipelines().get(0));
     }
 }
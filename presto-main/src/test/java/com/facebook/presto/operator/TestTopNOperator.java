@@ -167,4 +167,67 @@ public class TestTopNOperator
 
         assertOperatorEquals(operator, input, expected);
     }
+
+    @Test
+    public void testCompaction()
+            throws Exception
+    {
+        // every page replaces all candidates, so the rows of old pages must be compacted away
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(SINGLE_LONG, SINGLE_DOUBLE);
+        for (int page = 0; page < 500; page++) {
+            for (int row = 0; row < 10; row++) {
+                long value = page * 10 + row;
+                rowPagesBuilder.row(value, value / 10.0);
+            }
+            rowPagesBuilder.pageBreak();
+        }
+
+        TopNOperatorFactory operatorFactory = new TopNOperatorFactory(
+                0,
+                3,
+                0,
+                ImmutableList.of(singleColumn(FIXED_INT_64, 0, 0), singleColumn(DOUBLE, 1, 0)),
+                Ordering.from(new FieldOrderedTupleComparator(ImmutableList.of(0), ImmutableList.of(SortItem.Ordering.DESCENDING))),
+                false);
+
+        Operator operator = operatorFactory.createOperator(driverContext);
+
+        MaterializedResult expected = resultBuilder(FIXED_INT_64, DOUBLE)
+                .row(4999, 499.9)
+                .row(4998, 499.8)
+                .row(4997, 499.7)
+                .build();
+
+        assertOperatorEquals(operator, rowPagesBuilder.build(), expected);
+    }
+
+    @Test
+    public void testFewerRowsThanLimit()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(SINGLE_LONG, SINGLE_DOUBLE)
+                .row(3, 0.3)
+                .row(1, 0.1)
+                .pageBreak()
+                .row(2, 0.2)
+                .build();
+
+        TopNOperatorFactory operatorFactory = new TopNOperatorFactory(
+                0,
+                10,
+                0,
+                ImmutableList.of(singleColumn(FIXED_INT_64, 0, 0), singleColumn(DOUBLE, 1, 0)),
+                Ordering.from(new FieldOrderedTupleComparator(ImmutableList.of(0), ImmutableList.of(SortItem.Ordering.ASCENDING))),
+                false);
+
+        Operator operator = operatorFactory.createOperator(driverContext);
+
+        MaterializedResult expected = resultBuilder(FIXED_INT_64, DOUBLE)
+                .row(1, 0.1)
+                .row(2, 0.2)
+                .row(3, 0.3)
+                .build();
+
+        assertOperatorEquals(operator, input, expected);
+    }
 }
@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.operator.WindowOperator.InMemoryWindowOperatorFactory;
 import com.facebook.presto.operator.window.RowNumberFunction;
 import com.facebook.presto.operator.window.WindowFunction;
@@ -21,16 +22,20 @@ import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.util.MaterializedResult;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import io.airlift.testing.FileUtils;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.OperatorAssertion.toPages;
 import static com.facebook.presto.operator.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_DOUBLE;
@@ -42,6 +47,8 @@ import static com.facebook.presto.tuple.TupleInfo.Type.VARIABLE_BINARY;
 import static com.facebook.presto.util.MaterializedResult.resultBuilder;
 import static com.facebook.presto.util.Threads.daemonThreadsNamed;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestWindowOperator
 {
@@ -217,6 +224,65 @@ public class TestWindowOperator
         toPages(operator, input);
     }
 
+    @Test
+    public void testSpill()
+            throws Exception
+    {
+        TupleInfo sourceTupleInfo = new TupleInfo(FIXED_INT_64, FIXED_INT_64);
+
+        // 100 partitions spread over every page
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(sourceTupleInfo);
+        for (int page = 0; page < 10; page++) {
+            for (int i = 0; i < 1000; i++) {
+                int row = page * 1000 + i;
+                rowPagesBuilder.row(row % 100, row);
+            }
+            rowPagesBuilder.pageBreak();
+        }
+        List<Page> input = rowPagesBuilder.build();
+
+        InMemoryWindowOperatorFactory operatorFactory = new InMemoryWindowOperatorFactory(
+                0,
+                ImmutableList.of(sourceTupleInfo),
+                0,
+                ints(0),
+                ROW_NUMBER,
+                ints(0),
+                ints(1),
+                bools(true),
+                10);
+
+        Operator operator = operatorFactory.createOperator(driverContext);
+        MaterializedResult expected = toMaterializedResult(operator.getTupleInfos(), toPages(operator, input));
+
+        File spillPath = Files.createTempDir();
+        try {
+            // the whole input does not fit in memory, but a single partition does
+            Session session = new Session("user", "source", "catalog", "schema", "address", "agent");
+            DriverContext driverContext = new TaskContext(
+                    new TaskStateMachine(new TaskId("query", "stage", "task"), executor),
+                    executor,
+                    session,
+                    new DataSize(64, Unit.KILOBYTE),
+                    new DataSize(0, Unit.BYTE),
+                    true,
+                    spillPath)
+                    .addPipelineContext(true, true)
+                    .addDriverContext();
+
+            Operator spillOperator = operatorFactory.createOperator(driverContext);
+
+            assertOperatorEquals(spillOperator, input, expected);
+            assertTrue(spillOperator.getOperatorContext().getOperatorStats().getSpilledDataSize().toBytes() > 0);
+
+            // all runs are removed once they are merged
+            assertEquals(spillPath.list().length, 0);
+        }
+        finally {
+            FileUtils.deleteRecursively(spillPath);
+        }
+    }
+
     private static int[] ints(int... array)
     {
         return array;
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.scalar;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.facebook.presto.operator.scalar.JsonExtract.generateExtractor;
+import static org.testng.Assert.assertEquals;
+
+public class TestJsonPathScanner
+{
+    private static final List<String> DOCUMENTS = ImmutableList.of(
+            "{}",
+            "[]",
+            "123",
+            "\"abc\"",
+            "null",
+            "{\"fuu\": 1}",
+            "{\"fuu\": null}",
+            "{\"fuu\": {\"bar\": 1}}",
+            "{ \"fuu\" : [ 0.1 , 1 , 2 ] }",
+            "{\"fuu\": [0, [100, 101], 2], \"bar\": \"abc\"}",
+            "{\"a\": \"}]\\\"{[\", \"fuu\": [\"x\", {\"bar\": true}], \"bar\": false}",
+            "{\"fuu\": [\"\\u0001\", \"a\\\"b\"]}",
+            "{\"f\\u0075u\": 7, \"fuu\": 8}",
+            "{\"fuu\": [0, {\"bar\": {\"key\" : [\"value\", -1.5e3]}}, 2]}",
+            "\n\t{\"bar\": [{}, [], {\"x\": [[1]]}], \"fuu\": \"caf\u00e9\"}");
+
+    private static final List<String> PATHS = ImmutableList.of(
+            "$",
+            "$.fuu",
+            "$.bar",
+            "$[0]",
+            "$.fuu[0]",
+            "$.fuu[1]",
+            "$.fuu[1][1]",
+            "$.fuu[1].bar",
+            "$.fuu[1].bar.key[1]",
+            "$.bar[2].x[0][0]");
+
+    @Test
+    public void testMatchesParser()
+            throws Exception
+    {
+        for (String document : DOCUMENTS) {
+            for (String path : PATHS) {
+                for (boolean scalarValue : ImmutableList.of(true, false)) {
+                    assertEquals(scan(document, path, scalarValue), parse(document, path, scalarValue), String.format("%s in %s", path, document));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedDocument()
+            throws Exception
+    {
+        assertEquals(scan("", "$.fuu", true), null);
+        assertEquals(scan("{\"fuu\"", "$.fuu", true), null);
+        assertEquals(scan("{\"fuu\": ", "$.fuu", true), null);
+        assertEquals(scan("{\"bar\": 1 \"fuu\": 2}", "$.fuu", true), null);
+        assertEquals(scan("{\"fuu\": nul}", "$.fuu", true), null);
+        assertEquals(scan("{\"fuu\": \"abc", "$.fuu", true), null);
+        assertEquals(scan("[1, 2", "$[3]", true), null);
+    }
+
+    @Test
+    public void testMalformedNumber()
+            throws Exception
+    {
+        for (String number : ImmutableList.of("1-2", "-", "--1", "+1", "01", "-01", ".5", "1.", "1.e3", "1e", "1e+", "1e3.5", "0x10", "1..2")) {
+            assertEquals(scan("{\"fuu\": " + number + "}", "$.fuu", true), null, number);
+        }
+        for (String number : ImmutableList.of("0", "-0", "12", "-1.5", "0.25", "1e3", "1E+3", "-2.5e-10")) {
+            assertEquals(scan("{\"fuu\": " + number + "}", "$.fuu", true), number);
+        }
+    }
+
+    @Test
+    public void testStopsAtValue()
+            throws Exception
+    {
+        // the rest of the document is not read once the value is found
+        assertEquals(scan("{\"fuu\": 1, \"bar\": [", "$.fuu", true), "1");
+        assertEquals(scan("[\"a\", \"b\", {", "$[1]", true), "b");
+    }
+
+    private static String scan(String document, String path, boolean scalarValue)
+            throws IOException
+    {
+        return toString(JsonExtract.extract(toSlice(document), JsonPathScanner.compile(path, scalarValue)));
+    }
+
+    private static String parse(String document, String path, boolean scalarValue)
+            throws IOException
+    {
+        try {
+            return toString(JsonExtract.extractInternal(toSlice(document), generateExtractor(path, scalarValue)));
+        }
+        catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static Slice toSlice(String value)
+    {
+        return Slices.wrappedBuffer(value.getBytes(Charsets.UTF_8));
+    }
+
+    private static String toString(Slice value)
+    {
+        return (value == null) ? null : value.toString(Charsets.UTF_8);
+    }
+}
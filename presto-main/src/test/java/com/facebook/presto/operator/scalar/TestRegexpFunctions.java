@@ -16,6 +16,7 @@ package com.facebook.presto.operator.scalar;
 import org.testng.annotations.Test;
 
 import static com.facebook.presto.operator.scalar.FunctionAssertions.assertFunction;
+import static com.facebook.presto.operator.scalar.FunctionAssertions.assertFunctionNull;
 
 public class TestRegexpFunctions
 {
@@ -31,6 +32,10 @@ public class TestRegexpFunctions
         assertFunction("REGEXP_LIKE('Hello', '^[a-z]+$')", false);
         assertFunction("REGEXP_LIKE('Hello', '^(?i)[a-z]+$')", true);
         assertFunction("REGEXP_LIKE('Hello', '^[a-zA-Z]+$')", true);
+
+        // multi byte characters match as a single character
+        assertFunction("REGEXP_LIKE('naïve café', 'caf.$')", true);
+        assertFunction("REGEXP_LIKE('naïve café', '^na.ve')", true);
     }
 
     @Test
@@ -45,6 +50,12 @@ public class TestRegexpFunctions
         assertFunction(
                 "REGEXP_REPLACE('call 555.123.4444 now', '(\\d{3})\\.(\\d{3}).(\\d{4})', '($1) $2-$3')",
                 "call (555) 123-4444 now");
+
+        assertFunction("REGEXP_REPLACE('abc', '', 'X')", "XaXbXcX");
+        assertFunction("REGEXP_REPLACE('baaac', 'a*', 'X')", "XbXXcX");
+        assertFunction("REGEXP_REPLACE('café café', 'é', 'e')", "cafe cafe");
+        assertFunction("REGEXP_REPLACE('abc', 'b', '\\$1')", "a$1c");
+        assertFunction("REGEXP_REPLACE('abc', 'x', 'y')", "abc");
     }
 
     @Test
@@ -52,5 +63,8 @@ public class TestRegexpFunctions
     {
         assertFunction("REGEXP_EXTRACT('Hello world bye', '\\b[a-z]([a-z]*)')", "world");
         assertFunction("REGEXP_EXTRACT('Hello world bye', '\\b[a-z]([a-z]*)', 1)", "orld");
+        assertFunction("REGEXP_EXTRACT('café olé', 'ol.')", "olé");
+        assertFunctionNull("REGEXP_EXTRACT('abc', 'a(x)?', 1)");
+        assertFunctionNull("REGEXP_EXTRACT('abc', 'x')");
     }
 }
@@ -27,6 +27,7 @@ import static com.facebook.presto.block.BlockAssertions.toValues;
 import static com.facebook.presto.serde.BlocksFileReader.readBlocks;
 import static com.facebook.presto.serde.BlocksFileWriter.writeBlocks;
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
+import static com.google.common.base.Charsets.UTF_8;
 import static org.testng.Assert.assertEquals;
 
 public class TestFileBlocksSerde
@@ -76,6 +77,9 @@ public class TestFileBlocksSerde
         assertEquals(stats.getRowCount(), 12);
         assertEquals(stats.getRunsCount(), 12);
         assertEquals(stats.getUniqueCount(), 4);
+        assertEquals(stats.getNullCount(), 0);
+        assertEquals(stats.getMin().getSlice(0).toString(UTF_8), "alice");
+        assertEquals(stats.getMax().getSlice(0).toString(UTF_8), "dave");
     }
 
     private static class DynamicSliceOutputSupplier
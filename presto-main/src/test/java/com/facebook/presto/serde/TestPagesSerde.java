@@ -16,16 +16,20 @@ package com.facebook.presto.serde;
 import com.facebook.presto.block.BlockBuilder;
 import com.facebook.presto.block.uncompressed.UncompressedBlock;
 import com.facebook.presto.operator.Page;
+import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import org.testng.annotations.Test;
 
 import java.util.Iterator;
 
 import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static com.facebook.presto.serde.PagesSerde.readCompressedPages;
 import static com.facebook.presto.serde.PagesSerde.readPages;
+import static com.facebook.presto.serde.PagesSerde.writeCompressedPages;
 import static com.facebook.presto.serde.PagesSerde.writePages;
 import static com.facebook.presto.tuple.TupleInfo.SINGLE_VARBINARY;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestPagesSerde
 {
@@ -48,4 +52,34 @@ public class TestPagesSerde
         assertPageEquals(pageIterator.next(), expectedPage);
         assertFalse(pageIterator.hasNext());
     }
+
+    @Test
+    public void testCompressedRoundTrip()
+    {
+        BlockBuilder blockBuilder = new BlockBuilder(SINGLE_VARBINARY);
+        for (int i = 0; i < 1000; i++) {
+            blockBuilder.append("alice");
+        }
+        UncompressedBlock repeatedBlock = blockBuilder.build();
+        Page compressiblePage = new Page(repeatedBlock, repeatedBlock);
+
+        // a tiny page does not compress, so it is written raw
+        UncompressedBlock singleBlock = new BlockBuilder(SINGLE_VARBINARY)
+                .append("bob")
+                .build();
+        Page smallPage = new Page(singleBlock, singleBlock);
+
+        DynamicSliceOutput rawOutput = new DynamicSliceOutput(1024);
+        writePages(rawOutput, compressiblePage, smallPage);
+
+        DynamicSliceOutput compressedOutput = new DynamicSliceOutput(1024);
+        writeCompressedPages(compressedOutput, ImmutableList.of(compressiblePage, smallPage, compressiblePage));
+        assertTrue(compressedOutput.size() < rawOutput.size());
+
+        Iterator<Page> pageIterator = readCompressedPages(compressedOutput.slice().getInput());
+        assertPageEquals(pageIterator.next(), compressiblePage);
+        assertPageEquals(pageIterator.next(), smallPage);
+        assertPageEquals(pageIterator.next(), compressiblePage);
+        assertFalse(pageIterator.hasNext());
+    }
 }
@@ -18,9 +18,11 @@ import com.facebook.presto.metadata.DatabaseShardManager;
 import com.facebook.presto.metadata.InMemoryNodeManager;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.metadata.MetadataUtil.TableMetadataBuilder;
+import com.facebook.presto.metadata.NativeColumnHandle;
 import com.facebook.presto.metadata.NativeMetadata;
 import com.facebook.presto.metadata.Node;
 import com.facebook.presto.metadata.NodeVersion;
+import com.facebook.presto.metadata.ShardColumnStats;
 import com.facebook.presto.metadata.ShardManager;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ColumnType;
@@ -35,7 +37,10 @@ import com.facebook.presto.sql.planner.Symbol;
 import com.facebook.presto.sql.tree.BooleanLiteral;
 import com.facebook.presto.sql.tree.ComparisonExpression;
 import com.facebook.presto.sql.tree.ComparisonExpression.Type;
+import com.facebook.presto.sql.tree.DoubleLiteral;
 import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.LogicalBinaryExpression;
+import com.facebook.presto.sql.tree.LongLiteral;
 import com.facebook.presto.sql.tree.QualifiedName;
 import com.facebook.presto.sql.tree.QualifiedNameReference;
 import com.facebook.presto.sql.tree.StringLiteral;
@@ -82,7 +87,12 @@ public class TestNativeSplitManager
     private TableHandle tableHandle;
     private ColumnHandle dsColumnHandle;
     private ColumnHandle fooColumnHandle;
+    private ColumnHandle barColumnHandle;
     private Map<Symbol, ColumnHandle> symbols;
+    private ShardManager shardManager;
+    private long shardId1;
+    private long shardId2;
+    private long shardId3;
 
     @BeforeMethod
     public void setup()
@@ -91,7 +101,7 @@ public class TestNativeSplitManager
         IDBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
         dummyHandle = dbi.open();
         dataDir = Files.createTempDir();
-        ShardManager shardManager = new DatabaseShardManager(dbi);
+        shardManager = new DatabaseShardManager(dbi);
         InMemoryNodeManager nodeManager = new InMemoryNodeManager();
 
         String nodeName = UUID.randomUUID().toString();
@@ -103,11 +113,12 @@ public class TestNativeSplitManager
         tableHandle = metadataManager.createTable("local", TEST_TABLE);
         dsColumnHandle = metadataManager.getColumnHandle(tableHandle, "ds").get();
         fooColumnHandle = metadataManager.getColumnHandle(tableHandle, "foo").get();
-        symbols = ImmutableMap.<Symbol, ColumnHandle>of(new Symbol("foo"), fooColumnHandle, new Symbol("ds"), dsColumnHandle);
+        barColumnHandle = metadataManager.getColumnHandle(tableHandle, "bar").get();
+        symbols = ImmutableMap.<Symbol, ColumnHandle>of(new Symbol("foo"), fooColumnHandle, new Symbol("ds"), dsColumnHandle, new Symbol("bar"), barColumnHandle);
 
-        long shardId1 = shardManager.allocateShard(tableHandle);
-        long shardId2 = shardManager.allocateShard(tableHandle);
-        long shardId3 = shardManager.allocateShard(tableHandle);
+        shardId1 = shardManager.allocateShard(tableHandle);
+        shardId2 = shardManager.allocateShard(tableHandle);
+        shardId3 = shardManager.allocateShard(tableHandle);
         long shardId4 = shardManager.allocateShard(tableHandle);
 
         shardManager.commitPartition(tableHandle, "ds=1", ImmutableList.<PartitionKey>of(new NativePartitionKey("ds=1", "ds", ColumnType.STRING, "1")), ImmutableMap.of(shardId1, nodeName,
@@ -178,4 +189,38 @@ public class TestNativeSplitManager
         // all splits found
         assertEquals(splits.size(), 4);
     }
+
+    @Test
+    public void testPruneColumnRange()
+    {
+        long barColumnId = ((NativeColumnHandle) barColumnHandle).getColumnId();
+        shardManager.addShardColumnStats(ImmutableList.of(
+                new ShardColumnStats(shardId1, barColumnId, LONG, 0, 0L, 9L),
+                new ShardColumnStats(shardId2, barColumnId, LONG, 0, 10L, 19L),
+                new ShardColumnStats(shardId3, barColumnId, LONG, 2, 20L, 29L)));
+
+        // bar >= 15. The first shard can not match, and the shard without stats is always read
+        Expression atLeast = new ComparisonExpression(Type.GREATER_THAN_OR_EQUAL, new QualifiedNameReference(new QualifiedName("bar")), new LongLiteral("15"));
+        DataSource dataSource = splitManager.getSplits(session, tableHandle, BooleanLiteral.TRUE_LITERAL, atLeast, Predicates.<Partition>alwaysTrue(), symbols);
+        assertEquals(ImmutableList.copyOf(dataSource.getSplits()).size(), 3);
+
+        // 19 < bar AND bar <= 20. Only the third shard and the shard without stats can match
+        Expression between = new LogicalBinaryExpression(LogicalBinaryExpression.Type.AND,
+                new ComparisonExpression(Type.LESS_THAN, new LongLiteral("19"), new QualifiedNameReference(new QualifiedName("bar"))),
+                new ComparisonExpression(Type.LESS_THAN_OR_EQUAL, new QualifiedNameReference(new QualifiedName("bar")), new LongLiteral("20")));
+        dataSource = splitManager.getSplits(session, tableHandle, BooleanLiteral.TRUE_LITERAL, between, Predicates.<Partition>alwaysTrue(), symbols);
+        assertEquals(ImmutableList.copyOf(dataSource.getSplits()).size(), 2);
+
+        // bar > 30 AND bar < 5. No row can match
+        Expression contradiction = new LogicalBinaryExpression(LogicalBinaryExpression.Type.AND,
+                new ComparisonExpression(Type.GREATER_THAN, new QualifiedNameReference(new QualifiedName("bar")), new LongLiteral("30")),
+                new ComparisonExpression(Type.LESS_THAN, new QualifiedNameReference(new QualifiedName("bar")), new LongLiteral("5")));
+        dataSource = splitManager.getSplits(session, tableHandle, BooleanLiteral.TRUE_LITERAL, contradiction, Predicates.<Partition>alwaysTrue(), symbols);
+        assertEquals(ImmutableList.copyOf(dataSource.getSplits()).size(), 0);
+
+        // a double literal is not compared with a bigint zone map
+        Expression mixed = new ComparisonExpression(Type.GREATER_THAN, new QualifiedNameReference(new QualifiedName("bar")), new DoubleLiteral("100.5"));
+        dataSource = splitManager.getSplits(session, tableHandle, BooleanLiteral.TRUE_LITERAL, mixed, Predicates.<Partition>alwaysTrue(), symbols);
+        assertEquals(ImmutableList.copyOf(dataSource.getSplits()).size(), 4);
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner;
+
+import com.facebook.presto.sql.planner.PlanFragment.OutputPartitioning;
+import com.facebook.presto.sql.planner.PlanFragment.PlanDistribution;
+import com.facebook.presto.sql.planner.plan.AggregationNode;
+import com.facebook.presto.sql.planner.plan.AggregationNode.Step;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.SinkNode;
+import com.facebook.presto.util.LocalQueryRunner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.util.LocalQueryRunner.createTpchLocalQueryRunner;
+import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static io.airlift.testing.Assertions.assertInstanceOf;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.fail;
+
+public class TestDistributedLogicalPlanner
+{
+    private static final String GROUP_BY_QUERY = "SELECT orderstatus, count(*) FROM orders GROUP BY orderstatus";
+    private static final String JOIN_QUERY = "SELECT o.orderkey, l.partkey FROM orders o JOIN lineitem l ON o.orderkey = l.orderkey";
+
+    private ExecutorService executor;
+    private LocalQueryRunner queryRunner;
+
+    @BeforeClass
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test"));
+        queryRunner = createTpchLocalQueryRunner(executor);
+    }
+
+    @AfterClass
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDistributedAggregation()
+    {
+        SubPlan plan = queryRunner.createSubPlans(GROUP_BY_QUERY, true, false);
+
+        // the final aggregation runs on every node, and reads the partial aggregation from an exchange
+        AggregationNode aggregation = assertAggregation(plan, PlanDistribution.FIXED);
+
+        // the partial results are hash partitioned on the group by keys
+        PlanFragment partial = getSourceFragment(plan, aggregation.getSource());
+        assertPartialAggregation(partial, OutputPartitioning.HASH);
+        assertEquals(partial.getPartitionBy(), aggregation.getGroupBy());
+    }
+
+    @Test
+    public void testSingleNodeFinalAggregation()
+    {
+        // all groups are merged by a single task
+        SubPlan plan = queryRunner.createSubPlans(GROUP_BY_QUERY, false, false);
+        AggregationNode aggregation = assertAggregation(plan, PlanDistribution.NONE);
+        assertPartialAggregation(getSourceFragment(plan, aggregation.getSource()), OutputPartitioning.NONE);
+
+        // a global aggregation has no keys to partition on
+        plan = queryRunner.createSubPlans("SELECT count(*) FROM orders", true, false);
+        aggregation = assertAggregation(plan, PlanDistribution.NONE);
+        assertPartialAggregation(getSourceFragment(plan, aggregation.getSource()), OutputPartitioning.NONE);
+    }
+
+    @Test
+    public void testPartitionedJoin()
+    {
+        SubPlan plan = queryRunner.createSubPlans(JOIN_QUERY, false, true);
+
+        // the join runs in its own fragment on every node, and reads both sides from exchanges
+        PlanFragment joinFragment = getOnlyFragmentWith(plan, JoinNode.class);
+        assertEquals(joinFragment.getDistribution(), PlanDistribution.FIXED);
+        JoinNode join = getOnlyNode(joinFragment.getRoot(), JoinNode.class);
+
+        // both sides are hash partitioned on their join keys
+        PlanFragment left = getSourceFragment(plan, join.getLeft());
+        assertHashPartitioned(left, Lists.transform(join.getCriteria(), JoinNode.EquiJoinClause.leftGetter()));
+        PlanFragment right = getSourceFragment(plan, join.getRight());
+        assertHashPartitioned(right, Lists.transform(join.getCriteria(), JoinNode.EquiJoinClause.rightGetter()));
+    }
+
+    @Test
+    public void testBroadcastJoin()
+    {
+        SubPlan plan = queryRunner.createSubPlans(JOIN_QUERY, false, false);
+
+        // the join runs with the scan of the left side, and every task receives the whole right side
+        PlanFragment joinFragment = getOnlyFragmentWith(plan, JoinNode.class);
+        assertEquals(joinFragment.getDistribution(), PlanDistribution.SOURCE);
+        JoinNode join = getOnlyNode(joinFragment.getRoot(), JoinNode.class);
+        assertFalse(join.getLeft() instanceof ExchangeNode);
+
+        PlanFragment right = getSourceFragment(plan, join.getRight());
+        assertEquals(right.getOutputPartitioning(), OutputPartitioning.NONE);
+    }
+
+    private static AggregationNode assertAggregation(SubPlan plan, PlanDistribution distribution)
+    {
+        PlanFragment fragment = getFinalAggregationFragment(plan);
+        assertEquals(fragment.getDistribution(), distribution);
+        return getOnlyNode(fragment.getRoot(), AggregationNode.class);
+    }
+
+    private static void assertPartialAggregation(PlanFragment fragment, OutputPartitioning outputPartitioning)
+    {
+        assertEquals(fragment.getDistribution(), PlanDistribution.SOURCE);
+        assertEquals(fragment.getOutputPartitioning(), outputPartitioning);
+
+        // the partial aggregation is the last step of the fragment
+        assertInstanceOf(fragment.getRoot(), SinkNode.class);
+        PlanNode partial = Iterables.getOnlyElement(fragment.getRoot().getSources());
+        assertInstanceOf(partial, AggregationNode.class);
+        assertEquals(((AggregationNode) partial).getStep(), Step.PARTIAL);
+    }
+
+    private static void assertHashPartitioned(PlanFragment fragment, List<Symbol> partitionBy)
+    {
+        assertEquals(fragment.getDistribution(), PlanDistribution.SOURCE);
+        assertInstanceOf(fragment.getRoot(), SinkNode.class);
+        assertEquals(fragment.getOutputPartitioning(), OutputPartitioning.HASH);
+        assertEquals(fragment.getPartitionBy(), ImmutableList.copyOf(partitionBy));
+    }
+
+    private static PlanFragment getSourceFragment(SubPlan plan, PlanNode exchange)
+    {
+        assertInstanceOf(exchange, ExchangeNode.class);
+        PlanFragmentId sourceFragmentId = Iterables.getOnlyElement(((ExchangeNode) exchange).getSourceFragmentIds());
+        for (PlanFragment fragment : plan.getAllFragments()) {
+            if (fragment.getId().equals(sourceFragmentId)) {
+                return fragment;
+            }
+        }
+        fail("No fragment " + sourceFragmentId);
+        return null;
+    }
+
+    private static PlanFragment getOnlyFragmentWith(SubPlan plan, Class<? extends PlanNode> type)
+    {
+        ImmutableList.Builder<PlanFragment> fragments = ImmutableList.builder();
+        for (PlanFragment fragment : plan.getAllFragments()) {
+            if (!findNodes(fragment.getRoot(), type).isEmpty()) {
+                fragments.add(fragment);
+            }
+        }
+        return Iterables.getOnlyElement(fragments.build());
+    }
+
+    private static PlanFragment getFinalAggregationFragment(SubPlan plan)
+    {
+        ImmutableList.Builder<PlanFragment> fragments = ImmutableList.builder();
+        for (PlanFragment fragment : plan.getAllFragments()) {
+            for (AggregationNode aggregation : findNodes(fragment.getRoot(), AggregationNode.class)) {
+                if (aggregation.getStep() == Step.FINAL) {
+                    fragments.add(fragment);
+                }
+            }
+        }
+        return Iterables.getOnlyElement(fragments.build());
+    }
+
+    private static <T extends PlanNode> T getOnlyNode(PlanNode root, Class<T> type)
+    {
+        return Iterables.getOnlyElement(findNodes(root, type));
+    }
+
+    private static <T extends PlanNode> List<T> findNodes(PlanNode node, Class<T> type)
+    {
+        ImmutableList.Builder<T> nodes = ImmutableList.builder();
+        if (type.isInstance(node)) {
+            nodes.add(type.cast(node));
+        }
+        for (PlanNode source : node.getSources()) {
+            nodes.addAll(findNodes(source, type));
+        }
+        return nodes.build();
+    }
+}
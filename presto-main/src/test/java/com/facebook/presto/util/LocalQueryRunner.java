@@ -198,24 +198,8 @@ public class LocalQueryRunner
 
     public List<Driver> createDrivers(@Language("SQL") String sql, OutputFactory outputFactory, TaskContext taskContext)
     {
-        Statement statement = SqlParser.createStatement(sql);
-
-        if (printPlan) {
-            assertFormattedSql(statement);
-        }
-
         PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
-        PlanOptimizersFactory planOptimizersFactory = new PlanOptimizersFactory(metadata);
-
-        QueryExplainer queryExplainer = new QueryExplainer(session, planOptimizersFactory.get(), metadata, new MockPeriodicImportManager(), new MockStorageManager());
-        Analyzer analyzer = new Analyzer(session, metadata, Optional.of(queryExplainer));
-
-        Analysis analysis = analyzer.analyze(statement);
-
-        Plan plan = new LogicalPlanner(session, planOptimizersFactory.get(), idAllocator, metadata, new MockPeriodicImportManager(), new MockStorageManager()).plan(analysis);
-        if (printPlan) {
-            System.out.println(PlanPrinter.textLogicalPlan(plan.getRoot(), plan.getTypes()));
-        }
+        Plan plan = createPlan(sql, idAllocator);
 
         SubPlan subplan = new DistributedLogicalPlanner(metadata, idAllocator).createSubplans(plan, true);
         assertTrue(subplan.getChildren().isEmpty(), "Expected subplan to have no children");
@@ -228,7 +212,8 @@ public class LocalQueryRunner
                 dataStreamProvider,
                 storageManager,
                 null,
-                compiler);
+                compiler,
+                executor);
 
         // plan query
         LocalExecutionPlan localExecutionPlan = executionPlanner.plan(session,
@@ -280,6 +265,39 @@ public class LocalQueryRunner
         return ImmutableList.copyOf(drivers);
     }
 
+    /**
+     * Plans the query for distributed execution, without running it.
+     */
+    public SubPlan createSubPlans(@Language("SQL") String sql, boolean distributedAggregations, boolean distributedJoins)
+    {
+        PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
+        Plan plan = createPlan(sql, idAllocator);
+
+        return new DistributedLogicalPlanner(metadata, idAllocator).createSubplans(plan, false, distributedAggregations, distributedJoins);
+    }
+
+    private Plan createPlan(@Language("SQL") String sql, PlanNodeIdAllocator idAllocator)
+    {
+        Statement statement = SqlParser.createStatement(sql);
+
+        if (printPlan) {
+            assertFormattedSql(statement);
+        }
+
+        PlanOptimizersFactory planOptimizersFactory = new PlanOptimizersFactory(metadata);
+
+        QueryExplainer queryExplainer = new QueryExplainer(session, planOptimizersFactory.get(), metadata, new MockPeriodicImportManager(), new MockStorageManager());
+        Analyzer analyzer = new Analyzer(session, metadata, Optional.of(queryExplainer));
+
+        Analysis analysis = analyzer.analyze(statement);
+
+        Plan plan = new LogicalPlanner(session, planOptimizersFactory.get(), idAllocator, metadata, new MockPeriodicImportManager(), new MockStorageManager()).plan(analysis);
+        if (printPlan) {
+            System.out.println(PlanPrinter.textLogicalPlan(plan.getRoot(), plan.getTypes()));
+        }
+        return plan;
+    }
+
     public static LocalQueryRunner createDualLocalQueryRunner(ExecutorService executor)
     {
         return createDualLocalQueryRunner(new Session("user", "test", DEFAULT_CATALOG, DEFAULT_SCHEMA, null, null), executor);
@@ -111,6 +111,7 @@ public class CoordinatorModule
 
         // shard management
         binder.bind(ShardManager.class).to(DatabaseShardManager.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(ShardManager.class).withGeneratedName();
         bindConfig(binder).to(ShardCleanerConfig.class);
         binder.bind(ShardCleaner.class).in(Scopes.SINGLETON);
         httpClientBinder(binder).bindHttpClient("shard-cleaner", ForShardCleaner.class);
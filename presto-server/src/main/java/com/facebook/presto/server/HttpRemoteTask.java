@@ -39,6 +39,7 @@ import com.facebook.presto.sql.planner.plan.PlanNode;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.util.SetThreadName;
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
@@ -91,10 +92,10 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.transform;
 import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
 import static io.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
-import static io.airlift.http.client.JsonBodyGenerator.jsonBodyGenerator;
 import static io.airlift.http.client.Request.Builder.prepareDelete;
 import static io.airlift.http.client.Request.Builder.prepareGet;
 import static io.airlift.http.client.Request.Builder.preparePost;
+import static io.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
 import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
 
 public class HttpRemoteTask
@@ -114,6 +115,10 @@ public class HttpRemoteTask
 
     private final StateMachine<TaskInfo> taskInfo;
 
+    // once the task exists on the worker, updates no longer carry the plan fragment
+    @GuardedBy("this")
+    private boolean taskCreated;
+
     @GuardedBy("this")
     private Future<?> currentRequest;
     @GuardedBy("this")
@@ -139,6 +144,7 @@ public class HttpRemoteTask
     private final Executor executor;
     private final JsonCodec<TaskInfo> taskInfoCodec;
     private final JsonCodec<TaskUpdateRequest> taskUpdateRequestCodec;
+    private final RemoteTaskStats stats;
     private final List<TupleInfo> tupleInfos;
     private final Map<PlanNodeId, OutputReceiver> outputReceivers;
 
@@ -164,7 +170,8 @@ public class HttpRemoteTask
             int maxConsecutiveErrorCount,
             Duration minErrorDuration,
             JsonCodec<TaskInfo> taskInfoCodec,
-            JsonCodec<TaskUpdateRequest> taskUpdateRequestCodec)
+            JsonCodec<TaskUpdateRequest> taskUpdateRequestCodec,
+            RemoteTaskStats stats)
     {
         checkNotNull(session, "session is null");
         checkNotNull(taskId, "taskId is null");
@@ -176,6 +183,7 @@ public class HttpRemoteTask
         checkNotNull(executor, "executor is null");
         checkNotNull(taskInfoCodec, "taskInfoCodec is null");
         checkNotNull(taskUpdateRequestCodec, "taskUpdateRequestCodec is null");
+        checkNotNull(stats, "stats is null");
 
         try (SetThreadName setThreadName = new SetThreadName("HttpRemoteTask-%s", taskId)) {
             this.taskId = taskId;
@@ -188,6 +196,7 @@ public class HttpRemoteTask
             this.executor = executor;
             this.taskInfoCodec = taskInfoCodec;
             this.taskUpdateRequestCodec = taskUpdateRequestCodec;
+            this.stats = stats;
             this.tupleInfos = planFragment.getTupleInfos();
             this.maxConsecutiveErrorCount = maxConsecutiveErrorCount;
             this.minErrorDuration = minErrorDuration;
@@ -204,7 +213,7 @@ public class HttpRemoteTask
                 @Override
                 public BufferInfo apply(String outputId)
                 {
-                    return new BufferInfo(outputId, false, 0, 0);
+                    return new BufferInfo(outputId, false, 0, 0, 0);
                 }
             }));
 
@@ -221,7 +230,7 @@ public class HttpRemoteTask
                     TaskState.PLANNED,
                     location,
                     DateTime.now(),
-                    new SharedBufferInfo(QueueState.OPEN, 0, 0, bufferStates),
+                    new SharedBufferInfo(QueueState.OPEN, 0, 0, 0, 0, bufferStates),
                     ImmutableSet.<PlanNodeId>of(),
                     taskStats,
                     ImmutableList.<FailureInfo>of(),
@@ -245,19 +254,29 @@ public class HttpRemoteTask
     }
 
     @Override
-    public synchronized void addSplit(Split split)
+    public void addSplit(Split split)
+    {
+        checkNotNull(split, "split is null");
+        addSplits(ImmutableList.of(split));
+    }
+
+    @Override
+    public synchronized void addSplits(List<Split> splits)
     {
         try (SetThreadName setThreadName = new SetThreadName("HttpRemoteTask-%s", taskId)) {
-            checkNotNull(split, "split is null");
+            checkNotNull(splits, "splits is null");
             checkState(!noMoreSplits, "noMoreSplits has already been set");
             checkState(planFragment.isPartitioned(), "Plan is not partitioned");
 
-            // only add pending split if not done
+            // only add pending splits if not done
             if (!getTaskInfo().getState().isDone()) {
-                pendingSplits.put(planFragment.getPartitionedSource(), new ScheduledSplit(nextSplitId.getAndIncrement(), split));
+                for (Split split : splits) {
+                    pendingSplits.put(planFragment.getPartitionedSource(), new ScheduledSplit(nextSplitId.getAndIncrement(), split));
+                }
                 needsUpdate.set(true);
             }
 
+            // the whole batch goes out in a single update
             scheduleUpdate();
         }
     }
@@ -420,19 +439,25 @@ public class HttpRemoteTask
             errorRequestRateLimiter.acquire();
         }
 
+        // sources only hold the splits the task has not acknowledged yet
         List<TaskSource> sources = getSources();
+        PlanFragment fragment = taskCreated ? null : planFragment;
         TaskUpdateRequest updateRequest = new TaskUpdateRequest(session,
-                planFragment,
+                fragment,
                 sources,
                 new OutputBuffers(outputIds, noMoreOutputIds));
 
+        long encodeStart = System.nanoTime();
+        byte[] json = taskUpdateRequestCodec.toJson(updateRequest).getBytes(Charsets.UTF_8);
+        stats.updateRequestEncoded(fragment != null, json.length, System.nanoTime() - encodeStart);
+
         Request request = preparePost()
                 .setUri(uriBuilderFrom(taskInfo.get().getSelf()).build())
                 .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.JSON_UTF_8.toString())
-                .setBodyGenerator(jsonBodyGenerator(taskUpdateRequestCodec, updateRequest))
+                .setBodyGenerator(createStaticBodyGenerator(json))
                 .build();
 
-        ListenableFuture<JsonResponse<TaskInfo>> future = httpClient.executeAsync(request, createFullJsonResponseHandler(taskInfoCodec));
+        ListenableFuture<JsonResponse<TaskInfo>> future = httpClient.executeAsync(request, stats.timeTaskInfoResponse(createFullJsonResponseHandler(taskInfoCodec)));
         currentRequest = future;
         currentRequestStartNanos = System.nanoTime();
 
@@ -526,6 +551,7 @@ public class HttpRemoteTask
     {
         try (SetThreadName setThreadName = new SetThreadName("HttpRemoteTask-%s", taskId)) {
             updateTaskInfo(newValue);
+            taskCreated = true;
             lastSuccessfulRequest.set(System.nanoTime());
             errorCount.set(0);
             errorsSinceLastSuccess.clear();
@@ -723,7 +749,7 @@ public class HttpRemoteTask
                         .setHeader(PrestoHeaders.PRESTO_MAX_WAIT, "200ms")
                         .build();
 
-                future = httpClient.executeAsync(request, createFullJsonResponseHandler(taskInfoCodec));
+                future = httpClient.executeAsync(request, stats.timeTaskInfoResponse(createFullJsonResponseHandler(taskInfoCodec)));
                 Futures.addCallback(future, new SimpleHttpResponseHandler<>(this, request.getUri()), executor);
             }
         }
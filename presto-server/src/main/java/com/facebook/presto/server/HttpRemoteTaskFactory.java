@@ -56,6 +56,7 @@ public class HttpRemoteTaskFactory
     private final Duration minErrorDuration;
     private final ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("remote-task-callback-%d"));
     private final ThreadPoolExecutorMBean executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) executor);
+    private final RemoteTaskStats stats = new RemoteTaskStats();
 
     @Inject
     public HttpRemoteTaskFactory(QueryManagerConfig config,
@@ -79,6 +80,13 @@ public class HttpRemoteTaskFactory
         return executorMBean;
     }
 
+    @Managed
+    @Nested
+    public RemoteTaskStats getStats()
+    {
+        return stats;
+    }
+
     @Override
     public RemoteTask createRemoteTask(Session session,
             TaskId taskId,
@@ -103,7 +111,8 @@ public class HttpRemoteTaskFactory
                 maxConsecutiveErrorCount,
                 minErrorDuration,
                 taskInfoCodec,
-                taskUpdateRequestCodec
+                taskUpdateRequestCodec,
+                stats
         );
     }
 }
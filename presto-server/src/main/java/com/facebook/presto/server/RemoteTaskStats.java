@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.DistributionStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cost of the json exchanged with the remote tasks, as seen by the coordinator.
+ * Times are in nanoseconds.
+ */
+public class RemoteTaskStats
+{
+    private final CounterStat updateRequests = new CounterStat();
+    private final CounterStat updateRequestFragments = new CounterStat();
+    private final DistributionStat updateRequestJsonBytes = new DistributionStat();
+    private final DistributionStat updateRequestEncodeTime = new DistributionStat();
+    private final DistributionStat taskInfoResponseTime = new DistributionStat();
+
+    @Managed
+    @Nested
+    public CounterStat getUpdateRequests()
+    {
+        return updateRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getUpdateRequestFragments()
+    {
+        return updateRequestFragments;
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getUpdateRequestJsonBytes()
+    {
+        return updateRequestJsonBytes;
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getUpdateRequestEncodeTime()
+    {
+        return updateRequestEncodeTime;
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getTaskInfoResponseTime()
+    {
+        return taskInfoResponseTime;
+    }
+
+    public void updateRequestEncoded(boolean hasFragment, long jsonBytes, long encodeNanos)
+    {
+        updateRequests.update(1);
+        if (hasFragment) {
+            updateRequestFragments.update(1);
+        }
+        updateRequestJsonBytes.add(jsonBytes);
+        updateRequestEncodeTime.add(encodeNanos);
+    }
+
+    /**
+     * Wraps a handler of task info responses, so the time to read and decode them is recorded.
+     */
+    public <T, E extends Exception> ResponseHandler<T, E> timeTaskInfoResponse(final ResponseHandler<T, E> handler)
+    {
+        checkNotNull(handler, "handler is null");
+        return new ResponseHandler<T, E>()
+        {
+            @Override
+            public T handleException(Request request, Exception exception)
+                    throws E
+            {
+                return handler.handleException(request, exception);
+            }
+
+            @Override
+            public T handle(Request request, Response response)
+                    throws E
+            {
+                long start = System.nanoTime();
+                try {
+                    return handler.handle(request, response);
+                }
+                finally {
+                    taskInfoResponseTime.add(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+}
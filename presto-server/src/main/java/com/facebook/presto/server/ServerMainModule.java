@@ -51,6 +51,7 @@ import com.facebook.presto.operator.ExchangeClient;
 import com.facebook.presto.operator.ExchangeClientConfig;
 import com.facebook.presto.operator.ExchangeClientFactory;
 import com.facebook.presto.operator.ForExchange;
+import com.facebook.presto.operator.ForHashBuild;
 import com.facebook.presto.operator.ForScheduler;
 import com.facebook.presto.spi.ConnectorFactory;
 import com.facebook.presto.spi.Split;
@@ -143,6 +144,7 @@ public class ServerMainModule
         // execution
         binder.bind(LocationFactory.class).to(HttpLocationFactory.class).in(Scopes.SINGLETON);
         binder.bind(RemoteTaskFactory.class).to(HttpRemoteTaskFactory.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(RemoteTaskFactory.class).withGeneratedName();
         httpClientBinder(binder).bindAsyncHttpClient("scheduler", ForScheduler.class).withTracing();
 
         // local storage manager
@@ -241,6 +243,14 @@ public class ServerMainModule
         return Executors.newCachedThreadPool(Threads.daemonThreadsNamed("exchange-callback-%s"));
     }
 
+    @Provides
+    @Singleton
+    @ForHashBuild
+    public Executor createHashBuildExecutor(TaskManagerConfig config)
+    {
+        return Executors.newFixedThreadPool(config.getMaxHashBuildThreads(), Threads.daemonThreadsNamed("hash-build-%s"));
+    }
+
     @Provides
     @Singleton
     @ForLocalStorageManager
@@ -14,7 +14,10 @@
 package com.facebook.presto.server;
 
 import com.facebook.presto.block.BlockCursor;
+import com.facebook.presto.client.BinaryResultsCodec;
+import com.facebook.presto.client.ClientSession;
 import com.facebook.presto.client.Column;
+import com.facebook.presto.client.ColumnarData;
 import com.facebook.presto.client.FailureInfo;
 import com.facebook.presto.client.QueryError;
 import com.facebook.presto.client.QueryResults;
@@ -35,16 +38,19 @@ import com.facebook.presto.sql.analyzer.Session;
 import com.facebook.presto.tuple.TupleInfo;
 import com.facebook.presto.tuple.TupleInfo.Type;
 import com.facebook.presto.util.IterableTransformer;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
+import io.airlift.json.JsonCodec;
 import io.airlift.log.Logger;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
@@ -64,17 +70,22 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -85,7 +96,9 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CATALOG;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SCHEMA;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_SESSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_SOURCE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_TARGET_RESULT_SIZE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_USER;
 import static com.facebook.presto.execution.QueryInfo.queryIdGetter;
 import static com.facebook.presto.execution.StageInfo.getAllStages;
@@ -109,18 +122,21 @@ public class StatementResource
     private static final Duration MAX_WAIT_TIME = new Duration(1, TimeUnit.SECONDS);
     private static final Ordering<Comparable<Duration>> WAIT_ORDERING = Ordering.natural().nullsLast();
     private static final long DESIRED_RESULT_BYTES = new DataSize(1, MEGABYTE).toBytes();
+    private static final long MAX_RESULT_BYTES = new DataSize(16, MEGABYTE).toBytes();
 
     private final QueryManager queryManager;
     private final Supplier<ExchangeClient> exchangeClientSupplier;
+    private final BinaryResultsCodec binaryResultsCodec;
 
     private final ConcurrentMap<QueryId, Query> queries = new ConcurrentHashMap<>();
     private final ScheduledExecutorService queryPurger = Executors.newSingleThreadScheduledExecutor(threadsNamed("query-purger-%d"));
 
     @Inject
-    public StatementResource(QueryManager queryManager, Supplier<ExchangeClient> exchangeClientSupplier)
+    public StatementResource(QueryManager queryManager, Supplier<ExchangeClient> exchangeClientSupplier, JsonCodec<QueryResults> queryResultsCodec)
     {
         this.queryManager = checkNotNull(queryManager, "queryManager is null");
         this.exchangeClientSupplier = checkNotNull(exchangeClientSupplier, "exchangeClientSupplier is null");
+        this.binaryResultsCodec = new BinaryResultsCodec(checkNotNull(queryResultsCodec, "queryResultsCodec is null"));
 
         queryPurger.scheduleWithFixedDelay(new PurgeQueriesRunnable(queries.keySet(), queryManager), 200, 200, TimeUnit.MILLISECONDS);
     }
@@ -139,6 +155,7 @@ public class StatementResource
             @HeaderParam(PRESTO_SOURCE) String source,
             @HeaderParam(PRESTO_CATALOG) String catalog,
             @HeaderParam(PRESTO_SCHEMA) String schema,
+            @HeaderParam(PRESTO_SESSION) List<String> sessionProperties,
             @HeaderParam(USER_AGENT) String userAgent,
             @Context HttpServletRequest requestContext,
             @Context UriInfo uriInfo)
@@ -151,33 +168,53 @@ public class StatementResource
 
         String remoteUserAddress = requestContext.getRemoteAddr();
 
-        Session session = new Session(user, source, catalog, schema, remoteUserAddress, userAgent);
+        Session session = new Session(user, source, catalog, schema, remoteUserAddress, userAgent, parseSessionProperties(sessionProperties));
         ExchangeClient exchangeClient = exchangeClientSupplier.get();
         Query query = new Query(session, statement, queryManager, exchangeClient);
         queries.put(query.getQueryId(), query);
-        return Response.ok(query.getNextResults(uriInfo, new Duration(1, TimeUnit.MILLISECONDS))).build();
+        return Response.ok(query.getNextResults(uriInfo, new Duration(1, TimeUnit.MILLISECONDS), DESIRED_RESULT_BYTES)).build();
+    }
+
+    private static Map<String, String> parseSessionProperties(List<String> sessionProperties)
+    {
+        if (sessionProperties == null) {
+            return ImmutableMap.of();
+        }
+        try {
+            return ClientSession.parseProperties(sessionProperties);
+        }
+        catch (IllegalArgumentException e) {
+            throw badRequest(format("Invalid %s header: %s", PRESTO_SESSION, e.getMessage()));
+        }
     }
 
     static void assertRequest(boolean expression, String format, Object... args)
     {
         if (!expression) {
-            Response request = Response
-                    .status(Status.BAD_REQUEST)
-                    .type(MediaType.TEXT_PLAIN)
-                    .entity(format(format, args))
-                    .build();
-            throw new WebApplicationException(request);
+            throw badRequest(format(format, args));
         }
     }
 
+    private static WebApplicationException badRequest(String message)
+    {
+        Response request = Response
+                .status(Status.BAD_REQUEST)
+                .type(MediaType.TEXT_PLAIN)
+                .entity(message)
+                .build();
+        return new WebApplicationException(request);
+    }
+
     @GET
     @Path("{queryId}/{token}")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, BinaryResultsCodec.MEDIA_TYPE})
     public Response getQueryResults(
             @PathParam("queryId") QueryId queryId,
             @PathParam("token") long token,
             @QueryParam("maxWait") Duration maxWait,
-            @Context UriInfo uriInfo)
+            @HeaderParam(PRESTO_TARGET_RESULT_SIZE) DataSize targetResultSize,
+            @Context UriInfo uriInfo,
+            @Context HttpHeaders httpHeaders)
             throws InterruptedException
     {
         Query query = queries.get(queryId);
@@ -186,7 +223,100 @@ public class StatementResource
         }
 
         Duration wait = WAIT_ORDERING.min(MAX_WAIT_TIME, maxWait);
-        return Response.ok(query.getResults(token, uriInfo, wait)).build();
+        long targetResultBytes = DESIRED_RESULT_BYTES;
+        if (targetResultSize != null) {
+            // clients pulling large results ask for more data per request, up to a limit
+            targetResultBytes = Math.max(1, Math.min(targetResultSize.toBytes(), MAX_RESULT_BYTES));
+        }
+
+        if (!prefersBinaryResults(httpHeaders.getAcceptableMediaTypes())) {
+            return Response.ok(query.getResults(token, uriInfo, wait, targetResultBytes), MediaType.APPLICATION_JSON_TYPE).build();
+        }
+
+        // the results and the pages behind them must be from the same request
+        final QueryResults results;
+        final List<Page> pages;
+        synchronized (query) {
+            results = query.getResults(token, uriInfo, wait, targetResultBytes);
+            pages = query.getLastPages();
+        }
+
+        StreamingOutput output = new StreamingOutput()
+        {
+            @Override
+            public void write(OutputStream outputStream)
+                    throws IOException
+            {
+                ColumnarData data = null;
+                if (pages != null) {
+                    data = toColumnarData(results.getColumns(), pages);
+                }
+                else if (results.getData() != null) {
+                    data = ColumnarData.fromRows(results.getColumns(), results.getData());
+                }
+                binaryResultsCodec.write(results, data, outputStream);
+            }
+        };
+        return Response.ok(output, BinaryResultsCodec.MEDIA_TYPE).build();
+    }
+
+    /**
+     * @param acceptableTypes the acceptable types of the request, sorted by preference
+     */
+    static boolean prefersBinaryResults(List<MediaType> acceptableTypes)
+    {
+        // clients that do not ask for the binary format get json
+        if (acceptableTypes.isEmpty()) {
+            return false;
+        }
+        MediaType preferred = acceptableTypes.get(0);
+        return !preferred.isWildcardType() && !preferred.isWildcardSubtype() && preferred.isCompatible(MediaType.valueOf(BinaryResultsCodec.MEDIA_TYPE));
+    }
+
+    /**
+     * Copies the values of the pages straight into columns, without creating a row object per row.
+     */
+    private static ColumnarData toColumnarData(List<Column> columns, List<Page> pages)
+    {
+        ColumnarData.Builder builder = new ColumnarData.Builder(columns);
+        for (Page page : pages) {
+            int column = 0;
+            for (int channel = 0; channel < page.getChannelCount(); channel++) {
+                BlockCursor cursor = page.getBlock(channel).cursor();
+                List<Type> types = cursor.getTupleInfo().getTypes();
+                while (cursor.advanceNextPosition()) {
+                    for (int field = 0; field < types.size(); field++) {
+                        appendValue(builder, column + field, cursor, field, types.get(field));
+                    }
+                }
+                column += types.size();
+            }
+        }
+        return builder.build();
+    }
+
+    private static void appendValue(ColumnarData.Builder builder, int column, BlockCursor cursor, int field, Type type)
+    {
+        if (cursor.isNull(field)) {
+            builder.appendNull(column);
+            return;
+        }
+        switch (type) {
+            case FIXED_INT_64:
+                builder.appendLong(column, cursor.getLong(field));
+                break;
+            case DOUBLE:
+                builder.appendDouble(column, cursor.getDouble(field));
+                break;
+            case BOOLEAN:
+                builder.appendBoolean(column, cursor.getBoolean(field));
+                break;
+            case VARIABLE_BINARY:
+                builder.appendUtf8(column, cursor.getSlice(field).getBytes());
+                break;
+            default:
+                throw new IllegalArgumentException("unhandled type: " + type);
+        }
     }
 
     @DELETE
@@ -216,6 +346,9 @@ public class StatementResource
         @GuardedBy("this")
         private QueryResults lastResult;
 
+        @GuardedBy("this")
+        private List<Page> lastPages;
+
         @GuardedBy("this")
         private String lastResultPath;
 
@@ -250,7 +383,7 @@ public class StatementResource
             return queryId;
         }
 
-        public synchronized QueryResults getResults(long token, UriInfo uriInfo, Duration maxWaitTime)
+        public synchronized QueryResults getResults(long token, UriInfo uriInfo, Duration maxWaitTime, long targetResultBytes)
                 throws InterruptedException
         {
             // is the a repeated request for the last results?
@@ -271,13 +404,33 @@ public class StatementResource
                 throw new WebApplicationException(Status.NOT_FOUND);
             }
 
-            return getNextResults(uriInfo, maxWaitTime);
+            return getNextResults(uriInfo, maxWaitTime, targetResultBytes);
         }
 
-        public synchronized QueryResults getNextResults(UriInfo uriInfo, Duration maxWaitTime)
+        /**
+         * Returns the pages behind the data of the last results, or null if the last
+         * results have no data or their data did not come from pages.
+         */
+        public synchronized List<Page> getLastPages()
+        {
+            return lastPages;
+        }
+
+        public synchronized QueryResults getNextResults(UriInfo uriInfo, Duration maxWaitTime, long targetResultBytes)
                 throws InterruptedException
         {
-            Iterable<List<Object>> data = getData(maxWaitTime);
+            List<Page> pages = getData(maxWaitTime, targetResultBytes);
+            Iterable<List<Object>> data = null;
+            if (pages != null) {
+                data = Iterables.concat(Lists.transform(pages, new Function<Page, Iterable<List<Object>>>()
+                {
+                    @Override
+                    public Iterable<List<Object>> apply(Page page)
+                    {
+                        return new RowIterable(page);
+                    }
+                }));
+            }
 
             // get the query info before returning
             // force update if query manager is closed
@@ -306,6 +459,7 @@ public class StatementResource
                     // TODO: add support to the API for non-query statements.
                     columns = ImmutableList.of(new Column("result", "varchar"));
                     data = ImmutableSet.<List<Object>>of(ImmutableList.<Object>of("true"));
+                    pages = null;
                 }
             }
 
@@ -334,10 +488,11 @@ public class StatementResource
                 lastResultPath = null;
             }
             lastResult = queryResults;
+            lastPages = pages;
             return queryResults;
         }
 
-        private synchronized Iterable<List<Object>> getData(Duration maxWait)
+        private synchronized List<Page> getData(Duration maxWait, long targetResultBytes)
                 throws InterruptedException
         {
             // wait for query to start
@@ -358,16 +513,16 @@ public class StatementResource
 
             updateExchangeClient(queryInfo.getOutputStage());
 
-            ImmutableList.Builder<RowIterable> pages = ImmutableList.builder();
-            // wait up to max wait for data to arrive; then try to return at least DESIRED_RESULT_BYTES
-            int bytes = 0;
-            while (bytes < DESIRED_RESULT_BYTES) {
+            ImmutableList.Builder<Page> pages = ImmutableList.builder();
+            // wait up to max wait for data to arrive; then try to return at least the target bytes
+            long bytes = 0;
+            while (bytes < targetResultBytes) {
                 Page page = exchangeClient.getNextPage(maxWait);
                 if (page == null) {
                     break;
                 }
                 bytes += page.getDataSize().toBytes();
-                pages.add(new RowIterable(page));
+                pages.add(page);
 
                 // only wait on first call
                 maxWait = new Duration(0, TimeUnit.MILLISECONDS);
@@ -377,7 +532,7 @@ public class StatementResource
                 return null;
             }
 
-            return Iterables.concat(pages.build());
+            return pages.build();
         }
 
         private static boolean isQueryStarted(QueryInfo queryInfo)
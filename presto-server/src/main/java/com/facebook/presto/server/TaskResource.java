@@ -48,6 +48,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CURRENT_STATE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_SIZE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_SEQUENCE_ID;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -143,15 +144,21 @@ public class TaskResource
 
     @GET
     @Path("{taskId}/results/{outputId}/{pageSequenceId}")
-    @Produces(PrestoMediaTypes.PRESTO_PAGES)
+    @Produces({PrestoMediaTypes.PRESTO_PAGES, PrestoMediaTypes.PRESTO_COMPRESSED_PAGES})
     public Response getResults(@PathParam("taskId") TaskId taskId,
             @PathParam("outputId") String outputId,
-            @PathParam("pageSequenceId") long pageSequenceId)
+            @PathParam("pageSequenceId") long pageSequenceId,
+            @HeaderParam(PRESTO_MAX_SIZE) DataSize maxSize)
             throws InterruptedException
     {
         checkNotNull(taskId, "taskId is null");
         checkNotNull(outputId, "outputId is null");
 
+        // the consumer advertises how many bytes it has room for
+        if (maxSize == null || maxSize.toBytes() <= 0) {
+            maxSize = DEFAULT_MAX_SIZE;
+        }
+
         long remainingNanos = DEFAULT_MAX_WAIT_TIME.roundTo(NANOSECONDS);
         long start = System.nanoTime();
         long end = start + remainingNanos;
@@ -160,7 +167,7 @@ public class TaskResource
         while (remainingNanos > 0) {
             // todo we need a much better way to determine if a task is unknown (e.g. not scheduled yet), done, or there is current no more data
             try {
-                BufferResult result = taskManager.getTaskResults(taskId, outputId, pageSequenceId, DEFAULT_MAX_SIZE, new Duration(remainingNanos, NANOSECONDS));
+                BufferResult result = taskManager.getTaskResults(taskId, outputId, pageSequenceId, maxSize, new Duration(remainingNanos, NANOSECONDS));
                 if (!result.isEmpty()) {
                     GenericEntity<?> entity = new GenericEntity<>(result.getElements(), new TypeToken<List<Page>>() {}.getType());
                     return Response.ok(entity).header(PRESTO_PAGE_SEQUENCE_ID, result.getStartingSequenceId()).build();
@@ -23,11 +23,15 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
 
 public class TaskUpdateRequest
 {
     private final Session session;
+    // only needed to create the task, so it is left out once the task has acknowledged an update
+    @Nullable
     private final PlanFragment fragment;
     private final List<TaskSource> sources;
     private final OutputBuffers outputIds;
@@ -35,12 +39,11 @@ public class TaskUpdateRequest
     @JsonCreator
     public TaskUpdateRequest(
             @JsonProperty("session") Session session,
-            @JsonProperty("fragment") PlanFragment fragment,
+            @JsonProperty("fragment") @Nullable PlanFragment fragment,
             @JsonProperty("sources") List<TaskSource> sources,
             @JsonProperty("outputIds") OutputBuffers outputIds)
     {
         Preconditions.checkNotNull(session, "session is null");
-        Preconditions.checkNotNull(fragment, "fragment is null");
         Preconditions.checkNotNull(sources, "sources is null");
         Preconditions.checkNotNull(outputIds, "outputIds is null");
 
@@ -56,6 +59,7 @@ public class TaskUpdateRequest
         return session;
     }
 
+    @Nullable
     @JsonProperty
     public PlanFragment getFragment()
     {
@@ -0,0 +1,262 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.facebook.presto.client.FailureInfo;
+import com.facebook.presto.execution.BufferInfo;
+import com.facebook.presto.execution.SharedBuffer.QueueState;
+import com.facebook.presto.execution.SharedBufferInfo;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskInfo;
+import com.facebook.presto.execution.TaskState;
+import com.facebook.presto.metadata.Node;
+import com.facebook.presto.metadata.NodeVersion;
+import com.facebook.presto.operator.TaskContext;
+import com.facebook.presto.operator.TaskStats;
+import com.facebook.presto.sql.analyzer.Session;
+import com.facebook.presto.sql.analyzer.Type;
+import com.facebook.presto.sql.planner.OutputReceiver;
+import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.MediaType;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.json.JsonCodec;
+import io.airlift.units.Duration;
+import org.joda.time.DateTime;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
+import static com.facebook.presto.util.Threads.daemonThreadsNamed;
+import static io.airlift.http.client.testing.TestingResponse.contentType;
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestHttpRemoteTask
+{
+    private static final JsonCodec<TaskInfo> TASK_INFO_CODEC = jsonCodec(TaskInfo.class);
+    private static final JsonCodec<TaskUpdateRequest> TASK_UPDATE_REQUEST_CODEC = jsonCodec(TaskUpdateRequest.class);
+
+    private final TaskId taskId = new TaskId("query", "stage", "task");
+    private final Session session = new Session("user", "test", "default", "default", "test", "test");
+
+    private ExecutorService executor;
+    private RemoteTaskStats stats;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-%d"));
+        stats = new RemoteTaskStats();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testUpdateAfterCreateHasNoFragment()
+            throws Exception
+    {
+        TestingTaskResource taskResource = new TestingTaskResource(0);
+        HttpRemoteTask remoteTask = createRemoteTask(taskResource);
+        try {
+            remoteTask.start();
+            assertNotNull(taskResource.takeUpdate().getFragment());
+            waitForRunning(remoteTask);
+
+            remoteTask.addOutputBuffers(ImmutableSet.of("out"), true);
+            TaskUpdateRequest update = taskResource.takeUpdate();
+            assertNull(update.getFragment());
+            assertEquals(update.getOutputIds().getBufferIds(), ImmutableSet.of("out"));
+
+            assertEquals(stats.getUpdateRequests().getTotalCount(), 2);
+            assertEquals(stats.getUpdateRequestFragments().getTotalCount(), 1);
+            assertEquals(stats.getUpdateRequestJsonBytes().getAllTime().getCount(), 2.0);
+            assertEquals(stats.getUpdateRequestEncodeTime().getAllTime().getCount(), 2.0);
+            assertTrue(stats.getTaskInfoResponseTime().getAllTime().getCount() >= 1.0);
+        }
+        finally {
+            remoteTask.cancel();
+        }
+    }
+
+    @Test
+    public void testFailedCreateResendsFragment()
+            throws Exception
+    {
+        TestingTaskResource taskResource = new TestingTaskResource(1);
+        HttpRemoteTask remoteTask = createRemoteTask(taskResource);
+        try {
+            remoteTask.start();
+
+            // the worker did not create the task, so the retry must carry the fragment again
+            assertNotNull(taskResource.takeUpdate().getFragment());
+            assertNotNull(taskResource.takeUpdate().getFragment());
+            waitForRunning(remoteTask);
+
+            remoteTask.addOutputBuffers(ImmutableSet.of("out"), true);
+            assertNull(taskResource.takeUpdate().getFragment());
+
+            assertEquals(stats.getUpdateRequests().getTotalCount(), 3);
+            assertEquals(stats.getUpdateRequestFragments().getTotalCount(), 2);
+        }
+        finally {
+            remoteTask.cancel();
+        }
+    }
+
+    private HttpRemoteTask createRemoteTask(TestingTaskResource taskResource)
+    {
+        Symbol symbol = new Symbol("column");
+        PlanFragment planFragment = new PlanFragment(new PlanFragmentId("fragment"),
+                null,
+                ImmutableMap.<Symbol, Type>of(symbol, Type.BIGINT),
+                new ExchangeNode(new PlanNodeId("exchange"), new PlanFragmentId("source"), ImmutableList.of(symbol)));
+
+        URI location = URI.create("http://localhost:8080/v1/task/" + taskId);
+        return new HttpRemoteTask(session,
+                taskId,
+                new Node("node", URI.create("http://localhost:8080"), NodeVersion.UNKNOWN),
+                location,
+                planFragment,
+                null,
+                ImmutableMap.<PlanNodeId, OutputReceiver>of(),
+                ImmutableMultimap.<PlanNodeId, URI>of(),
+                ImmutableSet.<String>of(),
+                new TestingHttpClient(taskResource, executor),
+                executor,
+                10,
+                new Duration(1, TimeUnit.MINUTES),
+                TASK_INFO_CODEC,
+                TASK_UPDATE_REQUEST_CODEC,
+                stats);
+    }
+
+    private static void waitForRunning(HttpRemoteTask remoteTask)
+            throws InterruptedException
+    {
+        long start = System.nanoTime();
+        while (remoteTask.getTaskInfo().getState() != TaskState.RUNNING) {
+            assertTrue(Duration.nanosSince(start).compareTo(new Duration(10, TimeUnit.SECONDS)) < 0, "task is not running");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Stands in for the task resource of a worker. The first update requests are
+     * rejected as if the worker was unavailable.
+     */
+    private class TestingTaskResource
+            implements Function<Request, Response>
+    {
+        private final AtomicInteger failedUpdates;
+        private final AtomicLong version = new AtomicLong(TaskInfo.STARTING_VERSION);
+        private final BlockingQueue<TaskUpdateRequest> updates = new LinkedBlockingQueue<>();
+        private final TaskStats taskStats = new TaskContext(taskId, executor, session).getTaskStats();
+
+        private TestingTaskResource(int failedUpdates)
+        {
+            this.failedUpdates = new AtomicInteger(failedUpdates);
+        }
+
+        public TaskUpdateRequest takeUpdate()
+                throws InterruptedException
+        {
+            TaskUpdateRequest update = updates.poll(10, TimeUnit.SECONDS);
+            assertNotNull(update, "no update request");
+            return update;
+        }
+
+        @Override
+        public Response apply(Request request)
+        {
+            if (request.getMethod().equals("DELETE")) {
+                return new TestingResponse(HttpStatus.NO_CONTENT, ImmutableListMultimap.<String, String>of(), new byte[0]);
+            }
+
+            if (request.getMethod().equals("POST")) {
+                updates.add(TASK_UPDATE_REQUEST_CODEC.fromJson(readBody(request)));
+                if (failedUpdates.getAndDecrement() > 0) {
+                    return new TestingResponse(HttpStatus.SERVICE_UNAVAILABLE, ImmutableListMultimap.<String, String>of(), new byte[0]);
+                }
+            }
+            else {
+                // long poll of the task info, like the real resource
+                try {
+                    Thread.sleep(Duration.valueOf(request.getHeader(PRESTO_MAX_WAIT)).toMillis());
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+
+            TaskInfo taskInfo = new TaskInfo(taskId,
+                    version.getAndIncrement(),
+                    TaskState.RUNNING,
+                    request.getUri(),
+                    DateTime.now(),
+                    new SharedBufferInfo(QueueState.OPEN, 0, 0, 0, 0, ImmutableList.<BufferInfo>of()),
+                    ImmutableSet.<PlanNodeId>of(),
+                    taskStats,
+                    ImmutableList.<FailureInfo>of(),
+                    ImmutableMap.<PlanNodeId, Set<?>>of());
+            return new TestingResponse(HttpStatus.OK, contentType(MediaType.JSON_UTF_8), TASK_INFO_CODEC.toJson(taskInfo).getBytes(Charsets.UTF_8));
+        }
+
+        private String readBody(Request request)
+        {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                request.getBodyGenerator().write(out);
+                return new String(out.toByteArray(), Charsets.UTF_8);
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
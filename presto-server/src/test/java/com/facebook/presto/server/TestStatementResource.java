@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.MediaType;
+
+import static com.facebook.presto.server.StatementResource.prefersBinaryResults;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestStatementResource
+{
+    private static final MediaType BINARY = new MediaType("application", "x-presto-binary-results");
+
+    @Test
+    public void testPrefersBinaryResults()
+    {
+        assertTrue(prefersBinaryResults(ImmutableList.of(BINARY)));
+        assertTrue(prefersBinaryResults(ImmutableList.of(BINARY, MediaType.APPLICATION_JSON_TYPE)));
+    }
+
+    @Test
+    public void testPrefersJsonResults()
+    {
+        // older clients send no accept header, or a wildcard
+        assertFalse(prefersBinaryResults(ImmutableList.<MediaType>of()));
+        assertFalse(prefersBinaryResults(ImmutableList.of(MediaType.WILDCARD_TYPE)));
+        assertFalse(prefersBinaryResults(ImmutableList.of(new MediaType("application", MediaType.MEDIA_TYPE_WILDCARD))));
+
+        assertFalse(prefersBinaryResults(ImmutableList.of(MediaType.APPLICATION_JSON_TYPE)));
+        assertFalse(prefersBinaryResults(ImmutableList.of(MediaType.APPLICATION_JSON_TYPE, BINARY)));
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+/**
+ * A record cursor that can also produce many rows at once, one {@link ColumnBatch} per
+ * field.  The engine reads batched cursors a batch at a time and turns the batches into
+ * columnar blocks without copying, which avoids a virtual call per value and an array
+ * allocation per string.  Cursors that only implement {@link RecordCursor} are read a
+ * row at a time.
+ */
+public interface BatchRecordCursor
+        extends RecordCursor
+{
+    /**
+     * Appends up to {@code maxPositions} rows to the batches, starting with the row after
+     * the current position.  The batches are in field order, and each batch has the type
+     * of its field.  Returns the number of rows appended, which is zero only when the
+     * cursor has no more rows.
+     */
+    int advanceNextBatch(ColumnBatch[] batches, int maxPositions);
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+import java.util.Arrays;
+
+/**
+ * The values of one column for a run of rows, stored in primitive arrays.  String values
+ * are stored back to back in a single byte array, and the value at a position starts at
+ * {@code getOffsets()[position]} and ends at {@code getOffsets()[position + 1]}.  Null
+ * positions have no value.
+ * <p/>
+ * The arrays are handed to the engine as is, so a batch must not be appended to after
+ * its arrays have been read.
+ */
+public final class ColumnBatch
+{
+    private final ColumnType type;
+
+    private int positionCount;
+    private boolean[] nulls;
+    private boolean[] booleans;
+    private long[] longs;
+    private double[] doubles;
+    private int[] offsets;
+    private byte[] bytes;
+
+    public ColumnBatch(ColumnType type, int expectedPositions)
+    {
+        if (type == null) {
+            throw new NullPointerException("type is null");
+        }
+        if (expectedPositions <= 0) {
+            throw new IllegalArgumentException("expectedPositions must be positive");
+        }
+        this.type = type;
+
+        nulls = new boolean[expectedPositions];
+        switch (type) {
+            case BOOLEAN:
+                booleans = new boolean[expectedPositions];
+                break;
+            case LONG:
+                longs = new long[expectedPositions];
+                break;
+            case DOUBLE:
+                doubles = new double[expectedPositions];
+                break;
+            case STRING:
+                offsets = new int[expectedPositions + 1];
+                bytes = new byte[expectedPositions * 16];
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported type " + type);
+        }
+    }
+
+    public ColumnType getType()
+    {
+        return type;
+    }
+
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public boolean isEmpty()
+    {
+        return positionCount == 0;
+    }
+
+    public void appendNull()
+    {
+        ensureCapacity();
+        nulls[positionCount] = true;
+        positionCount++;
+        if (offsets != null) {
+            offsets[positionCount] = offsets[positionCount - 1];
+        }
+    }
+
+    public void appendBoolean(boolean value)
+    {
+        checkType(ColumnType.BOOLEAN);
+        ensureCapacity();
+        booleans[positionCount] = value;
+        positionCount++;
+    }
+
+    public void appendLong(long value)
+    {
+        checkType(ColumnType.LONG);
+        ensureCapacity();
+        longs[positionCount] = value;
+        positionCount++;
+    }
+
+    public void appendDouble(double value)
+    {
+        checkType(ColumnType.DOUBLE);
+        ensureCapacity();
+        doubles[positionCount] = value;
+        positionCount++;
+    }
+
+    public void appendString(byte[] value)
+    {
+        appendString(value, 0, value.length);
+    }
+
+    public void appendString(byte[] value, int offset, int length)
+    {
+        checkType(ColumnType.STRING);
+        ensureCapacity();
+        int start = offsets[positionCount];
+        if (start + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, start + length));
+        }
+        System.arraycopy(value, offset, bytes, start, length);
+        positionCount++;
+        offsets[positionCount] = start + length;
+    }
+
+    /**
+     * Returns the null flags, which may have more entries than the position count.
+     */
+    public boolean[] getNulls()
+    {
+        return nulls;
+    }
+
+    public boolean[] getBooleans()
+    {
+        checkType(ColumnType.BOOLEAN);
+        return booleans;
+    }
+
+    public long[] getLongs()
+    {
+        checkType(ColumnType.LONG);
+        return longs;
+    }
+
+    public double[] getDoubles()
+    {
+        checkType(ColumnType.DOUBLE);
+        return doubles;
+    }
+
+    public int[] getOffsets()
+    {
+        checkType(ColumnType.STRING);
+        return offsets;
+    }
+
+    public byte[] getBytes()
+    {
+        checkType(ColumnType.STRING);
+        return bytes;
+    }
+
+    /**
+     * Returns the number of bytes used by the string values.
+     */
+    public int getBytesSize()
+    {
+        checkType(ColumnType.STRING);
+        return offsets[positionCount];
+    }
+
+    private void checkType(ColumnType expected)
+    {
+        if (type != expected) {
+            throw new IllegalStateException("Expected batch to be " + expected + ", actual " + type);
+        }
+    }
+
+    private void ensureCapacity()
+    {
+        if (positionCount < nulls.length) {
+            return;
+        }
+
+        int newSize = nulls.length * 2;
+        nulls = Arrays.copyOf(nulls, newSize);
+        switch (type) {
+            case BOOLEAN:
+                booleans = Arrays.copyOf(booleans, newSize);
+                break;
+            case LONG:
+                longs = Arrays.copyOf(longs, newSize);
+                break;
+            case DOUBLE:
+                doubles = Arrays.copyOf(doubles, newSize);
+                break;
+            case STRING:
+                offsets = Arrays.copyOf(offsets, newSize + 1);
+                break;
+        }
+    }
+}
@@ -53,7 +53,7 @@ public class InMemoryRecordSet
     }
 
     private static class InMemoryRecordCursor
-            implements RecordCursor
+            implements BatchRecordCursor
     {
         private final List<ColumnType> types;
         private final Iterator<? extends List<?>> records;
@@ -147,6 +147,39 @@ public class InMemoryRecordSet
             return record.get(field) == null;
         }
 
+        @Override
+        public int advanceNextBatch(ColumnBatch[] batches, int maxPositions)
+        {
+            int positions = 0;
+            while (positions < maxPositions && advanceNextPosition()) {
+                for (int field = 0; field < batches.length; field++) {
+                    ColumnBatch batch = batches[field];
+                    if (isNull(field)) {
+                        batch.appendNull();
+                        continue;
+                    }
+                    switch (types.get(field)) {
+                        case BOOLEAN:
+                            batch.appendBoolean(getBoolean(field));
+                            break;
+                        case LONG:
+                            batch.appendLong(getLong(field));
+                            break;
+                        case DOUBLE:
+                            batch.appendDouble(getDouble(field));
+                            break;
+                        case STRING:
+                            batch.appendString(getString(field));
+                            break;
+                        default:
+                            throw new IllegalStateException("Unsupported column type " + types.get(field));
+                    }
+                }
+                positions++;
+            }
+            return positions;
+        }
+
         @Override
         public void close()
         {
@@ -0,0 +1,32 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+/**
+ * A batched record cursor that can defer decoding the values of a batch until they are
+ * used.  The engine evaluates filters before it reads the other fields of a batch, so the
+ * fields that are only projected are never decoded for batches where no row passes the
+ * filter.
+ */
+public interface LazyBatchRecordCursor
+        extends BatchRecordCursor
+{
+    /**
+     * Advances over up to {@code maxPositions} rows, starting with the row after the current
+     * position, and stores a loader for the values of each field of those rows in
+     * {@code loaders}.  Returns the number of rows, which is zero only when the cursor has
+     * no more rows.
+     */
+    int advanceNextLazyBatch(ColumnBatchLoader[] loaders, int maxPositions);
+}